@@ -0,0 +1,91 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar 的入口：接受 JMH 的全部命令行参数，另外默认
+ * 1. 打开分配分析（-prof gc），每个结果都带 gc.alloc.rate.norm（每次操作分配的字节数）
+ * 2. 结果写成 JSON：benchmarks/results/<提交>.json，提交取 git rev-parse --short HEAD，有未提交修改时加 -dirty；
+ *    -Dbench.label=xxx 可以指定名字，命令行里的 -rf / -rff 优先
+ * 两次结果用 {@link CompareResults} 对比
+ *
+ * 运行（仓库根目录）：mvn -B package -DskipTests && java -jar benchmarks/target/benchmarks.jar [JMH 参数，如 Presence -p roomSize=50]
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        boolean gcProfiler = cli.getProfilers().stream().anyMatch(profiler -> profiler.getKlass().equals("gc")
+            || profiler.getKlass().equals(GCProfiler.class.getName()));
+        if (!gcProfiler) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            Path directory = Files.isDirectory(Paths.get("benchmarks")) ? Paths.get("benchmarks", "results") : Paths.get("results");
+            Files.createDirectories(directory);
+            Path result = directory.resolve(label() + ".json");
+            options.result(result.toString());
+            System.out.println("Results will be written to " + result);
+        }
+        new Runner(options.build()).run();
+    }
+
+    private static String label() {
+        String label = System.getProperty("bench.label");
+        if (label != null && !label.isBlank()) {
+            return label;
+        }
+        String commit = git("rev-parse", "--short", "HEAD");
+        if (commit == null || commit.isEmpty()) {
+            return "local";
+        }
+        String status = git("status", "--porcelain", "--untracked-files=no");
+        return status == null || status.isEmpty() ? commit : commit + "-dirty";
+    }
+
+    private static String git(String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                return null;
+            }
+            return output;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.whiteboard.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whiteboard.dto.DrawMessage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 基准测试共用的夹具
+ * 被测组件用字段注入，这里只装配它们自己和一个 SimpleMeterRegistry，配置值与 application.properties 一致
+ */
+final class BenchmarkSupport {
+    static final Map<String, Object> PROPERTIES = Map.of(
+        "jwt.secret", "whiteboardSecretKeyForJWTTokenGeneration2023",
+        "jwt.expiration", "86400000",
+        "app.pepper", "defaultPepperKeyChangeInProduction",
+        "app.username.salt", "UsernameSaltKey2023ChangeInProduction");
+
+    private static final int CANVAS_WIDTH = 1200;
+    private static final int CANVAS_HEIGHT = 800;
+
+    private BenchmarkSupport() {}
+
+    static AnnotationConfigApplicationContext context(Class<?>... components) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", PROPERTIES));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(components);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * 与 STOMP 消息转换器相同的配置（Spring 的默认 JSON 构建器）
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * app.js 的 pen 笔画数据：{points:[{x,y}...], color, lineWidth}，坐标是固定种子生成的随机游走
+     */
+    static Map<String, Object> penStroke(int points, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Map<String, Object>> path = new ArrayList<>(points);
+        double x = random.nextInt(CANVAS_WIDTH);
+        double y = random.nextInt(CANVAS_HEIGHT);
+        for (int i = 0; i < points; i++) {
+            x = Math.max(0, Math.min(CANVAS_WIDTH, x + random.nextDouble(-12, 12)));
+            y = Math.max(0, Math.min(CANVAS_HEIGHT, y + random.nextDouble(-12, 12)));
+            // Map.of 的遍历顺序每次启动 JVM 都不同，这里要固定的字段顺序
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("x", Math.round(x * 10) / 10d);
+            point.put("y", Math.round(y * 10) / 10d);
+            path.add(point);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("points", path);
+        data.put("color", "#3498db");
+        data.put("lineWidth", 3);
+        return data;
+    }
+
+    /**
+     * 服务端广播的绘制消息：data 是 JSON 字符串，带上房间序列号
+     */
+    static DrawMessage drawMessage(String data) {
+        DrawMessage message = new DrawMessage();
+        message.setRoomId("7f3c2a9e-5b1d-4c8e-9a6f-2d4b8e1c0f37");
+        message.setType("pen");
+        message.setData(data);
+        message.setUsername("alice");
+        message.setClientOpId("lq8x2k-9f3k2m1c0a");
+        message.setSequence(1842L);
+        return message;
+    }
+}
@@ -0,0 +1,113 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 对比两次 JMH JSON 结果（通常是两个提交），逐项列出耗时和每次操作分配字节数的变化
+ * 变慢超过阈值且差值大于两边误差之和，或分配增加超过阈值（且至少 16 字节）时记为回归，进程以 1 退出
+ *
+ * 运行：java -cp benchmarks/target/benchmarks.jar com.whiteboard.benchmarks.CompareResults base.json new.json [阈值百分比，默认 10]
+ */
+public final class CompareResults {
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    private static final double MIN_ALLOC_DELTA = 16;
+
+    private CompareResults() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <base.json> <new.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> base = read(Paths.get(args[0]));
+        Map<String, Result> current = read(Paths.get(args[1]));
+
+        System.out.printf("%-62s %12s %12s %8s %12s %12s %8s%n",
+            "benchmark", "base", "new", "change", "base B/op", "new B/op", "change");
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = base.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-62s %12s %12.3f %8s%n", entry.getKey(), "-", now.score, "new");
+                continue;
+            }
+            // 吞吐模式越大越好，其余模式（时间）越小越好
+            double slower = now.higherIsBetter ? before.score - now.score : now.score - before.score;
+            double scoreChange = percent(before.score, now.score);
+            boolean slowerRegression = slower > 0 && Math.abs(scoreChange) > threshold && slower > before.error + now.error;
+            double allocChange = percent(before.allocBytes, now.allocBytes);
+            boolean allocRegression = now.allocBytes - before.allocBytes > MIN_ALLOC_DELTA && allocChange > threshold;
+            String flag = slowerRegression || allocRegression ? "  REGRESSION" : "";
+            if (!flag.isEmpty()) {
+                regressions++;
+            }
+            System.out.printf("%-62s %12.3f %12.3f %7.1f%% %12.1f %12.1f %7.1f%%%s%n", entry.getKey(),
+                before.score, now.score, scoreChange, before.allocBytes, now.allocBytes, allocChange, flag);
+        }
+        for (String key : base.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-62s %12s%n", key, "removed");
+            }
+        }
+        System.out.printf("%n%d regression(s) at a %.1f%% threshold%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 键是去掉包名的基准名加参数，例如 PresenceBenchmark.snapshot roomSize=50
+     */
+    private static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            String name = run.path("benchmark").asText();
+            StringBuilder key = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+            Map<String, String> params = new LinkedHashMap<>();
+            run.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            params.forEach((param, value) -> key.append(' ').append(param).append('=').append(value));
+            JsonNode primary = run.path("primaryMetric");
+            double alloc = Double.NaN;
+            // 旧版 JMH 的次要指标名带 "·" 前缀
+            for (Iterator<Map.Entry<String, JsonNode>> it = run.path("secondaryMetrics").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> metric = it.next();
+                if (metric.getKey().replace("·", "").equals(ALLOC_NORM)) {
+                    alloc = metric.getValue().path("score").asDouble();
+                }
+            }
+            double error = primary.path("scoreError").asDouble(0);
+            results.put(key.toString(), new Result(primary.path("score").asDouble(),
+                Double.isFinite(error) ? error : 0, alloc, run.path("mode").asText().equals("thrpt")));
+        }
+        return results;
+    }
+
+    private static double percent(double before, double after) {
+        return before == 0 ? 0 : 100 * (after - before) / before;
+    }
+
+    private static final class Result {
+        private final double score;
+        private final double error;
+        private final double allocBytes;
+        private final boolean higherIsBetter;
+
+        private Result(double score, double error, double allocBytes, boolean higherIsBetter) {
+            this.score = score;
+            this.error = error;
+            this.allocBytes = allocBytes;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
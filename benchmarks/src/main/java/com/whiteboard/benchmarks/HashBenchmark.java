@@ -0,0 +1,58 @@
+package com.whiteboard.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.whiteboard.util.HashUtil;
+
+/**
+ * PBKDF2（100000 次迭代）：注册、登录以及按用户名查找用户时都要算一次
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashBenchmark {
+    private AnnotationConfigApplicationContext context;
+    private HashUtil hashUtil;
+    // 固定的 salt，每次运行的输入相同
+    private final String salt = Base64.getEncoder().encodeToString(
+        "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.context(HashUtil.class);
+        hashUtil = context.getBean(HashUtil.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String hashUsername() {
+        return hashUtil.hashUsername("alice");
+    }
+
+    @Benchmark
+    public String hashWithSaltAndPepper() {
+        return hashUtil.hashWithSaltAndPepper("correct horse battery staple", salt);
+    }
+}
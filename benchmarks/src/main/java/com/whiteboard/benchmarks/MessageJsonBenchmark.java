@@ -0,0 +1,85 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whiteboard.dto.CursorMessage;
+import com.whiteboard.dto.DrawMessage;
+import com.whiteboard.dto.UserPresence;
+
+/**
+ * STOMP 消息体的 JSON 转换：每个入站帧反序列化一次，每次广播序列化一次
+ * 绘制消息用一笔 24 个点的 pen 笔画（app.js 的典型大小）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageJsonBenchmark {
+    private ObjectMapper mapper;
+    private DrawMessage draw;
+    private byte[] drawJson;
+    private CursorMessage cursor;
+    private byte[] cursorJson;
+    private UserPresence presence;
+    private byte[] presenceJson;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = BenchmarkSupport.objectMapper();
+        draw = BenchmarkSupport.drawMessage(mapper.writeValueAsString(BenchmarkSupport.penStroke(24, 1)));
+        drawJson = mapper.writeValueAsBytes(draw);
+        cursor = new CursorMessage();
+        cursor.setRoomId(draw.getRoomId());
+        cursor.setUsername("alice");
+        cursor.setX(512.5);
+        cursor.setY(287.25);
+        cursorJson = mapper.writeValueAsBytes(cursor);
+        presence = new UserPresence("alice", 42L);
+        presenceJson = mapper.writeValueAsBytes(presence);
+    }
+
+    @Benchmark
+    public byte[] serializeDrawMessage() throws IOException {
+        return mapper.writeValueAsBytes(draw);
+    }
+
+    @Benchmark
+    public DrawMessage deserializeDrawMessage() throws IOException {
+        return mapper.readValue(drawJson, DrawMessage.class);
+    }
+
+    @Benchmark
+    public byte[] serializeCursorMessage() throws IOException {
+        return mapper.writeValueAsBytes(cursor);
+    }
+
+    @Benchmark
+    public CursorMessage deserializeCursorMessage() throws IOException {
+        return mapper.readValue(cursorJson, CursorMessage.class);
+    }
+
+    @Benchmark
+    public byte[] serializeUserPresence() throws IOException {
+        return mapper.writeValueAsBytes(presence);
+    }
+
+    @Benchmark
+    public UserPresence deserializeUserPresence() throws IOException {
+        return mapper.readValue(presenceJson, UserPresence.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 操作数据（Operation.operationData）的编码和解码
+ * 数据是 JSON 文本：SceneService 和 CheckpointService 回放时用 readTree 解码，
+ * 场景对象转回绘制消息时把树重新编码成字符串；points 是一笔的点数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperationPayloadBenchmark {
+    @Param({"8", "64", "512"})
+    public int points;
+
+    private ObjectMapper mapper;
+    private Map<String, Object> stroke;
+    private String payload;
+    private JsonNode tree;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = BenchmarkSupport.objectMapper();
+        stroke = BenchmarkSupport.penStroke(points, 1);
+        payload = mapper.writeValueAsString(stroke);
+        tree = mapper.readTree(payload);
+    }
+
+    /**
+     * 客户端形状的数据编码成操作数据
+     */
+    @Benchmark
+    public String encode() throws IOException {
+        return mapper.writeValueAsString(stroke);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        return mapper.readTree(payload);
+    }
+
+    /**
+     * 回放后的场景对象重新编码
+     */
+    @Benchmark
+    public String encodeTree() throws IOException {
+        return mapper.writeValueAsString(tree);
+    }
+}
@@ -0,0 +1,82 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whiteboard.dto.PresenceDelta;
+import com.whiteboard.service.PresenceService;
+
+/**
+ * handleJoin 中的在线列表：新用户加入产生 add 增量，新会话收到完整列表
+ * roomSize 是房间里已有的用户数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresenceBenchmark {
+    private static final String ROOM_ID = "7f3c2a9e-5b1d-4c8e-9a6f-2d4b8e1c0f37";
+
+    @Param({"5", "50", "500"})
+    public int roomSize;
+
+    private AnnotationConfigApplicationContext context;
+    private PresenceService presenceService;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.context(PresenceService.class);
+        presenceService = context.getBean(PresenceService.class);
+        mapper = BenchmarkSupport.objectMapper();
+        for (int i = 0; i < roomSize; i++) {
+            presenceService.join(ROOM_ID, "session-" + i, "user-" + i, (long) i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * join + snapshot，与 handleJoin 相同；最后 leave 把房间恢复原状，leave 的开销也计在内
+     */
+    @Benchmark
+    public void joinAndSnapshot(Blackhole blackhole) {
+        blackhole.consume(presenceService.join(ROOM_ID, "session-new", "newcomer", -1L));
+        blackhole.consume(presenceService.snapshot(ROOM_ID));
+        blackhole.consume(presenceService.leave(ROOM_ID, "session-new"));
+    }
+
+    @Benchmark
+    public PresenceDelta snapshot() {
+        return presenceService.snapshot(ROOM_ID);
+    }
+
+    /**
+     * 完整列表发给新会话前的序列化
+     */
+    @Benchmark
+    public byte[] snapshotJson() throws IOException {
+        return mapper.writeValueAsBytes(presenceService.snapshot(ROOM_ID));
+    }
+}
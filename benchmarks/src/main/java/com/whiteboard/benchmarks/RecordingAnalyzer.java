@@ -0,0 +1,238 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * 把一份 JFR 录制汇总成各阶段的延迟分布
+ * 1. 每种 com.whiteboard.* 事件的次数、分位数和平均负载大小
+ * 2. 每次 Draw 拆成 save（OperationSave）、broadcast（Broadcast）和其余部分（查找房间和用户、去重、ack），
+ *    子事件按同一线程上落在 Draw 时间范围内来归属
+ * 3. Draw 总耗时最多的房间
+ * 4. 同一时段的 GC 停顿和锁等待，用来判断慢的阶段是否由它们引起
+ *
+ * 离线工具，不随服务端打包；事件按名字匹配，不依赖 server 模块中的事件类
+ *
+ * 运行（仓库根目录）：mvn -B package -DskipTests && java -cp benchmarks/target/benchmarks.jar com.whiteboard.benchmarks.RecordingAnalyzer whiteboard.jfr [房间数]
+ */
+public final class RecordingAnalyzer {
+    private static final String PREFIX = "com.whiteboard.";
+    private static final String DRAW = PREFIX + "Draw";
+    private static final String SAVE = PREFIX + "OperationSave";
+    private static final String BROADCAST = PREFIX + "Broadcast";
+
+    private RecordingAnalyzer() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RecordingAnalyzer <recording.jfr> [rooms]");
+            System.exit(1);
+        }
+        Path path = Paths.get(args[0]);
+        int topRooms = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Map<String, Stats> byType = new TreeMap<>();
+        Map<Long, List<Span>> byThread = new HashMap<>();
+        Stats gcPauses = new Stats();
+        Stats monitorEnter = new Stats();
+        Instant first = null;
+        Instant last = null;
+        try (RecordingFile recording = new RecordingFile(path)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                long nanos = event.getDuration().toNanos();
+                if (name.startsWith(PREFIX)) {
+                    long payload = event.hasField("payloadBytes") ? event.getLong("payloadBytes") : 0;
+                    byType.computeIfAbsent(name.substring(PREFIX.length()), k -> new Stats()).add(nanos, payload);
+                    if (name.equals(DRAW) || name.equals(SAVE) || name.equals(BROADCAST)) {
+                        RecordedThread thread = event.getThread();
+                        long threadId = thread == null ? -1 : thread.getJavaThreadId();
+                        byThread.computeIfAbsent(threadId, k -> new ArrayList<>()).add(new Span(name,
+                            event.hasField("roomId") ? event.getString("roomId") : null, toNanos(event.getStartTime()), nanos));
+                    }
+                    first = first == null || event.getStartTime().isBefore(first) ? event.getStartTime() : first;
+                    last = last == null || event.getEndTime().isAfter(last) ? event.getEndTime() : last;
+                } else if (name.equals("jdk.GCPhasePause")) {
+                    gcPauses.add(nanos, 0);
+                } else if (name.equals("jdk.JavaMonitorEnter")) {
+                    monitorEnter.add(nanos, 0);
+                }
+            }
+        }
+        if (byType.isEmpty()) {
+            System.out.println("No com.whiteboard.* events in " + path + " (record with server/src/main/resources/jfr/whiteboard.jfc)");
+            return;
+        }
+        System.out.printf("Recording %s, %.1f s of whiteboard events%n%n", path,
+            Duration.between(first, last).toMillis() / 1000d);
+
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %11s %12s%n",
+            "event", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "total ms", "avg bytes");
+        byType.forEach((name, stats) -> stats.print(name));
+
+        Map<String, Stats> stages = new TreeMap<>();
+        Map<String, RoomStats> rooms = new HashMap<>();
+        for (List<Span> spans : byThread.values()) {
+            breakDownDraws(spans, stages, rooms);
+        }
+        if (!rooms.isEmpty()) {
+            System.out.printf("%nDraw breakdown (children on the same thread within each Draw)%n");
+            System.out.printf("%-16s %9s %9s %9s %9s %9s %11s %8s%n",
+                "stage", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "total ms", "share");
+            double drawTotal = stages.get("total").total;
+            for (String stage : new String[] {"save", "broadcast", "other", "total"}) {
+                Stats stats = stages.get(stage);
+                stats.printRow(stage);
+                System.out.printf(" %7.1f%%%n", drawTotal == 0 ? 0 : 100d * stats.total / drawTotal);
+            }
+
+            System.out.printf("%nRooms by total Draw time (top %d of %d)%n", Math.min(topRooms, rooms.size()), rooms.size());
+            System.out.printf("%-38s %9s %9s %9s %11s %11s%n", "room", "draws", "p50 ms", "p99 ms", "save avg", "bcast avg");
+            rooms.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, RoomStats> e) -> e.getValue().draw.total).reversed())
+                .limit(topRooms)
+                .forEach(e -> {
+                    RoomStats room = e.getValue();
+                    System.out.printf("%-38s %9d %9.3f %9.3f %11.3f %11.3f%n", e.getKey(), room.draw.count(),
+                        room.draw.percentile(0.50), room.draw.percentile(0.99), room.save.mean(), room.broadcast.mean());
+                });
+        }
+
+        System.out.printf("%nJVM context%n");
+        System.out.printf("  GC pauses:           %d, total %.1f ms, max %.2f ms%n",
+            gcPauses.count(), gcPauses.total, gcPauses.percentile(1.0));
+        System.out.printf("  Monitor enter >10ms: %d, total %.1f ms, max %.2f ms%n",
+            monitorEnter.count(), monitorEnter.total, monitorEnter.percentile(1.0));
+    }
+
+    /**
+     * 一个线程上的 Draw 事件互不重叠，按开始时间排序后子事件紧跟在所属的 Draw 之后
+     */
+    private static void breakDownDraws(List<Span> spans, Map<String, Stats> stages, Map<String, RoomStats> rooms) {
+        spans.sort(Comparator.comparingLong((Span s) -> s.start).thenComparing(s -> !s.type.equals(DRAW)));
+        for (int i = 0; i < spans.size(); i++) {
+            Span draw = spans.get(i);
+            if (!draw.type.equals(DRAW)) {
+                continue;
+            }
+            long save = 0;
+            long broadcast = 0;
+            for (int j = i + 1; j < spans.size() && spans.get(j).start <= draw.end(); j++) {
+                Span child = spans.get(j);
+                if (child.end() > draw.end()) {
+                    continue;
+                }
+                if (child.type.equals(SAVE)) {
+                    save += child.duration;
+                } else if (child.type.equals(BROADCAST)) {
+                    broadcast += child.duration;
+                }
+            }
+            stages.computeIfAbsent("save", k -> new Stats()).add(save, 0);
+            stages.computeIfAbsent("broadcast", k -> new Stats()).add(broadcast, 0);
+            stages.computeIfAbsent("other", k -> new Stats()).add(Math.max(0, draw.duration - save - broadcast), 0);
+            stages.computeIfAbsent("total", k -> new Stats()).add(draw.duration, 0);
+            if (draw.roomId != null) {
+                RoomStats room = rooms.computeIfAbsent(draw.roomId, k -> new RoomStats());
+                room.draw.add(draw.duration, 0);
+                room.save.add(save, 0);
+                room.broadcast.add(broadcast, 0);
+            }
+        }
+    }
+
+    private static long toNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static final class Span {
+        private final String type;
+        private final String roomId;
+        private final long start;
+        private final long duration;
+
+        private Span(String type, String roomId, long start, long duration) {
+            this.type = type;
+            this.roomId = roomId;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        private long end() {
+            return start + duration;
+        }
+    }
+
+    private static final class RoomStats {
+        private final Stats draw = new Stats();
+        private final Stats save = new Stats();
+        private final Stats broadcast = new Stats();
+    }
+
+    /**
+     * 持续时间（毫秒）的分布；录制文件有限，直接保存全部样本
+     */
+    private static final class Stats {
+        private double[] millis = new double[64];
+        private int size;
+        private boolean sorted;
+        private double total;
+        private long payload;
+
+        private void add(long nanos, long payloadBytes) {
+            if (size == millis.length) {
+                millis = Arrays.copyOf(millis, size * 2);
+            }
+            double ms = nanos / 1e6;
+            millis[size++] = ms;
+            sorted = false;
+            total += ms;
+            payload += payloadBytes;
+        }
+
+        private int count() {
+            return size;
+        }
+
+        private double mean() {
+            return size == 0 ? 0 : total / size;
+        }
+
+        private double percentile(double quantile) {
+            if (size == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(millis, 0, size);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(quantile * size) - 1;
+            return millis[Math.max(0, Math.min(size - 1, index))];
+        }
+
+        private void printRow(String name) {
+            System.out.printf("%-16s %9d %9.3f %9.3f %9.3f %9.3f %11.1f", name, size,
+                percentile(0.50), percentile(0.90), percentile(0.99), percentile(1.0), total);
+        }
+
+        private void print(String name) {
+            printRow(name);
+            System.out.printf(" %12d%n", size == 0 ? 0 : payload / size);
+        }
+    }
+}
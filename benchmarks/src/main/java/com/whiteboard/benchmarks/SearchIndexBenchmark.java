@@ -0,0 +1,177 @@
+package com.whiteboard.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.whiteboard.search.RoomSearchIndex;
+import com.whiteboard.search.SearchHits;
+
+/**
+ * 搜索索引基准测试：生成指定数量的合成聊天消息（词频服从 Zipf 分布），
+ * 按与线上相同的方式 flush / 分级合并写入一个房间索引，然后统计几类查询的延迟
+ *
+ * 不是 JMH 基准：一次要建千万级消息的索引，只适合跑一遍看分位数
+ *
+ * 运行：mvn -B package -DskipTests && java -Xmx3g -cp benchmarks/target/benchmarks.jar com.whiteboard.benchmarks.SearchIndexBenchmark [消息数] [索引目录]
+ * 消息数默认 10,000,000
+ */
+public final class SearchIndexBenchmark {
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int FLUSH_DOCS = 200_000;
+    private static final int MERGE_FACTOR = 8;
+    private static final int QUERIES_PER_KIND = 2_000;
+    private static final int WARMUP_QUERIES = 500;
+    private static final int PAGE_SIZE = 50;
+
+    private SearchIndexBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        long messages = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 10_000_000L;
+        boolean temporary = args.length < 2;
+        Path directory = temporary ? Files.createTempDirectory("search-bench") : Paths.get(args[1]);
+        Random random = new Random(42);
+        String[] words = vocabulary(random);
+        double[] cumulative = zipf(VOCABULARY_SIZE, 1.07);
+
+        RoomSearchIndex index = new RoomSearchIndex(directory, 1024);
+        System.out.printf("Indexing %,d messages into %s%n", messages, directory);
+        long start = System.nanoTime();
+        StringBuilder text = new StringBuilder();
+        for (long id = index.getMaxIndexedId() + 1; id <= messages; id++) {
+            text.setLength(0);
+            int length = 4 + random.nextInt(12);
+            for (int w = 0; w < length; w++) {
+                text.append(words[sample(cumulative, random)]).append(' ');
+            }
+            index.add(id, text.toString());
+            if (id % FLUSH_DOCS == 0) {
+                index.flush();
+                while (index.maybeMerge(MERGE_FACTOR, FLUSH_DOCS)) {
+                    // 一次 flush 之后可能连续触发多级合并
+                }
+            }
+            if (id % 1_000_000 == 0) {
+                System.out.printf("  %,d messages, %d segment(s), %.1f s%n",
+                    id, index.getSegmentCount(), (System.nanoTime() - start) / 1e9);
+            }
+        }
+        index.flush();
+        System.out.printf("Indexed in %.1f s: %d segment(s), %,d bytes on disk (%.2f bytes/message)%n",
+            (System.nanoTime() - start) / 1e9, index.getSegmentCount(), index.getSizeBytes(),
+            index.getSizeBytes() / (double) Math.max(1, messages));
+
+        String[][] kinds = {
+            {"rare term", "rare"},
+            {"mid-frequency term", "mid"},
+            {"common term", "common"},
+            {"two terms (AND)", "and"},
+            {"prefix (3 chars)", "prefix"},
+            {"paged (before = middle)", "paged"}
+        };
+        System.out.printf("%-26s %10s %10s %10s %10s %12s%n", "query", "p50 us", "p95 us", "p99 us", "max us", "avg hits");
+        for (String[] kind : kinds) {
+            run(index, kind[0], kind[1], words, random, messages);
+        }
+        if (temporary) {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void run(RoomSearchIndex index, String label, String kind, String[] words, Random random, long messages) {
+        long[] latencies = new long[QUERIES_PER_KIND];
+        long hits = 0;
+        for (int i = -WARMUP_QUERIES; i < QUERIES_PER_KIND; i++) {
+            List<String> terms = new ArrayList<>();
+            long before = Long.MAX_VALUE;
+            switch (kind) {
+                case "rare":
+                    terms.add(words[VOCABULARY_SIZE / 2 + random.nextInt(VOCABULARY_SIZE / 2)]);
+                    break;
+                case "mid":
+                    terms.add(words[100 + random.nextInt(900)]);
+                    break;
+                case "common":
+                    terms.add(words[random.nextInt(10)]);
+                    break;
+                case "and":
+                    terms.add(words[random.nextInt(200)]);
+                    terms.add(words[random.nextInt(2000)]);
+                    break;
+                case "prefix":
+                    String word = words[random.nextInt(5000)];
+                    terms.add(word.substring(0, Math.min(3, word.length())) + "*");
+                    break;
+                default:
+                    terms.add(words[random.nextInt(1000)]);
+                    before = messages / 2;
+                    break;
+            }
+            long t0 = System.nanoTime();
+            SearchHits result = index.search(terms, before, PAGE_SIZE);
+            long elapsed = System.nanoTime() - t0;
+            if (i >= 0) {
+                latencies[i] = elapsed;
+                hits += result.getIds().size();
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-26s %10.1f %10.1f %10.1f %10.1f %12.1f%n", label,
+            percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+            latencies[latencies.length - 1] / 1e3, hits / (double) QUERIES_PER_KIND);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e3;
+    }
+
+    // 随机生成的 3~10 个字母的词，下标越小出现得越频繁
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY_SIZE];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < VOCABULARY_SIZE; ) {
+            int length = 3 + random.nextInt(8);
+            StringBuilder word = new StringBuilder(length);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            if (seen.add(word.toString())) {
+                words[i++] = word.toString();
+            }
+        }
+        return words;
+    }
+
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
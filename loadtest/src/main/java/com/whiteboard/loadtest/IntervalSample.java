@@ -0,0 +1,109 @@
+package com.whiteboard.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * 一秒的压测结果：客户端计数、延迟分布，以及同一时刻从 Actuator 读到的服务端 CPU 和堆
+ */
+public class IntervalSample {
+    private final int second;
+    private final boolean measured;
+    private final long[] sent;
+    private final long[] received;
+    private final long acks;
+    private final long errors;
+    private final Histogram peerLatency;
+    private final Histogram ackLatency;
+    private double serverCpu = Double.NaN;
+    private double systemCpu = Double.NaN;
+    private double heapUsedMb = Double.NaN;
+    private double heapCommittedMb = Double.NaN;
+    private double clientCpu = Double.NaN;
+
+    IntervalSample(int second, boolean measured, long[] sent, long[] received, long acks, long errors,
+                   Histogram peerLatency, Histogram ackLatency) {
+        this.second = second;
+        this.measured = measured;
+        this.sent = sent;
+        this.received = received;
+        this.acks = acks;
+        this.errors = errors;
+        this.peerLatency = peerLatency;
+        this.ackLatency = ackLatency;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    /**
+     * 预热阶段的样本写进逐秒报告，但不计入汇总
+     */
+    public boolean isMeasured() {
+        return measured;
+    }
+
+    public long getSent(LoadStats.Kind kind) {
+        return sent[kind.ordinal()];
+    }
+
+    public long getReceived(LoadStats.Kind kind) {
+        return received[kind.ordinal()];
+    }
+
+    public long getAcks() {
+        return acks;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public Histogram getPeerLatency() {
+        return peerLatency;
+    }
+
+    public Histogram getAckLatency() {
+        return ackLatency;
+    }
+
+    public double getServerCpu() {
+        return serverCpu;
+    }
+
+    public void setServerCpu(double serverCpu) {
+        this.serverCpu = serverCpu;
+    }
+
+    public double getSystemCpu() {
+        return systemCpu;
+    }
+
+    public void setSystemCpu(double systemCpu) {
+        this.systemCpu = systemCpu;
+    }
+
+    public double getHeapUsedMb() {
+        return heapUsedMb;
+    }
+
+    public void setHeapUsedMb(double heapUsedMb) {
+        this.heapUsedMb = heapUsedMb;
+    }
+
+    public double getHeapCommittedMb() {
+        return heapCommittedMb;
+    }
+
+    public void setHeapCommittedMb(double heapCommittedMb) {
+        this.heapCommittedMb = heapCommittedMb;
+    }
+
+    public double getClientCpu() {
+        return clientCpu;
+    }
+
+    public void setClientCpu(double clientCpu) {
+        this.clientCpu = clientCpu;
+    }
+}
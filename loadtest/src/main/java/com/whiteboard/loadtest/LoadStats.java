@@ -0,0 +1,87 @@
+package com.whiteboard.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * 所有模拟用户共用的计数和延迟记录；每秒 {@link #next} 取出这一秒的增量
+ * 延迟以微秒记录在 HdrHistogram 里（3 位有效数字），p999 也不会被固定分桶抹平
+ */
+public class LoadStats {
+    public enum Kind {
+        DRAW("draw"),
+        CURSOR("cursor"),
+        CHAT("chat");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final LongAdder[] sent = adders();
+    private final LongAdder[] received = adders();
+    private final LongAdder acks = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    // 笔画从发送者发出到房间里另一个用户收到广播
+    private final Recorder peerLatency = new Recorder(3);
+    // 发送者发出到收到服务端 ack
+    private final Recorder ackLatency = new Recorder(3);
+
+    public void recordSent(Kind kind) {
+        sent[kind.ordinal()].increment();
+    }
+
+    public void recordReceived(Kind kind) {
+        received[kind.ordinal()].increment();
+    }
+
+    public void recordPeerLatency(long nanos) {
+        peerLatency.recordValue(toMicros(nanos));
+    }
+
+    public void recordAck(long nanos) {
+        acks.increment();
+        ackLatency.recordValue(toMicros(nanos));
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * 取出上次调用以来的计数和延迟分布
+     */
+    public IntervalSample next(int second, boolean measured) {
+        long[] sentCounts = new long[Kind.values().length];
+        long[] receivedCounts = new long[Kind.values().length];
+        for (Kind kind : Kind.values()) {
+            sentCounts[kind.ordinal()] = sent[kind.ordinal()].sumThenReset();
+            receivedCounts[kind.ordinal()] = received[kind.ordinal()].sumThenReset();
+        }
+        Histogram peer = peerLatency.getIntervalHistogram();
+        Histogram ack = ackLatency.getIntervalHistogram();
+        return new IntervalSample(second, measured, sentCounts, receivedCounts,
+            acks.sumThenReset(), errors.sumThenReset(), peer, ack);
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[Kind.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,203 @@
+package com.whiteboard.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 无界面压测：rooms 个房间 × users 个模拟用户通过 STOMP 连到一个实例，
+ * 报告吞吐、笔画到达对端的 p50/p99/p999 延迟、服务端 CPU 和堆
+ * 1. --launch 时先用 h2 配置启动服务端 jar，否则压测 --url 指向的实例
+ * 2. 注册用户、建房间，所有用户连接并加入房间
+ * 3. 预热 warmup 秒后计量 duration 秒，每秒记录一行
+ * 4. 报告写到 --out 目录（summary.csv、intervals.csv、latency.csv、report.html）
+ *
+ * 运行：mvn -B package -DskipTests && java -jar loadtest/target/whiteboard-loadtest-1.0.0.jar --launch --rooms=20 --users=5
+ */
+public final class LoadTest {
+    private static final int CONNECT_BATCH = 50;
+    private static final int SETUP_THREADS = 8;
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Path out = options.getOut().toAbsolutePath();
+        ServerProcess server = null;
+        if (options.isLaunch()) {
+            server = ServerProcess.start(options, out.resolve("server"));
+            System.out.printf("Started server pid %d on port %d (log %s)%n", server.pid(), options.getServerPort(), server.getLog());
+        }
+        try {
+            run(options, out, server);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void run(LoadTestOptions options, Path out, ServerProcess server) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        WhiteboardClient http = new WhiteboardClient(options.getBaseUrl(), mapper);
+        http.awaitHealthy(Duration.ofSeconds(120));
+        String metricsToken = http.authenticate(options.getMetricsUser());
+        if (Double.isNaN(http.metric("process.cpu.usage", null, metricsToken))) {
+            System.err.println("Cannot read /actuator/metrics as " + options.getMetricsUser()
+                + "; add it to the server's app.management.users to report server CPU and heap");
+        }
+
+        System.out.printf("Creating %d rooms x %d users on %s%n", options.getRooms(), options.getUsersPerRoom(), options.getBaseUrl());
+        LoadStats stats = new LoadStats();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        List<SimulatedUser> users = createUsers(options, http, mapper, stats, scheduler);
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        List<SimulatedUser> connected = connect(users, stompClient, http);
+        System.out.printf("Connected %d of %d users%n", connected.size(), users.size());
+        if (connected.isEmpty()) {
+            scheduler.shutdownNow();
+            throw new IllegalStateException("No user could connect");
+        }
+        // 加入房间的消息先处理完，再开始计时
+        Thread.sleep(1000);
+        connected.forEach(SimulatedUser::start);
+
+        List<IntervalSample> samples = new ArrayList<>();
+        int total = options.getWarmupSeconds() + options.getDurationSeconds();
+        long start = System.nanoTime();
+        for (int second = 1; second <= total; second++) {
+            long wait = start + TimeUnit.SECONDS.toNanos(second) - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            IntervalSample sample = stats.next(second, second > options.getWarmupSeconds());
+            sampleServer(http, metricsToken, sample);
+            samples.add(sample);
+            if (second % 5 == 0 || second == total) {
+                printProgress(sample, options.getWarmupSeconds());
+            }
+            if (server != null && !server.isAlive()) {
+                System.err.println("Server process exited, see " + server.getLog());
+                break;
+            }
+        }
+
+        connected.forEach(SimulatedUser::stop);
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+        ReportWriter report = new ReportWriter(options, samples, connected.size());
+        report.write(out);
+        System.out.println();
+        report.getSummary().forEach((metric, value) -> System.out.printf("%-34s %s%n", metric, value));
+        System.out.println("Report written to " + out.resolve("report.html"));
+    }
+
+    /**
+     * 注册是 PBKDF2，最耗时的一步，用几个线程并行；每个房间由第一个用户创建
+     */
+    private static List<SimulatedUser> createUsers(LoadTestOptions options, WhiteboardClient http, ObjectMapper mapper,
+                                                   LoadStats stats, ScheduledExecutorService scheduler)
+            throws InterruptedException, ExecutionException {
+        ExecutorService setup = Executors.newFixedThreadPool(SETUP_THREADS);
+        try {
+            List<Future<List<SimulatedUser>>> rooms = new ArrayList<>();
+            for (int r = 0; r < options.getRooms(); r++) {
+                int room = r;
+                rooms.add(setup.submit(() -> {
+                    String prefix = "lt" + options.getSeed() + "-r" + room + "-u";
+                    List<String> tokens = new ArrayList<>();
+                    for (int u = 0; u < options.getUsersPerRoom(); u++) {
+                        tokens.add(http.authenticate(prefix + u));
+                    }
+                    String roomId = http.createRoom("loadtest-" + options.getSeed() + "-" + room, tokens.get(0));
+                    List<SimulatedUser> members = new ArrayList<>();
+                    for (int u = 0; u < tokens.size(); u++) {
+                        long seed = options.getSeed() * 1_000_003L + (long) room * options.getUsersPerRoom() + u;
+                        members.add(new SimulatedUser(prefix + u, tokens.get(u), roomId, options, stats, mapper, scheduler, seed));
+                    }
+                    return members;
+                }));
+            }
+            List<SimulatedUser> users = new ArrayList<>();
+            for (Future<List<SimulatedUser>> room : rooms) {
+                users.addAll(room.get());
+            }
+            return users;
+        } finally {
+            setup.shutdownNow();
+        }
+    }
+
+    /**
+     * 分批建立连接，避免几千个握手同时到达；连不上的用户不参与压测
+     */
+    private static List<SimulatedUser> connect(List<SimulatedUser> users, WebSocketStompClient stompClient,
+                                               WhiteboardClient http) throws InterruptedException {
+        List<SimulatedUser> connected = new ArrayList<>();
+        for (int from = 0; from < users.size(); from += CONNECT_BATCH) {
+            List<SimulatedUser> batch = users.subList(from, Math.min(users.size(), from + CONNECT_BATCH));
+            List<ListenableFuture<StompSession>> futures = new ArrayList<>();
+            for (SimulatedUser user : batch) {
+                futures.add(user.connect(stompClient, http.getWebSocketUrl(user.getToken())));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    futures.get(i).get(15, TimeUnit.SECONDS);
+                    connected.add(batch.get(i));
+                } catch (ExecutionException | TimeoutException e) {
+                    System.err.println("Connect failed for " + batch.get(i).getUsername() + ": " + e);
+                }
+            }
+        }
+        return connected;
+    }
+
+    private static void sampleServer(WhiteboardClient http, String metricsToken, IntervalSample sample) {
+        sample.setServerCpu(http.metric("process.cpu.usage", null, metricsToken));
+        sample.setSystemCpu(http.metric("system.cpu.usage", null, metricsToken));
+        sample.setHeapUsedMb(http.metric("jvm.memory.used", "area:heap", metricsToken) / (1024 * 1024));
+        sample.setHeapCommittedMb(http.metric("jvm.memory.committed", "area:heap", metricsToken) / (1024 * 1024));
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            sample.setClientCpu(((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad());
+        }
+    }
+
+    private static void printProgress(IntervalSample sample, int warmupSeconds) {
+        double p99 = sample.getPeerLatency().getTotalCount() == 0 ? Double.NaN
+            : sample.getPeerLatency().getValueAtPercentile(99) / 1000.0;
+        System.out.printf(Locale.ROOT, "%4ds %-7s draws %5d/s  delivered %6d/s  peer p99 %7.2f ms  server cpu %5.1f%%  heap %6.0f MB  errors %d%n",
+            sample.getSecond(), sample.getSecond() > warmupSeconds ? "measure" : "warmup",
+            sample.getSent(LoadStats.Kind.DRAW), sample.getReceived(LoadStats.Kind.DRAW), p99,
+            100 * sample.getServerCpu(), sample.getHeapUsedMb(), sample.getErrors());
+    }
+}
@@ -0,0 +1,176 @@
+package com.whiteboard.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行写作 --name=value；所有参数连同种子写进报告，相同参数可以重跑同一场景
+ */
+public final class LoadTestOptions {
+    private static final String USAGE = String.join("\n",
+        "Usage: java -jar whiteboard-loadtest.jar [--name=value ...]",
+        "  --url=http://localhost:8080        target instance (ignored with --launch)",
+        "  --launch                           start the server jar with the embedded H2 profile",
+        "  --server-jar=server/target/collaborative-whiteboard-1.0.0-exec.jar",
+        "  --server-port=18080                port for the launched server",
+        "  --server-jvm-args=-Xms1g -Xmx1g    JVM options for the launched server",
+        "  --metrics-user=loadtest-metrics    user that reads /actuator/metrics (must be in the server's app.management.users)",
+        "  --rooms=10                         rooms",
+        "  --users=5                          simulated users per room",
+        "  --warmup=10                        warmup seconds (reported, excluded from totals)",
+        "  --duration=60                      measured seconds",
+        "  --strokes-per-second=0.5           strokes started per user per second",
+        "  --points=24                        average points per pen stroke",
+        "  --chat-per-minute=2                chat messages per user per minute",
+        "  --seed=42                          random seed",
+        "  --out=target/loadtest-report       report directory");
+
+    private String url = "http://localhost:8080";
+    private boolean launch;
+    private String serverJar = "server/target/collaborative-whiteboard-1.0.0-exec.jar";
+    private int serverPort = 18080;
+    private String serverJvmArgs = "-Xms1g -Xmx1g";
+    private String metricsUser = "loadtest-metrics";
+    private int rooms = 10;
+    private int usersPerRoom = 5;
+    private int warmupSeconds = 10;
+    private int durationSeconds = 60;
+    private double strokesPerSecond = 0.5;
+    private int pointsPerStroke = 24;
+    private double chatPerMinute = 2;
+    private long seed = 42;
+    private String out = "target/loadtest-report";
+
+    private LoadTestOptions() {}
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                throw new IllegalArgumentException(USAGE);
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg + "\n" + USAGE);
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq < 0 ? "true" : arg.substring(eq + 1);
+            try {
+                options.set(name, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+            }
+        }
+        if (options.rooms < 1 || options.usersPerRoom < 1 || options.durationSeconds < 1 || options.warmupSeconds < 0
+                || options.pointsPerStroke < 2 || options.strokesPerSecond <= 0 || options.chatPerMinute < 0) {
+            throw new IllegalArgumentException("Counts, rates and durations must be positive\n" + USAGE);
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "url": url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value; break;
+            case "launch": launch = Boolean.parseBoolean(value); break;
+            case "server-jar": serverJar = value; break;
+            case "server-port": serverPort = Integer.parseInt(value); break;
+            case "server-jvm-args": serverJvmArgs = value; break;
+            case "metrics-user": metricsUser = value; break;
+            case "rooms": rooms = Integer.parseInt(value); break;
+            case "users": usersPerRoom = Integer.parseInt(value); break;
+            case "warmup": warmupSeconds = Integer.parseInt(value); break;
+            case "duration": durationSeconds = Integer.parseInt(value); break;
+            case "strokes-per-second": strokesPerSecond = Double.parseDouble(value); break;
+            case "points": pointsPerStroke = Integer.parseInt(value); break;
+            case "chat-per-minute": chatPerMinute = Double.parseDouble(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "out": out = value; break;
+            default: throw new IllegalArgumentException("Unknown option --" + name + "\n" + USAGE);
+        }
+    }
+
+    /**
+     * 报告里的参数表，按命令行写法列出
+     */
+    public Map<String, String> describe() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("url", getBaseUrl());
+        values.put("launch", String.valueOf(launch));
+        if (launch) {
+            values.put("server-jar", serverJar);
+            values.put("server-port", String.valueOf(serverPort));
+            values.put("server-jvm-args", serverJvmArgs);
+        }
+        values.put("rooms", String.valueOf(rooms));
+        values.put("users", String.valueOf(usersPerRoom));
+        values.put("warmup", String.valueOf(warmupSeconds));
+        values.put("duration", String.valueOf(durationSeconds));
+        values.put("strokes-per-second", String.valueOf(strokesPerSecond));
+        values.put("points", String.valueOf(pointsPerStroke));
+        values.put("chat-per-minute", String.valueOf(chatPerMinute));
+        values.put("seed", String.valueOf(seed));
+        return values;
+    }
+
+    public String getBaseUrl() {
+        return launch ? "http://localhost:" + serverPort : url;
+    }
+
+    public boolean isLaunch() {
+        return launch;
+    }
+
+    public Path getServerJar() {
+        return Paths.get(serverJar);
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public String getServerJvmArgs() {
+        return serverJvmArgs;
+    }
+
+    public String getMetricsUser() {
+        return metricsUser;
+    }
+
+    public int getRooms() {
+        return rooms;
+    }
+
+    public int getUsersPerRoom() {
+        return usersPerRoom;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public double getStrokesPerSecond() {
+        return strokesPerSecond;
+    }
+
+    public int getPointsPerStroke() {
+        return pointsPerStroke;
+    }
+
+    public double getChatPerMinute() {
+        return chatPerMinute;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Path getOut() {
+        return Paths.get(out);
+    }
+}
@@ -0,0 +1,232 @@
+package com.whiteboard.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * 把一次压测写成报告目录：
+ * - summary.csv     参数和汇总指标（metric,value）
+ * - intervals.csv   逐秒的吞吐、延迟分位数、服务端 CPU 和堆，含预热阶段
+ * - latency.csv     笔画到达对端延迟的完整分位数分布（HdrHistogram 格式，单位毫秒）
+ * - report.html     以上内容的表格和折线图，单个文件，不依赖外部脚本
+ */
+public class ReportWriter {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+    private final LoadTestOptions options;
+    private final List<IntervalSample> samples;
+    private final Histogram peerLatency = new Histogram(3);
+    private final Histogram ackLatency = new Histogram(3);
+    private final Map<String, String> summary = new LinkedHashMap<>();
+
+    public ReportWriter(LoadTestOptions options, List<IntervalSample> samples, int users) {
+        this.options = options;
+        this.samples = samples;
+        List<IntervalSample> measured = new ArrayList<>();
+        for (IntervalSample sample : samples) {
+            if (sample.isMeasured()) {
+                measured.add(sample);
+                peerLatency.add(sample.getPeerLatency());
+                ackLatency.add(sample.getAckLatency());
+            }
+        }
+        int seconds = Math.max(1, measured.size());
+        options.describe().forEach(summary::put);
+        summary.put("connected users", String.valueOf(users));
+        summary.put("measured seconds", String.valueOf(measured.size()));
+        for (LoadStats.Kind kind : LoadStats.Kind.values()) {
+            long sent = measured.stream().mapToLong(s -> s.getSent(kind)).sum();
+            long received = measured.stream().mapToLong(s -> s.getReceived(kind)).sum();
+            summary.put(kind.getLabel() + " sent/s", format(sent / (double) seconds));
+            summary.put(kind.getLabel() + " delivered to peers/s", format(received / (double) seconds));
+        }
+        summary.put("acks/s", format(measured.stream().mapToLong(IntervalSample::getAcks).sum() / (double) seconds));
+        summary.put("errors", String.valueOf(measured.stream().mapToLong(IntervalSample::getErrors).sum()));
+        summary.put("stroke-to-peer samples", String.valueOf(peerLatency.getTotalCount()));
+        for (double percentile : PERCENTILES) {
+            summary.put("stroke-to-peer " + label(percentile) + " ms", format(millis(peerLatency, percentile)));
+        }
+        for (double percentile : PERCENTILES) {
+            summary.put("ack " + label(percentile) + " ms", format(millis(ackLatency, percentile)));
+        }
+        summary.put("server cpu avg %", format(100 * average(measured, IntervalSample::getServerCpu)));
+        summary.put("server cpu max %", format(100 * max(measured, IntervalSample::getServerCpu)));
+        summary.put("server heap used avg MB", format(average(measured, IntervalSample::getHeapUsedMb)));
+        summary.put("server heap used max MB", format(max(measured, IntervalSample::getHeapUsedMb)));
+        summary.put("server heap committed max MB", format(max(measured, IntervalSample::getHeapCommittedMb)));
+        summary.put("load generator cpu avg %", format(100 * average(measured, IntervalSample::getClientCpu)));
+    }
+
+    public Map<String, String> getSummary() {
+        return summary;
+    }
+
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintWriter out = writer(directory.resolve("summary.csv"))) {
+            out.println("metric,value");
+            summary.forEach((metric, value) -> out.println(csv(metric) + "," + csv(value)));
+        }
+        try (PrintWriter out = writer(directory.resolve("intervals.csv"))) {
+            out.println("second,phase,draw_sent,draw_received,cursor_sent,cursor_received,chat_sent,chat_received,"
+                + "acks,errors,peer_p50_ms,peer_p99_ms,peer_max_ms,server_cpu,system_cpu,heap_used_mb,heap_committed_mb,client_cpu");
+            for (IntervalSample s : samples) {
+                out.println(String.join(",", String.valueOf(s.getSecond()), s.isMeasured() ? "measure" : "warmup",
+                    String.valueOf(s.getSent(LoadStats.Kind.DRAW)), String.valueOf(s.getReceived(LoadStats.Kind.DRAW)),
+                    String.valueOf(s.getSent(LoadStats.Kind.CURSOR)), String.valueOf(s.getReceived(LoadStats.Kind.CURSOR)),
+                    String.valueOf(s.getSent(LoadStats.Kind.CHAT)), String.valueOf(s.getReceived(LoadStats.Kind.CHAT)),
+                    String.valueOf(s.getAcks()), String.valueOf(s.getErrors()),
+                    format(millis(s.getPeerLatency(), 50)), format(millis(s.getPeerLatency(), 99)),
+                    format(millis(s.getPeerLatency(), 100)), format(s.getServerCpu()), format(s.getSystemCpu()),
+                    format(s.getHeapUsedMb()), format(s.getHeapCommittedMb()), format(s.getClientCpu())));
+            }
+        }
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("latency.csv")), false, "UTF-8")) {
+            // 直方图以微秒记录，输出按 1000 缩放成毫秒
+            peerLatency.outputPercentileDistribution(out, 5, 1000.0, true);
+        }
+        try (PrintWriter out = writer(directory.resolve("report.html"))) {
+            writeHtml(out);
+        }
+    }
+
+    private void writeHtml(PrintWriter out) {
+        out.println("<!DOCTYPE html>");
+        out.println("<html><head><meta charset=\"UTF-8\"><title>Whiteboard load test</title><style>");
+        out.println("body{font-family:sans-serif;margin:2em;color:#222}table{border-collapse:collapse;margin-bottom:2em}"
+            + "td,th{border:1px solid #ccc;padding:4px 10px;text-align:right}td:first-child,th:first-child{text-align:left}"
+            + "svg{background:#fafafa;border:1px solid #ddd;margin:0 1em 1em 0}h2{margin-top:1.5em}");
+        out.println("</style></head><body>");
+        out.printf("<h1>Whiteboard load test: %d rooms &times; %d users</h1>%n", options.getRooms(), options.getUsersPerRoom());
+        out.println("<p>Reproduce with <code>java -jar loadtest/target/whiteboard-loadtest-1.0.0.jar "
+            + escape(commandLine()) + "</code></p>");
+
+        out.println("<h2>Summary</h2><table><tr><th>metric</th><th>value</th></tr>");
+        summary.forEach((metric, value) -> out.printf("<tr><td>%s</td><td>%s</td></tr>%n", escape(metric), escape(value)));
+        out.println("</table>");
+
+        out.println("<h2>Per second</h2><p>Warmup seconds are shaded.</p>");
+        chart(out, "Draw operations/s (sent, delivered to peers)", "#3498db", "#2ecc71",
+            s -> s.getSent(LoadStats.Kind.DRAW), s -> s.getReceived(LoadStats.Kind.DRAW));
+        chart(out, "Stroke-to-peer latency ms (p50, p99)", "#2ecc71", "#e74c3c",
+            s -> millis(s.getPeerLatency(), 50), s -> millis(s.getPeerLatency(), 99));
+        chart(out, "Server CPU % (process, system)", "#e67e22", "#95a5a6",
+            s -> 100 * s.getServerCpu(), s -> 100 * s.getSystemCpu());
+        chart(out, "Server heap MB (used, committed)", "#9b59b6", "#95a5a6",
+            IntervalSample::getHeapUsedMb, IntervalSample::getHeapCommittedMb);
+
+        out.println("<h2>Stroke-to-peer latency distribution</h2><table><tr><th>percentile</th><th>ms</th></tr>");
+        for (double percentile : new double[] {50, 75, 90, 95, 99, 99.5, 99.9, 99.99, 100}) {
+            out.printf("<tr><td>%s</td><td>%s</td></tr>%n", label(percentile), format(millis(peerLatency, percentile)));
+        }
+        out.println("</table></body></html>");
+    }
+
+    /**
+     * 两条折线的 SVG 图，横轴是秒
+     */
+    private void chart(PrintWriter out, String title, String firstColor, String secondColor,
+                       ToDoubleFunction<IntervalSample> first, ToDoubleFunction<IntervalSample> second) {
+        int width = 640;
+        int height = 200;
+        int pad = 40;
+        double top = 0;
+        for (IntervalSample sample : samples) {
+            top = Math.max(top, finite(first.applyAsDouble(sample)));
+            top = Math.max(top, finite(second.applyAsDouble(sample)));
+        }
+        top = top <= 0 ? 1 : top * 1.1;
+        double step = samples.size() > 1 ? (width - 2.0 * pad) / (samples.size() - 1) : 0;
+        out.printf("<svg width=\"%d\" height=\"%d\" xmlns=\"http://www.w3.org/2000/svg\">%n", width, height);
+        out.printf("<text x=\"%d\" y=\"16\" font-size=\"13\">%s</text>%n", pad, escape(title));
+        int warmup = 0;
+        while (warmup < samples.size() && !samples.get(warmup).isMeasured()) {
+            warmup++;
+        }
+        if (warmup > 0) {
+            out.printf(Locale.ROOT, "<rect x=\"%d\" y=\"%d\" width=\"%.1f\" height=\"%d\" fill=\"#eee\"/>%n",
+                pad, pad / 2, step * warmup, height - pad - pad / 2);
+        }
+        out.printf("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"#999\"/>%n", pad, height - pad, width - pad, height - pad);
+        out.printf("<text x=\"2\" y=\"%d\" font-size=\"11\">%s</text>%n", pad / 2 + 10, format(top));
+        out.printf("<text x=\"2\" y=\"%d\" font-size=\"11\">0</text>%n", height - pad);
+        out.printf("<text x=\"%d\" y=\"%d\" font-size=\"11\">%ds</text>%n", width - pad, height - pad + 15, samples.size());
+        polyline(out, first, firstColor, top, step, height, pad);
+        polyline(out, second, secondColor, top, step, height, pad);
+        out.println("</svg>");
+    }
+
+    private void polyline(PrintWriter out, ToDoubleFunction<IntervalSample> value, String color,
+                          double top, double step, int height, int pad) {
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < samples.size(); i++) {
+            double v = finite(value.applyAsDouble(samples.get(i)));
+            points.append(String.format(Locale.ROOT, "%.1f,%.1f ", pad + i * step,
+                height - pad - v / top * (height - pad - pad / 2)));
+        }
+        out.printf("<polyline fill=\"none\" stroke=\"%s\" stroke-width=\"1.5\" points=\"%s\"/>%n", color, points.toString().trim());
+    }
+
+    private String commandLine() {
+        StringBuilder args = new StringBuilder();
+        options.describe().forEach((name, value) -> {
+            if (name.equals("launch")) {
+                if (options.isLaunch()) {
+                    args.append("--launch ");
+                }
+            } else if (!(options.isLaunch() && name.equals("url"))) {
+                args.append("--").append(name).append('=').append(value.contains(" ") ? "\"" + value + "\"" : value).append(' ');
+            }
+        });
+        return args.toString().trim();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static double average(List<IntervalSample> samples, ToDoubleFunction<IntervalSample> value) {
+        return samples.stream().mapToDouble(value).filter(v -> !Double.isNaN(v)).average().orElse(Double.NaN);
+    }
+
+    private static double max(List<IntervalSample> samples, ToDoubleFunction<IntervalSample> value) {
+        return samples.stream().mapToDouble(value).filter(v -> !Double.isNaN(v)).max().orElse(Double.NaN);
+    }
+
+    private static double finite(double value) {
+        return Double.isFinite(value) ? value : 0;
+    }
+
+    private static String label(double percentile) {
+        return percentile == 100 ? "max" : "p" + (percentile == Math.rint(percentile)
+            ? String.valueOf((int) percentile) : String.valueOf(percentile).replace(".", ""));
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static PrintWriter writer(Path path) throws IOException {
+        return new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+    }
+}
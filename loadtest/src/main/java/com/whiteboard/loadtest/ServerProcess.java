@@ -0,0 +1,67 @@
+package com.whiteboard.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在独立进程里启动服务端 jar（h2 + prod 配置：内存数据库、INFO 日志），
+ * 服务端的 CPU 和堆不受压测客户端影响；工作目录放在报告目录下，快照和搜索索引不会写进仓库
+ */
+public class ServerProcess implements AutoCloseable {
+    private final Process process;
+    private final Path log;
+
+    private ServerProcess(Process process, Path log) {
+        this.process = process;
+        this.log = log;
+    }
+
+    public static ServerProcess start(LoadTestOptions options, Path workDir) throws IOException {
+        Path jar = options.getServerJar().toAbsolutePath();
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Server jar not found: " + jar + " (run mvn -B package -DskipTests first)");
+        }
+        Files.createDirectories(workDir);
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        Arrays.stream(options.getServerJvmArgs().trim().split("\\s+")).filter(arg -> !arg.isEmpty()).forEach(command::add);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + options.getServerPort());
+        command.add("--spring.profiles.active=h2,prod");
+        command.add("--app.management.users=" + options.getMetricsUser());
+        Path log = workDir.resolve("server.log");
+        Process process = new ProcessBuilder(command)
+            .directory(workDir.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        return new ServerProcess(process, log);
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    public Path getLog() {
+        return log;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(20, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.whiteboard.loadtest;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 一个模拟用户，消息格式与 app.js 相同：
+ * 1. 手势：按住鼠标时每 40ms（CURSOR_SEND_INTERVAL）发一次光标，松开时发一个绘制操作
+ *    pen 75%、eraser 5%、rectangle/circle/line 12%、移动自己画的图形 8%
+ * 2. 手势之间的停顿服从指数分布，平均每秒开始 strokes-per-second 个手势
+ * 3. 聊天按 chat-per-minute 的泊松过程发送，每 20 秒一次在线心跳
+ * 绘制数据里带上发送时的 System.nanoTime（sentNanos），同房间的其他用户收到广播时据此算出笔画到达对端的延迟；
+ * 所有模拟用户在同一个 JVM 里，时间可以直接相减
+ */
+public class SimulatedUser {
+    private static final long CURSOR_INTERVAL_MS = 40;
+    private static final long HEARTBEAT_INTERVAL_MS = 20_000;
+    private static final int CANVAS_WIDTH = 1200;
+    private static final int CANVAS_HEIGHT = 800;
+    private static final String[] COLORS = {"#000000", "#e74c3c", "#3498db", "#2ecc71", "#f1c40f", "#9b59b6"};
+    private static final String[] SHAPES = {"rectangle", "circle", "line"};
+    private static final String[] CHAT_LINES = {
+        "Looks good", "Can you move that a bit to the left?", "I'll take the diagram on the right",
+        "What colour should we use for the arrows?", "Done with my part", "Let's group these together"
+    };
+
+    private final String username;
+    private final String token;
+    private final String roomId;
+    private final LoadTestOptions options;
+    private final LoadStats stats;
+    private final ObjectMapper mapper;
+    private final ScheduledExecutorService scheduler;
+    // 手势和聊天在不同线程上推进，各用一个随机数序列，同一种子得到同样的操作序列；
+    // 用户的种子是连续的整数，java.util.Random 对相邻种子的前几个输出几乎相同，这里用 SplittableRandom
+    private final SplittableRandom random;
+    private final SplittableRandom chatRandom;
+    // clientOpId -> 发送时间，收到 ack 时取出
+    private final Map<String, Long> pendingAcks = new ConcurrentHashMap<>();
+    // 自己创建的图形，移动操作只针对这些图形；只在手势链上访问
+    private final List<String> ownObjects = new ArrayList<>();
+    private volatile StompSession session;
+    private volatile boolean running;
+    private double x;
+    private double y;
+
+    public SimulatedUser(String username, String token, String roomId, LoadTestOptions options, LoadStats stats,
+                         ObjectMapper mapper, ScheduledExecutorService scheduler, long seed) {
+        this.username = username;
+        this.token = token;
+        this.roomId = roomId;
+        this.options = options;
+        this.stats = stats;
+        this.mapper = mapper;
+        this.scheduler = scheduler;
+        this.random = new SplittableRandom(seed);
+        this.chatRandom = random.split();
+        this.x = random.nextInt(CANVAS_WIDTH);
+        this.y = random.nextInt(CANVAS_HEIGHT);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * 连接并订阅 app.js 订阅的全部目的地，然后加入房间
+     */
+    public ListenableFuture<StompSession> connect(WebSocketStompClient client, String url) {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        return client.connect(url, (WebSocketHttpHeaders) null, connectHeaders, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession connected, StompHeaders headers) {
+                session = connected;
+                String topic = "/topic/room/" + roomId;
+                subscribe(topic + "/draw", SimulatedUser.this::onDraw);
+                subscribe(topic + "/cursor", message -> onBroadcast(message, LoadStats.Kind.CURSOR));
+                subscribe(topic + "/chat", message -> onBroadcast(message, LoadStats.Kind.CHAT));
+                subscribe(topic + "/users", message -> { });
+                subscribe(topic + "/redirect", message -> { });
+                subscribe("/user/queue/ack", SimulatedUser.this::onAck);
+                subscribe("/user/queue/presence", message -> { });
+                subscribe("/user/queue/resume", message -> { });
+                subscribe("/user/queue/redirect", message -> { });
+                send("/app/join", Map.of("roomId", roomId));
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                stats.recordError();
+            }
+
+            @Override
+            public void handleException(StompSession s, StompCommand command, StompHeaders headers, byte[] payload, Throwable e) {
+                stats.recordError();
+            }
+
+            @Override
+            public void handleTransportError(StompSession s, Throwable e) {
+                if (running) {
+                    stats.recordError();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        running = true;
+        scheduleGesture(random.nextDouble() / options.getStrokesPerSecond());
+        if (options.getChatPerMinute() > 0) {
+            scheduleChat();
+        }
+        scheduler.scheduleAtFixedRate(() -> {
+            if (running) {
+                send("/app/presence/heartbeat", Map.of("roomId", roomId));
+            }
+        }, chatRandom.nextInt((int) HEARTBEAT_INTERVAL_MS), HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            send("/app/leave", Map.of("roomId", roomId));
+            current.disconnect();
+        }
+    }
+
+    private void scheduleGesture(double delaySeconds) {
+        scheduler.schedule(this::startGesture, (long) (delaySeconds * 1000), TimeUnit.MILLISECONDS);
+    }
+
+    private void startGesture() {
+        if (!running) {
+            return;
+        }
+        int roll = random.nextInt(100);
+        if (roll < 75) {
+            stroke("pen", pickColor());
+        } else if (roll < 80) {
+            stroke("eraser", "#ffffff");
+        } else if (roll < 92 || ownObjects.isEmpty()) {
+            shape(SHAPES[random.nextInt(SHAPES.length)]);
+        } else {
+            move(ownObjects.get(random.nextInt(ownObjects.size())));
+        }
+    }
+
+    /**
+     * 自由笔画：鼠标事件约 16ms 一个点，每 40ms 发一次光标
+     */
+    private void stroke(String type, String color) {
+        int target = Math.max(2, options.getPointsPerStroke() / 2 + random.nextInt(options.getPointsPerStroke() + 1));
+        List<Map<String, Object>> points = new ArrayList<>(target + 3);
+        points.add(point());
+        double heading = random.nextDouble() * 2 * Math.PI;
+        gestureTick(() -> {
+            double step = 4 + random.nextDouble() * 8;
+            int count = 2 + random.nextInt(2);
+            for (int i = 0; i < count; i++) {
+                double[] turned = advance(heading + points.size() * 0.15 * (random.nextDouble() - 0.4), step);
+                points.add(Map.of("x", round(turned[0]), "y", round(turned[1])));
+            }
+            return points.size() >= target;
+        }, () -> {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("points", points);
+            data.put("color", color);
+            data.put("lineWidth", 1 + random.nextInt(10));
+            sendDraw(type, data);
+        });
+    }
+
+    private void shape(String type) {
+        double startX = x;
+        double startY = y;
+        int ticks = 3 + random.nextInt(10);
+        double heading = random.nextDouble() * 2 * Math.PI;
+        int[] elapsed = {0};
+        gestureTick(() -> {
+            advance(heading, 10 + random.nextDouble() * 10);
+            return ++elapsed[0] >= ticks;
+        }, () -> {
+            Map<String, Object> data = new LinkedHashMap<>();
+            switch (type) {
+                case "rectangle":
+                    data.put("x", round(startX));
+                    data.put("y", round(startY));
+                    data.put("width", round(x - startX));
+                    data.put("height", round(y - startY));
+                    break;
+                case "circle":
+                    data.put("x", round(startX));
+                    data.put("y", round(startY));
+                    data.put("radius", round(Math.hypot(x - startX, y - startY)));
+                    break;
+                default:
+                    data.put("x1", round(startX));
+                    data.put("y1", round(startY));
+                    data.put("x2", round(x));
+                    data.put("y2", round(y));
+            }
+            data.put("color", pickColor());
+            data.put("lineWidth", 1 + random.nextInt(10));
+            String objectId = new UUID(random.nextLong(), random.nextLong()).toString();
+            data.put("objectId", objectId);
+            ownObjects.add(objectId);
+            sendDraw(type, data);
+        });
+    }
+
+    private void move(String objectId) {
+        double startX = x;
+        double startY = y;
+        int ticks = 2 + random.nextInt(8);
+        double heading = random.nextDouble() * 2 * Math.PI;
+        int[] elapsed = {0};
+        gestureTick(() -> {
+            advance(heading, 5 + random.nextDouble() * 10);
+            return ++elapsed[0] >= ticks;
+        }, () -> {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("objectId", objectId);
+            data.put("dx", round(x - startX));
+            data.put("dy", round(y - startY));
+            sendDraw("move", data);
+        });
+    }
+
+    /**
+     * 手势进行中每 40ms 推进一步并发送光标，step 返回 true 时结束手势并发送操作，然后安排下一个手势
+     */
+    private void gestureTick(BooleanSupplier step, Runnable finish) {
+        if (!running) {
+            return;
+        }
+        boolean done = step.getAsBoolean();
+        Map<String, Object> cursor = new LinkedHashMap<>();
+        cursor.put("roomId", roomId);
+        cursor.put("x", round(x));
+        cursor.put("y", round(y));
+        send("/app/cursor", cursor, LoadStats.Kind.CURSOR);
+        if (!done) {
+            scheduler.schedule(() -> gestureTick(step, finish), CURSOR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        finish.run();
+        double mean = 1 / options.getStrokesPerSecond();
+        scheduleGesture(-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    private void sendDraw(String type, Map<String, Object> data) {
+        String clientOpId = new UUID(random.nextLong(), random.nextLong()).toString();
+        long now = System.nanoTime();
+        data.put("sentNanos", now);
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("roomId", roomId);
+        message.put("type", type);
+        try {
+            message.put("data", mapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        message.put("username", username);
+        message.put("clientOpId", clientOpId);
+        pendingAcks.put(clientOpId, now);
+        send("/app/draw", message, LoadStats.Kind.DRAW);
+    }
+
+    private void scheduleChat() {
+        double mean = 60_000 / options.getChatPerMinute();
+        long delay = (long) (-Math.log(1 - chatRandom.nextDouble()) * mean);
+        scheduler.schedule(() -> {
+            if (!running) {
+                return;
+            }
+            Map<String, Object> chat = new LinkedHashMap<>();
+            chat.put("roomId", roomId);
+            chat.put("content", CHAT_LINES[chatRandom.nextInt(CHAT_LINES.length)]);
+            send("/app/chat", chat, LoadStats.Kind.CHAT);
+            scheduleChat();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void onDraw(JsonNode message) {
+        if (username.equals(message.path("username").asText())) {
+            return;
+        }
+        stats.recordReceived(LoadStats.Kind.DRAW);
+        try {
+            JsonNode data = mapper.readTree(message.path("data").asText());
+            if (data.has("sentNanos")) {
+                stats.recordPeerLatency(System.nanoTime() - data.get("sentNanos").asLong());
+            }
+        } catch (JsonProcessingException e) {
+            stats.recordError();
+        }
+    }
+
+    private void onBroadcast(JsonNode message, LoadStats.Kind kind) {
+        if (!username.equals(message.path("username").asText())) {
+            stats.recordReceived(kind);
+        }
+    }
+
+    private void onAck(JsonNode ack) {
+        if (ack.path("pending").asBoolean()) {
+            return;
+        }
+        Long sentNanos = pendingAcks.remove(ack.path("clientOpId").asText());
+        if (sentNanos != null) {
+            stats.recordAck(System.nanoTime() - sentNanos);
+        }
+    }
+
+    private void subscribe(String destination, Consumer<JsonNode> handler) {
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                handler.accept((JsonNode) payload);
+            }
+        });
+    }
+
+    private void send(String destination, Object payload, LoadStats.Kind kind) {
+        if (send(destination, payload)) {
+            stats.recordSent(kind);
+        }
+    }
+
+    /**
+     * 同一个 WebSocket 会话不能并发写，手势、聊天和心跳在不同线程上发送
+     */
+    private synchronized boolean send(String destination, Object payload) {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            stats.recordError();
+            return false;
+        }
+        try {
+            current.send(destination, payload);
+            return true;
+        } catch (RuntimeException e) {
+            stats.recordError();
+            return false;
+        }
+    }
+
+    private Map<String, Object> point() {
+        return Map.of("x", round(x), "y", round(y));
+    }
+
+    private double[] advance(double heading, double step) {
+        x = Math.max(0, Math.min(CANVAS_WIDTH, x + Math.cos(heading) * step));
+        y = Math.max(0, Math.min(CANVAS_HEIGHT, y + Math.sin(heading) * step));
+        return new double[] {x, y};
+    }
+
+    private String pickColor() {
+        return COLORS[random.nextInt(COLORS.length)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10d;
+    }
+}
@@ -0,0 +1,122 @@
+package com.whiteboard.loadtest;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 压测用到的 HTTP 接口：注册/登录、建房间、健康检查和 Actuator 指标
+ */
+public class WhiteboardClient {
+    private static final String PASSWORD = "loadtest-password";
+
+    private final String baseUrl;
+    private final ObjectMapper mapper;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    public WhiteboardClient(String baseUrl, ObjectMapper mapper) {
+        this.baseUrl = baseUrl;
+        this.mapper = mapper;
+    }
+
+    /**
+     * 等待 /actuator/health 返回 UP；启动中的服务端会拒绝连接
+     */
+    public void awaitHealthy(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        String last = "no response";
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/actuator/health")).GET());
+                if (response.statusCode() == 200 && mapper.readTree(response.body()).path("status").asText().equals("UP")) {
+                    return;
+                }
+                last = response.statusCode() + " " + response.body();
+            } catch (ConnectException e) {
+                last = "connection refused";
+            } catch (IOException e) {
+                last = e.toString();
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Server at " + baseUrl + " did not become healthy: " + last);
+    }
+
+    /**
+     * 注册失败（用户已存在，例如对同一实例重跑）时改为登录，返回 JWT
+     */
+    public String authenticate(String username) throws IOException, InterruptedException {
+        HttpResponse<String> response = postJson("/api/auth/register",
+            Map.of("username", username, "password", PASSWORD, "email", username + "@loadtest.local"), null);
+        if (response.statusCode() != 200) {
+            response = postJson("/api/auth/login", Map.of("username", username, "password", PASSWORD), null);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Could not authenticate " + username + ": " + response.statusCode() + " " + response.body());
+        }
+        return mapper.readTree(response.body()).path("token").asText();
+    }
+
+    public String createRoom(String name, String token) throws IOException, InterruptedException {
+        HttpResponse<String> response = postJson("/api/rooms/create", Map.of("name", name), token);
+        if (response.statusCode() != 200) {
+            throw new IOException("Could not create room " + name + ": " + response.statusCode() + " " + response.body());
+        }
+        return mapper.readTree(response.body()).path("roomId").asText();
+    }
+
+    /**
+     * 读取一个 Actuator 指标的 VALUE 测量值，tag 形如 area:heap；token 须属于服务端 app.management.users 中的用户
+     * 指标不存在或没有权限时返回 NaN
+     */
+    public double metric(String name, String tag, String token) {
+        String path = "/actuator/metrics/" + name + (tag == null ? "" : "?tag=" + tag);
+        try {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(uri(path)).header("Authorization", "Bearer " + token).GET());
+            if (response.statusCode() != 200) {
+                return Double.NaN;
+            }
+            for (JsonNode measurement : mapper.readTree(response.body()).path("measurements")) {
+                if (measurement.path("statistic").asText().equals("VALUE")) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+        } catch (IOException e) {
+            return Double.NaN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Double.NaN;
+    }
+
+    public String getWebSocketUrl(String token) {
+        // SockJS 端点同时接受原生 WebSocket：/ws/websocket
+        return baseUrl.replaceFirst("^http", "ws") + "/ws/websocket?token=" + token;
+    }
+
+    private HttpResponse<String> postJson(String path, Object body, String token) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return send(request);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return http.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+}
@@ -1,8 +1,13 @@
 package com.whiteboard.config;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -13,9 +18,15 @@ import com.whiteboard.service.UserService;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
+    public static final String ACTUATOR_ROLE = "ACTUATOR";
+
     @Autowired
     private UserService userService;
 
+    // 可以访问 /actuator 下除 health、info 以外端点的用户名（原始用户名，逗号分隔），默认没有
+    @Value("${app.management.users:}")
+    private Set<String> managementUsers;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         // 通过原始用户名查找用户（UserService 会处理哈希查找）
@@ -29,8 +40,15 @@ public class CustomUserDetailsService implements UserDetailsService {
         return org.springframework.security.core.userdetails.User.builder()
             .username(username) // 使用原始用户名，而不是哈希值
             .password(encodedPassword) // 格式：salt:hash
-            .authorities(new ArrayList<>())
+            .authorities(authorities(username))
             .build();
     }
-}
 
+    private List<GrantedAuthority> authorities(String username) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        if (managementUsers.contains(username)) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + ACTUATOR_ROLE));
+        }
+        return authorities;
+    }
+}
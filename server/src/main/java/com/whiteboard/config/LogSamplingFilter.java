@@ -0,0 +1,148 @@
+package com.whiteboard.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * 高频日志的抽样和限流（logback TurboFilter，在格式化参数之前执行，被丢弃的事件不产生任何开销）
+ * 规则写在 logback-spring.xml 中，按 logger 名前缀匹配（最长前缀优先）：
+ * <pre>
+ * &lt;rule&gt;com.whiteboard.controller.WebSocketController sample=10 rate=100 level=DEBUG&lt;/rule&gt;
+ * </pre>
+ * sample=N 每 N 条保留 1 条；rate=R 每秒最多 R 条；level 以下（含）的事件才受规则约束，默认 INFO，
+ * 因此警告和错误默认不会被丢弃。被限流丢弃的条数在下一秒的第一条日志之前汇总输出一次
+ */
+public class LogSamplingFilter extends TurboFilter {
+    private static final Rule NONE = new Rule("", 1, 0, Level.OFF);
+
+    private final List<Rule> rules = new ArrayList<>();
+    // logger 名到规则的缓存，logger 数量有限
+    private final Map<String, Rule> byLogger = new ConcurrentHashMap<>();
+    private final org.slf4j.Logger reportLog = LoggerFactory.getLogger(LogSamplingFilter.class);
+
+    /**
+     * logback 配置中每个 &lt;rule&gt; 元素调用一次
+     */
+    public void addRule(String spec) {
+        String[] parts = spec.trim().split("\\s+");
+        int sample = 1;
+        int rate = 0;
+        Level level = Level.INFO;
+        try {
+            for (int i = 1; i < parts.length; i++) {
+                String[] kv = parts[i].split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException(parts[i]);
+                }
+                switch (kv[0]) {
+                    case "sample":
+                        sample = Math.max(1, Integer.parseInt(kv[1]));
+                        break;
+                    case "rate":
+                        rate = Math.max(0, Integer.parseInt(kv[1]));
+                        break;
+                    case "level":
+                        level = Level.toLevel(kv[1], Level.INFO);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(parts[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            addError("Invalid log sampling rule: " + spec);
+            return;
+        }
+        rules.add(new Rule(parts[0], sample, rate, level));
+        byLogger.clear();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format 为 null 的是 isDebugEnabled() 之类的判断，不计数
+        if (!isStarted() || level == null || format == null) {
+            return FilterReply.NEUTRAL;
+        }
+        Rule rule = byLogger.computeIfAbsent(logger.getName(), this::match);
+        if (rule == NONE || level.toInt() > rule.level.toInt()
+                // 不用 isEnabledFor，它会再次经过 TurboFilter
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        if (rule.sample > 1 && rule.seen.incrementAndGet() % rule.sample != 0) {
+            rule.sampled.increment();
+            return FilterReply.DENY;
+        }
+        if (rule.rate > 0) {
+            long dropped = rule.roll(System.currentTimeMillis() / 1000);
+            if (dropped > 0) {
+                reportLog.info("Rate limit dropped {} log event(s) from {} in the last window", dropped, rule.prefix);
+            }
+            if (rule.emitted.incrementAndGet() > rule.rate) {
+                rule.limited.increment();
+                return FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    private Rule match(String loggerName) {
+        if (loggerName.equals(LogSamplingFilter.class.getName())) {
+            return NONE;
+        }
+        Rule best = NONE;
+        for (Rule rule : rules) {
+            if (loggerName.startsWith(rule.prefix) && rule.prefix.length() >= best.prefix.length()) {
+                best = rule;
+            }
+        }
+        return best;
+    }
+
+    private static final class Rule {
+        private final String prefix;
+        private final int sample;
+        private final int rate;
+        private final Level level;
+        private final AtomicLong seen = new AtomicLong();
+        private final AtomicLong emitted = new AtomicLong();
+        private final LongAdder sampled = new LongAdder();
+        private final LongAdder limited = new LongAdder();
+        private volatile long window;
+
+        private Rule(String prefix, int sample, int rate, Level level) {
+            this.prefix = prefix;
+            this.sample = sample;
+            this.rate = rate;
+            this.level = level;
+        }
+
+        /**
+         * 进入新的一秒时重置计数，返回上一个窗口中被限流丢弃的条数
+         */
+        private long roll(long second) {
+            if (second == window) {
+                return 0;
+            }
+            synchronized (this) {
+                if (second == window) {
+                    return 0;
+                }
+                window = second;
+                emitted.set(0);
+                return limited.sumThenReset();
+            }
+        }
+    }
+}
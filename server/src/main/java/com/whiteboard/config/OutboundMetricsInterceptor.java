@@ -0,0 +1,50 @@
+package com.whiteboard.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 出站通道上统计投递给各会话的消息数（广播的扇出），按目的地的最后一段（draw、chat、cursor、ack……）分类
+ */
+@Component
+public class OutboundMetricsInterceptor implements ChannelInterceptor {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            String type = typeOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            counters.computeIfAbsent(type, t -> Counter.builder("whiteboard.stomp.outbound")
+                .description("Messages delivered to STOMP sessions")
+                .tag("type", t)
+                .register(meterRegistry)).increment();
+        }
+        return message;
+    }
+
+    /**
+     * 目的地都由服务端生成；用户目的地解析后带有 -user{会话 ID} 后缀，去掉以免标签无限增长
+     */
+    private static String typeOf(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+        String type = destination.substring(destination.lastIndexOf('/') + 1);
+        int user = type.indexOf("-user");
+        return user >= 0 ? type.substring(0, user) : type;
+    }
+}
@@ -0,0 +1,31 @@
+package com.whiteboard.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import com.whiteboard.service.PresenceService;
+
+/**
+ * 入站通道上的在线状态拦截器：客户端发来的任何 SEND 帧（绘制、聊天、光标等）都说明会话还活着，
+ * 和应用层心跳一样刷新 lastSeen，正在画图的用户不会因为心跳被节流或排在大量帧之后而被清理
+ */
+@Component
+public class PresenceInterceptor implements ChannelInterceptor {
+    @Autowired
+    private PresenceService presenceService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.SEND.equals(accessor.getCommand()) && accessor.getSessionId() != null) {
+            presenceService.heartbeat(accessor.getSessionId());
+        }
+        return message;
+    }
+}
@@ -0,0 +1,87 @@
+package com.whiteboard.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.whiteboard.service.RateLimitService;
+
+/**
+ * 入站通道上的限流拦截器，排在 WebSocketAuthInterceptor 之后
+ * 超限的帧直接丢弃（返回 null），持续滥用的会话收到 ERROR 帧后被关闭
+ */
+@Component
+public class RateLimitInterceptor implements ChannelInterceptor {
+    private static final Logger log = LoggerFactory.getLogger(RateLimitInterceptor.class);
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    @Lazy
+    @Qualifier("clientInboundChannel")
+    private MessageChannel clientInboundChannel;
+
+    @Autowired
+    @Lazy
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        if (StompCommand.CONNECT.equals(command)) {
+            String username = accessor.getUser() != null ? accessor.getUser().getName() : null;
+            rateLimitService.register(accessor.getSessionId(), username);
+            return message;
+        }
+        if (!StompCommand.SEND.equals(command)) {
+            return message;
+        }
+
+        switch (rateLimitService.check(accessor.getSessionId(), accessor.getDestination(), message)) {
+            case ALLOW:
+                return message;
+            case ABUSE:
+                log.warn("Closing session={} after sustained rate limit violations", accessor.getSessionId());
+                sendError(accessor.getSessionId());
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 补发被合并的 cursor 消息，保证限流期间最后的光标位置不会丢失
+     */
+    @Scheduled(fixedDelayString = "${app.ratelimit.coalesce-flush-ms:100}")
+    public void flushCoalesced() {
+        for (Message<?> pending : rateLimitService.drainCoalesced()) {
+            clientInboundChannel.send(pending);
+        }
+    }
+
+    private void sendError(String sessionId) {
+        StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+        error.setSessionId(sessionId);
+        error.setMessage("Rate limit exceeded");
+        error.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(new byte[0], error.getMessageHeaders()));
+    }
+}
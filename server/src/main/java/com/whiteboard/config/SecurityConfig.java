@@ -52,6 +52,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
             .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             .and()
             .authorizeRequests()
+            // 指标会暴露房间 ID、SQL 统计等内部信息，只对 app.management.users 开放；健康检查留给负载均衡器
+            .antMatchers("/actuator/health", "/actuator/health/**", "/actuator/info").permitAll()
+            .antMatchers("/actuator/**").hasRole(CustomUserDetailsService.ACTUATOR_ROLE)
             .antMatchers("/**").permitAll()
             .anyRequest().permitAll()
             .and()
@@ -61,9 +64,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
-        configuration.setAllowedOrigins(Arrays.asList("*"));
+        configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // 跨节点请求时前端需要读取的自定义响应头
+        configuration.setExposedHeaders(Arrays.asList("X-Room-Sequence", "X-Snapshot-Id", "X-Snapshot-Created-At", "X-Snapshot-Sequence", "ETag"));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
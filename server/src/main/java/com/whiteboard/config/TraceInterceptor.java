@@ -0,0 +1,36 @@
+package com.whiteboard.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import com.whiteboard.service.RateLimitService;
+
+/**
+ * 入站通道上的第一个拦截器：在 WebSocket 传输线程上给绘制帧记下到达时间（System.nanoTime）
+ * 之后的认证、限流和入站线程池排队都计入 inbound 阶段
+ */
+@Component
+public class TraceInterceptor implements ChannelInterceptor {
+    public static final String RECEIVED_NANOS_HEADER = "wbReceivedNanos";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())
+                || !RateLimitService.DRAW_DESTINATION.equals(accessor.getDestination())) {
+            return message;
+        }
+        long now = System.nanoTime();
+        if (accessor.isMutable()) {
+            accessor.setHeader(RECEIVED_NANOS_HEADER, now);
+            return message;
+        }
+        return MessageBuilder.fromMessage(message).setHeader(RECEIVED_NANOS_HEADER, now).build();
+    }
+}
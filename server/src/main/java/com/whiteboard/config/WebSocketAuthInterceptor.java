@@ -1,5 +1,7 @@
 package com.whiteboard.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -16,6 +18,8 @@ import com.whiteboard.util.JwtUtil;
 
 @Component
 public class WebSocketAuthInterceptor implements ChannelInterceptor {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketAuthInterceptor.class);
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -69,15 +73,15 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
                                 accessor.getSessionAttributes().put("token", token);
                             }
                             
-                            System.out.println("WebSocket authenticated user: " + username);
+                            log.debug("WebSocket authenticated user={}", username);
                         } else {
-                            System.out.println("Invalid JWT token for WebSocket connection");
+                            log.warn("Invalid JWT token for WebSocket connection");
                         }
                     } catch (Exception e) {
-                        System.err.println("Error authenticating WebSocket connection: " + e.getMessage());
+                        log.warn("Error authenticating WebSocket connection: {}", e.getMessage());
                     }
                 } else {
-                    System.out.println("No JWT token provided for WebSocket connection");
+                    log.debug("No JWT token provided for WebSocket connection");
                 }
             } 
             // For other commands (SEND, SUBSCRIBE, etc.), try to restore authentication from session
@@ -105,17 +109,17 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
                             UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
                                 userDetails, null, userDetails.getAuthorities());
                             accessor.setUser(auth);
-                            System.out.println("Restored authentication for message: " + accessor.getCommand() + ", user: " + username);
+                            log.trace("Restored authentication command={} user={}", accessor.getCommand(), username);
                         }
                     } catch (Exception e) {
-                        System.err.println("Error restoring authentication for " + accessor.getCommand() + ": " + e.getMessage());
+                        log.warn("Error restoring authentication command={}: {}", accessor.getCommand(), e.getMessage());
                     }
                 } else {
-                    System.out.println("No token found for message: " + accessor.getCommand());
+                    log.debug("No token found command={}", accessor.getCommand());
                 }
             } else {
                 // User already authenticated
-                System.out.println("Message " + accessor.getCommand() + " from authenticated user: " + accessor.getUser().getName());
+                log.trace("Message command={} user={}", accessor.getCommand(), accessor.getUser().getName());
             }
         }
         
@@ -0,0 +1,74 @@
+package com.whiteboard.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    @Autowired
+    private TraceInterceptor traceInterceptor;
+
+    @Autowired
+    private WebSocketAuthInterceptor webSocketAuthInterceptor;
+
+    @Autowired
+    private WebSocketHandshakeInterceptor webSocketHandshakeInterceptor;
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    private PresenceInterceptor presenceInterceptor;
+
+    @Autowired
+    private OutboundMetricsInterceptor outboundMetricsInterceptor;
+
+    @Autowired
+    @Lazy
+    @Qualifier("messageBrokerTaskScheduler")
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    // STOMP 心跳间隔（毫秒），用于及时发现掉线的连接并触发 SessionDisconnectEvent
+    @Value("${app.websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry config) {
+        config.enableSimpleBroker("/topic", "/queue")
+              .setHeartbeatValue(new long[] {heartbeatMs, heartbeatMs})
+              .setTaskScheduler(messageBrokerTaskScheduler);
+        config.setApplicationDestinationPrefixes("/app");
+        // 同一会话的消息按发布顺序投递，减少客户端看到的乱序
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(webSocketHandshakeInterceptor)
+                .withSockJS();
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // 追踪拦截器排在最前，inbound 阶段包含认证和限流；被限流丢弃的帧同样说明会话在线，在线状态排在限流之前
+        registration.interceptors(traceInterceptor, webSocketAuthInterceptor, presenceInterceptor, rateLimitInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(outboundMetricsInterceptor);
+    }
+}
+
@@ -2,6 +2,8 @@ package com.whiteboard.config;
 
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
@@ -14,6 +16,8 @@ import com.whiteboard.util.JwtUtil;
 
 @Component
 public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketHandshakeInterceptor.class);
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -41,16 +45,16 @@ public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
                         // Store token in attributes for later use
                         attributes.put("token", token);
                         attributes.put("username", username);
-                        System.out.println("WebSocket handshake: Token found for user: " + username);
+                        log.debug("WebSocket handshake token found user={}", username);
                         return true;
                     } else {
-                        System.out.println("WebSocket handshake: Invalid token");
+                        log.warn("WebSocket handshake: invalid token");
                     }
                 } catch (Exception e) {
-                    System.err.println("WebSocket handshake: Error validating token: " + e.getMessage());
+                    log.warn("WebSocket handshake: error validating token: {}", e.getMessage());
                 }
             } else {
-                System.out.println("WebSocket handshake: No token provided");
+                log.debug("WebSocket handshake: no token provided");
             }
         }
         
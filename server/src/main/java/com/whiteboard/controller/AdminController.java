@@ -0,0 +1,179 @@
+package com.whiteboard.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.whiteboard.service.ChatBatchWriter;
+import com.whiteboard.service.CheckpointService;
+import com.whiteboard.service.LatencyTraceService;
+import com.whiteboard.service.RateLimitService;
+import com.whiteboard.service.RetentionService;
+import com.whiteboard.service.RoomActivityService;
+import com.whiteboard.service.RoomLifecycleService;
+import com.whiteboard.service.RoomService;
+import com.whiteboard.service.SearchIndexService;
+import com.whiteboard.service.ThumbnailService;
+import com.whiteboard.service.UserService;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private ChatBatchWriter chatBatchWriter;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private CheckpointService checkpointService;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoomLifecycleService roomLifecycleService;
+
+    @Autowired
+    private RoomActivityService roomActivityService;
+
+    @Autowired
+    private LatencyTraceService latencyTraceService;
+
+    @GetMapping("/rate-limits")
+    public ResponseEntity<?> rateLimits(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(rateLimitService.getStats());
+    }
+
+    @GetMapping("/chat-writer")
+    public ResponseEntity<?> chatWriter(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(chatBatchWriter.getStats());
+    }
+
+    @GetMapping("/search-index")
+    public ResponseEntity<?> searchIndex(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(searchIndexService.getStats());
+    }
+
+    @GetMapping("/checkpoints")
+    public ResponseEntity<?> checkpoints(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(checkpointService.getStats());
+    }
+
+    @GetMapping("/thumbnails")
+    public ResponseEntity<?> thumbnails(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(thumbnailService.getStats());
+    }
+
+    @GetMapping("/caches")
+    public ResponseEntity<?> caches(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(Map.of(
+            "rooms", roomService.getRoomCacheStats(),
+            "roomList", roomService.getListCacheStats(),
+            "users", userService.getCacheStats()));
+    }
+
+    @GetMapping("/rooms/lifecycle")
+    public ResponseEntity<?> roomLifecycle(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(roomLifecycleService.getStats());
+    }
+
+    @GetMapping("/rooms/activity")
+    public ResponseEntity<?> roomActivity(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(roomActivityService.getStats());
+    }
+
+    @GetMapping("/rooms/memory")
+    public ResponseEntity<?> roomMemory(@RequestParam(defaultValue = "20") int limit, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(roomLifecycleService.getMemoryReport(Math.max(0, Math.min(limit, 1000))));
+    }
+
+    @GetMapping("/rooms/latency")
+    public ResponseEntity<?> roomLatency(@RequestParam(defaultValue = "20") int limit, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(latencyTraceService.getReport(Math.max(0, Math.min(limit, 1000))));
+    }
+
+    @GetMapping("/rooms/{roomId}/latency")
+    public ResponseEntity<?> roomLatency(@PathVariable String roomId, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        Map<String, Object> report = latencyTraceService.getRoomReport(roomId);
+        if (report == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "No latency data for room"));
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @GetMapping("/retention")
+    public ResponseEntity<?> retention(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        return ResponseEntity.ok(retentionService.getStats());
+    }
+
+    @PostMapping("/retention/run")
+    public ResponseEntity<?> runRetention(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+        }
+        Map<String, Object> result = retentionService.run();
+        if (result == null) {
+            return ResponseEntity.status(409).body(Map.of("error", "Retention run already in progress"));
+        }
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,52 @@
+package com.whiteboard.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.whiteboard.service.ClusterService;
+
+@RestController
+@RequestMapping("/api/cluster")
+@CrossOrigin(origins = "*")
+public class ClusterController {
+    @Autowired
+    private ClusterService clusterService;
+
+    @GetMapping("/ping")
+    public ResponseEntity<?> ping(@RequestParam(required = false) String from,
+                                  @RequestHeader(value = ClusterService.SECRET_HEADER, required = false) String secret) {
+        if (!clusterService.isTrusted(secret) || !clusterService.onPing(from)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(clusterService.getSelfUrl());
+    }
+
+    @GetMapping("/nodes")
+    public ResponseEntity<?> nodes() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("self", clusterService.getSelfUrl());
+        response.put("live", clusterService.getLiveNodes());
+        response.put("members", clusterService.getMembers());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/rooms/{roomId}/owner")
+    public ResponseEntity<?> roomOwner(@PathVariable String roomId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("roomId", roomId);
+        response.put("ownerUrl", clusterService.ownerOf(roomId));
+        response.put("local", clusterService.isLocal(roomId));
+        return ResponseEntity.ok(response);
+    }
+}
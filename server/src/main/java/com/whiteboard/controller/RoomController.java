@@ -0,0 +1,517 @@
+package com.whiteboard.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.whiteboard.dto.DrawMessage;
+import com.whiteboard.dto.SnapshotManifest;
+import com.whiteboard.model.Operation;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.Snapshot;
+import com.whiteboard.model.User;
+import com.whiteboard.service.BlobStore;
+import com.whiteboard.service.ClusterService;
+import com.whiteboard.service.MessageService;
+import com.whiteboard.service.OperationService;
+import com.whiteboard.service.RoomService;
+import com.whiteboard.service.RoomVersionService;
+import com.whiteboard.service.SceneService;
+import com.whiteboard.service.SearchIndexService;
+import com.whiteboard.service.SnapshotService;
+import com.whiteboard.service.ThumbnailService;
+import com.whiteboard.service.UserService;
+
+@RestController
+@RequestMapping("/api/rooms")
+@CrossOrigin(origins = "*")
+public class RoomController {
+    private static final Logger log = LoggerFactory.getLogger(RoomController.class);
+
+    // 内容会变的接口：浏览器可以缓存，但每次都要带 If-None-Match 重新验证
+    private static final String REVALIDATE = "private, no-cache";
+    private static final String ROOM_CACHE_CONTROL = "private, max-age=3600";
+    private static final String HISTORY_CACHE_CONTROL = "private, max-age=86400";
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SceneService sceneService;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private RoomVersionService roomVersionService;
+
+    @Value("${app.operations.gap-fill-max:500}")
+    private long maxGapFillOperations;
+
+    @Value("${app.chat.history-page-size:50}")
+    private int chatPageSize;
+
+    @Value("${app.chat.history-max-page-size:200}")
+    private int chatMaxPageSize;
+
+    @Value("${app.rooms.list-page-size:50}")
+    private int roomPageSize;
+
+    @Value("${app.rooms.list-max-page-size:200}")
+    private int roomMaxPageSize;
+
+    @PostMapping("/create")
+    public ResponseEntity<?> createRoom(@RequestBody Map<String, String> request, Authentication authentication) {
+        String name = request.get("name");
+        String username = authentication.getName();
+        
+        User user = userService.findByUsername(username)
+            .orElseThrow(() -> new RuntimeException("User not found"));
+        
+        Room room = roomService.createRoom(name, user);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("roomId", room.getRoomId());
+        response.put("name", room.getName());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 房间名和创建者不会变，ETag 只由房间 ID 决定
+     */
+    @GetMapping("/{roomId}")
+    public ResponseEntity<?> getRoom(@PathVariable String roomId,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = etag("room", roomId);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag, ROOM_CACHE_CONTROL);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("roomId", room.getRoomId());
+        response.put("name", room.getName());
+        // 返回原始用户名而不是哈希值
+        response.put("owner", room.getOwner().getOriginalUsername() != null ? 
+            room.getOwner().getOriginalUsername() : room.getOwner().getUsername());
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .header(HttpHeaders.CACHE_CONTROL, ROOM_CACHE_CONTROL)
+            .body(response);
+    }
+
+    /**
+     * 房间列表，按最近更新时间倒序分页；q 为房间名前缀
+     */
+    @GetMapping("/list")
+    public ResponseEntity<?> listRooms(@RequestParam(required = false) String q,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit) {
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : roomPageSize, roomMaxPageSize));
+        try {
+            return ResponseEntity.ok(roomService.listRooms(q, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 保存快照：请求体直接是 PNG / WebP 图片（Content-Type: image/png 或 image/webp）
+     */
+    @PostMapping(value = "/{roomId}/save", consumes = {"image/png", "image/webp", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> saveSnapshot(@PathVariable String roomId, HttpServletRequest request, Authentication authentication) {
+        if (request.getContentLengthLong() > snapshotService.getMaxBytes()) {
+            return ResponseEntity.status(413).body(Map.of("error", "Snapshot is too large"));
+        }
+        try (InputStream content = request.getInputStream()) {
+            return storeSnapshot(roomId, content, authentication);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to read upload: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 保存快照：multipart/form-data，图片在 file 字段中
+     */
+    @PostMapping(value = "/{roomId}/save", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadSnapshot(@PathVariable String roomId, @RequestParam("file") MultipartFile file, Authentication authentication) {
+        if (file.getSize() > snapshotService.getMaxBytes()) {
+            return ResponseEntity.status(413).body(Map.of("error", "Snapshot is too large"));
+        }
+        try (InputStream content = file.getInputStream()) {
+            return storeSnapshot(roomId, content, authentication);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to read upload: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> storeSnapshot(String roomId, InputStream content, Authentication authentication) {
+        try {
+            if (authentication == null) {
+                return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
+            }
+            
+            Room room = roomService.findByRoomId(roomId)
+                .orElseThrow(() -> new RuntimeException("Room not found"));
+            
+            SnapshotService.SavedSnapshot saved = snapshotService.saveSnapshot(room, content);
+            Snapshot snapshot = saved.getSnapshot();
+            if (saved.isUnchanged()) {
+                log.debug("Snapshot unchanged room={} snapshot={}", roomId, snapshot.getId());
+            } else {
+                thumbnailService.request(roomId);
+                log.info("Snapshot saved room={} user={} bytes={} type={} newTiles={}/{} storedBytes={}", roomId, authentication.getName(),
+                    snapshot.getSizeBytes(), snapshot.getContentType(), saved.getNewTiles(), saved.getTiles(), snapshot.getStoredBytes());
+            }
+            
+            return ResponseEntity.ok(Map.of("success", true, "message", "Snapshot saved successfully",
+                "snapshotId", snapshot.getId(), "size", snapshot.getSizeBytes(), "unchanged", saved.isUnchanged(),
+                "tiles", saved.getTiles(), "newTiles", saved.getNewTiles(),
+                "storedBytes", saved.isUnchanged() ? 0L : snapshot.getStoredBytes()));
+        } catch (BlobStore.TooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of("error", "Snapshot is too large"));
+        } catch (SnapshotService.BusyException e) {
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "5").body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.warn("Error saving snapshot: {}", e.getMessage());
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Unexpected error saving snapshot", e);
+            return ResponseEntity.status(500).body(Map.of("error", "Internal server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 最新快照的图片内容；没有快照时返回 204
+     * 以文件返回，带 Content-Length 并支持 Range 请求；按图块保存的快照第一次请求时拼成整张 PNG 保存下来
+     */
+    @GetMapping("/{roomId}/snapshot")
+    public ResponseEntity<?> getLatestSnapshot(@PathVariable String roomId, HttpServletResponse response,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        String etag = roomVersionService.get(roomId).map(version -> etag("snapshot", version.getSnapshot())).orElse(null);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag, REVALIDATE);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        Optional<Snapshot> latest = snapshotService.getLatestSnapshot(room);
+        if (latest.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        Snapshot snapshot = latest.get();
+        Optional<Resource> content = snapshot.isTiled()
+            ? snapshotService.openAssembled(roomId, snapshot)
+            : snapshotService.openContent(snapshot);
+        if (content.isEmpty()) {
+            log.warn("Snapshot content missing room={} hash={}", roomId,
+                snapshot.isTiled() ? snapshot.getManifestHash() : snapshot.getContentHash());
+            return ResponseEntity.noContent().build();
+        }
+        setValidators(response, etag);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(snapshot.getContentType()))
+            .header("X-Snapshot-Id", String.valueOf(snapshot.getId()))
+            .header("X-Snapshot-Created-At", snapshot.getCreatedAt().toString());
+        if (snapshot.getSequenceNumber() != null) {
+            ok.header("X-Snapshot-Sequence", String.valueOf(snapshot.getSequenceNumber()));
+        }
+        return ok.body(content.get());
+    }
+
+    /**
+     * 最新快照的图块清单，客户端按清单并行加载图块；整张保存的快照 tiles 为 null，应改用 /snapshot
+     * 服务端生成的检查点带有 sequence，客户端之后用 /operations?checkpoint={sequence} 只加载之后的像素操作
+     */
+    @GetMapping("/{roomId}/snapshot/manifest")
+    public ResponseEntity<?> getSnapshotManifest(@PathVariable String roomId,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        String etag = roomVersionService.get(roomId).map(version -> etag("manifest", version.getSnapshot())).orElse(null);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag, REVALIDATE);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        Optional<Snapshot> latest = snapshotService.getLatestSnapshot(room);
+        if (latest.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        Snapshot snapshot = latest.get();
+        Map<String, Object> body = new HashMap<>();
+        body.put("snapshotId", snapshot.getId());
+        body.put("createdAt", snapshot.getCreatedAt().toString());
+        body.put("sequence", snapshot.getSequenceNumber());
+        body.put("tiles", null);
+        if (snapshot.isTiled()) {
+            Optional<SnapshotManifest> manifest = snapshotService.readManifest(snapshot);
+            if (manifest.isEmpty()) {
+                log.warn("Snapshot tiles missing room={} manifest={}", roomId, snapshot.getManifestHash());
+                return ResponseEntity.noContent().build();
+            }
+            body.put("width", manifest.get().getWidth());
+            body.put("height", manifest.get().getHeight());
+            body.put("tileSize", manifest.get().getTileSize());
+            body.put("tiles", manifest.get().getTiles());
+        }
+        return withValidators(ResponseEntity.ok(), etag, REVALIDATE).body(body);
+    }
+
+    /**
+     * 快照图块；按内容寻址，内容永远不会变，可以长期缓存
+     * 只返回房间最新快照清单中的图块，不能用任意房间的地址读取其他房间的图块
+     */
+    @GetMapping("/{roomId}/snapshot/tiles/{hash}")
+    public ResponseEntity<?> getSnapshotTile(@PathVariable String roomId, @PathVariable String hash) throws IOException {
+        Optional<String> version = roomVersionService.get(roomId).map(RoomVersionService.RoomVersion::getSnapshot);
+        Optional<Room> room = version.flatMap(v -> roomService.findByRoomId(roomId));
+        if (room.isEmpty() || !snapshotService.isLatestTile(room.get(), version.get(), hash)) {
+            return ResponseEntity.status(404).body(Map.of("error", "Tile not found"));
+        }
+        Optional<Resource> tile = snapshotService.openTile(hash);
+        if (tile.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Tile not found"));
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.IMAGE_PNG)
+            .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+            .body(tile.get());
+    }
+
+    /**
+     * 房间缩略图（JPEG），取自最新的快照；还没有生成时返回 202 并在后台生成，房间没有快照时返回 204
+     * 缩略图只随最新快照变化，ETag 取快照版本，If-None-Match 一致时不加载任何实体直接返回 304
+     * 带 v={缩略图哈希} 且与当前缩略图一致时内容不会再变，可以长期缓存，否则每次都要重新验证
+     */
+    @GetMapping("/{roomId}/thumbnail")
+    public ResponseEntity<?> getThumbnail(@PathVariable String roomId,
+                                          @RequestParam(required = false) String v,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = roomVersionService.get(roomId).map(version -> etag("thumbnail", version.getSnapshot())).orElse(null);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag, REVALIDATE);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        Optional<Snapshot> latest = snapshotService.getLatestSnapshot(room);
+        if (latest.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        Optional<String> hash = thumbnailService.getThumbnailHash(latest.get());
+        Optional<Resource> thumbnail = hash.flatMap(thumbnailService::open);
+        if (thumbnail.isEmpty()) {
+            thumbnailService.request(roomId);
+            return ResponseEntity.status(202).body(Map.of("message", "Thumbnail is being generated"));
+        }
+        String cacheControl = hash.get().equals(v) ? "public, max-age=31536000, immutable" : REVALIDATE;
+        return withValidators(ResponseEntity.ok(), etag, cacheControl)
+            .contentType(MediaType.parseMediaType(ThumbnailService.CONTENT_TYPE))
+            .body(thumbnail.get());
+    }
+
+    /**
+     * 房间快照占用的存储：按整张图片计算的大小、实际写入的大小和节省的比例
+     */
+    @GetMapping("/{roomId}/snapshots/stats")
+    public ResponseEntity<?> getSnapshotStats(@PathVariable String roomId) {
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        return ResponseEntity.ok(snapshotService.getStorageStats(room));
+    }
+
+    @GetMapping("/{roomId}/operations")
+    public ResponseEntity<?> getOperations(@PathVariable String roomId,
+                                           @RequestParam(required = false) Long afterSequence,
+                                           @RequestParam(required = false) Long checkpoint,
+                                           @RequestParam(required = false) Long from,
+                                           @RequestParam(required = false) Long to,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (from != null) {
+            return getOperationRange(roomId, from, to);
+        }
+        String etag = roomVersionService.get(roomId).map(version -> etag("operations", version.getOperations())).orElse(null);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag, REVALIDATE);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        // 完整加载时由归属节点返回压缩后的回放：被取代的对象版本和 clear 之前的操作都不再下发
+        // 客户端已经绘制了检查点时（checkpoint = 检查点的序列号），只补发检查点之后的像素操作
+        if ((afterSequence == null || afterSequence <= 0) && clusterService.isLocal(roomId)) {
+            SceneService.Replay replay = sceneService.compactedReplay(room, checkpoint != null ? checkpoint : 0L);
+            return withValidators(ResponseEntity.ok(), etag, REVALIDATE)
+                .header("X-Room-Sequence", String.valueOf(replay.getSequence()))
+                .body(replay.getOperations());
+        }
+        
+        // If afterSequence is provided, only load operations after that sequence
+        List<Operation> operations = (afterSequence != null && afterSequence > 0)
+            ? operationService.getOperationsAfter(room, afterSequence)
+            : operationService.getRoomOperations(room);
+        
+        List<Map<String, Object>> operationList = operations.stream().map(op -> {
+            Map<String, Object> opMap = new HashMap<>();
+            opMap.put("type", op.getOperationType());
+            opMap.put("data", op.getOperationData());
+            opMap.put("sequence", op.getSequenceNumber());
+            return opMap;
+        }).collect(Collectors.toList());
+        
+        return withValidators(ResponseEntity.ok(), etag, REVALIDATE).body(operationList);
+    }
+
+    /**
+     * 补缺：返回 [from, to] 区间内的操作，最近的操作直接从内存缓存返回
+     */
+    private ResponseEntity<?> getOperationRange(String roomId, long from, Long to) {
+        if (from < 1 || (to != null && to < from)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid sequence range"));
+        }
+        long end = Math.min(to != null ? to : Long.MAX_VALUE, from + maxGapFillOperations - 1);
+        List<DrawMessage> cached = operationService.getCachedRange(roomId, from, end);
+        if (cached != null) {
+            return ResponseEntity.ok(cached);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        List<DrawMessage> operations = operationService.getOperationRange(room, from, end).stream()
+            .map(op -> OperationService.toDrawMessage(roomId, op))
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(operationService.withSkipped(room, from, end, operations));
+    }
+
+    @GetMapping("/{roomId}/messages")
+    public ResponseEntity<?> getMessages(@PathVariable String roomId,
+                                         @RequestParam(required = false) Long before,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // 默认只返回最近一页，更早的消息由客户端用 nextBefore 继续翻页
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : chatPageSize, chatMaxPageSize));
+        // 更早的页不会再变（新消息的 id 总是更大）；最近一页随聊天版本变化
+        String etag;
+        String cacheControl;
+        if (before != null) {
+            etag = etag("chat", before + "-" + pageSize);
+            cacheControl = HISTORY_CACHE_CONTROL;
+        } else {
+            etag = roomVersionService.get(roomId).map(version -> etag("chat", version.getChat() + "-" + pageSize)).orElse(null);
+            cacheControl = REVALIDATE;
+        }
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag, cacheControl);
+        }
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        return withValidators(ResponseEntity.ok(), etag, cacheControl).body(messageService.getHistoryPage(room, before, pageSize));
+    }
+
+    @GetMapping("/{roomId}/messages/search")
+    public ResponseEntity<?> searchMessages(@PathVariable String roomId,
+                                            @RequestParam String q,
+                                            @RequestParam(required = false) Long before,
+                                            @RequestParam(required = false) Integer limit) {
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Search query is required"));
+        }
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : chatPageSize, chatMaxPageSize));
+        return ResponseEntity.ok(searchIndexService.search(room, q, before, pageSize));
+    }
+
+    private static String etag(String kind, String version) {
+        return "\"" + kind + "-" + version + "\"";
+    }
+
+    /**
+     * If-None-Match 中有任何一个 ETag（包括弱比较的 W/ 形式）与当前一致
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity<?> notModified(String etag, String cacheControl) {
+        return ResponseEntity.status(304)
+            .eTag(etag)
+            .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+            .build();
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, String etag, String cacheControl) {
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+
+    private static void setValidators(HttpServletResponse response, String etag) {
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+    }
+}
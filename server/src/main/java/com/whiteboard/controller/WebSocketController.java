@@ -0,0 +1,465 @@
+package com.whiteboard.controller;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.whiteboard.config.TraceInterceptor;
+import com.whiteboard.dto.ChatMessage;
+import com.whiteboard.dto.CursorMessage;
+import com.whiteboard.dto.DrawMessage;
+import com.whiteboard.dto.JoinMessage;
+import com.whiteboard.dto.LeaveMessage;
+import com.whiteboard.dto.OperationAck;
+import com.whiteboard.dto.PresenceDelta;
+import com.whiteboard.dto.ResumeRequest;
+import com.whiteboard.dto.ResumeResponse;
+import com.whiteboard.dto.RoomRedirectMessage;
+import com.whiteboard.dto.StrokeTrace;
+import com.whiteboard.dto.TraceReport;
+import com.whiteboard.jfr.BroadcastEvent;
+import com.whiteboard.jfr.ChatEvent;
+import com.whiteboard.jfr.DrawEvent;
+import com.whiteboard.jfr.OperationSaveEvent;
+import com.whiteboard.model.Operation;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.User;
+import com.whiteboard.service.CheckpointService;
+import com.whiteboard.service.ClusterService;
+import com.whiteboard.service.LatencyTraceService;
+import com.whiteboard.service.MessageService;
+import com.whiteboard.service.OperationService;
+import com.whiteboard.service.PresenceService;
+import com.whiteboard.service.RateLimitService;
+import com.whiteboard.service.RoomActivityService;
+import com.whiteboard.service.RoomLifecycleService;
+import com.whiteboard.service.RoomOwnershipChangedEvent;
+import com.whiteboard.service.RoomService;
+import com.whiteboard.service.RoomVersionService;
+import com.whiteboard.service.UserService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Controller
+public class WebSocketController {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketController.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private CheckpointService checkpointService;
+
+    @Autowired
+    private RoomVersionService roomVersionService;
+
+    @Autowired
+    private RoomLifecycleService roomLifecycleService;
+
+    @Autowired
+    private RoomActivityService roomActivityService;
+
+    @Autowired
+    private LatencyTraceService latencyTraceService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.operations.resume-max-operations:2000}")
+    private long resumeMaxOperations;
+
+    private Timer drawTimer;
+    private Timer chatTimer;
+    private Timer saveOperationTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        drawTimer = Timer.builder("whiteboard.draw")
+            .description("Handling of one drawing operation, from receipt to broadcast and ack")
+            .register(meterRegistry);
+        chatTimer = Timer.builder("whiteboard.chat")
+            .description("Handling of one chat message, from receipt to broadcast and enqueue")
+            .register(meterRegistry);
+        saveOperationTimer = Timer.builder("whiteboard.operations.save")
+            .description("Saving one operation, including the transaction commit")
+            .register(meterRegistry);
+    }
+
+    @MessageMapping("/draw")
+    public void handleDraw(DrawMessage message, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        DrawEvent event = new DrawEvent();
+        event.begin();
+        try {
+            drawTimer.record(() -> draw(message, principal, headerAccessor));
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.roomId = message.getRoomId();
+                event.operationType = message.getType();
+                event.payloadBytes = message.getData() == null ? 0 : message.getData().length();
+                event.sequence = message.getSequence() == null ? -1 : message.getSequence();
+                event.commit();
+            }
+        }
+    }
+
+    private void draw(DrawMessage message, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        long startNanos = System.nanoTime();
+        if (principal != null) {
+            String username = principal.getName();
+            String roomId = message.getRoomId();
+            if (redirectIfRemote(roomId, username)) {
+                return;
+            }
+            roomLifecycleService.touch(roomId);
+            String sessionId = headerAccessor.getSessionId();
+            String clientOpId = message.getClientOpId();
+            if (clientOpId != null) {
+                Long existing = operationService.claimClientOpId(roomId, clientOpId);
+                if (existing != null) {
+                    // 重连后重发的操作：不再写库和广播，只补一个 ack
+                    // 仍在写入中时首次请求的 ack 会发往旧会话，这里回一个 pending ack，客户端退避后重发
+                    OperationAck ack = new OperationAck(roomId, clientOpId, existing == OperationService.PENDING ? null : existing);
+                    ack.setPending(existing == OperationService.PENDING);
+                    sendToSession(sessionId, "/queue/ack", ack);
+                    return;
+                }
+            }
+            log.debug("Draw received user={} room={} type={}", username, roomId, message.getType());
+            Room room;
+            Operation savedOp;
+            try {
+                User user = userService.findByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + username));
+                room = roomService.findByRoomId(roomId)
+                    .orElseThrow(() -> new RuntimeException("Room not found"));
+                Timer.Sample save = Timer.start(meterRegistry);
+                OperationSaveEvent saveEvent = new OperationSaveEvent();
+                saveEvent.begin();
+                savedOp = operationService.saveOperation(room, user, message.getType(), message.getData(), clientOpId);
+                save.stop(saveOperationTimer);
+                saveEvent.end();
+                if (saveEvent.shouldCommit()) {
+                    saveEvent.roomId = roomId;
+                    saveEvent.operationType = message.getType();
+                    saveEvent.payloadBytes = message.getData() == null ? 0 : message.getData().length();
+                    saveEvent.sequence = savedOp.getSequenceNumber();
+                    saveEvent.commit();
+                }
+            } catch (RuntimeException e) {
+                if (clientOpId != null) {
+                    operationService.releaseClientOpId(roomId, clientOpId);
+                }
+                throw e;
+            }
+            long persistedNanos = System.nanoTime();
+            log.debug("Operation saved id={} sequence={} type={}", savedOp.getId(), savedOp.getSequenceNumber(), savedOp.getOperationType());
+            // 操作已提交，房间进入下一次检查点，HTTP 接口的 ETag 随之变化
+            roomVersionService.operationsChanged(roomId);
+            roomActivityService.recordOperation(roomId, message.getData() == null ? 0 : message.getData().length());
+            checkpointService.markDirty(room, savedOp);
+            message.setUsername(username);
+            // 广播带上房间序列号，客户端据此发现丢失或乱序的操作
+            message.setSequence(savedOp.getSequenceNumber());
+            Long receivedNanos = (Long) headerAccessor.getHeader(TraceInterceptor.RECEIVED_NANOS_HEADER);
+            if (receivedNanos == null) {
+                receivedNanos = startNanos;
+            }
+            StrokeTrace trace = message.getTrace();
+            if (trace != null) {
+                trace.setServerReceivedAt(LatencyTraceService.toEpochMillis(receivedNanos));
+                trace.setPersistedAt(LatencyTraceService.toEpochMillis(persistedNanos));
+                trace.setBroadcastAt(System.currentTimeMillis());
+            }
+            broadcast(roomId, "draw", message, message.getData() == null ? 0 : message.getData().length());
+            latencyTraceService.recordServerStages(roomId, receivedNanos, startNanos, persistedNanos, System.nanoTime());
+            if (clientOpId != null) {
+                sendToSession(sessionId, "/queue/ack", new OperationAck(roomId, clientOpId, savedOp.getSequenceNumber()));
+            }
+        } else {
+            log.warn("Received draw operation without principal");
+            messagingTemplate.convertAndSend(roomTopic(message.getRoomId(), "draw"), message);
+        }
+    }
+
+    /**
+     * 断线重连：只补发客户端最后确认的序列号之后的操作；缺口过大时让客户端整体重新加载
+     */
+    @MessageMapping("/resume")
+    public void handleResume(ResumeRequest request, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        if (principal == null || request.getRoomId() == null) {
+            return;
+        }
+        String roomId = request.getRoomId();
+        if (redirectIfRemote(roomId, principal.getName())) {
+            return;
+        }
+        roomLifecycleService.touch(roomId);
+        Room room = roomService.findByRoomId(roomId)
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        long lastSequence = Math.max(0L, request.getLastSequence());
+        long latestSequence = operationService.getLatestSequence(room);
+        ResumeResponse response;
+        if (latestSequence <= lastSequence) {
+            response = new ResumeResponse(roomId, new ArrayList<>(), latestSequence, false);
+        } else if ((latestSequence - lastSequence > resumeMaxOperations
+                && operationService.countOperationsAfter(room, lastSequence) > resumeMaxOperations)
+                || operationService.getEarliestSequence(room) > lastSequence + 1) {
+            // 缺失的操作太多，或其中一部分已被回收，只能整体重新加载
+            response = new ResumeResponse(roomId, null, latestSequence, true);
+        } else {
+            List<DrawMessage> missed = operationService.getCachedRange(roomId, lastSequence + 1, latestSequence);
+            if (missed == null) {
+                missed = new ArrayList<>();
+                for (Operation op : operationService.getOperationsAfter(room, lastSequence)) {
+                    missed.add(OperationService.toDrawMessage(roomId, op));
+                }
+                missed = operationService.withSkipped(room, lastSequence + 1, latestSequence, missed);
+            }
+            response = new ResumeResponse(roomId, missed, latestSequence, false);
+        }
+        log.debug("Resume room={} after={} reload={} operations={}", roomId, lastSequence,
+            response.isReload(), response.isReload() ? 0 : response.getOperations().size());
+        sendToSession(headerAccessor.getSessionId(), "/queue/resume", response);
+    }
+
+    @MessageMapping("/join")
+    public void handleJoin(JoinMessage message, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        if (principal != null) {
+            String username = principal.getName();
+            String roomId = message.getRoomId();
+            if (redirectIfRemote(roomId, username)) {
+                return;
+            }
+            roomLifecycleService.touch(roomId);
+            String sessionId = headerAccessor.getSessionId();
+            rateLimitService.bindRoom(sessionId, roomId);
+            
+            userService.findByUsername(username).ifPresent(user -> {
+                // 其他成员只收到一个 add 增量，完整列表只发给新加入的会话
+                broadcastPresence(presenceService.join(roomId, sessionId, username, user.getId()));
+                sendToSession(sessionId, "/queue/presence", presenceService.snapshot(roomId));
+            });
+        }
+    }
+
+    @MessageMapping("/leave")
+    public void handleLeave(LeaveMessage message, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        if (principal != null) {
+            broadcastPresence(presenceService.leave(message.getRoomId(), headerAccessor.getSessionId()));
+        }
+    }
+
+    @MessageMapping("/presence/heartbeat")
+    public void handlePresenceHeartbeat(SimpMessageHeaderAccessor headerAccessor) {
+        presenceService.heartbeat(headerAccessor.getSessionId());
+    }
+
+    /**
+     * 客户端发现版本号不连续时请求完整列表
+     */
+    @MessageMapping("/presence/resync")
+    public void handlePresenceResync(JoinMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        if (message.getRoomId() != null && clusterService.isLocal(message.getRoomId())) {
+            sendToSession(headerAccessor.getSessionId(), "/queue/presence", presenceService.snapshot(message.getRoomId()));
+        }
+    }
+
+    @EventListener
+    public void onSessionConnect(SessionConnectEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            presenceService.sessionConnected(sessionId);
+        }
+    }
+
+    /**
+     * 连接断开（包括 STOMP 心跳超时）时清理该会话的在线状态，不依赖客户端发送 /app/leave
+     */
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        presenceService.disconnect(event.getSessionId()).forEach(this::broadcastPresence);
+    }
+
+    /**
+     * 清理断线事件丢失、长时间没有心跳的会话，并回收空闲房间的在线状态
+     */
+    @Scheduled(fixedDelayString = "${app.presence.sweep-interval-ms:30000}")
+    public void sweepPresence() {
+        for (String sessionId : presenceService.findExpiredSessions()) {
+            log.info("Presence session expired without disconnect: {}", sessionId);
+            presenceService.disconnect(sessionId).forEach(this::broadcastPresence);
+        }
+        int evicted = presenceService.evictIdleRooms();
+        if (evicted > 0) {
+            log.info("Evicted presence for {} idle room(s)", evicted);
+        }
+    }
+
+    /**
+     * 客户端对抽样笔画的回报：往返时间和绘制时间
+     */
+    @MessageMapping("/trace")
+    public void handleTraceReport(TraceReport report, Principal principal) {
+        if (principal == null || report.getRoomId() == null || !clusterService.isLocal(report.getRoomId())) {
+            return;
+        }
+        latencyTraceService.recordClientReport(report);
+    }
+
+    @MessageMapping("/chat")
+    public void handleChat(ChatMessage message, Principal principal) {
+        ChatEvent event = new ChatEvent();
+        event.begin();
+        try {
+            chatTimer.record(() -> chat(message, principal));
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.roomId = message.getRoomId();
+                event.payloadBytes = message.getContent() == null ? 0 : message.getContent().length();
+                event.commit();
+            }
+        }
+    }
+
+    private void chat(ChatMessage message, Principal principal) {
+        log.debug("Chat received user={} room={} length={}", principal != null ? principal.getName() : null,
+            message.getRoomId(), message.getContent() == null ? 0 : message.getContent().length());
+        
+        if (principal == null) {
+            log.warn("Received chat message without principal, rejecting");
+            throw new RuntimeException("Authentication required");
+        }
+        
+        String username = principal.getName();
+        if (redirectIfRemote(message.getRoomId(), username)) {
+            return;
+        }
+        if (message.getContent() == null || message.getContent().isBlank()) {
+            return;
+        }
+        // 广播后消息就不能再丢；不存在的房间在这里拒绝，不进入写入队列（房间查询走缓存）
+        roomService.findByRoomId(message.getRoomId())
+            .orElseThrow(() -> new RuntimeException("Room not found"));
+        roomLifecycleService.touch(message.getRoomId());
+        
+        // 先广播，再交给后台批量写入；房间和用户主键在写入线程上解析
+        message.setUsername(username);
+        broadcast(message.getRoomId(), "chat", message, message.getContent().length());
+        messageService.submit(message.getRoomId(), username, message.getContent());
+        roomActivityService.recordChat(message.getRoomId());
+    }
+
+    @MessageMapping("/cursor")
+    public void handleCursor(CursorMessage message, Principal principal) {
+        if (principal != null) {
+            message.setUsername(principal.getName());
+        } else {
+            message.setUsername("anonymous");
+        }
+        if (message.getRoomId() != null && clusterService.isLocal(message.getRoomId())) {
+            roomLifecycleService.touch(message.getRoomId());
+            messagingTemplate.convertAndSend(roomTopic(message.getRoomId(), "cursor"), message);
+        }
+    }
+
+    /**
+     * 房间移交后，清理本地在线状态并通知仍连在本节点的客户端重连到新的归属节点
+     */
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        for (String roomId : presenceService.getRoomIds()) {
+            if (!clusterService.isLocal(roomId)) {
+                presenceService.evictRoom(roomId);
+                messagingTemplate.convertAndSend(roomTopic(roomId, "redirect"),
+                    new RoomRedirectMessage(roomId, clusterService.ownerOf(roomId)));
+            }
+        }
+    }
+
+    private void broadcastPresence(PresenceDelta delta) {
+        if (delta != null) {
+            messagingTemplate.convertAndSend(roomTopic(delta.getRoomId(), "users"), delta);
+        }
+    }
+
+    private void sendToSession(String sessionId, String destination, Object payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, destination, payload, headers.getMessageHeaders());
+    }
+
+    /**
+     * 房间不归本节点所有时，让客户端重连到归属节点，本节点不处理该消息
+     */
+    private boolean redirectIfRemote(String roomId, String username) {
+        if (roomId == null || clusterService.isLocal(roomId)) {
+            return false;
+        }
+        String ownerUrl = clusterService.ownerOf(roomId);
+        log.debug("Room {} is owned by {}, redirecting user={}", roomId, ownerUrl, username);
+        messagingTemplate.convertAndSendToUser(username, "/queue/redirect", new RoomRedirectMessage(roomId, ownerUrl));
+        return true;
+    }
+
+    /**
+     * 发到房间主题；开启 JFR 录制时记录一个 Broadcast 事件
+     */
+    private void broadcast(String roomId, String channel, Object payload, long payloadBytes) {
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        messagingTemplate.convertAndSend(roomTopic(roomId, channel), payload);
+        event.end();
+        if (event.shouldCommit()) {
+            event.roomId = roomId;
+            event.channel = channel;
+            event.payloadBytes = payloadBytes;
+            event.commit();
+        }
+    }
+
+    private static String roomTopic(String roomId, String channel) {
+        return "/topic/room/" + roomId + "/" + channel;
+    }
+}
+
@@ -0,0 +1,54 @@
+package com.whiteboard.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 聊天记录分页查询的投影，只取展示需要的列，不加载 Message 关联的 room / user 实体
+ */
+public class ChatHistoryEntry {
+    private Long id;
+    private String username;
+    private String content;
+    private LocalDateTime timestamp;
+
+    public ChatHistoryEntry() {}
+
+    public ChatHistoryEntry(Long id, String username, String content, LocalDateTime timestamp) {
+        this.id = id;
+        this.username = username;
+        this.content = content;
+        this.timestamp = timestamp;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+}
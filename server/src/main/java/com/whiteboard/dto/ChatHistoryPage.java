@@ -0,0 +1,44 @@
+package com.whiteboard.dto;
+
+import java.util.List;
+
+/**
+ * 一页聊天记录（按时间正序）；nextBefore 作为下一次请求的 before 参数，没有更早的消息时为 null
+ */
+public class ChatHistoryPage {
+    private List<ChatHistoryEntry> messages;
+    private boolean hasMore;
+    private Long nextBefore;
+
+    public ChatHistoryPage() {}
+
+    public ChatHistoryPage(List<ChatHistoryEntry> messages, boolean hasMore, Long nextBefore) {
+        this.messages = messages;
+        this.hasMore = hasMore;
+        this.nextBefore = nextBefore;
+    }
+
+    public List<ChatHistoryEntry> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatHistoryEntry> messages) {
+        this.messages = messages;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public Long getNextBefore() {
+        return nextBefore;
+    }
+
+    public void setNextBefore(Long nextBefore) {
+        this.nextBefore = nextBefore;
+    }
+}
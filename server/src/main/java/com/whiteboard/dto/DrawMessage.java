@@ -0,0 +1,71 @@
+package com.whiteboard.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public class DrawMessage {
+    private String roomId;
+    private String type;
+    private String data;
+    private String username;
+    private String clientOpId;
+    private Long sequence;
+    // 只有抽样的笔画才带追踪上下文，其余广播不输出该字段
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StrokeTrace trace;
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getClientOpId() {
+        return clientOpId;
+    }
+
+    public void setClientOpId(String clientOpId) {
+        this.clientOpId = clientOpId;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    public StrokeTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(StrokeTrace trace) {
+        this.trace = trace;
+    }
+}
@@ -0,0 +1,49 @@
+package com.whiteboard.dto;
+
+public class OperationAck {
+    private String roomId;
+    private String clientOpId;
+    private Long sequence;
+    // 同一个 clientOpId 的首次请求仍在写入中，客户端稍后重发这个操作来取得序列号
+    private boolean pending;
+
+    public OperationAck() {}
+
+    public OperationAck(String roomId, String clientOpId, Long sequence) {
+        this.roomId = roomId;
+        this.clientOpId = clientOpId;
+        this.sequence = sequence;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getClientOpId() {
+        return clientOpId;
+    }
+
+    public void setClientOpId(String clientOpId) {
+        this.clientOpId = clientOpId;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+}
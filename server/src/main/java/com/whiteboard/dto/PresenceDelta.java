@@ -0,0 +1,69 @@
+package com.whiteboard.dto;
+
+import java.util.List;
+
+/**
+ * 房间在线状态变化：full 携带完整列表（仅在加入或重新同步时发送），
+ * add/remove 只携带变化的用户。version 在房间内单调递增，客户端据此发现丢失的增量
+ */
+public class PresenceDelta {
+    public static final String FULL = "full";
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+
+    private String roomId;
+    private String type;
+    private long version;
+    private UserPresence user;
+    private List<UserPresence> users;
+
+    public PresenceDelta() {}
+
+    public PresenceDelta(String roomId, String type, long version, UserPresence user, List<UserPresence> users) {
+        this.roomId = roomId;
+        this.type = type;
+        this.version = version;
+        this.user = user;
+        this.users = users;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public UserPresence getUser() {
+        return user;
+    }
+
+    public void setUser(UserPresence user) {
+        this.user = user;
+    }
+
+    public List<UserPresence> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserPresence> users) {
+        this.users = users;
+    }
+}
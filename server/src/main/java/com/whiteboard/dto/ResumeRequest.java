@@ -0,0 +1,22 @@
+package com.whiteboard.dto;
+
+public class ResumeRequest {
+    private String roomId;
+    private long lastSequence;
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+}
@@ -0,0 +1,54 @@
+package com.whiteboard.dto;
+
+import java.util.List;
+
+/**
+ * 断线重连后补发的操作；缺口太大时 reload 为 true，客户端应重新加载整个房间
+ */
+public class ResumeResponse {
+    private String roomId;
+    private List<DrawMessage> operations;
+    private long latestSequence;
+    private boolean reload;
+
+    public ResumeResponse() {}
+
+    public ResumeResponse(String roomId, List<DrawMessage> operations, long latestSequence, boolean reload) {
+        this.roomId = roomId;
+        this.operations = operations;
+        this.latestSequence = latestSequence;
+        this.reload = reload;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public List<DrawMessage> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<DrawMessage> operations) {
+        this.operations = operations;
+    }
+
+    public long getLatestSequence() {
+        return latestSequence;
+    }
+
+    public void setLatestSequence(long latestSequence) {
+        this.latestSequence = latestSequence;
+    }
+
+    public boolean isReload() {
+        return reload;
+    }
+
+    public void setReload(boolean reload) {
+        this.reload = reload;
+    }
+}
@@ -0,0 +1,34 @@
+package com.whiteboard.dto;
+
+import java.util.List;
+
+/**
+ * 一页房间列表（按最近更新时间倒序）；nextCursor 作为下一次请求的 cursor 参数，没有更多房间时为 null
+ */
+public class RoomPage {
+    private List<RoomSummary> rooms;
+    private String nextCursor;
+
+    public RoomPage() {}
+
+    public RoomPage(List<RoomSummary> rooms, String nextCursor) {
+        this.rooms = rooms;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RoomSummary> getRooms() {
+        return rooms;
+    }
+
+    public void setRooms(List<RoomSummary> rooms) {
+        this.rooms = rooms;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
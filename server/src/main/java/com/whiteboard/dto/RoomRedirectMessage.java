@@ -0,0 +1,29 @@
+package com.whiteboard.dto;
+
+public class RoomRedirectMessage {
+    private String roomId;
+    private String ownerUrl;
+
+    public RoomRedirectMessage() {}
+
+    public RoomRedirectMessage(String roomId, String ownerUrl) {
+        this.roomId = roomId;
+        this.ownerUrl = ownerUrl;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getOwnerUrl() {
+        return ownerUrl;
+    }
+
+    public void setOwnerUrl(String ownerUrl) {
+        this.ownerUrl = ownerUrl;
+    }
+}
@@ -0,0 +1,77 @@
+package com.whiteboard.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * 房间列表的投影：房间列和创建者的显示名由一条查询取出，不加载 Room / User 实体
+ */
+public class RoomSummary {
+    @JsonIgnore
+    private Long id;
+    private String roomId;
+    private String name;
+    private String owner;
+    private LocalDateTime lastUpdated;
+    // 缩略图的哈希，没有缩略图时为 null
+    private String thumbnail;
+
+    public RoomSummary() {}
+
+    public RoomSummary(Long id, String roomId, String name, String owner, LocalDateTime lastUpdated) {
+        this.id = id;
+        this.roomId = roomId;
+        this.name = name;
+        this.owner = owner;
+        this.lastUpdated = lastUpdated;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public String getThumbnail() {
+        return thumbnail;
+    }
+
+    public void setThumbnail(String thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+}
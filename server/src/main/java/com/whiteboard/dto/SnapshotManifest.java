@@ -0,0 +1,63 @@
+package com.whiteboard.dto;
+
+import java.util.List;
+
+/**
+ * 按图块保存的快照清单：图片被切成 tileSize x tileSize 的图块（最右一列和最下一行可能更小），
+ * tiles 按行优先顺序列出每个图块在 BlobStore 中的哈希
+ */
+public class SnapshotManifest {
+    private int width;
+    private int height;
+    private int tileSize;
+    private List<String> tiles;
+
+    public SnapshotManifest() {}
+
+    public SnapshotManifest(int width, int height, int tileSize, List<String> tiles) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tiles = tiles;
+    }
+
+    public int getColumns() {
+        return (width + tileSize - 1) / tileSize;
+    }
+
+    public int getRows() {
+        return (height + tileSize - 1) / tileSize;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public List<String> getTiles() {
+        return tiles;
+    }
+
+    public void setTiles(List<String> tiles) {
+        this.tiles = tiles;
+    }
+}
@@ -0,0 +1,41 @@
+package com.whiteboard.dto;
+
+/**
+ * 房间快照的存储统计：logicalBytes 是所有快照按整张图片计算的大小，storedBytes 是实际写入存储的大小
+ */
+public class SnapshotStorageStats {
+    private long snapshots;
+    private long logicalBytes;
+    private long storedBytes;
+
+    public SnapshotStorageStats() {}
+
+    public SnapshotStorageStats(Long snapshots, Long logicalBytes, Long storedBytes) {
+        this.snapshots = snapshots != null ? snapshots : 0;
+        this.logicalBytes = logicalBytes != null ? logicalBytes : 0;
+        this.storedBytes = storedBytes != null ? storedBytes : 0;
+    }
+
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    public long getSavedBytes() {
+        return Math.max(0, logicalBytes - storedBytes);
+    }
+
+    /**
+     * 节省的比例，0 ~ 1
+     */
+    public double getSavingsRatio() {
+        return logicalBytes == 0 ? 0 : getSavedBytes() / (double) logicalBytes;
+    }
+}
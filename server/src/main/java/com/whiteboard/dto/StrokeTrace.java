@@ -0,0 +1,44 @@
+package com.whiteboard.dto;
+
+/**
+ * 笔画的追踪上下文：客户端抽样的笔画带上发送时间，服务端补上各阶段的时间戳（毫秒时间戳）随广播返回
+ * 客户端时间只与客户端自己的时间比较，不与服务端时间相减，避免时钟偏差
+ */
+public class StrokeTrace {
+    private Long clientSentAt;
+    private Long serverReceivedAt;
+    private Long persistedAt;
+    private Long broadcastAt;
+
+    public Long getClientSentAt() {
+        return clientSentAt;
+    }
+
+    public void setClientSentAt(Long clientSentAt) {
+        this.clientSentAt = clientSentAt;
+    }
+
+    public Long getServerReceivedAt() {
+        return serverReceivedAt;
+    }
+
+    public void setServerReceivedAt(Long serverReceivedAt) {
+        this.serverReceivedAt = serverReceivedAt;
+    }
+
+    public Long getPersistedAt() {
+        return persistedAt;
+    }
+
+    public void setPersistedAt(Long persistedAt) {
+        this.persistedAt = persistedAt;
+    }
+
+    public Long getBroadcastAt() {
+        return broadcastAt;
+    }
+
+    public void setBroadcastAt(Long broadcastAt) {
+        this.broadcastAt = broadcastAt;
+    }
+}
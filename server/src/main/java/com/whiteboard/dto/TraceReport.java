@@ -0,0 +1,43 @@
+package com.whiteboard.dto;
+
+/**
+ * 客户端回报的追踪结果：自己的笔画从发送到收到广播的往返时间，或别人的笔画从收到到绘制完成的时间
+ */
+public class TraceReport {
+    private String roomId;
+    private Long sequence;
+    private Double roundTripMs;
+    private Double renderMs;
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Double getRoundTripMs() {
+        return roundTripMs;
+    }
+
+    public void setRoundTripMs(Double roundTripMs) {
+        this.roundTripMs = roundTripMs;
+    }
+
+    public Double getRenderMs() {
+        return renderMs;
+    }
+
+    public void setRenderMs(Double renderMs) {
+        this.renderMs = renderMs;
+    }
+}
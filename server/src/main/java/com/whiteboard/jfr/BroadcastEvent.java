@@ -0,0 +1,15 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.whiteboard.Broadcast")
+@Label("Broadcast")
+@Category({"Whiteboard", "Realtime"})
+@Description("Handing one message to the broker for delivery to a room topic")
+public class BroadcastEvent extends RoomEvent {
+    @Label("Channel")
+    public String channel;
+}
@@ -0,0 +1,13 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.whiteboard.Chat")
+@Label("Chat")
+@Category({"Whiteboard", "Realtime"})
+@Description("Handling of one chat message, from receipt to broadcast and enqueue")
+public class ChatEvent extends RoomEvent {
+}
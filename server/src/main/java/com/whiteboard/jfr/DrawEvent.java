@@ -0,0 +1,18 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.whiteboard.Draw")
+@Label("Draw")
+@Category({"Whiteboard", "Realtime"})
+@Description("Handling of one drawing operation, from receipt to broadcast and ack")
+public class DrawEvent extends RoomEvent {
+    @Label("Operation Type")
+    public String operationType;
+
+    @Label("Sequence")
+    public long sequence;
+}
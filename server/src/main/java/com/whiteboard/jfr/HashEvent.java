@@ -0,0 +1,19 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.whiteboard.Hash")
+@Label("Hash")
+@Category({"Whiteboard", "Security"})
+@Description("One PBKDF2 hash of a username or password")
+@StackTrace(false)
+public class HashEvent extends Event {
+    @Label("Kind")
+    @Description("username or password")
+    public String kind;
+}
@@ -0,0 +1,23 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.whiteboard.JwtParse")
+@Label("JWT Parse")
+@Category({"Whiteboard", "Security"})
+@Description("Parsing and verifying the signature of one JWT")
+@StackTrace(false)
+public class JwtParseEvent extends Event {
+    @Label("Token Size")
+    @DataAmount
+    public long payloadBytes;
+
+    @Label("Valid")
+    public boolean valid;
+}
@@ -0,0 +1,18 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.whiteboard.OperationSave")
+@Label("Operation Save")
+@Category({"Whiteboard", "Persistence"})
+@Description("Saving one operation, including the transaction commit")
+public class OperationSaveEvent extends RoomEvent {
+    @Label("Operation Type")
+    public String operationType;
+
+    @Label("Sequence")
+    public long sequence;
+}
@@ -0,0 +1,22 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * 白板 JFR 事件的公共字段；不记录调用栈，没有开启录制时 commit 什么都不做
+ * 持续时间由 begin() / commit() 之间的时间给出
+ */
+@Category("Whiteboard")
+@StackTrace(false)
+public abstract class RoomEvent extends Event {
+    @Label("Room")
+    public String roomId;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+}
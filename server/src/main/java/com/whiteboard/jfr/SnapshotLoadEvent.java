@@ -0,0 +1,19 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.whiteboard.SnapshotLoad")
+@Label("Snapshot Load")
+@Category({"Whiteboard", "Persistence"})
+@Description("Decoding a tiled snapshot into an image, or assembling it into a PNG stream; payload is the decoded pixel size")
+public class SnapshotLoadEvent extends RoomEvent {
+    @Label("Mode")
+    @Description("decode or assemble")
+    public String mode;
+
+    @Label("Tiles")
+    public int tiles;
+}
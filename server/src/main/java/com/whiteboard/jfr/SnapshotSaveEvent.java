@@ -0,0 +1,29 @@
+package com.whiteboard.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.whiteboard.SnapshotSave")
+@Label("Snapshot Save")
+@Category({"Whiteboard", "Persistence"})
+@Description("Saving an uploaded snapshot or a server-rendered checkpoint")
+public class SnapshotSaveEvent extends RoomEvent {
+    @Label("Checkpoint")
+    public boolean checkpoint;
+
+    @Label("Tiles")
+    public int tiles;
+
+    @Label("New Tiles")
+    public int newTiles;
+
+    @Label("Stored Size")
+    @DataAmount
+    public long storedBytes;
+
+    @Label("Unchanged")
+    public boolean unchanged;
+}
@@ -4,7 +4,9 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    @Index(name = "idx_messages_room_id", columnList = "room_id, id")
+})
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
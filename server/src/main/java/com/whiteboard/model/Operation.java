@@ -4,8 +4,13 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "operations")
+// 序列号由归属节点的内存分配器发放，唯一约束保证两个分配器（移交、休眠后重新初始化）不会写入同一个序列号
+@Table(name = "operations", uniqueConstraints = {
+    @UniqueConstraint(name = Operation.ROOM_SEQUENCE_CONSTRAINT, columnNames = {"room_id", "sequenceNumber"})
+})
 public class Operation {
+    public static final String ROOM_SEQUENCE_CONSTRAINT = "uk_operations_room_sequence";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -27,6 +32,14 @@ public class Operation {
     @Column(columnDefinition = "TEXT")
     private String operationData;
 
+    // 客户端生成的操作 ID，用于重发去重
+    @Column(length = 64)
+    private String clientOpId;
+
+    // 可寻址对象（矩形、圆、直线、文本）的 ID；画笔、橡皮等像素操作为空
+    @Column(length = 64)
+    private String objectId;
+
     private LocalDateTime timestamp;
 
     @PrePersist
@@ -82,6 +95,22 @@ public class Operation {
         this.operationData = operationData;
     }
 
+    public String getClientOpId() {
+        return clientOpId;
+    }
+
+    public void setClientOpId(String clientOpId) {
+        this.clientOpId = clientOpId;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public void setObjectId(String objectId) {
+        this.objectId = objectId;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
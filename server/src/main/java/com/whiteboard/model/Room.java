@@ -2,11 +2,12 @@ package com.whiteboard.model;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
 @Entity
-@Table(name = "rooms")
+@Table(name = "rooms", indexes = {
+    @Index(name = "idx_rooms_last_updated", columnList = "lastUpdated, id"),
+    @Index(name = "idx_rooms_name", columnList = "name")
+})
 public class Room {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -24,13 +25,19 @@ public class Room {
 
     private LocalDateTime createdAt;
 
+    // 创建时写入，之后只由 RoomActivityService 的批量 SQL 前移；保存缓存中脱离会话的旧实体时不能覆盖它
+    @Column(updatable = false)
     private LocalDateTime lastUpdated;
 
-    @OneToMany(mappedBy = "room", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Operation> operations = new ArrayList<>();
+    // 活动计数只由 RoomActivityService 批量累加，实体保存时不写这些列，避免用缓存中的旧值覆盖
+    @Column(insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private Long operationCount;
 
-    @OneToMany(mappedBy = "room", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Snapshot> snapshots = new ArrayList<>();
+    @Column(insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private Long operationBytes;
+
+    @Column(insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private Long chatCount;
 
     @PrePersist
     protected void onCreate() {
@@ -38,11 +45,6 @@ public class Room {
         lastUpdated = LocalDateTime.now();
     }
 
-    @PreUpdate
-    protected void onUpdate() {
-        lastUpdated = LocalDateTime.now();
-    }
-
     public Long getId() {
         return id;
     }
@@ -91,20 +93,16 @@ public class Room {
         this.lastUpdated = lastUpdated;
     }
 
-    public List<Operation> getOperations() {
-        return operations;
-    }
-
-    public void setOperations(List<Operation> operations) {
-        this.operations = operations;
+    public Long getOperationCount() {
+        return operationCount;
     }
 
-    public List<Snapshot> getSnapshots() {
-        return snapshots;
+    public Long getOperationBytes() {
+        return operationBytes;
     }
 
-    public void setSnapshots(List<Snapshot> snapshots) {
-        this.snapshots = snapshots;
+    public Long getChatCount() {
+        return chatCount;
     }
 }
 
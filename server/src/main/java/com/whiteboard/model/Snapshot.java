@@ -0,0 +1,143 @@
+package com.whiteboard.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "snapshots")
+public class Snapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "room_id", nullable = false)
+    private Room room;
+
+    // 整张图片保存在 BlobStore 中时记录内容的 SHA-256（WebP 和旧版本的快照）
+    @Column(length = 64)
+    private String contentHash;
+
+    // 按图块保存的快照：清单（图块哈希列表）在 BlobStore 中的 SHA-256
+    @Column(length = 64)
+    private String manifestHash;
+
+    @Column(length = 32)
+    private String contentType;
+
+    // 上传的图片大小
+    private Long sizeBytes;
+
+    // 这次保存实际新写入存储的字节数（已有的图块不重复计算）
+    private Long storedBytes;
+
+    // 服务端生成的检查点：图片是序列号 <= sequenceNumber 的全部像素操作的结果；手动保存的快照为空
+    private Long sequenceNumber;
+
+    // 房间列表用的缩略图（JPEG）在 BlobStore 中的 SHA-256，由 ThumbnailService 在后台生成
+    @Column(length = 64)
+    private String thumbnailHash;
+
+    // 按图块保存的快照拼成的整张 PNG 在 BlobStore 中的 SHA-256，第一次请求 /snapshot 时生成；同一清单的快照共用
+    @Column(length = 64)
+    private String assembledHash;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public void setRoom(Room room) {
+        this.room = room;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getManifestHash() {
+        return manifestHash;
+    }
+
+    public void setManifestHash(String manifestHash) {
+        this.manifestHash = manifestHash;
+    }
+
+    public boolean isTiled() {
+        return manifestHash != null;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public Long getStoredBytes() {
+        return storedBytes;
+    }
+
+    public void setStoredBytes(Long storedBytes) {
+        this.storedBytes = storedBytes;
+    }
+
+    public Long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void setSequenceNumber(Long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getThumbnailHash() {
+        return thumbnailHash;
+    }
+
+    public void setThumbnailHash(String thumbnailHash) {
+        this.thumbnailHash = thumbnailHash;
+    }
+
+    public String getAssembledHash() {
+        return assembledHash;
+    }
+
+    public void setAssembledHash(String assembledHash) {
+        this.assembledHash = assembledHash;
+    }
+}
@@ -0,0 +1,197 @@
+package com.whiteboard.render;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 用 Java2D 在服务端重放画布的像素层，规则与前端 app.js 的 drawPath / drawRectangle / drawCircle / drawLine / drawText 一致
+ * 带 objectId 的对象在前端单独的对象层上绘制，不由这里渲染
+ */
+public class CanvasRenderer {
+    private static final Map<String, Color> NAMED_COLORS = Map.of(
+        "black", Color.BLACK, "white", Color.WHITE, "red", Color.RED, "green", new Color(0, 128, 0),
+        "blue", Color.BLUE, "yellow", Color.YELLOW, "orange", new Color(255, 165, 0), "purple", new Color(128, 0, 128),
+        "gray", Color.GRAY, "transparent", new Color(0, 0, 0, 0));
+
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private long applied;
+
+    public CanvasRenderer(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    /**
+     * 在已有图片（例如上一个检查点）上继续绘制
+     */
+    public CanvasRenderer(BufferedImage base) {
+        if (base.getType() == BufferedImage.TYPE_INT_ARGB) {
+            this.image = base;
+        } else {
+            this.image = new BufferedImage(base.getWidth(), base.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D copy = image.createGraphics();
+            copy.drawImage(base, 0, 0, null);
+            copy.dispose();
+        }
+        this.graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+    }
+
+    /**
+     * 应用一个像素操作；数据不完整或类型未知时忽略
+     */
+    public void apply(String type, JsonNode data) {
+        if ("clear".equals(type)) {
+            graphics.setComposite(AlphaComposite.Clear);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            applied++;
+            return;
+        }
+        if (data == null || !data.isObject()) {
+            return;
+        }
+        graphics.setComposite(AlphaComposite.SrcOver);
+        switch (type) {
+            case "pen":
+            case "eraser":
+                drawPath(data, "eraser".equals(type));
+                break;
+            case "rectangle": {
+                double x = data.path("x").asDouble();
+                double y = data.path("y").asDouble();
+                double w = data.path("width").asDouble();
+                double h = data.path("height").asDouble();
+                stroke(new Rectangle2D.Double(Math.min(x, x + w), Math.min(y, y + h), Math.abs(w), Math.abs(h)), data, 1);
+                break;
+            }
+            case "circle": {
+                double r = Math.abs(data.path("radius").asDouble());
+                stroke(new Ellipse2D.Double(data.path("x").asDouble() - r, data.path("y").asDouble() - r, 2 * r, 2 * r), data, 1);
+                break;
+            }
+            case "line":
+                stroke(new Line2D.Double(data.path("x1").asDouble(), data.path("y1").asDouble(),
+                    data.path("x2").asDouble(), data.path("y2").asDouble()), data, 1);
+                break;
+            case "text":
+                drawText(data);
+                break;
+            default:
+                return;
+        }
+        applied++;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * 实际绘制的操作数
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    public void dispose() {
+        graphics.dispose();
+    }
+
+    private void drawPath(JsonNode data, boolean eraser) {
+        JsonNode points = data.path("points");
+        if (!points.isArray() || points.size() < 2) {
+            return;
+        }
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(points.get(0).path("x").asDouble(), points.get(0).path("y").asDouble());
+        for (int i = 1; i < points.size(); i++) {
+            path.lineTo(points.get(i).path("x").asDouble(), points.get(i).path("y").asDouble());
+        }
+        if (eraser) {
+            // 与前端的 destination-out 相同：擦除为透明
+            graphics.setComposite(AlphaComposite.DstOut);
+            graphics.setColor(Color.WHITE);
+        } else {
+            graphics.setColor(parseColor(data.path("color").asText("#000000")));
+        }
+        graphics.setStroke(new BasicStroke((float) lineWidth(data, 2), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        graphics.draw(path);
+    }
+
+    private void stroke(Shape shape, JsonNode data, double defaultWidth) {
+        graphics.setColor(parseColor(data.path("color").asText("#000000")));
+        graphics.setStroke(new BasicStroke((float) lineWidth(data, defaultWidth), BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+        graphics.draw(shape);
+    }
+
+    private void drawText(JsonNode data) {
+        String text = data.path("text").asText("");
+        if (text.isEmpty()) {
+            return;
+        }
+        int fontSize = data.path("fontSize").asInt(16);
+        graphics.setColor(parseColor(data.path("color").asText("#000000")));
+        graphics.setFont(new Font("Arial", Font.PLAIN, fontSize > 0 ? fontSize : 16));
+        // 与 canvas 的 fillText 一样，y 是基线
+        graphics.drawString(text, (float) data.path("x").asDouble(), (float) data.path("y").asDouble());
+    }
+
+    private static double lineWidth(JsonNode data, double defaultWidth) {
+        double width = data.path("lineWidth").asDouble(0);
+        return width > 0 ? width : defaultWidth;
+    }
+
+    /**
+     * 支持 #rgb、#rrggbb、#rrggbbaa、rgb()/rgba() 和常用颜色名，无法识别时为黑色
+     */
+    static Color parseColor(String value) {
+        String color = value.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (color.startsWith("#")) {
+                String hex = color.substring(1);
+                if (hex.length() == 3) {
+                    hex = "" + hex.charAt(0) + hex.charAt(0) + hex.charAt(1) + hex.charAt(1) + hex.charAt(2) + hex.charAt(2);
+                }
+                if (hex.length() == 6) {
+                    return new Color(Integer.parseInt(hex, 16));
+                }
+                if (hex.length() == 8) {
+                    long rgba = Long.parseLong(hex, 16);
+                    return new Color((int) (rgba >> 24) & 0xFF, (int) (rgba >> 16) & 0xFF, (int) (rgba >> 8) & 0xFF, (int) rgba & 0xFF);
+                }
+            } else if (color.startsWith("rgb")) {
+                String[] parts = color.substring(color.indexOf('(') + 1, color.lastIndexOf(')')).split(",");
+                int r = clamp(Double.parseDouble(parts[0].trim()));
+                int g = clamp(Double.parseDouble(parts[1].trim()));
+                int b = clamp(Double.parseDouble(parts[2].trim()));
+                int a = parts.length > 3 ? clamp(Double.parseDouble(parts[3].trim()) * 255) : 255;
+                return new Color(r, g, b, a);
+            } else if (NAMED_COLORS.containsKey(color)) {
+                return NAMED_COLORS.get(color);
+            }
+        } catch (RuntimeException ignored) {
+            // 按黑色处理
+        }
+        return Color.BLACK;
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+}
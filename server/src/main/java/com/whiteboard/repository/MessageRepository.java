@@ -0,0 +1,32 @@
+package com.whiteboard.repository;
+
+import com.whiteboard.dto.ChatHistoryEntry;
+import com.whiteboard.model.Message;
+import com.whiteboard.model.Room;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MessageRepository extends JpaRepository<Message, Long> {
+    List<Message> findByRoomOrderByTimestampAsc(Room room);
+
+    // 按 (room_id, id) 倒序的键集分页，before 为上一页最小的 id
+    @Query("SELECT new com.whiteboard.dto.ChatHistoryEntry(m.id, COALESCE(u.originalUsername, u.username), m.content, m.timestamp) " +
+           "FROM Message m JOIN m.user u WHERE m.room = :room AND m.id < :before ORDER BY m.id DESC")
+    List<ChatHistoryEntry> findHistoryPage(@Param("room") Room room, @Param("before") Long before, Pageable pageable);
+
+    // 搜索索引从数据库补齐：按 id 正序取 after 之后的消息
+    @Query("SELECT new com.whiteboard.dto.ChatHistoryEntry(m.id, COALESCE(u.originalUsername, u.username), m.content, m.timestamp) " +
+           "FROM Message m JOIN m.user u WHERE m.room = :room AND m.id > :after ORDER BY m.id ASC")
+    List<ChatHistoryEntry> findEntriesAfter(@Param("room") Room room, @Param("after") Long after, Pageable pageable);
+
+    @Query("SELECT new com.whiteboard.dto.ChatHistoryEntry(m.id, COALESCE(u.originalUsername, u.username), m.content, m.timestamp) " +
+           "FROM Message m JOIN m.user u WHERE m.room = :room AND m.id IN :ids")
+    List<ChatHistoryEntry> findEntriesByIds(@Param("room") Room room, @Param("ids") List<Long> ids);
+}
+
@@ -0,0 +1,38 @@
+package com.whiteboard.repository;
+
+import com.whiteboard.model.Operation;
+import com.whiteboard.model.Room;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OperationRepository extends JpaRepository<Operation, Long> {
+    List<Operation> findByRoomOrderBySequenceNumberAsc(Room room);
+    Operation findTopByRoomOrderBySequenceNumberDesc(Room room);
+    Operation findTopByRoomOrderBySequenceNumberAsc(Room room);
+    List<Operation> findByRoomAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(Room room, Long sequenceNumber);
+    List<Operation> findByRoomAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(Room room, Long sequenceNumber, Pageable pageable);
+    List<Operation> findByRoomAndSequenceNumberBetweenOrderBySequenceNumberAsc(Room room, Long fromSequence, Long toSequence);
+    List<Operation> findByRoomAndSequenceNumberBetweenAndObjectIdIsNullOrderBySequenceNumberAsc(Room room, Long fromSequence, Long toSequence);
+    List<Operation> findByRoomAndSequenceNumberBetweenAndObjectIdIsNotNullOrderBySequenceNumberAsc(Room room, Long fromSequence, Long toSequence);
+    Operation findTopByRoomAndOperationTypeOrderBySequenceNumberDesc(Room room, String operationType);
+    long countByRoomAndSequenceNumberGreaterThan(Room room, Long sequenceNumber);
+
+    // 日志压缩：被 clear 或 delete 取代的操作改写为 noop，保留序列号以免客户端出现缺口
+    @Modifying
+    @Query("UPDATE Operation o SET o.operationType = 'noop', o.operationData = NULL " +
+           "WHERE o.room.id = :roomPk AND o.sequenceNumber < :sequence AND o.operationType <> 'noop'")
+    int compactBefore(@Param("roomPk") Long roomPk, @Param("sequence") Long sequence);
+
+    @Modifying
+    @Query("UPDATE Operation o SET o.operationType = 'noop', o.operationData = NULL " +
+           "WHERE o.room.id = :roomPk AND o.objectId IN :objectIds AND o.operationType NOT IN ('noop', 'delete')")
+    int compactObjects(@Param("roomPk") Long roomPk, @Param("objectIds") Collection<String> objectIds);
+}
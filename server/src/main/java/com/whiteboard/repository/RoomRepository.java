@@ -0,0 +1,38 @@
+package com.whiteboard.repository;
+
+import com.whiteboard.dto.RoomSummary;
+import com.whiteboard.model.Room;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RoomRepository extends JpaRepository<Room, Long> {
+    Optional<Room> findByRoomId(String roomId);
+    boolean existsByRoomId(String roomId);
+
+    // 房间列表按 (lastUpdated, id) 倒序的键集分页；prefix 为 null 时不按名称过滤，否则是已转义的 LIKE 前缀
+    @Query("SELECT new com.whiteboard.dto.RoomSummary(r.id, r.roomId, r.name, COALESCE(o.originalUsername, o.username), r.lastUpdated) " +
+           "FROM Room r LEFT JOIN r.owner o WHERE (:prefix IS NULL OR r.name LIKE :prefix ESCAPE '!') " +
+           "ORDER BY r.lastUpdated DESC, r.id DESC")
+    List<RoomSummary> findSummaries(@Param("prefix") String prefix, Pageable pageable);
+
+    @Query("SELECT new com.whiteboard.dto.RoomSummary(r.id, r.roomId, r.name, COALESCE(o.originalUsername, o.username), r.lastUpdated) " +
+           "FROM Room r LEFT JOIN r.owner o WHERE (:prefix IS NULL OR r.name LIKE :prefix ESCAPE '!') " +
+           "AND (r.lastUpdated < :lastUpdated OR (r.lastUpdated = :lastUpdated AND r.id < :id)) " +
+           "ORDER BY r.lastUpdated DESC, r.id DESC")
+    List<RoomSummary> findSummariesAfter(@Param("prefix") String prefix, @Param("lastUpdated") LocalDateTime lastUpdated,
+                                         @Param("id") Long id, Pageable pageable);
+
+    // 旧数据可能没有 lastUpdated，补上创建时间，键集分页要求它非空
+    @Modifying
+    @Query("UPDATE Room r SET r.lastUpdated = COALESCE(r.createdAt, CURRENT_TIMESTAMP) WHERE r.lastUpdated IS NULL")
+    int fillMissingLastUpdated();
+}
@@ -0,0 +1,25 @@
+package com.whiteboard.repository;
+
+import com.whiteboard.dto.SnapshotStorageStats;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.Snapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SnapshotRepository extends JpaRepository<Snapshot, Long> {
+    List<Snapshot> findByRoomOrderByCreatedAtDesc(Room room);
+    Optional<Snapshot> findTopByRoomOrderByCreatedAtDesc(Room room);
+    Optional<Snapshot> findTopByRoomAndSequenceNumberIsNotNullOrderBySequenceNumberDesc(Room room);
+
+    // 旧快照没有 storedBytes，按整张图片计算
+    @Query("SELECT new com.whiteboard.dto.SnapshotStorageStats(COUNT(s), SUM(s.sizeBytes), SUM(COALESCE(s.storedBytes, s.sizeBytes))) " +
+           "FROM Snapshot s WHERE s.room = :room")
+    SnapshotStorageStats getStorageStats(@Param("room") Room room);
+}
+
@@ -0,0 +1,53 @@
+package com.whiteboard.search;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 倒排表压缩：升序的消息 id 先做差分，再按 7 位一组的变长整数编码
+ * 同一房间的消息 id 基本连续，差值通常只占 1 个字节
+ */
+public final class PostingsCodec {
+
+    private PostingsCodec() {}
+
+    /**
+     * @param ids 已排序且无重复的 id，取前 count 个
+     */
+    public static byte[] encode(long[] ids, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count + 8);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = ids[i] - previous;
+            previous = ids[i];
+            while ((delta & ~0x7FL) != 0) {
+                out.write((int) ((delta & 0x7F) | 0x80));
+                delta >>>= 7;
+            }
+            out.write((int) delta);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 从 buffer 的 offset 处解码 count 个 id；使用绝对位置读取，多个线程可以共享同一个 buffer
+     */
+    public static long[] decode(ByteBuffer buffer, int offset, int count) {
+        long[] ids = new long[count];
+        long previous = 0;
+        int position = offset;
+        for (int i = 0; i < count; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+}
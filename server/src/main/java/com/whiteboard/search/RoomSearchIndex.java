@@ -0,0 +1,459 @@
+package com.whiteboard.search;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 单个房间的增量倒排索引
+ * 新消息先进入内存缓冲区，flush 时写成一个不可变的段文件；段按大小分级，
+ * 段号相邻的同级段达到 mergeFactor 个时合并成一个更大的段（与 LSM 树的分级合并相同）
+ * 查询时分别在缓冲区和每个段内求交集，再按 id 倒序合并结果
+ */
+public class RoomSearchIndex {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("seg-(\\d{8})\\.idx");
+
+    private final Path directory;
+    private final int maxPrefixExpansions;
+    // flush 和 merge 都会写段文件，互相串行
+    private final Object ioLock = new Object();
+    private int nextNumber;
+
+    // 尚未写入段文件的文档；flushing 是正在写出的上一批，写完之前查询仍然能看到
+    private MemoryBuffer buffer = new MemoryBuffer();
+    private MemoryBuffer flushing;
+    // 按段号升序；整体替换，读取时不加锁
+    private volatile List<Segment> segments;
+    private volatile long maxIndexedId;
+
+    public RoomSearchIndex(Path directory, int maxPrefixExpansions) throws IOException {
+        this.directory = directory;
+        this.maxPrefixExpansions = maxPrefixExpansions;
+        Files.createDirectories(directory);
+
+        List<Segment> opened = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher matcher = SEGMENT_NAME.matcher(name);
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (matcher.matches()) {
+                    opened.add(Segment.open(file, Integer.parseInt(matcher.group(1))));
+                }
+            }
+        }
+        // 合并后的新段已经写好、旧段还没删除时进程退出：删除被新段覆盖的旧段
+        List<Segment> live = new ArrayList<>();
+        for (Segment segment : opened) {
+            if (isCovered(segment, opened)) {
+                Files.deleteIfExists(segment.getFile());
+            } else {
+                live.add(segment);
+            }
+        }
+        live.sort(Comparator.comparingInt(Segment::getNumber));
+        this.segments = Collections.unmodifiableList(live);
+        for (Segment segment : live) {
+            nextNumber = Math.max(nextNumber, segment.getNumber());
+            maxIndexedId = Math.max(maxIndexedId, segment.getMaxDocId());
+        }
+        nextNumber++;
+    }
+
+    public void add(long id, String content) {
+        Set<String> tokens = Tokenizer.tokenize(content);
+        synchronized (this) {
+            buffer.add(id, tokens);
+            if (id > maxIndexedId) {
+                maxIndexedId = id;
+            }
+        }
+    }
+
+    /**
+     * 已经进入索引（内存或段文件）的最大消息 id，更大的消息需要从数据库补齐
+     */
+    public long getMaxIndexedId() {
+        return maxIndexedId;
+    }
+
+    public synchronized int getBufferedDocs() {
+        return buffer.docCount;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getDocCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.getDocCount();
+        }
+        synchronized (this) {
+            return count + buffer.docCount + (flushing != null ? flushing.docCount : 0);
+        }
+    }
+
+    public long getSizeBytes() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.getSizeBytes();
+        }
+        return size;
+    }
+
+    /**
+     * 索引占用堆内存的粗略估计：各段的词典加上尚未写出的缓冲区
+     */
+    public long estimateHeapBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.estimateHeapBytes();
+        }
+        synchronized (this) {
+            bytes += buffer.estimateBytes();
+            if (flushing != null) {
+                bytes += flushing.estimateBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 把内存缓冲区写成一个新段
+     * @return 缓冲区为空时返回 false
+     */
+    public boolean flush() throws IOException {
+        synchronized (ioLock) {
+            MemoryBuffer toWrite;
+            synchronized (this) {
+                if (buffer.docCount == 0) {
+                    return false;
+                }
+                toWrite = buffer;
+                flushing = buffer;
+                buffer = new MemoryBuffer();
+            }
+            Segment segment;
+            try {
+                int number = nextNumber++;
+                Path file = segmentFile(number);
+                try (SegmentWriter writer = new SegmentWriter(file, 0, 0)) {
+                    for (Map.Entry<String, GrowableIds> entry : toWrite.postings.entrySet()) {
+                        long[] ids = entry.getValue().sortedUnique();
+                        writer.add(entry.getKey(), ids, ids.length);
+                    }
+                    writer.finish(toWrite.maxDocId, toWrite.docCount);
+                }
+                segment = Segment.open(file, number);
+            } catch (IOException | RuntimeException e) {
+                // 写出失败时把文档放回缓冲区，下次再试
+                synchronized (this) {
+                    MemoryBuffer restored = new MemoryBuffer();
+                    restored.absorb(toWrite);
+                    restored.absorb(buffer);
+                    buffer = restored;
+                    flushing = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                List<Segment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = Collections.unmodifiableList(updated);
+                flushing = null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 分级合并：文档数在 [base * factor^k, base * factor^(k+1)) 的段属于第 k 级，
+     * 从最新的段往前找，同一级连续 mergeFactor 个段时合并它们；每个文档只会被重写 O(log n) 次
+     * 合并只选段号连续的一段，崩溃恢复时才能用 [coversFrom, coversThrough] 判断哪些旧段已被合并
+     * @return 没有需要合并的段时返回 false
+     */
+    public boolean maybeMerge(int mergeFactor, int levelBase) throws IOException {
+        synchronized (ioLock) {
+            List<Segment> current = segments;
+            int runEnd = current.size();
+            int runStart = runEnd;
+            int runLevel = -1;
+            for (int i = current.size() - 1; i >= 0; i--) {
+                int level = level(current.get(i).getDocCount(), mergeFactor, levelBase);
+                if (level != runLevel) {
+                    runLevel = level;
+                    runEnd = i + 1;
+                }
+                runStart = i;
+                if (runEnd - runStart >= mergeFactor) {
+                    break;
+                }
+            }
+            if (runEnd - runStart < mergeFactor) {
+                return false;
+            }
+            merge(current.subList(runStart, runEnd));
+            return true;
+        }
+    }
+
+    /**
+     * 把所有段合并成一个
+     */
+    public void forceMerge() throws IOException {
+        synchronized (ioLock) {
+            if (segments.size() > 1) {
+                merge(segments);
+            }
+        }
+    }
+
+    public SearchHits search(List<String> terms, long before, int limit) {
+        if (terms.isEmpty() || limit <= 0) {
+            return new SearchHits(Collections.emptyList(), false);
+        }
+        List<long[]> matches = new ArrayList<>();
+        MemoryBuffer pending;
+        List<Segment> current;
+        synchronized (this) {
+            matches.add(matchAll(terms, buffer::lookup));
+            pending = flushing;
+            current = segments;
+        }
+        if (pending != null) {
+            matches.add(matchAll(terms, pending::lookup));
+        }
+        long[] candidates = newest(matches, before, limit + 1, SortedIds.EMPTY);
+
+        // 从最新的段往前查；已有 limit + 1 条结果且都比下一个段的最大 id 新时，更早的段不可能进入这一页
+        List<Segment> newestFirst = new ArrayList<>(current);
+        newestFirst.sort(Comparator.comparingLong(Segment::getMaxDocId).reversed());
+        for (Segment segment : newestFirst) {
+            if (candidates.length > limit && candidates[0] > segment.getMaxDocId()) {
+                break;
+            }
+            matches.clear();
+            matches.add(matchAll(terms, term -> lookup(segment, term)));
+            candidates = newest(matches, before, limit + 1, candidates);
+        }
+
+        List<Long> result = new ArrayList<>(Math.min(limit, candidates.length));
+        for (int i = candidates.length - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(candidates[i]);
+        }
+        return new SearchHits(result, candidates.length > limit);
+    }
+
+    /**
+     * 合并各来源中小于 before 的 id，只保留最大的 keep 个，升序返回
+     */
+    private static long[] newest(List<long[]> matches, long before, int keep, long[] current) {
+        List<long[]> parts = new ArrayList<>(matches.size() + 1);
+        parts.add(current);
+        for (long[] ids : matches) {
+            int end = Arrays.binarySearch(ids, before);
+            end = end < 0 ? -end - 1 : end;
+            int start = Math.max(0, end - keep);
+            if (end > start) {
+                parts.add(Arrays.copyOfRange(ids, start, end));
+            }
+        }
+        long[] merged = SortedIds.union(parts);
+        return merged.length > keep ? Arrays.copyOfRange(merged, merged.length - keep, merged.length) : merged;
+    }
+
+    private void merge(List<Segment> sources) throws IOException {
+        int number = nextNumber++;
+        int coversFrom = sources.get(0).getNumber();
+        int coversThrough = sources.get(sources.size() - 1).getNumber();
+        Path file = segmentFile(number);
+        long maxDocId = 0;
+        int docCount = 0;
+        for (Segment source : sources) {
+            maxDocId = Math.max(maxDocId, source.getMaxDocId());
+            docCount += source.getDocCount();
+        }
+
+        // 多路归并各段的词典，同一个词的倒排表取并集
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(
+            (a, b) -> sources.get(a[0]).term(a[1]).compareTo(sources.get(b[0]).term(b[1])));
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).termCount() > 0) {
+                cursors.add(new int[] {i, 0});
+            }
+        }
+        try (SegmentWriter writer = new SegmentWriter(file, coversFrom, coversThrough)) {
+            List<long[]> postings = new ArrayList<>();
+            while (!cursors.isEmpty()) {
+                int[] head = cursors.poll();
+                String term = sources.get(head[0]).term(head[1]);
+                postings.clear();
+                postings.add(sources.get(head[0]).postings(head[1]));
+                advance(cursors, sources, head);
+                while (!cursors.isEmpty() && sources.get(cursors.peek()[0]).term(cursors.peek()[1]).equals(term)) {
+                    int[] same = cursors.poll();
+                    postings.add(sources.get(same[0]).postings(same[1]));
+                    advance(cursors, sources, same);
+                }
+                long[] ids = SortedIds.union(postings);
+                writer.add(term, ids, ids.length);
+            }
+            writer.finish(maxDocId, docCount);
+        }
+        Segment merged = Segment.open(file, number);
+
+        synchronized (this) {
+            // 合并出的段号最大，放在最后，保持列表按段号有序
+            List<Segment> updated = new ArrayList<>(segments);
+            updated.removeAll(sources);
+            updated.add(merged);
+            segments = Collections.unmodifiableList(updated);
+        }
+        // 正在读旧段的查询仍持有内存映射，删除文件不影响它们
+        for (Segment source : sources) {
+            Files.deleteIfExists(source.getFile());
+        }
+    }
+
+    private static void advance(PriorityQueue<int[]> cursors, List<Segment> sources, int[] cursor) {
+        if (++cursor[1] < sources.get(cursor[0]).termCount()) {
+            cursors.add(cursor);
+        }
+    }
+
+    private static int level(int docCount, int mergeFactor, int levelBase) {
+        int level = 0;
+        long bound = Math.max(1, levelBase);
+        while (docCount >= bound * mergeFactor) {
+            bound *= mergeFactor;
+            level++;
+        }
+        return level;
+    }
+
+    private static boolean isCovered(Segment segment, List<Segment> all) {
+        for (Segment other : all) {
+            if (other != segment && other.getCoversThrough() > 0
+                && segment.getNumber() >= other.getCoversFrom() && segment.getNumber() <= other.getCoversThrough()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("seg-%08d.idx", number));
+    }
+
+    /**
+     * 所有词的倒排表求交集；词以 * 结尾时取所有前缀匹配的词的并集
+     */
+    private static long[] matchAll(List<String> terms, Function<String, long[]> lookup) {
+        long[] result = null;
+        for (String term : terms) {
+            long[] ids = lookup.apply(term);
+            result = result == null ? ids : SortedIds.intersect(result, ids);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private long[] lookup(Segment segment, String term) {
+        if (term.endsWith("*")) {
+            int[] range = segment.prefixRange(term.substring(0, term.length() - 1));
+            int to = Math.min(range[1], range[0] + maxPrefixExpansions);
+            List<long[]> lists = new ArrayList<>(to - range[0]);
+            for (int i = range[0]; i < to; i++) {
+                lists.add(segment.postings(i));
+            }
+            return SortedIds.union(lists);
+        }
+        int index = segment.find(term);
+        return index < 0 ? SortedIds.EMPTY : segment.postings(index);
+    }
+
+    private class MemoryBuffer {
+        private final TreeMap<String, GrowableIds> postings = new TreeMap<>();
+        private int docCount;
+        private long maxDocId;
+
+        private void add(long id, Set<String> tokens) {
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, k -> new GrowableIds()).add(id);
+            }
+            docCount++;
+            maxDocId = Math.max(maxDocId, id);
+        }
+
+        private void absorb(MemoryBuffer other) {
+            for (Map.Entry<String, GrowableIds> entry : other.postings.entrySet()) {
+                GrowableIds ids = postings.computeIfAbsent(entry.getKey(), k -> new GrowableIds());
+                for (int i = 0; i < entry.getValue().size; i++) {
+                    ids.add(entry.getValue().ids[i]);
+                }
+            }
+            docCount += other.docCount;
+            maxDocId = Math.max(maxDocId, other.maxDocId);
+        }
+
+        private long estimateBytes() {
+            long bytes = 64;
+            for (Map.Entry<String, GrowableIds> entry : postings.entrySet()) {
+                // TreeMap 条目 + 词 + GrowableIds 及其数组
+                bytes += 40 + 56 + entry.getKey().length() + 32 + 8L * entry.getValue().ids.length;
+            }
+            return bytes;
+        }
+
+        private long[] lookup(String term) {
+            if (term.endsWith("*")) {
+                String prefix = term.substring(0, term.length() - 1);
+                List<long[]> lists = new ArrayList<>();
+                for (GrowableIds ids : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                    if (lists.size() >= maxPrefixExpansions) {
+                        break;
+                    }
+                    lists.add(ids.sortedUnique());
+                }
+                return SortedIds.union(lists);
+            }
+            GrowableIds ids = postings.get(term);
+            return ids == null ? SortedIds.EMPTY : ids.sortedUnique();
+        }
+    }
+
+    private static class GrowableIds {
+        private long[] ids = new long[4];
+        private int size;
+
+        private void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        // 批量写入线程和补齐线程可能乱序添加，也可能重复添加同一条消息
+        private long[] sortedUnique() {
+            return SortedIds.sortUnique(ids, size);
+        }
+    }
+}
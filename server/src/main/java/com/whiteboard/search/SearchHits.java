@@ -0,0 +1,24 @@
+package com.whiteboard.search;
+
+import java.util.List;
+
+/**
+ * 一次查询命中的消息 id，按 id 倒序（最新的在前）
+ */
+public class SearchHits {
+    private final List<Long> ids;
+    private final boolean hasMore;
+
+    public SearchHits(List<Long> ids, boolean hasMore) {
+        this.ids = ids;
+        this.hasMore = hasMore;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
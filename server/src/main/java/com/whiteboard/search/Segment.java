@@ -0,0 +1,157 @@
+package com.whiteboard.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 不可变的索引段：文件头 + 压缩倒排表 + 按字典序排列的词典
+ * 倒排表通过内存映射读取，只有词典常驻堆内
+ */
+final class Segment {
+    static final int MAGIC = 0x57425349;
+    static final int VERSION = 1;
+    // magic, version, maxDocId, docCount, coversFrom, coversThrough, dictionaryOffset
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 8;
+
+    private final int number;
+    private final Path file;
+    private final int coversFrom;
+    private final int coversThrough;
+    private final long maxDocId;
+    private final int docCount;
+    private final long sizeBytes;
+    private final MappedByteBuffer data;
+    private final String[] terms;
+    private final int[] offsets;
+    private final int[] docFreqs;
+
+    private Segment(int number, Path file, int coversFrom, int coversThrough, long maxDocId, int docCount, long sizeBytes,
+                    MappedByteBuffer data, String[] terms, int[] offsets, int[] docFreqs) {
+        this.number = number;
+        this.file = file;
+        this.coversFrom = coversFrom;
+        this.coversThrough = coversThrough;
+        this.maxDocId = maxDocId;
+        this.docCount = docCount;
+        this.sizeBytes = sizeBytes;
+        this.data = data;
+        this.terms = terms;
+        this.offsets = offsets;
+        this.docFreqs = docFreqs;
+    }
+
+    static Segment open(Path file, int number) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Truncated segment: " + file);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("Not a search segment: " + file);
+            }
+            long maxDocId = data.getLong(8);
+            int docCount = data.getInt(16);
+            int coversFrom = data.getInt(20);
+            int coversThrough = data.getInt(24);
+            long dictionaryOffset = data.getLong(28);
+
+            ByteBuffer dictionary = data.duplicate();
+            dictionary.position((int) dictionaryOffset);
+            byte[] bytes = new byte[dictionary.remaining()];
+            dictionary.get(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int termCount = in.readInt();
+            String[] terms = new String[termCount];
+            int[] offsets = new int[termCount];
+            int[] docFreqs = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = in.readUTF();
+                offsets[i] = in.readInt();
+                docFreqs[i] = in.readInt();
+            }
+            return new Segment(number, file, coversFrom, coversThrough, maxDocId, docCount, size, data, terms, offsets, docFreqs);
+        }
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int getCoversFrom() {
+        return coversFrom;
+    }
+
+    int getCoversThrough() {
+        return coversThrough;
+    }
+
+    long getMaxDocId() {
+        return maxDocId;
+    }
+
+    int getDocCount() {
+        return docCount;
+    }
+
+    long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * 词典常驻堆内存（每个词的字符串和两个 int），倒排表在映射的文件中，不计入
+     */
+    long estimateHeapBytes() {
+        long bytes = 128;
+        for (String term : terms) {
+            bytes += 56 + term.length() + 8;
+        }
+        return bytes;
+    }
+
+    int termCount() {
+        return terms.length;
+    }
+
+    String term(int index) {
+        return terms[index];
+    }
+
+    int docFreq(int index) {
+        return docFreqs[index];
+    }
+
+    /**
+     * @return 词在词典中的下标，不存在时返回负数
+     */
+    int find(String term) {
+        return Arrays.binarySearch(terms, term);
+    }
+
+    /**
+     * 以 prefix 开头的词在词典中的下标区间 [from, to)
+     */
+    int[] prefixRange(String prefix) {
+        return new int[] {insertionPoint(prefix), insertionPoint(prefix + Character.MAX_VALUE)};
+    }
+
+    private int insertionPoint(String key) {
+        int index = Arrays.binarySearch(terms, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    long[] postings(int index) {
+        return PostingsCodec.decode(data, offsets[index], docFreqs[index]);
+    }
+}
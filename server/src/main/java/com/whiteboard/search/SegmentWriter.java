@@ -0,0 +1,102 @@
+package com.whiteboard.search;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 顺序写出一个段文件；词必须按升序添加
+ * 先写到 .tmp 文件，finish 时补写文件头并原子重命名，崩溃时不会留下半个段
+ */
+final class SegmentWriter implements Closeable {
+    private final Path file;
+    private final Path tempFile;
+    private final int coversFrom;
+    private final int coversThrough;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final List<String> terms = new ArrayList<>();
+    private final List<int[]> entries = new ArrayList<>();
+    private long position = Segment.HEADER_SIZE;
+    private String lastTerm;
+    private boolean finished;
+
+    /**
+     * 合并产生的段记录被合并的段号区间 [coversFrom, coversThrough]，打开目录时删除区间内残留的旧段；新写出的段传 0, 0
+     */
+    SegmentWriter(Path file, int coversFrom, int coversThrough) throws IOException {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.coversFrom = coversFrom;
+        this.coversThrough = coversThrough;
+        this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        channel.position(Segment.HEADER_SIZE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    /**
+     * @param ids 已排序且无重复的 id，取前 count 个
+     */
+    void add(String term, long[] ids, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (lastTerm != null && lastTerm.compareTo(term) >= 0) {
+            throw new IllegalStateException("Terms must be added in ascending order: " + lastTerm + " >= " + term);
+        }
+        byte[] postings = PostingsCodec.encode(ids, count);
+        if (position + postings.length > Integer.MAX_VALUE) {
+            throw new IOException("Segment too large: " + file);
+        }
+        terms.add(term);
+        entries.add(new int[] {(int) position, count});
+        out.write(postings);
+        position += postings.length;
+        lastTerm = term;
+    }
+
+    void finish(long maxDocId, int docCount) throws IOException {
+        long dictionaryOffset = position;
+        out.writeInt(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            out.writeUTF(terms.get(i));
+            out.writeInt(entries.get(i)[0]);
+            out.writeInt(entries.get(i)[1]);
+        }
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_SIZE);
+        header.putInt(Segment.MAGIC);
+        header.putInt(Segment.VERSION);
+        header.putLong(maxDocId);
+        header.putInt(docCount);
+        header.putInt(coversFrom);
+        header.putInt(coversThrough);
+        header.putLong(dictionaryOffset);
+        header.flip();
+        channel.write(header, 0);
+        channel.force(true);
+        channel.close();
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
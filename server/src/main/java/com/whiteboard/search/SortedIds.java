@@ -0,0 +1,88 @@
+package com.whiteboard.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 升序 id 数组的集合运算
+ */
+final class SortedIds {
+    static final long[] EMPTY = new long[0];
+
+    // 两个数组长度相差超过这个倍数时，改为用短数组在长数组中二分查找
+    private static final int GALLOP_RATIO = 32;
+
+    private SortedIds() {}
+
+    static long[] sortUnique(long[] ids, int count) {
+        long[] sorted = Arrays.copyOf(ids, count);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    static long[] union(List<long[]> lists) {
+        if (lists.isEmpty()) {
+            return EMPTY;
+        }
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int total = 0;
+        for (long[] ids : lists) {
+            total += ids.length;
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] ids : lists) {
+            System.arraycopy(ids, 0, all, n, ids.length);
+            n += ids.length;
+        }
+        return sortUnique(all, total);
+    }
+
+    static long[] intersect(long[] a, long[] b) {
+        if (a.length > b.length) {
+            long[] t = a;
+            a = b;
+            b = t;
+        }
+        long[] result = new long[a.length];
+        int n = 0;
+        if ((long) a.length * GALLOP_RATIO < b.length) {
+            int from = 0;
+            for (long id : a) {
+                int index = Arrays.binarySearch(b, from, b.length, id);
+                if (index >= 0) {
+                    result[n++] = id;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+                if (from >= b.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+}
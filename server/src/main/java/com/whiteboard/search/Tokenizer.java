@@ -0,0 +1,82 @@
+package com.whiteboard.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 聊天内容分词：连续的字母 / 数字为一个词并转小写；中日韩文字没有空格分隔，每个字单独作为一个词
+ */
+public final class Tokenizer {
+    public static final int MAX_TOKEN_LENGTH = 32;
+
+    private Tokenizer() {}
+
+    /**
+     * 文档分词，去重后按出现顺序返回
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text != null) {
+            scan(text, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * 查询分词；以 * 结尾的词作为前缀查询，保留末尾的 *
+     */
+    public static List<String> tokenizeQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        for (String part : query.trim().split("\\s+")) {
+            boolean prefix = part.endsWith("*");
+            Set<String> tokens = tokenize(prefix ? part.substring(0, part.length() - 1) : part);
+            int i = 0;
+            for (String token : tokens) {
+                // 只有最后一个词按前缀处理，例如 "whit*" 或 "白板*"
+                terms.add(prefix && ++i == tokens.size() ? token + "*" : token);
+            }
+        }
+        return terms;
+    }
+
+    private static void scan(String text, Set<String> tokens) {
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isIdeographic(cp)) {
+                emit(current, tokens);
+                tokens.add(new String(Character.toChars(cp)));
+            } else if (Character.isLetterOrDigit(cp)) {
+                if (current.length() < MAX_TOKEN_LENGTH) {
+                    current.appendCodePoint(cp);
+                }
+            } else {
+                emit(current, tokens);
+            }
+        }
+        emit(current, tokens);
+    }
+
+    private static void emit(StringBuilder current, Set<String> tokens) {
+        if (current.length() > 0) {
+            tokens.add(current.toString().toLowerCase(Locale.ROOT));
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isIdeographic(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+}
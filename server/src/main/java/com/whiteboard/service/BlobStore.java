@@ -0,0 +1,235 @@
+package com.whiteboard.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 按内容寻址的文件存储：文件名是内容的 SHA-256，相同内容只保存一份
+ * 写入时边读边算哈希，只占用一个固定大小的缓冲区；先写临时文件，再原子移动到 ab/cd/{hash}
+ */
+@Service
+public class BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${app.snapshots.store-dir:data/snapshots}")
+    private String storeDir;
+
+    private Path root;
+    private Path tempDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(storeDir).toAbsolutePath();
+        tempDir = root.resolve("tmp");
+        Files.createDirectories(tempDir);
+    }
+
+    /**
+     * 写入一个对象，超过 maxBytes 时中止并抛出 TooLargeException
+     */
+    public StoredBlob put(InputStream in, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(tempDir, "upload-", ".part");
+        long size = 0;
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new TooLargeException(maxBytes);
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            String hash = toHex(digest.digest());
+            Path target = path(hash);
+            if (Files.exists(target) && touch(hash)) {
+                return new StoredBlob(hash, size, false);
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return new StoredBlob(hash, size, true);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 以调用方给出的内容哈希写入一个小对象（例如按像素内容计算哈希的快照图块）；已存在时不重复写
+     * @return 新写入时返回 true
+     */
+    public boolean putAs(String hash, byte[] content) throws IOException {
+        Path target = path(hash);
+        if (Files.exists(target)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tempDir, "blob-", ".part");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(path(hash));
+    }
+
+    /**
+     * 更新修改时间：被新快照复用的对象不会被 sweep 当作过期的孤儿删除
+     * @return 对象不存在（例如刚被 sweep 删除）时返回 false
+     */
+    public boolean touch(String hash) throws IOException {
+        try {
+            Files.setLastModifiedTime(path(hash), FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 删除不在 referenced 中、且超过 graceMillis 没有写入或复用的对象
+     * 宽限期保护正在保存的快照：图块先于数据库记录写入
+     */
+    public SweepResult sweep(Set<String> referenced, long graceMillis) throws IOException {
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        long[] totals = new long[2];
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(file -> !file.startsWith(tempDir) && Files.isRegularFile(file))
+                .filter(file -> HASH.matcher(file.getFileName().toString()).matches())
+                .filter(file -> !referenced.contains(file.getFileName().toString()))
+                .forEach(file -> {
+                    try {
+                        if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                            long size = Files.size(file);
+                            if (Files.deleteIfExists(file)) {
+                                totals[0]++;
+                                totals[1] += size;
+                            }
+                        }
+                    } catch (IOException e) {
+                        log.warn("Failed to remove blob {}: {}", file.getFileName(), e.getMessage());
+                    }
+                });
+        }
+        return new SweepResult(totals[0], totals[1]);
+    }
+
+    public long size(String hash) throws IOException {
+        return Files.size(path(hash));
+    }
+
+    public boolean exists(String hash) {
+        return HASH.matcher(hash).matches() && Files.exists(path(hash));
+    }
+
+    /**
+     * 对象文件的路径；hash 必须是 64 位小写十六进制，防止路径穿越
+     */
+    public Path path(String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid content hash");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public boolean delete(String hash) throws IOException {
+        return Files.deleteIfExists(path(hash));
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class StoredBlob {
+        private final String hash;
+        private final long size;
+        private final boolean created;
+
+        private StoredBlob(String hash, long size, boolean created) {
+            this.hash = hash;
+            this.size = size;
+            this.created = created;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 相同内容已经存在时为 false
+         */
+        public boolean isCreated() {
+            return created;
+        }
+    }
+
+    public static class SweepResult {
+        private final long deleted;
+        private final long reclaimedBytes;
+
+        private SweepResult(long deleted, long reclaimedBytes) {
+            this.deleted = deleted;
+            this.reclaimedBytes = reclaimedBytes;
+        }
+
+        public long getDeleted() {
+            return deleted;
+        }
+
+        public long getReclaimedBytes() {
+            return reclaimedBytes;
+        }
+    }
+
+    public static class TooLargeException extends IOException {
+        public TooLargeException(long maxBytes) {
+            super("Content exceeds " + maxBytes + " bytes");
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.whiteboard.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 聊天消息的后台批量写入
+ * 广播不再等待数据库：消息进入有界队列，由单个写线程按批次 JDBC 插入并回填自增 id
+ * 队列满时在调用线程上同步写入，让发送方感受到数据库的背压
+ * 消息在写入前已经广播，整批失败时逐条重试，只丢弃本身写不进去的那几条
+ */
+@Service
+public class ChatBatchWriter implements RoomStateHolder {
+    private static final Logger log = LoggerFactory.getLogger(ChatBatchWriter.class);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO messages (room_id, user_id, content, timestamp) VALUES (?, ?, ?, ?)";
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private RoomVersionService roomVersionService;
+
+    @Value("${app.chat.write-queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.chat.write-batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.chat.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${app.chat.enqueue-timeout-ms:50}")
+    private long enqueueTimeoutMs;
+
+    private BlockingQueue<ChatRecord> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // 房间主键缓存，随房间休眠一起清除；用户主键由 UserService 的有界缓存提供
+    private final Map<String, Long> roomPks = new ConcurrentHashMap<>();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "chat-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 队列已满时等待 enqueue-timeout-ms，仍然满则在调用线程上直接写入
+     */
+    public void enqueue(ChatRecord record) {
+        try {
+            if (running && queue.offer(record, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        callerRuns.increment();
+        List<ChatRecord> single = new ArrayList<>(1);
+        single.add(record);
+        writeWithRetry(single);
+    }
+
+    /**
+     * 关闭时停止写线程并把队列中剩余的消息全部写入
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(flushIntervalMs * 10 + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<ChatRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            writeWithRetry(remaining.subList(i, Math.min(remaining.size(), i + batchSize)));
+        }
+        log.info("Chat writer stopped, flushed {} queued message(s) on shutdown", remaining.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("callerRuns", callerRuns.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    private void runWriter() {
+        List<ChatRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Chat writer error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeWithRetry(List<ChatRecord> records) {
+        List<Row> rows = resolve(records);
+        if (rows.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                insert(rows);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // 约束冲突重试也不会成功，直接逐条写入找出问题行
+                log.warn("Chat batch insert violated a constraint: {}", e.getMessage());
+                break;
+            } catch (RuntimeException e) {
+                log.warn("Chat batch insert failed (attempt {}/{}): {}", attempt, MAX_ATTEMPTS, e.getMessage());
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (rows.size() == 1) {
+            dropped.increment();
+            log.error("Dropping chat message room={} user={}", rows.get(0).record.getRoomId(), rows.get(0).record.getUsername());
+            return;
+        }
+        for (Row row : rows) {
+            try {
+                insert(List.of(row));
+            } catch (RuntimeException e) {
+                dropped.increment();
+                // 房间可能已被删除，缓存的主键不再可信
+                roomPks.remove(row.record.getRoomId());
+                log.error("Dropping chat message room={} user={}: {}", row.record.getRoomId(), row.record.getUsername(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 解析房间和用户主键；房间已不存在的消息在这里丢弃，不参与重试
+     */
+    private List<Row> resolve(List<ChatRecord> records) {
+        List<Row> rows = new ArrayList<>(records.size());
+        for (ChatRecord record : records) {
+            Long roomPk = resolveRoom(record.getRoomId());
+            if (roomPk == null) {
+                log.warn("Dropping chat message for unknown room={}", record.getRoomId());
+                dropped.increment();
+                continue;
+            }
+            Long userPk = userService.findByUsername(record.getUsername()).map(user -> user.getId()).orElse(null);
+            rows.add(new Row(record, roomPk, userPk));
+        }
+        return rows;
+    }
+
+    private void insert(List<Row> rows) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Row row : rows) {
+                    ps.setLong(1, row.roomPk);
+                    if (row.userPk != null) {
+                        ps.setLong(2, row.userPk);
+                    } else {
+                        ps.setNull(2, Types.BIGINT);
+                    }
+                    ps.setString(3, row.record.getContent());
+                    ps.setTimestamp(4, Timestamp.valueOf(row.record.getTimestamp()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                con.commit();
+                // 单个写线程按队列顺序插入，回填的 id 与消息顺序一致
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < rows.size()) {
+                        rows.get(i++).record.setId(keys.getLong(1));
+                    }
+                }
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        written.add(rows.size());
+        batches.increment();
+        Set<String> changedRooms = new HashSet<>();
+        for (Row row : rows) {
+            ChatRecord record = row.record;
+            if (record.getId() != null) {
+                searchIndexService.index(record.getRoomId(), record.getId(), record.getContent());
+            }
+            changedRooms.add(record.getRoomId());
+        }
+        // 消息有了 id，最近一页的内容随之变化
+        changedRooms.forEach(roomVersionService::chatChanged);
+    }
+
+    @Override
+    public String getStateName() {
+        return "chatWriter";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return roomPks.keySet();
+    }
+
+    @Override
+    public void evict(String roomId) {
+        roomPks.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        return roomPks.containsKey(roomId) ? 120 : 0;
+    }
+
+    private Long resolveRoom(String roomId) {
+        Long pk = roomPks.get(roomId);
+        if (pk == null) {
+            pk = roomService.findByRoomId(roomId).map(room -> room.getId()).orElse(null);
+            if (pk != null) {
+                roomPks.put(roomId, pk);
+            }
+        }
+        return pk;
+    }
+
+    private static final class Row {
+        private final ChatRecord record;
+        private final long roomPk;
+        private final Long userPk;
+
+        private Row(ChatRecord record, long roomPk, Long userPk) {
+            this.record = record;
+            this.roomPk = roomPk;
+            this.userPk = userPk;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.whiteboard.service;
+
+import java.time.LocalDateTime;
+
+import com.whiteboard.dto.ChatHistoryEntry;
+
+/**
+ * 已广播、等待批量写入数据库的聊天消息；写入成功后才有 id
+ */
+public class ChatRecord {
+    private final String roomId;
+    private final String username;
+    private final String content;
+    private final LocalDateTime timestamp;
+    private volatile Long id;
+
+    public ChatRecord(String roomId, String username, String content) {
+        this.roomId = roomId;
+        this.username = username;
+        this.content = content;
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    void setId(Long id) {
+        this.id = id;
+    }
+
+    public boolean isFlushed() {
+        return id != null;
+    }
+
+    public ChatHistoryEntry toHistoryEntry() {
+        return new ChatHistoryEntry(id, username, content, timestamp);
+    }
+}
@@ -0,0 +1,386 @@
+package com.whiteboard.service;
+
+import java.awt.image.BufferedImage;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whiteboard.dto.SnapshotManifest;
+import com.whiteboard.model.Operation;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.Snapshot;
+import com.whiteboard.render.CanvasRenderer;
+import com.whiteboard.repository.OperationRepository;
+import com.whiteboard.repository.RoomRepository;
+
+/**
+ * 房间检查点：在服务端把像素层渲染成图片，保存为按图块存储的快照，客户端只需回放检查点之后的操作
+ * 像素操作写入后把房间标记为脏；定时任务只处理脏房间，新操作数或字节数越多、等待越久的房间越早处理，
+ * 由固定大小的线程池并行渲染。每个检查点从上一个检查点的图片继续绘制，不重放整个历史
+ */
+@Service
+public class CheckpointService implements RoomStateHolder {
+    private static final Logger log = LoggerFactory.getLogger(CheckpointService.class);
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.checkpoints.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.checkpoints.workers:2}")
+    private int workers;
+
+    // 满足任一条件即生成检查点：新操作数、新操作数据的字节数、第一个未保存的操作等待的时间
+    @Value("${app.checkpoints.min-operations:200}")
+    private long minOperations;
+
+    @Value("${app.checkpoints.min-bytes:262144}")
+    private long minBytes;
+
+    @Value("${app.checkpoints.max-delay-ms:300000}")
+    private long maxDelayMs;
+
+    // 同一房间两个检查点之间的最短间隔
+    @Value("${app.checkpoints.min-interval-ms:30000}")
+    private long minIntervalMs;
+
+    @Value("${app.checkpoints.width:1920}")
+    private int width;
+
+    @Value("${app.checkpoints.height:1080}")
+    private int height;
+
+    @Value("${app.checkpoints.batch-size:1000}")
+    private int batchSize;
+
+    // 序列号缺口（写入失败或仍在提交）超过这个时间后不再等待
+    @Value("${app.checkpoints.gap-timeout-ms:30000}")
+    private long gapTimeoutMs;
+
+    private final Map<String, DirtyRoom> dirtyRooms = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastCheckpointAt = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong operationsRendered = new AtomicLong();
+    private final AtomicLong totalDurationMs = new AtomicLong();
+    private final AtomicLong maxDurationMs = new AtomicLong();
+    private final AtomicLong lastDurationMs = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 像素操作写入数据库后调用；带 objectId 的对象操作不影响像素层，不标记
+     */
+    public void markDirty(Room room, Operation op) {
+        if (op.getObjectId() != null || SceneService.NOOP.equals(op.getOperationType())) {
+            return;
+        }
+        DirtyRoom dirty = dirtyRooms.computeIfAbsent(room.getRoomId(), roomId -> new DirtyRoom(roomId, room.getId()));
+        dirty.operations.incrementAndGet();
+        dirty.bytes.addAndGet(op.getOperationData() == null ? 0 : op.getOperationData().length());
+    }
+
+    /**
+     * 选出到期的脏房间交给线程池；同时处理中的房间不超过线程数，其余留在脏集合中等下一轮
+     */
+    @Scheduled(fixedDelayString = "${app.checkpoints.poll-interval-ms:5000}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (DirtyRoom dirty : dirtyRooms.values()) {
+            if (inFlight.size() >= workers) {
+                break;
+            }
+            if (!isDue(dirty, now) || !inFlight.add(dirty.roomId)) {
+                continue;
+            }
+            // 从脏集合中取出后再提交，之后到达的操作会重新标记
+            dirtyRooms.remove(dirty.roomId, dirty);
+            try {
+                executor.execute(() -> run(dirty));
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(dirty.roomId);
+                requeue(dirty);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        long oldestDirtyMs = 0;
+        for (DirtyRoom dirty : dirtyRooms.values()) {
+            oldestDirtyMs = Math.max(oldestDirtyMs, now - dirty.since);
+        }
+        long total = written.get() + unchanged.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("workers", workers);
+        stats.put("dirtyRooms", dirtyRooms.size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("oldestDirtyMs", oldestDirtyMs);
+        stats.put("checkpointsWritten", written.get());
+        stats.put("checkpointsUnchanged", unchanged.get());
+        stats.put("checkpointsFailed", failed.get());
+        stats.put("operationsRendered", operationsRendered.get());
+        stats.put("lastDurationMs", lastDurationMs.get());
+        stats.put("maxDurationMs", maxDurationMs.get());
+        stats.put("avgDurationMs", total == 0 ? 0 : totalDurationMs.get() / total);
+        stats.put("lastLagMs", lastLagMs.get());
+        stats.put("maxLagMs", maxLagMs.get());
+        return stats;
+    }
+
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        dirtyRooms.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+        lastCheckpointAt.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+    }
+
+    @Override
+    public String getStateName() {
+        return "checkpoints";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        Set<String> roomIds = new HashSet<>(dirtyRooms.keySet());
+        roomIds.addAll(lastCheckpointAt.keySet());
+        return roomIds;
+    }
+
+    /**
+     * 还有未写入检查点的操作时等检查点写完（最多 max-delay-ms）；检查点关闭时不等待
+     */
+    @Override
+    public boolean flush(String roomId) {
+        return !enabled || (!dirtyRooms.containsKey(roomId) && !inFlight.contains(roomId));
+    }
+
+    @Override
+    public void evict(String roomId) {
+        dirtyRooms.remove(roomId);
+        lastCheckpointAt.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        return (dirtyRooms.containsKey(roomId) ? 120 : 0) + (lastCheckpointAt.containsKey(roomId) ? 80 : 0);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private boolean isDue(DirtyRoom dirty, long now) {
+        Long last = lastCheckpointAt.get(dirty.roomId);
+        if (last != null && now - last < minIntervalMs) {
+            return false;
+        }
+        return dirty.operations.get() >= minOperations
+            || dirty.bytes.get() >= minBytes
+            || now - dirty.since >= maxDelayMs;
+    }
+
+    private void run(DirtyRoom dirty) {
+        long start = System.currentTimeMillis();
+        try {
+            if (!clusterService.isLocal(dirty.roomId)) {
+                return;
+            }
+            Optional<Room> room = roomRepository.findById(dirty.roomPk);
+            if (room.isEmpty()) {
+                return;
+            }
+            boolean complete = checkpoint(room.get());
+            long end = System.currentTimeMillis();
+            record(end - start, end - dirty.since);
+            lastCheckpointAt.put(dirty.roomId, end);
+            if (!complete) {
+                // 遇到尚未提交的序列号，剩下的操作留给下一个检查点
+                requeue(dirty);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Checkpoint failed room={}: {}", dirty.roomId, e.getMessage());
+            lastCheckpointAt.put(dirty.roomId, System.currentTimeMillis());
+            requeue(dirty);
+        } finally {
+            inFlight.remove(dirty.roomId);
+        }
+    }
+
+    /**
+     * 从上一个检查点（或最近一次 clear）开始，按序列号顺序绘制连续的像素操作，然后保存
+     * @return 已经绘制到最新的操作时返回 true，因序列号缺口提前停止时返回 false
+     */
+    private boolean checkpoint(Room room) throws Exception {
+        CanvasRenderer renderer = null;
+        long after = 0;
+        Optional<Snapshot> base = snapshotService.getLatestCheckpoint(room);
+        if (base.isPresent()) {
+            Optional<SnapshotManifest> manifest = snapshotService.readManifest(base.get());
+            if (manifest.isPresent() && manifest.get().getWidth() == width && manifest.get().getHeight() == height) {
+                renderer = new CanvasRenderer(snapshotService.readImage(room.getRoomId(), manifest.get()));
+                after = base.get().getSequenceNumber();
+            }
+        }
+        if (renderer == null) {
+            // 没有可用的检查点时从最近一次 clear 开始，之前的内容都被它清掉了
+            Operation lastClear = operationRepository.findTopByRoomAndOperationTypeOrderBySequenceNumberDesc(room, SceneService.CLEAR);
+            renderer = new CanvasRenderer(width, height);
+            after = lastClear == null ? 0L : lastClear.getSequenceNumber() - 1;
+        }
+        long baseSequence = after;
+        boolean complete = true;
+        LocalDateTime gapDeadline = LocalDateTime.now().minusNanos(gapTimeoutMs * 1_000_000L);
+        try {
+            while (true) {
+                List<Operation> batch = operationRepository.findByRoomAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(
+                    room, after, PageRequest.of(0, batchSize));
+                for (Operation op : batch) {
+                    // 序列号不连续说明前面的操作还没提交，较新的缺口先停下等待
+                    if (op.getSequenceNumber() != after + 1 && op.getTimestamp() != null && op.getTimestamp().isAfter(gapDeadline)) {
+                        complete = false;
+                        break;
+                    }
+                    if (op.getObjectId() == null) {
+                        renderer.apply(op.getOperationType(), parse(op.getOperationData()));
+                    }
+                    after = op.getSequenceNumber();
+                }
+                if (!complete || batch.size() < batchSize) {
+                    break;
+                }
+            }
+            if (after == baseSequence) {
+                return complete;
+            }
+            operationsRendered.addAndGet(renderer.getApplied());
+            SnapshotService.SavedSnapshot saved = snapshotService.saveCheckpoint(room, renderer.getImage(), after);
+            if (saved.isUnchanged()) {
+                unchanged.incrementAndGet();
+            } else {
+                written.incrementAndGet();
+                thumbnailService.request(room.getRoomId());
+                log.debug("Checkpoint room={} sequence={} newTiles={}/{} storedBytes={}",
+                    room.getRoomId(), after, saved.getNewTiles(), saved.getTiles(), saved.getSnapshot().getStoredBytes());
+            }
+            return complete;
+        } finally {
+            renderer.dispose();
+        }
+    }
+
+    private void requeue(DirtyRoom dirty) {
+        dirtyRooms.merge(dirty.roomId, dirty, (current, previous) -> {
+            current.operations.addAndGet(previous.operations.get());
+            current.bytes.addAndGet(previous.bytes.get());
+            return current.since <= previous.since ? current : new DirtyRoom(current, previous.since);
+        });
+    }
+
+    private void record(long durationMs, long lagMs) {
+        lastDurationMs.set(durationMs);
+        totalDurationMs.addAndGet(durationMs);
+        maxDurationMs.accumulateAndGet(durationMs, Math::max);
+        lastLagMs.set(lagMs);
+        maxLagMs.accumulateAndGet(lagMs, Math::max);
+    }
+
+    private JsonNode parse(String data) {
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(data);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static final class DirtyRoom {
+        private final String roomId;
+        private final Long roomPk;
+        // 第一个未进入检查点的操作的时间
+        private final long since;
+        private final AtomicLong operations;
+        private final AtomicLong bytes;
+
+        private DirtyRoom(String roomId, Long roomPk) {
+            this.roomId = roomId;
+            this.roomPk = roomPk;
+            this.since = System.currentTimeMillis();
+            this.operations = new AtomicLong();
+            this.bytes = new AtomicLong();
+        }
+
+        private DirtyRoom(DirtyRoom counters, long since) {
+            this.roomId = counters.roomId;
+            this.roomPk = counters.roomPk;
+            this.since = since;
+            this.operations = counters.operations;
+            this.bytes = counters.bytes;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.whiteboard.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import com.whiteboard.util.ConsistentHashRing;
+
+/**
+ * 房间分片：每个房间通过一致性哈希（带虚拟节点）归属于一个节点
+ * 房间的序列号分配器、缓存和在线状态只保存在归属节点上
+ *
+ * 成员只来自 app.cluster.nodes 种子列表，节点之间通过 /api/cluster/ping 心跳检测存活；
+ * 不在种子列表中的节点的 ping 一律忽略，否则任何人都能把自己的主机加进哈希环接管房间。
+ * 配置了 app.cluster.secret 时，ping 还必须带上相同的 X-Cluster-Secret 请求头
+ */
+@Service
+public class ClusterService {
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    @Value("${app.cluster.self-url:http://localhost:${server.port:8080}}")
+    private String selfUrl;
+
+    @Value("${app.cluster.nodes:}")
+    private String seedNodes;
+
+    @Value("${app.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${app.cluster.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${app.cluster.ping-timeout-ms:1000}")
+    private long pingTimeoutMs;
+
+    @Value("${app.cluster.secret:}")
+    private String secret;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RestTemplateBuilder restTemplateBuilder;
+
+    private RestTemplate restTemplate;
+
+    // 所有已知成员 -> 连续心跳失败次数
+    private final Map<String, Integer> members = new ConcurrentHashMap<>();
+
+    private volatile ConsistentHashRing ring;
+
+    @PostConstruct
+    public void init() {
+        selfUrl = normalize(selfUrl);
+        restTemplate = restTemplateBuilder
+            .setConnectTimeout(Duration.ofMillis(pingTimeoutMs))
+            .setReadTimeout(Duration.ofMillis(pingTimeoutMs))
+            .build();
+
+        members.put(selfUrl, 0);
+        Arrays.stream(seedNodes.split(","))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .map(ClusterService::normalize)
+            .forEach(node -> members.putIfAbsent(node, 0));
+
+        // 启动时假定种子节点都存活，心跳失败后再移出环
+        ring = new ConsistentHashRing(liveMembers(), virtualNodes);
+        log.info("Cluster initialized self={} nodes={}", selfUrl, ring.getNodes());
+    }
+
+    public String getSelfUrl() {
+        return selfUrl;
+    }
+
+    public String ownerOf(String roomId) {
+        String owner = ring.nodeFor(roomId);
+        return owner != null ? owner : selfUrl;
+    }
+
+    public boolean isLocal(String roomId) {
+        return selfUrl.equals(ownerOf(roomId));
+    }
+
+    public Set<String> getLiveNodes() {
+        return ring.getNodes();
+    }
+
+    public Map<String, Integer> getMembers() {
+        return members;
+    }
+
+    /**
+     * 校验 ping 带的共享密钥；未配置密钥时只靠种子列表限制成员
+     */
+    public boolean isTrusted(String presentedSecret) {
+        if (secret.isEmpty()) {
+            return true;
+        }
+        return presentedSecret != null && MessageDigest.isEqual(
+            secret.getBytes(StandardCharsets.UTF_8), presentedSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 收到其他节点的心跳；只有种子列表里的节点才会被标记为存活，未知节点返回 false
+     */
+    public boolean onPing(String fromUrl) {
+        if (fromUrl == null || fromUrl.isEmpty()) {
+            return false;
+        }
+        String node = normalize(fromUrl);
+        if (node.equals(selfUrl)) {
+            return true;
+        }
+        Integer previous = members.get(node);
+        if (previous == null) {
+            log.warn("Ignoring cluster ping from unknown node: {}", node);
+            return false;
+        }
+        members.put(node, 0);
+        if (previous >= failureThreshold) {
+            log.info("Cluster node back online: {}", node);
+            rebuildRing();
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        HttpHeaders headers = new HttpHeaders();
+        if (!secret.isEmpty()) {
+            headers.set(SECRET_HEADER, secret);
+        }
+        HttpEntity<Void> pingRequest = new HttpEntity<>(headers);
+        boolean changed = false;
+        for (String node : members.keySet()) {
+            if (node.equals(selfUrl)) {
+                continue;
+            }
+            int failures = members.getOrDefault(node, 0);
+            boolean wasLive = failures < failureThreshold;
+            try {
+                restTemplate.exchange(node + "/api/cluster/ping?from={from}", HttpMethod.GET, pingRequest, String.class, selfUrl);
+                members.put(node, 0);
+                if (!wasLive) {
+                    log.info("Cluster node back online: {}", node);
+                    changed = true;
+                }
+            } catch (Exception e) {
+                members.put(node, failures + 1);
+                if (wasLive && failures + 1 >= failureThreshold) {
+                    log.warn("Cluster node unreachable, removing from ring: {}", node);
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            rebuildRing();
+        }
+    }
+
+    private synchronized void rebuildRing() {
+        ConsistentHashRing previous = ring;
+        ConsistentHashRing current = new ConsistentHashRing(liveMembers(), virtualNodes);
+        if (current.getNodes().equals(previous.getNodes())) {
+            return;
+        }
+        ring = current;
+        log.info("Cluster ring rebuilt: {}", current.getNodes());
+        eventPublisher.publishEvent(new RoomOwnershipChangedEvent(this, previous, current, selfUrl));
+    }
+
+    private Set<String> liveMembers() {
+        return members.entrySet().stream()
+            .filter(e -> e.getKey().equals(selfUrl) || e.getValue() < failureThreshold)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
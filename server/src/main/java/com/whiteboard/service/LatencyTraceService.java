@@ -0,0 +1,221 @@
+package com.whiteboard.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.whiteboard.dto.TraceReport;
+import com.whiteboard.util.LatencyHistogram;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 笔画端到端延迟：按房间、按阶段的直方图
+ * 服务端阶段（inbound、persist、broadcast、server）每笔操作都记录，只需几次 System.nanoTime 和无锁计数；
+ * 客户端阶段（roundTrip、render）来自客户端对抽样笔画的回报
+ * 各阶段同时汇总到 whiteboard.stroke.stage{stage} 计时器
+ */
+@Service
+public class LatencyTraceService implements RoomStateHolder {
+    public enum Stage {
+        // 帧到达 -> 处理开始：认证、限流拦截器和入站线程池排队
+        INBOUND("inbound"),
+        // 处理开始 -> 操作提交：查找房间和用户、写库
+        PERSIST("persist"),
+        // 交给 broker 广播
+        BROADCAST("broadcast"),
+        // 帧到达 -> 广播完成
+        SERVER("server"),
+        // 客户端：发送 -> 收到自己笔画的广播
+        ROUND_TRIP("roundTrip"),
+        // 客户端：收到别人的笔画 -> 绘制完成后的下一帧
+        RENDER("render");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // 客户端回报的值超出这个范围时视为无效
+    private static final double MAX_REPORTED_MS = 60_000;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.trace.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, RoomLatency> rooms = new ConcurrentHashMap<>();
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+    @PostConstruct
+    public void init() {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("whiteboard.stroke.stage")
+                .description("Stroke latency by pipeline stage")
+                .tag("stage", stage.getLabel())
+                .register(meterRegistry));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 绘制处理完成后调用，参数都是 System.nanoTime
+     */
+    public void recordServerStages(String roomId, long receivedNanos, long startNanos, long persistedNanos, long broadcastNanos) {
+        if (!enabled || roomId == null) {
+            return;
+        }
+        RoomLatency room = rooms.get(roomId);
+        if (room == null) {
+            room = rooms.computeIfAbsent(roomId, k -> new RoomLatency());
+        }
+        record(room, Stage.INBOUND, startNanos - receivedNanos);
+        record(room, Stage.PERSIST, persistedNanos - startNanos);
+        record(room, Stage.BROADCAST, broadcastNanos - persistedNanos);
+        record(room, Stage.SERVER, broadcastNanos - receivedNanos);
+    }
+
+    /**
+     * 客户端回报只计入已经有服务端记录的房间，回报不能让房间数无限增长
+     */
+    public void recordClientReport(TraceReport report) {
+        if (!enabled || report.getRoomId() == null) {
+            return;
+        }
+        RoomLatency room = rooms.get(report.getRoomId());
+        if (room == null) {
+            return;
+        }
+        recordReported(room, Stage.ROUND_TRIP, report.getRoundTripMs());
+        recordReported(room, Stage.RENDER, report.getRenderMs());
+    }
+
+    /**
+     * 把 System.nanoTime 换算成毫秒时间戳，写入追踪上下文
+     */
+    public static long toEpochMillis(long nanos) {
+        return System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
+
+    public Map<String, Object> getRoomReport(String roomId) {
+        RoomLatency room = rooms.get(roomId);
+        if (room == null) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("roomId", roomId);
+        result.put("stages", room.snapshot());
+        return result;
+    }
+
+    /**
+     * 笔画最多的前 limit 个房间，每个房间只给出各阶段的分位数
+     */
+    public Map<String, Object> getReport(int limit) {
+        // 计数在排序期间仍会变化，先取快照
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        rooms.forEach((roomId, room) -> entries.add(Map.entry(roomId, room.strokes())));
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            RoomLatency latency = rooms.get(entry.getKey());
+            if (latency == null) {
+                continue;
+            }
+            Map<String, Object> stages = new LinkedHashMap<>();
+            latency.snapshot().forEach((stage, snapshot) -> {
+                Map<String, Object> summary = new LinkedHashMap<>(snapshot);
+                summary.remove("buckets");
+                stages.put(stage, summary);
+            });
+            Map<String, Object> room = new LinkedHashMap<>();
+            room.put("roomId", entry.getKey());
+            room.put("stages", stages);
+            report.add(room);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("rooms", rooms.size());
+        result.put("largest", report);
+        return result;
+    }
+
+    @Override
+    public String getStateName() {
+        return "latency";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return rooms.keySet();
+    }
+
+    @Override
+    public void evict(String roomId) {
+        rooms.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        return rooms.containsKey(roomId) ? Stage.values().length * (LatencyHistogram.BUCKETS + 2) * 32L : 0;
+    }
+
+    private void record(RoomLatency room, Stage stage, long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        room.histograms[stage.ordinal()].recordNanos(nanos);
+        timers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordReported(RoomLatency room, Stage stage, Double millis) {
+        if (millis == null || !(millis >= 0 && millis <= MAX_REPORTED_MS)) {
+            return;
+        }
+        record(room, stage, (long) (millis * 1_000_000));
+    }
+
+    private static final class RoomLatency {
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+        private RoomLatency() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        private long strokes() {
+            return histograms[Stage.SERVER.ordinal()].getCount();
+        }
+
+        private Map<String, Map<String, Object>> snapshot() {
+            Map<String, Map<String, Object>> stages = new LinkedHashMap<>();
+            for (Stage stage : Stage.values()) {
+                stages.put(stage.getLabel(), histograms[stage.ordinal()].snapshot());
+            }
+            return stages;
+        }
+    }
+}
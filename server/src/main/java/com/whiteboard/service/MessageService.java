@@ -0,0 +1,208 @@
+package com.whiteboard.service;
+
+import com.whiteboard.dto.ChatHistoryEntry;
+import com.whiteboard.dto.ChatHistoryPage;
+import com.whiteboard.model.Message;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.User;
+import com.whiteboard.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class MessageService implements RoomStateHolder {
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ChatBatchWriter chatBatchWriter;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private RoomVersionService roomVersionService;
+
+    @Value("${app.chat.recent-buffer-size:200}")
+    private int recentBufferSize;
+
+    // 每个房间最近的聊天消息（含尚未写入数据库的），用于读取最新一页历史
+    private final Map<String, ArrayDeque<ChatRecord>> recentMessages = new ConcurrentHashMap<>();
+
+    public Message saveMessage(Room room, User user, String content) {
+        Message message = new Message();
+        message.setRoom(room);
+        message.setUser(user);
+        message.setContent(content);
+        Message saved = messageRepository.save(message);
+        searchIndexService.index(room.getRoomId(), saved.getId(), content);
+        roomVersionService.chatChanged(room.getRoomId());
+        return saved;
+    }
+
+    /**
+     * 记录一条已广播的聊天消息，由 ChatBatchWriter 异步写入数据库
+     */
+    public ChatRecord submit(String roomId, String username, String content) {
+        ChatRecord record = new ChatRecord(roomId, username, content);
+        ArrayDeque<ChatRecord> ring = recentMessages.computeIfAbsent(roomId, k -> new ArrayDeque<>(recentBufferSize));
+        synchronized (ring) {
+            if (ring.size() >= recentBufferSize) {
+                ring.pollFirst();
+            }
+            ring.addLast(record);
+        }
+        roomVersionService.chatChanged(roomId);
+        chatBatchWriter.enqueue(record);
+        return record;
+    }
+
+    public List<Message> getRoomMessages(Room room) {
+        return messageRepository.findByRoomOrderByTimestampAsc(room);
+    }
+
+    /**
+     * 取 id 小于 before 的最近 limit 条消息，按时间正序返回
+     * 最新一页优先从内存中的最近消息返回；尚未写入数据库的消息 id 为 null，排在最后
+     */
+    public ChatHistoryPage getHistoryPage(Room room, Long before, int limit) {
+        if (before == null) {
+            ChatHistoryPage recent = recentPage(room.getRoomId(), limit);
+            if (recent != null) {
+                return recent;
+            }
+        }
+        long upper = before != null ? before : Long.MAX_VALUE;
+        // 多取一条用于判断是否还有更早的消息
+        List<ChatHistoryEntry> page = messageRepository.findHistoryPage(room, upper, PageRequest.of(0, limit + 1));
+        Collections.reverse(page);
+        boolean hasMore = page.size() > limit;
+        if (hasMore) {
+            page = new ArrayList<>(page.subList(1, page.size()));
+        }
+        Long nextBefore = hasMore ? page.get(0).getId() : null;
+        if (before == null) {
+            appendUnflushed(room.getRoomId(), page);
+        }
+        return new ChatHistoryPage(page, hasMore, nextBefore);
+    }
+
+    /**
+     * 内存中有足够多的消息，且这一页最早的一条及更早的消息都已写入数据库时，直接从内存返回
+     * 否则返回 null，由数据库查询兜底，保证之后按 id 翻页不会漏掉未写入的消息
+     */
+    private ChatHistoryPage recentPage(String roomId, int limit) {
+        ArrayDeque<ChatRecord> ring = recentMessages.get(roomId);
+        if (ring == null) {
+            return null;
+        }
+        List<ChatRecord> snapshot;
+        synchronized (ring) {
+            if (ring.size() <= limit) {
+                return null;
+            }
+            snapshot = new ArrayList<>(ring);
+        }
+        int start = snapshot.size() - limit;
+        for (int i = 0; i <= start; i++) {
+            if (!snapshot.get(i).isFlushed()) {
+                return null;
+            }
+        }
+        List<ChatHistoryEntry> page = new ArrayList<>(limit);
+        for (int i = start; i < snapshot.size(); i++) {
+            page.add(snapshot.get(i).toHistoryEntry());
+        }
+        return new ChatHistoryPage(page, true, snapshot.get(start).getId());
+    }
+
+    private void appendUnflushed(String roomId, List<ChatHistoryEntry> page) {
+        ArrayDeque<ChatRecord> ring = recentMessages.get(roomId);
+        if (ring == null) {
+            return;
+        }
+        List<ChatRecord> snapshot;
+        synchronized (ring) {
+            snapshot = new ArrayList<>(ring);
+        }
+        long newestInPage = page.isEmpty() ? 0L : page.get(page.size() - 1).getId();
+        // 查询之后才写入的消息不在 page 中，查询之前写入的已经在 page 中
+        for (ChatRecord record : snapshot) {
+            Long id = record.getId();
+            if (id == null || id > newestInPage) {
+                page.add(record.toHistoryEntry());
+            }
+        }
+    }
+
+    @Override
+    public String getStateName() {
+        return "chat";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return recentMessages.keySet();
+    }
+
+    /**
+     * 最近消息中还有正在写入数据库的（ChatBatchWriter 很快会写完）时等下一轮；
+     * 超过一分钟仍没有 id 的是重试后被丢弃的消息，不再等待
+     */
+    @Override
+    public boolean flush(String roomId) {
+        ArrayDeque<ChatRecord> ring = recentMessages.get(roomId);
+        if (ring == null) {
+            return true;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(1);
+        synchronized (ring) {
+            for (ChatRecord record : ring) {
+                if (!record.isFlushed() && record.getTimestamp().isAfter(cutoff)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void evict(String roomId) {
+        recentMessages.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        ArrayDeque<ChatRecord> ring = recentMessages.get(roomId);
+        if (ring == null) {
+            return 0;
+        }
+        long bytes = 64;
+        synchronized (ring) {
+            for (ChatRecord record : ring) {
+                bytes += 120 + record.getContent().length();
+            }
+        }
+        return bytes;
+    }
+
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        recentMessages.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+    }
+}
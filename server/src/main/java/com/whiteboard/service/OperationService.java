@@ -0,0 +1,416 @@
+package com.whiteboard.service;
+
+import com.whiteboard.dto.DrawMessage;
+import com.whiteboard.model.Operation;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.User;
+import com.whiteboard.repository.OperationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class OperationService implements RoomStateHolder {
+    private static final Logger log = LoggerFactory.getLogger(OperationService.class);
+
+    // 已认领但尚未写入数据库的 clientOpId
+    public static final long PENDING = -1L;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private SceneService sceneService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 序列号与数据库中已有的操作冲突时，重新从数据库初始化分配器后重试的次数
+    @Value("${app.operations.sequence-conflict-retries:3}")
+    private int sequenceConflictRetries;
+
+    @Value("${app.operations.dedupe-window-size:1024}")
+    private int dedupeWindowSize;
+
+    @Value("${app.operations.recent-cache-size:512}")
+    private int recentCacheSize;
+
+    // 房间序列号分配器，只在房间的归属节点上存在；首次使用时从数据库中的最大序列号初始化
+    private final Map<String, AtomicLong> sequenceAllocators = new ConcurrentHashMap<>();
+
+    // 每个房间最近的 clientOpId -> 序列号，按插入顺序淘汰
+    private final Map<String, DedupeWindow> dedupeWindows = new ConcurrentHashMap<>();
+
+    // 每个房间最近 recent-cache-size 个序列号内的操作，用于补缺和断线续传，避免查库
+    private final Map<String, ConcurrentSkipListMap<Long, DrawMessage>> recentOperations = new ConcurrentHashMap<>();
+
+    // 分配器初始化时数据库中的最大序列号：在这之前缺失的序列号不会再被写入
+    private final Map<String, Long> initialSequences = new ConcurrentHashMap<>();
+
+    // 本节点上事务回滚、不会再被写入的序列号
+    private final Map<String, Set<Long>> skippedSequences = new ConcurrentHashMap<>();
+
+    /**
+     * 认领一个客户端操作 ID
+     * @return 首次出现返回 null；重复时返回已分配的序列号（仍在写入中时为 PENDING）
+     */
+    public Long claimClientOpId(String roomId, String clientOpId) {
+        DedupeWindow window = dedupeWindows.computeIfAbsent(roomId, k -> new DedupeWindow(dedupeWindowSize));
+        synchronized (window) {
+            return window.putIfAbsent(clientOpId, PENDING);
+        }
+    }
+
+    /**
+     * 写入失败时释放认领，允许客户端重发；已经提交的操作记录的是真实序列号，不会被释放
+     */
+    public void releaseClientOpId(String roomId, String clientOpId) {
+        DedupeWindow window = dedupeWindows.get(roomId);
+        if (window != null) {
+            synchronized (window) {
+                window.remove(clientOpId, PENDING);
+            }
+        }
+    }
+
+    public Operation saveOperation(Room room, User user, String operationType, String operationData) {
+        return saveOperation(room, user, operationType, operationData, null);
+    }
+
+    /**
+     * 每次尝试在独立的事务中写入；序列号撞上唯一约束（另一个节点或重新初始化前的分配器已经用了它）时，
+     * 把分配器推进到数据库中的最大序列号后换一个序列号重试
+     */
+    public Operation saveOperation(Room room, User user, String operationType, String operationData, String clientOpId) {
+        for (int attempt = 1; ; attempt++) {
+            AtomicBoolean conflict = new AtomicBoolean();
+            try {
+                return transactionTemplate.execute(status -> insert(room, user, operationType, operationData, clientOpId, conflict));
+            } catch (DataIntegrityViolationException e) {
+                if (!conflict.get() || attempt > sequenceConflictRetries) {
+                    throw e;
+                }
+                long reseeded = reseed(room);
+                log.warn("Sequence conflict room={} attempt={}, allocator moved to {}", room.getRoomId(), attempt, reseeded);
+            }
+        }
+    }
+
+    private Operation insert(Room room, User user, String operationType, String operationData, String clientOpId,
+            AtomicBoolean conflict) {
+        Operation operation = new Operation();
+        operation.setRoom(room);
+        operation.setUser(user);
+        operation.setOperationType(operationType);
+        operation.setOperationData(operationData);
+        operation.setClientOpId(clientOpId);
+        operation.setObjectId(sceneService.objectIdOf(operationType, operationData));
+        operation.setSequenceNumber(nextSequence(room));
+        skipOnRollback(room, operation.getSequenceNumber(), clientOpId, conflict);
+
+        Operation saved;
+        try {
+            saved = operationRepository.save(operation);
+        } catch (DataIntegrityViolationException e) {
+            conflict.set(isSequenceConflict(e));
+            throw e;
+        }
+        // 未提交的操作不能进入场景：compactedReplay 返回的序列号必须是数据库中已经可见的
+        afterCommit(() -> sceneService.apply(room, saved));
+        // 补缺只返回已提交的操作，回滚的序列号由 skipOnRollback 填上 noop
+        DrawMessage recent = toDrawMessage(room.getRoomId(), saved);
+        afterCommit(() -> cacheRecent(room.getRoomId(), recent));
+        if (clientOpId != null) {
+            // 提交前一直是 PENDING：提交失败时 releaseClientOpId 才能释放，重发的操作不会拿到没有写入的序列号
+            afterCommit(() -> {
+                DedupeWindow window = dedupeWindows.computeIfAbsent(room.getRoomId(), k -> new DedupeWindow(dedupeWindowSize));
+                synchronized (window) {
+                    window.put(clientOpId, saved.getSequenceNumber());
+                }
+            });
+        }
+        return saved;
+    }
+
+    public List<Operation> getRoomOperations(Room room) {
+        return operationRepository.findByRoomOrderBySequenceNumberAsc(room);
+    }
+
+    public List<Operation> getOperationsAfter(Room room, long afterSequence) {
+        return operationRepository.findByRoomAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(room, afterSequence);
+    }
+
+    public List<Operation> getOperationRange(Room room, long fromSequence, long toSequence) {
+        return operationRepository.findByRoomAndSequenceNumberBetweenOrderBySequenceNumberAsc(room, fromSequence, toSequence);
+    }
+
+    /**
+     * 从内存缓存中取 [fromSequence, toSequence] 区间的操作，写入失败的位置为 noop
+     * @return 区间内任一序列号不在缓存中时返回 null，由调用方回退到数据库（再用 withSkipped 补上缺口）
+     */
+    public List<DrawMessage> getCachedRange(String roomId, long fromSequence, long toSequence) {
+        ConcurrentSkipListMap<Long, DrawMessage> recent = recentOperations.get(roomId);
+        if (recent == null || recent.isEmpty()) {
+            return null;
+        }
+        // 超出最新序列号的部分还不存在，不算缺失
+        long end = Math.min(toSequence, recent.lastKey());
+        if (end < fromSequence) {
+            return null;
+        }
+        NavigableMap<Long, DrawMessage> range = recent.subMap(fromSequence, true, end, true);
+        List<DrawMessage> result = new ArrayList<>(range.values());
+        return result.size() == end - fromSequence + 1 ? result : null;
+    }
+
+    /**
+     * 给从数据库读出的 [fromSequence, toSequence] 区间补上 noop（与日志压缩相同，客户端只前移序列号），否则客户端会一直请求这个缺口
+     * 只补确定不会再出现的序列号：分配器初始化之前就缺失的（上次运行时写入失败或进程在提交前退出），
+     * 本节点上事务回滚的，以及最近一次 clear 之前的（压缩成 noop 后被 RetentionService 删除，clear 之后也不再影响画面）；
+     * 其他缺失的序列号可能还在写入中，原样返回。只有归属节点知道这些信息
+     */
+    public List<DrawMessage> withSkipped(Room room, long fromSequence, long toSequence, List<DrawMessage> operations) {
+        String roomId = room.getRoomId();
+        if (!clusterService.isLocal(roomId)) {
+            return operations;
+        }
+        long end = Math.min(toSequence, allocatorFor(room).get());
+        if (end < fromSequence || operations.size() == end - fromSequence + 1) {
+            return operations;
+        }
+        long initial = Math.max(initialSequences.getOrDefault(roomId, 0L), sceneService.getClearSequence(room) - 1);
+        Set<Long> skipped = skippedSequences.getOrDefault(roomId, Set.of());
+        Set<Long> present = new HashSet<>();
+        for (DrawMessage message : operations) {
+            present.add(message.getSequence());
+        }
+        List<DrawMessage> result = new ArrayList<>(operations);
+        for (long sequence = fromSequence; sequence <= end; sequence++) {
+            if (!present.contains(sequence) && (sequence <= initial || skipped.contains(sequence))) {
+                result.add(noop(roomId, sequence));
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.getSequence(), b.getSequence()));
+        return result;
+    }
+
+    public long countOperationsAfter(Room room, long afterSequence) {
+        return operationRepository.countByRoomAndSequenceNumberGreaterThan(room, afterSequence);
+    }
+
+    public Operation getLastOperation(Room room) {
+        return operationRepository.findTopByRoomOrderBySequenceNumberDesc(room);
+    }
+
+    /**
+     * 房间当前的最大序列号；归属节点上直接读分配器，不查数据库
+     */
+    public long getLatestSequence(Room room) {
+        AtomicLong allocator = sequenceAllocators.get(room.getRoomId());
+        if (allocator != null) {
+            return allocator.get();
+        }
+        Operation lastOp = operationRepository.findTopByRoomOrderBySequenceNumberDesc(room);
+        return lastOp == null ? 0L : lastOp.getSequenceNumber();
+    }
+
+    /**
+     * 仍保存在日志中的最小序列号；更早的操作已被回收（见 RetentionService）
+     */
+    public long getEarliestSequence(Room room) {
+        Operation firstOp = operationRepository.findTopByRoomOrderBySequenceNumberAsc(room);
+        return firstOp == null ? 0L : firstOp.getSequenceNumber();
+    }
+
+    public static DrawMessage toDrawMessage(String roomId, Operation op) {
+        DrawMessage message = new DrawMessage();
+        message.setRoomId(roomId);
+        message.setType(op.getOperationType());
+        message.setData(op.getOperationData());
+        message.setClientOpId(op.getClientOpId());
+        message.setSequence(op.getSequenceNumber());
+        if (op.getUser() != null) {
+            message.setUsername(op.getUser().getOriginalUsername() != null
+                ? op.getUser().getOriginalUsername() : op.getUser().getUsername());
+        }
+        return message;
+    }
+
+    /**
+     * 事务回滚时这个序列号不会再被使用，记下来并在最近操作缓存中放一个 noop，场景也不再等待它；
+     * 同时释放 clientOpId 的认领，重发的操作会重新写入
+     * 序列号冲突时它属于另一个已提交的操作，不能补 noop；认领保留给 saveOperation 的重试
+     */
+    private void skipOnRollback(Room room, long sequence, String clientOpId, AtomicBoolean conflict) {
+        String roomId = room.getRoomId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED && !conflict.get()) {
+                    skippedSequences.computeIfAbsent(roomId, k -> new ConcurrentSkipListSet<>()).add(sequence);
+                    cacheRecent(roomId, noop(roomId, sequence));
+                    sceneService.skip(room, sequence);
+                    if (clientOpId != null) {
+                        releaseClientOpId(roomId, clientOpId);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 在当前事务提交后执行；没有事务时（例如基准测试直接调用）立即执行
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static DrawMessage noop(String roomId, long sequence) {
+        DrawMessage message = new DrawMessage();
+        message.setRoomId(roomId);
+        message.setType(SceneService.NOOP);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    private void cacheRecent(String roomId, DrawMessage message) {
+        ConcurrentSkipListMap<Long, DrawMessage> recent = recentOperations.computeIfAbsent(roomId, k -> new ConcurrentSkipListMap<>());
+        long sequence = message.getSequence();
+        recent.put(sequence, message);
+        // 按序列号而不是条目数淘汰，ConcurrentSkipListMap.size() 需要遍历
+        recent.headMap(sequence - recentCacheSize, true).clear();
+    }
+
+    /**
+     * 分配器落后于数据库时推进到数据库中的最大序列号；冲突的那一行已经提交，查询一定能看到
+     */
+    private long reseed(Room room) {
+        Operation lastOp = operationRepository.findTopByRoomOrderBySequenceNumberDesc(room);
+        long max = lastOp == null ? 0L : lastOp.getSequenceNumber();
+        return allocatorFor(room).accumulateAndGet(max, Math::max);
+    }
+
+    private static boolean isSequenceConflict(DataIntegrityViolationException e) {
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(Operation.ROOM_SEQUENCE_CONSTRAINT);
+    }
+
+    private long nextSequence(Room room) {
+        return allocatorFor(room).incrementAndGet();
+    }
+
+    private AtomicLong allocatorFor(Room room) {
+        return sequenceAllocators.computeIfAbsent(room.getRoomId(), roomId -> {
+            Operation lastOp = operationRepository.findTopByRoomOrderBySequenceNumberDesc(room);
+            long initial = lastOp == null ? 0L : lastOp.getSequenceNumber();
+            initialSequences.put(roomId, initial);
+            return new AtomicLong(initial);
+        });
+    }
+
+    /**
+     * 房间移交给其他节点后丢弃本地分配器、去重窗口和最近操作缓存，之后由新归属节点从数据库重新初始化
+     */
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        sequenceAllocators.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+        dedupeWindows.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+        recentOperations.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+        initialSequences.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+        skippedSequences.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+    }
+
+    @Override
+    public String getStateName() {
+        return "operations";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        Set<String> roomIds = new HashSet<>(sequenceAllocators.keySet());
+        roomIds.addAll(dedupeWindows.keySet());
+        roomIds.addAll(recentOperations.keySet());
+        return roomIds;
+    }
+
+    /**
+     * 操作在广播之前已经同步写入数据库，没有需要写出的数据；休眠后分配器从数据库中的最大序列号重新初始化
+     */
+    @Override
+    public void evict(String roomId) {
+        sequenceAllocators.remove(roomId);
+        dedupeWindows.remove(roomId);
+        recentOperations.remove(roomId);
+        initialSequences.remove(roomId);
+        skippedSequences.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        long bytes = sequenceAllocators.containsKey(roomId) ? 64 : 0;
+        DedupeWindow window = dedupeWindows.get(roomId);
+        if (window != null) {
+            synchronized (window) {
+                // 条目对象 + clientOpId 字符串 + Long
+                bytes += window.size() * 120L;
+            }
+        }
+        ConcurrentSkipListMap<Long, DrawMessage> recent = recentOperations.get(roomId);
+        if (recent != null) {
+            for (DrawMessage message : recent.values()) {
+                bytes += 160 + (message.getData() == null ? 0 : message.getData().length());
+            }
+        }
+        return bytes;
+    }
+
+    private static class DedupeWindow extends LinkedHashMap<String, Long> {
+        private final int maxSize;
+
+        private DedupeWindow(int maxSize) {
+            super(16, 0.75f, false);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
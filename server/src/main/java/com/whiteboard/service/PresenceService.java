@@ -0,0 +1,265 @@
+package com.whiteboard.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.whiteboard.dto.PresenceDelta;
+import com.whiteboard.dto.UserPresence;
+
+/**
+ * 房间在线状态，按 STOMP 会话跟踪
+ * 同一用户的多个会话（多个标签页）只算一次在线；最后一个会话离开时才产生 remove 增量
+ */
+@Service
+public class PresenceService implements RoomStateHolder {
+
+    @Value("${app.presence.session-timeout-ms:90000}")
+    private long sessionTimeoutMs;
+
+    @Value("${app.presence.idle-room-eviction-ms:600000}")
+    private long idleRoomEvictionMs;
+
+    private final Map<String, RoomPresence> rooms = new ConcurrentHashMap<>();
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    public void sessionConnected(String sessionId) {
+        sessions.put(sessionId, new SessionState());
+    }
+
+    public void heartbeat(String sessionId) {
+        SessionState session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return 用户首次进入房间时的 add 增量；该用户已有其他会话在房间内时返回 null
+     */
+    public PresenceDelta join(String roomId, String sessionId, String username, Long userId) {
+        SessionState session = sessions.computeIfAbsent(sessionId, k -> new SessionState());
+        session.lastSeen = System.currentTimeMillis();
+        synchronized (session) {
+            session.rooms.add(roomId);
+        }
+        while (true) {
+            RoomPresence room = rooms.computeIfAbsent(roomId, k -> new RoomPresence());
+            synchronized (room) {
+                if (room.evicted) {
+                    // 与空闲回收竞争失败，重新取新的房间对象
+                    continue;
+                }
+                room.lastActivity = System.currentTimeMillis();
+                Entry entry = room.users.get(username);
+                if (entry != null) {
+                    entry.sessionIds.add(sessionId);
+                    return null;
+                }
+                entry = new Entry(new UserPresence(username, userId));
+                entry.sessionIds.add(sessionId);
+                room.users.put(username, entry);
+                return new PresenceDelta(roomId, PresenceDelta.ADD, ++room.version, entry.presence, null);
+            }
+        }
+    }
+
+    /**
+     * @return 用户最后一个会话离开房间时的 remove 增量，否则返回 null
+     */
+    public PresenceDelta leave(String roomId, String sessionId) {
+        SessionState session = sessions.get(sessionId);
+        if (session != null) {
+            synchronized (session) {
+                session.rooms.remove(roomId);
+            }
+        }
+        RoomPresence room = rooms.get(roomId);
+        if (room == null) {
+            return null;
+        }
+        synchronized (room) {
+            room.lastActivity = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> e : room.users.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.sessionIds.remove(sessionId) && entry.sessionIds.isEmpty()) {
+                    room.users.remove(e.getKey());
+                    return new PresenceDelta(roomId, PresenceDelta.REMOVE, ++room.version, entry.presence, null);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 会话断开（包括未发送 /app/leave 就掉线的情况），从其所在的所有房间移除
+     */
+    public List<PresenceDelta> disconnect(String sessionId) {
+        SessionState session = sessions.remove(sessionId);
+        List<PresenceDelta> deltas = new ArrayList<>();
+        if (session == null) {
+            return deltas;
+        }
+        List<String> roomIds;
+        synchronized (session) {
+            roomIds = new ArrayList<>(session.rooms);
+        }
+        for (String roomId : roomIds) {
+            PresenceDelta delta = leave(roomId, sessionId);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        return deltas;
+    }
+
+    public PresenceDelta snapshot(String roomId) {
+        RoomPresence room = rooms.get(roomId);
+        if (room == null) {
+            return new PresenceDelta(roomId, PresenceDelta.FULL, 0, null, new ArrayList<>());
+        }
+        synchronized (room) {
+            List<UserPresence> users = new ArrayList<>(room.users.size());
+            for (Entry entry : room.users.values()) {
+                users.add(entry.presence);
+            }
+            return new PresenceDelta(roomId, PresenceDelta.FULL, room.version, null, users);
+        }
+    }
+
+    public int countUsers(String roomId) {
+        RoomPresence room = rooms.get(roomId);
+        if (room == null) {
+            return 0;
+        }
+        synchronized (room) {
+            return room.users.size();
+        }
+    }
+
+    /**
+     * 房间内的会话数（同一用户的多个标签页分别计数）
+     */
+    public int countSessions(String roomId) {
+        RoomPresence room = rooms.get(roomId);
+        if (room == null) {
+            return 0;
+        }
+        synchronized (room) {
+            int count = 0;
+            for (Entry entry : room.users.values()) {
+                count += entry.sessionIds.size();
+            }
+            return count;
+        }
+    }
+
+    public int countConnectedSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public Set<String> getRoomIds() {
+        return rooms.keySet();
+    }
+
+    /**
+     * 丢弃房间的全部在线状态（例如房间移交到其他节点后）
+     */
+    public void evictRoom(String roomId) {
+        RoomPresence room = rooms.remove(roomId);
+        if (room != null) {
+            synchronized (room) {
+                room.evicted = true;
+            }
+        }
+    }
+
+    @Override
+    public String getStateName() {
+        return "presence";
+    }
+
+    /**
+     * 仍有在线用户的房间不休眠
+     */
+    @Override
+    public boolean flush(String roomId) {
+        return countUsers(roomId) == 0;
+    }
+
+    @Override
+    public void evict(String roomId) {
+        evictRoom(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        RoomPresence room = rooms.get(roomId);
+        if (room == null) {
+            return 0;
+        }
+        synchronized (room) {
+            return 120 + room.users.size() * 320L;
+        }
+    }
+
+    /**
+     * 找出超过心跳超时仍无任何活动的会话（断线事件丢失的“幽灵”会话）
+     */
+    public List<String> findExpiredSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTimeoutMs;
+        List<String> expired = new ArrayList<>();
+        sessions.forEach((sessionId, session) -> {
+            if (session.lastSeen < cutoff) {
+                expired.add(sessionId);
+            }
+        });
+        return expired;
+    }
+
+    /**
+     * 回收长时间没有任何在线用户的房间
+     */
+    public int evictIdleRooms() {
+        long cutoff = System.currentTimeMillis() - idleRoomEvictionMs;
+        int before = rooms.size();
+        rooms.entrySet().removeIf(e -> {
+            RoomPresence room = e.getValue();
+            synchronized (room) {
+                room.evicted = room.users.isEmpty() && room.lastActivity < cutoff;
+                return room.evicted;
+            }
+        });
+        return before - rooms.size();
+    }
+
+    private static class RoomPresence {
+        // 保持加入顺序，便于前端稳定展示
+        private final Map<String, Entry> users = new LinkedHashMap<>();
+        private long version;
+        private long lastActivity = System.currentTimeMillis();
+        private boolean evicted;
+    }
+
+    private static class Entry {
+        private final UserPresence presence;
+        private final Set<String> sessionIds = new HashSet<>(2);
+
+        private Entry(UserPresence presence) {
+            this.presence = presence;
+        }
+    }
+
+    private static class SessionState {
+        private final Set<String> rooms = new HashSet<>(2);
+        private volatile long lastSeen = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,281 @@
+package com.whiteboard.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.whiteboard.util.TokenBucket;
+import com.whiteboard.util.TtlCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 按会话、按消息类型（draw / cursor / chat / trace）的令牌桶限流
+ * 限流器在 CONNECT 时创建，放行路径上不分配对象；超限的 cursor 消息只保留最新一条，稍后补发
+ * 按房间、按用户的限流次数只用于管理接口，键来自客户端，放在有上限的缓存中；长期趋势看 Micrometer 计数器
+ */
+@Service
+public class RateLimitService implements RoomStateHolder {
+
+    public static final String DRAW_DESTINATION = "/app/draw";
+    public static final String CURSOR_DESTINATION = "/app/cursor";
+    public static final String CHAT_DESTINATION = "/app/chat";
+    public static final String TRACE_DESTINATION = "/app/trace";
+
+    public enum Decision {
+        ALLOW, DROP, COALESCE, ABUSE
+    }
+
+    @Value("${app.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ratelimit.draw.capacity:40}")
+    private double drawCapacity;
+
+    @Value("${app.ratelimit.draw.refill-per-second:20}")
+    private double drawRefill;
+
+    @Value("${app.ratelimit.cursor.capacity:30}")
+    private double cursorCapacity;
+
+    @Value("${app.ratelimit.cursor.refill-per-second:30}")
+    private double cursorRefill;
+
+    @Value("${app.ratelimit.chat.capacity:10}")
+    private double chatCapacity;
+
+    @Value("${app.ratelimit.chat.refill-per-second:2}")
+    private double chatRefill;
+
+    @Value("${app.ratelimit.trace.capacity:10}")
+    private double traceCapacity;
+
+    @Value("${app.ratelimit.trace.refill-per-second:5}")
+    private double traceRefill;
+
+    // 在 abuse-window-ms 内被丢弃的帧超过该数量时，发送 ERROR 帧并关闭会话
+    @Value("${app.ratelimit.abuse-threshold:300}")
+    private int abuseThreshold;
+
+    @Value("${app.ratelimit.abuse-window-ms:10000}")
+    private long abuseWindowMs;
+
+    // 管理接口中按房间、按用户统计的键数上限，以及每个计数保留的时间
+    @Value("${app.ratelimit.stats-max-keys:1000}")
+    private int statsMaxKeys;
+
+    @Value("${app.ratelimit.stats-ttl-ms:3600000}")
+    private long statsTtlMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, SessionRateLimiter> limiters = new ConcurrentHashMap<>();
+    private TtlCache<String, LongAdder> throttledByRoom;
+    private TtlCache<String, LongAdder> throttledByUser;
+    private final LongAdder totalThrottled = new LongAdder();
+    private final LongAdder sessionsClosed = new LongAdder();
+    private final Map<String, Counter> throttledCounters = new ConcurrentHashMap<>();
+    private Counter sessionsClosedCounter;
+
+    @PostConstruct
+    public void init() {
+        throttledByRoom = new TtlCache<>(statsMaxKeys, statsTtlMs);
+        throttledByUser = new TtlCache<>(statsMaxKeys, statsTtlMs);
+        for (String type : List.of("draw", "cursor", "chat", "trace")) {
+            throttledCounters.put(type, Counter.builder("whiteboard.ratelimit.throttled")
+                .description("Frames dropped or coalesced by the per-session rate limiter")
+                .tag("type", type)
+                .register(meterRegistry));
+        }
+        sessionsClosedCounter = Counter.builder("whiteboard.ratelimit.sessions.closed")
+            .description("Sessions disconnected for repeatedly exceeding the rate limit")
+            .register(meterRegistry);
+    }
+
+    public void register(String sessionId, String username) {
+        limiters.put(sessionId, new SessionRateLimiter(username,
+            new TokenBucket(drawCapacity, drawRefill),
+            new TokenBucket(cursorCapacity, cursorRefill),
+            new TokenBucket(chatCapacity, chatRefill),
+            new TokenBucket(traceCapacity, traceRefill)));
+    }
+
+    public void bindRoom(String sessionId, String roomId) {
+        SessionRateLimiter limiter = limiters.get(sessionId);
+        if (limiter != null) {
+            limiter.roomId = roomId;
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        limiters.remove(event.getSessionId());
+    }
+
+    public Decision check(String sessionId, String destination, Message<?> message) {
+        if (!enabled || sessionId == null || destination == null) {
+            return Decision.ALLOW;
+        }
+        SessionRateLimiter limiter = limiters.get(sessionId);
+        if (limiter == null) {
+            return Decision.ALLOW;
+        }
+        if (limiter.closed) {
+            return Decision.DROP;
+        }
+
+        TokenBucket bucket;
+        String type;
+        boolean coalesce = false;
+        if (DRAW_DESTINATION.equals(destination)) {
+            bucket = limiter.draw;
+            type = "draw";
+        } else if (CURSOR_DESTINATION.equals(destination)) {
+            bucket = limiter.cursor;
+            type = "cursor";
+            coalesce = true;
+        } else if (CHAT_DESTINATION.equals(destination)) {
+            bucket = limiter.chat;
+            type = "chat";
+        } else if (TRACE_DESTINATION.equals(destination)) {
+            bucket = limiter.trace;
+            type = "trace";
+        } else {
+            return Decision.ALLOW;
+        }
+
+        long now = System.nanoTime();
+        if (bucket.tryConsume(now)) {
+            return Decision.ALLOW;
+        }
+
+        recordThrottled(limiter, type);
+        if (limiter.recordViolation(now, abuseWindowMs * 1_000_000L) > abuseThreshold) {
+            limiter.closed = true;
+            sessionsClosed.increment();
+            sessionsClosedCounter.increment();
+            return Decision.ABUSE;
+        }
+        if (coalesce) {
+            // 新的光标位置覆盖旧的，等令牌恢复后只补发最后一条
+            limiter.pendingCursor.set(message);
+            return Decision.COALESCE;
+        }
+        return Decision.DROP;
+    }
+
+    /**
+     * 取出令牌已恢复的会话中被合并的最新 cursor 消息
+     */
+    public List<Message<?>> drainCoalesced() {
+        List<Message<?>> ready = new ArrayList<>();
+        long now = System.nanoTime();
+        for (SessionRateLimiter limiter : limiters.values()) {
+            if (limiter.pendingCursor.get() != null && !limiter.closed && limiter.cursor.hasToken(now)) {
+                Message<?> pending = limiter.pendingCursor.getAndSet(null);
+                if (pending != null) {
+                    ready.add(pending);
+                }
+            }
+        }
+        return ready;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("activeSessions", limiters.size());
+        stats.put("totalThrottled", totalThrottled.sum());
+        stats.put("sessionsClosed", sessionsClosed.sum());
+        stats.put("throttledByRoom", snapshot(throttledByRoom));
+        stats.put("throttledByUser", snapshot(throttledByUser));
+        return stats;
+    }
+
+    @Override
+    public String getStateName() {
+        return "rateLimit";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return throttledByRoom.snapshot().keySet();
+    }
+
+    /**
+     * 房间休眠时丢弃它的限流计数
+     */
+    @Override
+    public void evict(String roomId) {
+        throttledByRoom.invalidate(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        return throttledByRoom.getIfPresent(roomId) == null ? 0 : 120;
+    }
+
+    private void recordThrottled(SessionRateLimiter limiter, String type) {
+        totalThrottled.increment();
+        throttledCounters.get(type).increment();
+        String roomId = limiter.roomId;
+        if (roomId != null) {
+            throttledByRoom.get(roomId, k -> new LongAdder()).increment();
+        }
+        if (limiter.username != null) {
+            throttledByUser.get(limiter.username, k -> new LongAdder()).increment();
+        }
+    }
+
+    private static Map<String, Long> snapshot(TtlCache<String, LongAdder> counters) {
+        Map<String, Long> result = new HashMap<>();
+        counters.snapshot().forEach((key, adder) -> result.put(key, adder.sum()));
+        return result;
+    }
+
+    private static final class SessionRateLimiter {
+        private final String username;
+        private final TokenBucket draw;
+        private final TokenBucket cursor;
+        private final TokenBucket chat;
+        private final TokenBucket trace;
+        private final AtomicReference<Message<?>> pendingCursor = new AtomicReference<>();
+        private volatile String roomId;
+        private volatile boolean closed;
+        private long windowStartNanos;
+        private int violations;
+
+        private SessionRateLimiter(String username, TokenBucket draw, TokenBucket cursor, TokenBucket chat, TokenBucket trace) {
+            this.username = username;
+            this.draw = draw;
+            this.cursor = cursor;
+            this.chat = chat;
+            this.trace = trace;
+            this.windowStartNanos = System.nanoTime();
+        }
+
+        private synchronized int recordViolation(long nowNanos, long windowNanos) {
+            if (nowNanos - windowStartNanos > windowNanos) {
+                windowStartNanos = nowNanos;
+                violations = 0;
+            }
+            return ++violations;
+        }
+    }
+}
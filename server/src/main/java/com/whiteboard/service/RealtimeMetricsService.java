@@ -0,0 +1,66 @@
+package com.whiteboard.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * 实时通道的 Micrometer 指标：已连接会话数、各房间的会话数
+ * 房间数不受限，按房间打标签的指标只保留会话最多的 room-gauge-limit 个房间，定时刷新
+ */
+@Service
+public class RealtimeMetricsService {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Value("${app.metrics.room-gauge-limit:50}")
+    private int roomGaugeLimit;
+
+    private MultiGauge roomSessions;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("whiteboard.sessions.connected", presenceService, PresenceService::countConnectedSessions)
+            .description("Connected STOMP sessions")
+            .register(meterRegistry);
+        Gauge.builder("whiteboard.rooms.present", presenceService, p -> p.getRoomIds().size())
+            .description("Rooms with presence state")
+            .register(meterRegistry);
+        roomSessions = MultiGauge.builder("whiteboard.room.sessions")
+            .description("STOMP sessions joined to a room (busiest rooms only)")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metrics.room-gauge-interval-ms:15000}")
+    public void refreshRoomGauges() {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (String roomId : presenceService.getRoomIds()) {
+            int sessions = presenceService.countSessions(roomId);
+            if (sessions > 0) {
+                counts.add(Map.entry(roomId, sessions));
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        // overwrite=true：不在前 N 个里的房间从注册表中移除
+        roomSessions.register(counts.stream()
+            .limit(roomGaugeLimit)
+            .map(e -> MultiGauge.Row.of(Tags.of("room", e.getKey()), e.getValue()))
+            .collect(Collectors.toList()), true);
+    }
+}
@@ -0,0 +1,90 @@
+package com.whiteboard.service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 快照保留规则：
+ * 最新的 keepLast 个全部保留；更早的在 hourlyHours 小时内每小时保留最新的一个，在 dailyDays 天内每天保留最新的一个，
+ * 其余删除；保留下来的快照从新到旧累计 storedBytes，超过 maxBytes 之后的也删除
+ * 房间最新的快照和最新的检查点（下一个检查点的底图）总是保留
+ */
+public class RetentionPolicy {
+    private final int keepLast;
+    private final int hourlyHours;
+    private final int dailyDays;
+    private final long maxBytes;
+
+    public RetentionPolicy(int keepLast, int hourlyHours, int dailyDays, long maxBytes) {
+        this.keepLast = keepLast;
+        this.hourlyHours = hourlyHours;
+        this.dailyDays = dailyDays;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param snapshots 一个房间的快照，按创建时间从新到旧排列
+     * @return 应删除的快照 id
+     */
+    public List<Long> select(List<Entry> snapshots, LocalDateTime now) {
+        List<Long> delete = new ArrayList<>();
+        if (snapshots.isEmpty()) {
+            return delete;
+        }
+        Long latestCheckpoint = null;
+        long latestSequence = Long.MIN_VALUE;
+        for (Entry entry : snapshots) {
+            if (entry.sequence != null && entry.sequence > latestSequence) {
+                latestSequence = entry.sequence;
+                latestCheckpoint = entry.id;
+            }
+        }
+        Set<LocalDateTime> hours = new HashSet<>();
+        Set<LocalDateTime> days = new HashSet<>();
+        LocalDateTime hourlySince = now.minusHours(hourlyHours);
+        LocalDateTime dailySince = now.minusDays(dailyDays);
+        long bytes = 0;
+        for (int i = 0; i < snapshots.size(); i++) {
+            Entry entry = snapshots.get(i);
+            boolean pinned = i == 0 || entry.id.equals(latestCheckpoint);
+            boolean keep = pinned || i < keepLast;
+            if (!keep && entry.createdAt != null) {
+                // 从新到旧遍历，每个时间段第一次出现的就是该时间段最新的快照
+                if (entry.createdAt.isAfter(hourlySince)) {
+                    keep = hours.add(entry.createdAt.truncatedTo(ChronoUnit.HOURS));
+                } else if (entry.createdAt.isAfter(dailySince)) {
+                    keep = days.add(entry.createdAt.truncatedTo(ChronoUnit.DAYS));
+                }
+            }
+            if (keep) {
+                bytes += entry.storedBytes;
+                if (maxBytes > 0 && bytes > maxBytes && !pinned) {
+                    keep = false;
+                    bytes -= entry.storedBytes;
+                }
+            }
+            if (!keep) {
+                delete.add(entry.id);
+            }
+        }
+        return delete;
+    }
+
+    public static class Entry {
+        private final Long id;
+        private final LocalDateTime createdAt;
+        private final long storedBytes;
+        private final Long sequence;
+
+        public Entry(Long id, LocalDateTime createdAt, long storedBytes, Long sequence) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.storedBytes = storedBytes;
+            this.sequence = sequence;
+        }
+    }
+}
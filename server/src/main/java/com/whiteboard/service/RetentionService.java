@@ -0,0 +1,257 @@
+package com.whiteboard.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whiteboard.dto.SnapshotManifest;
+
+/**
+ * 快照和操作日志的垃圾回收
+ * 逐个房间（按主键分页）按 RetentionPolicy 删除快照记录，并删除最近一次 clear 之前已被压缩为 noop 的操作；
+ * 之后扫描 BlobStore，删除不再被任何快照引用的图块、清单和图片文件
+ * 删除都是按 id 或 LIMIT 分批执行的 SQL，不加载实体；每批之后按执行时间休眠，限制占用数据库（和主从复制）的比例
+ */
+@Service
+public class RetentionService {
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    private static final int ROOM_PAGE_SIZE = 200;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.keep-last:10}")
+    private int keepLast;
+
+    @Value("${app.retention.hourly-hours:24}")
+    private int hourlyHours;
+
+    @Value("${app.retention.daily-days:30}")
+    private int dailyDays;
+
+    // 每个房间保留的快照按 storedBytes 累计的上限，0 表示不限制
+    @Value("${app.retention.max-bytes-per-room:104857600}")
+    private long maxBytesPerRoom;
+
+    // 刚写入或刚被复用的对象在这段时间内不会被删除
+    @Value("${app.retention.blob-grace-ms:3600000}")
+    private long blobGraceMs;
+
+    @Value("${app.retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.retention.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    // 删除语句占用的时间比例上限：一批执行了 t 毫秒，之后至少休眠 t * (1 / max-duty-cycle - 1) 毫秒
+    @Value("${app.retention.max-duty-cycle:0.25}")
+    private double maxDutyCycle;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong snapshotsDeleted = new AtomicLong();
+    private final AtomicLong operationsDeleted = new AtomicLong();
+    private final AtomicLong blobsDeleted = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @Scheduled(initialDelayString = "${app.retention.initial-delay-ms:600000}", fixedDelayString = "${app.retention.interval-ms:3600000}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    /**
+     * 执行一次回收；已有一次在执行时直接返回 null
+     */
+    public Map<String, Object> run() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            RetentionPolicy policy = new RetentionPolicy(keepLast, hourlyHours, dailyDays, maxBytesPerRoom);
+            long snapshots = 0;
+            long operations = 0;
+            long afterPk = 0;
+            while (true) {
+                List<Map<String, Object>> rooms = jdbcTemplate.queryForList(
+                    "SELECT id, room_id FROM rooms WHERE id > ? ORDER BY id LIMIT " + ROOM_PAGE_SIZE, afterPk);
+                for (Map<String, Object> room : rooms) {
+                    afterPk = ((Number) room.get("id")).longValue();
+                    // 每个房间只由它的归属节点处理
+                    if (!clusterService.isLocal((String) room.get("room_id"))) {
+                        continue;
+                    }
+                    snapshots += deleteSnapshots(afterPk, policy);
+                    operations += deleteDeadOperations(afterPk);
+                }
+                if (rooms.size() < ROOM_PAGE_SIZE) {
+                    break;
+                }
+            }
+            BlobStore.SweepResult swept = blobStore.sweep(referencedBlobs(), blobGraceMs);
+
+            runs.incrementAndGet();
+            snapshotsDeleted.addAndGet(snapshots);
+            operationsDeleted.addAndGet(operations);
+            blobsDeleted.addAndGet(swept.getDeleted());
+            reclaimedBytes.addAndGet(swept.getReclaimedBytes());
+            Map<String, Object> result = new HashMap<>();
+            result.put("startedAt", new Timestamp(start).toLocalDateTime().toString());
+            result.put("durationMs", System.currentTimeMillis() - start);
+            result.put("snapshotsDeleted", snapshots);
+            result.put("operationsDeleted", operations);
+            result.put("blobsDeleted", swept.getDeleted());
+            result.put("reclaimedBytes", swept.getReclaimedBytes());
+            lastRun = result;
+            if (snapshots + operations + swept.getDeleted() > 0) {
+                log.info("Retention: deleted {} snapshot(s), {} operation(s), {} blob(s), reclaimed {} bytes",
+                    snapshots, operations, swept.getDeleted(), swept.getReclaimedBytes());
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Retention run failed: {}", e.getMessage());
+            throw new RuntimeException("Retention run failed: " + e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("runs", runs.get());
+        stats.put("snapshotsDeleted", snapshotsDeleted.get());
+        stats.put("operationsDeleted", operationsDeleted.get());
+        stats.put("blobsDeleted", blobsDeleted.get());
+        stats.put("reclaimedBytes", reclaimedBytes.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    private long deleteSnapshots(long roomPk, RetentionPolicy policy) {
+        List<RetentionPolicy.Entry> entries = jdbcTemplate.query(
+            "SELECT id, created_at, COALESCE(stored_bytes, size_bytes, 0) AS bytes, sequence_number " +
+            "FROM snapshots WHERE room_id = ? ORDER BY created_at DESC, id DESC",
+            (rs, i) -> {
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                long sequence = rs.getLong("sequence_number");
+                return new RetentionPolicy.Entry(rs.getLong("id"), createdAt == null ? null : createdAt.toLocalDateTime(),
+                    rs.getLong("bytes"), rs.wasNull() ? null : sequence);
+            }, roomPk);
+        List<Long> ids = policy.select(entries, LocalDateTime.now());
+        long deleted = 0;
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+            String in = batch.stream().map(String::valueOf).collect(Collectors.joining(","));
+            long start = System.currentTimeMillis();
+            deleted += jdbcTemplate.update("DELETE FROM snapshots WHERE id IN (" + in + ")");
+            throttle(System.currentTimeMillis() - start);
+        }
+        return deleted;
+    }
+
+    /**
+     * 最近一次 clear 之前的操作已经被日志压缩改写为 noop，不再参与任何回放
+     * 补缺和断线续传请求到被删除的区间时，由 OperationService.withSkipped 按 clear 的序列号补回 noop
+     */
+    private long deleteDeadOperations(long roomPk) {
+        Long lastClear = jdbcTemplate.queryForObject(
+            "SELECT MAX(sequence_number) FROM operations WHERE room_id = ? AND operation_type = 'clear'", Long.class, roomPk);
+        if (lastClear == null) {
+            return 0;
+        }
+        long deleted = 0;
+        while (true) {
+            long start = System.currentTimeMillis();
+            int rows = jdbcTemplate.update(
+                "DELETE FROM operations WHERE room_id = ? AND sequence_number < ? AND operation_type = 'noop' LIMIT " + batchSize,
+                roomPk, lastClear);
+            deleted += rows;
+            if (rows < batchSize) {
+                return deleted;
+            }
+            throttle(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 所有快照引用的对象：整张图片、清单、缩略图、拼好的整张图片，以及清单中的图块
+     */
+    private Set<String> referencedBlobs() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        List<String> manifests = new ArrayList<>();
+        jdbcTemplate.query("SELECT content_hash, manifest_hash, thumbnail_hash, assembled_hash FROM snapshots", rs -> {
+            String content = rs.getString("content_hash");
+            String manifest = rs.getString("manifest_hash");
+            String thumbnail = rs.getString("thumbnail_hash");
+            String assembled = rs.getString("assembled_hash");
+            if (content != null) {
+                referenced.add(content);
+            }
+            if (thumbnail != null) {
+                referenced.add(thumbnail);
+            }
+            if (assembled != null) {
+                referenced.add(assembled);
+            }
+            if (manifest != null) {
+                referenced.add(manifest);
+                manifests.add(manifest);
+            }
+        });
+        for (String manifest : manifests) {
+            if (!blobStore.exists(manifest)) {
+                continue;
+            }
+            try (InputStream in = blobStore.open(manifest)) {
+                referenced.addAll(objectMapper.readValue(in, SnapshotManifest.class).getTiles());
+            }
+        }
+        return referenced;
+    }
+
+    private void throttle(long elapsedMs) {
+        long pause = Math.max(batchPauseMs, (long) (elapsedMs * (1 / maxDutyCycle - 1)));
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.whiteboard.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 房间活动计数：操作数、操作字节数、聊天数和最近活动时间
+ * 绘制和聊天时只累加内存中的计数器（LongAdder，无锁），定时把增量批量写回 rooms 表，
+ * 同时前移 last_updated，房间列表的排序因此反映最近的绘制和聊天，而不需要每笔操作更新一次房间行
+ */
+@Service
+public class RoomActivityService implements RoomStateHolder {
+    private static final Logger log = LoggerFactory.getLogger(RoomActivityService.class);
+
+    private static final String UPDATE_SQL =
+        "UPDATE rooms SET " +
+        "operation_count = COALESCE(operation_count, 0) + ?, " +
+        "operation_bytes = COALESCE(operation_bytes, 0) + ?, " +
+        "chat_count = COALESCE(chat_count, 0) + ?, " +
+        "last_updated = CASE WHEN last_updated IS NULL OR last_updated < ? THEN ? ELSE last_updated END " +
+        "WHERE room_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.rooms.activity-batch-size:500}")
+    private int batchSize;
+
+    private final Map<String, Counters> rooms = new ConcurrentHashMap<>();
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsUpdated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lastDurationMs = new AtomicLong();
+    private final LongAdder totalOperations = new LongAdder();
+    private final LongAdder totalChats = new LongAdder();
+
+    /**
+     * 操作写入数据库之后调用
+     */
+    public void recordOperation(String roomId, int bytes) {
+        Counters counters = countersFor(roomId);
+        counters.operations.increment();
+        counters.bytes.add(bytes);
+        counters.lastActivity = System.currentTimeMillis();
+        totalOperations.increment();
+    }
+
+    public void recordChat(String roomId) {
+        Counters counters = countersFor(roomId);
+        counters.chats.increment();
+        counters.lastActivity = System.currentTimeMillis();
+        totalChats.increment();
+    }
+
+    /**
+     * 把各房间自上次写回以来的增量批量写入 rooms 表
+     */
+    @Scheduled(fixedDelayString = "${app.rooms.activity-flush-interval-ms:10000}")
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        List<Delta> deltas = new ArrayList<>();
+        for (Map.Entry<String, Counters> entry : rooms.entrySet()) {
+            Delta delta = entry.getValue().take(entry.getKey());
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < deltas.size(); i += batchSize) {
+            write(deltas.subList(i, Math.min(deltas.size(), i + batchSize)));
+        }
+        flushes.incrementAndGet();
+        lastDurationMs.set(System.currentTimeMillis() - start);
+    }
+
+    public Map<String, Object> getStats() {
+        int pending = 0;
+        for (Counters counters : rooms.values()) {
+            if (counters.hasPending()) {
+                pending++;
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("rooms", rooms.size());
+        stats.put("pendingRooms", pending);
+        stats.put("operations", totalOperations.sum());
+        stats.put("chats", totalChats.sum());
+        stats.put("flushes", flushes.get());
+        stats.put("rowsUpdated", rowsUpdated.get());
+        stats.put("failed", failed.get());
+        stats.put("lastDurationMs", lastDurationMs.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @Override
+    public String getStateName() {
+        return "activity";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return rooms.keySet();
+    }
+
+    /**
+     * 休眠前把这个房间的增量写回
+     */
+    @Override
+    public synchronized boolean flush(String roomId) {
+        Counters counters = rooms.get(roomId);
+        if (counters == null) {
+            return true;
+        }
+        Delta delta = counters.take(roomId);
+        if (delta != null) {
+            write(List.of(delta));
+        }
+        return !counters.hasPending();
+    }
+
+    @Override
+    public void evict(String roomId) {
+        rooms.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        return rooms.containsKey(roomId) ? 320 : 0;
+    }
+
+    private Counters countersFor(String roomId) {
+        Counters counters = rooms.get(roomId);
+        return counters != null ? counters : rooms.computeIfAbsent(roomId, k -> new Counters());
+    }
+
+    private void write(List<Delta> batch) {
+        try {
+            int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, delta) -> {
+                Timestamp lastActivity = Timestamp.valueOf(
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(delta.lastActivity), ZoneId.systemDefault()));
+                ps.setLong(1, delta.operations);
+                ps.setLong(2, delta.bytes);
+                ps.setLong(3, delta.chats);
+                ps.setTimestamp(4, lastActivity);
+                ps.setTimestamp(5, lastActivity);
+                ps.setString(6, delta.roomId);
+            });
+            for (int[] batchCounts : counts) {
+                for (int count : batchCounts) {
+                    // 部分驱动批量执行时返回 SUCCESS_NO_INFO (-2)
+                    rowsUpdated.addAndGet(count < 0 ? 1 : count);
+                }
+            }
+        } catch (RuntimeException e) {
+            // 增量放回计数器，下次再写
+            failed.incrementAndGet();
+            for (Delta delta : batch) {
+                Counters counters = rooms.get(delta.roomId);
+                if (counters != null) {
+                    counters.restore(delta);
+                }
+            }
+            log.warn("Room activity flush failed for {} room(s): {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 计数器只增不减；已写回的部分记在 flushed* 中，只由持有 RoomActivityService 锁的写回线程修改
+     */
+    private static final class Counters {
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder chats = new LongAdder();
+        private volatile long lastActivity = System.currentTimeMillis();
+        private long flushedOperations;
+        private long flushedBytes;
+        private long flushedChats;
+        private long flushedActivity;
+
+        private boolean hasPending() {
+            return operations.sum() != flushedOperations || chats.sum() != flushedChats;
+        }
+
+        private Delta take(String roomId) {
+            long ops = operations.sum();
+            long size = bytes.sum();
+            long chatCount = chats.sum();
+            long activity = lastActivity;
+            if (ops == flushedOperations && chatCount == flushedChats && activity == flushedActivity) {
+                return null;
+            }
+            Delta delta = new Delta(roomId, ops - flushedOperations, size - flushedBytes, chatCount - flushedChats, activity);
+            flushedOperations = ops;
+            flushedBytes = size;
+            flushedChats = chatCount;
+            flushedActivity = activity;
+            return delta;
+        }
+
+        private void restore(Delta delta) {
+            flushedOperations -= delta.operations;
+            flushedBytes -= delta.bytes;
+            flushedChats -= delta.chats;
+            flushedActivity = 0;
+        }
+    }
+
+    private static final class Delta {
+        private final String roomId;
+        private final long operations;
+        private final long bytes;
+        private final long chats;
+        private final long lastActivity;
+
+        private Delta(String roomId, long operations, long bytes, long chats, long lastActivity) {
+            this.roomId = roomId;
+            this.operations = operations;
+            this.bytes = bytes;
+            this.chats = chats;
+            this.lastActivity = lastActivity;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.whiteboard.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 房间生命周期：ACTIVE -> IDLE -> 休眠
+ * 实时消息到达时记录房间的最近活动时间；没有活动超过 idle-after-ms 的房间标记为 IDLE，
+ * 超过 hibernate-after-ms 后写出未持久化的数据并丢弃所有 RoomStateHolder 中的内存状态，
+ * 房间不再占用堆内存，下次有人进入时由各组件按需从数据库重新加载
+ */
+@Service
+public class RoomLifecycleService {
+    private static final Logger log = LoggerFactory.getLogger(RoomLifecycleService.class);
+
+    public enum Phase {
+        ACTIVE, IDLE, HIBERNATING
+    }
+
+    @Autowired
+    private List<RoomStateHolder> holders;
+
+    @Value("${app.rooms.hibernation-enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rooms.idle-after-ms:120000}")
+    private long idleAfterMs;
+
+    @Value("${app.rooms.hibernate-after-ms:900000}")
+    private long hibernateAfterMs;
+
+    // 只记录有内存状态的房间；休眠后删除，不随访问过的房间数增长
+    private final Map<String, RoomActivity> rooms = new ConcurrentHashMap<>();
+
+    private final LongAdder activations = new LongAdder();
+    private final LongAdder hibernations = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    /**
+     * 房间收到实时消息时调用（绘制、聊天、光标、加入、续传），必须在读写房间状态之前
+     * 正在休眠的房间会等休眠完成后再继续，之后的读写按需重新加载
+     */
+    public void touch(String roomId) {
+        if (roomId == null) {
+            return;
+        }
+        RoomActivity room = rooms.get(roomId);
+        if (room == null) {
+            room = rooms.computeIfAbsent(roomId, k -> {
+                activations.increment();
+                return new RoomActivity();
+            });
+        }
+        // 先写活动时间再读阶段，休眠线程反过来先写阶段再读活动时间，两边至少有一方能看到对方
+        room.lastActivity = System.currentTimeMillis();
+        if (room.phase != Phase.ACTIVE) {
+            synchronized (room) {
+                room.phase = Phase.ACTIVE;
+                room.lastActivity = System.currentTimeMillis();
+                // 休眠完成后记录已被删除，重新登记
+                rooms.putIfAbsent(roomId, room);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rooms.lifecycle-interval-ms:30000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        // 没有经过 touch 就加载了状态的房间（例如只通过 HTTP 读取）从现在开始计时
+        for (RoomStateHolder holder : holders) {
+            for (String roomId : holder.getRoomIds()) {
+                rooms.computeIfAbsent(roomId, k -> new RoomActivity());
+            }
+        }
+        long now = System.currentTimeMillis();
+        int hibernated = 0;
+        for (Map.Entry<String, RoomActivity> entry : rooms.entrySet()) {
+            RoomActivity room = entry.getValue();
+            long idle = now - room.lastActivity;
+            if (idle >= hibernateAfterMs) {
+                if (hibernate(entry.getKey(), room)) {
+                    hibernated++;
+                }
+            } else if (idle >= idleAfterMs && room.phase == Phase.ACTIVE) {
+                synchronized (room) {
+                    if (System.currentTimeMillis() - room.lastActivity >= idleAfterMs) {
+                        room.phase = Phase.IDLE;
+                    }
+                }
+            }
+        }
+        if (hibernated > 0) {
+            log.info("Hibernated {} idle room(s), {} room(s) still in memory", hibernated, rooms.size());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Integer> phases = new HashMap<>();
+        for (RoomActivity room : rooms.values()) {
+            phases.merge(room.phase.name(), 1, Integer::sum);
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("rooms", rooms.size());
+        stats.put("phases", phases);
+        stats.put("activations", activations.sum());
+        stats.put("hibernations", hibernations.sum());
+        stats.put("deferred", deferred.sum());
+        stats.put("reclaimedBytes", reclaimedBytes.sum());
+        return stats;
+    }
+
+    /**
+     * 内存中各房间的状态大小估计，按大小倒序取前 limit 个
+     */
+    public Map<String, Object> getMemoryReport(int limit) {
+        Set<String> roomIds = new HashSet<>(rooms.keySet());
+        for (RoomStateHolder holder : holders) {
+            roomIds.addAll(holder.getRoomIds());
+        }
+        long now = System.currentTimeMillis();
+        long total = 0;
+        Map<String, Long> byState = new LinkedHashMap<>();
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (String roomId : roomIds) {
+            Map<String, Long> breakdown = new LinkedHashMap<>();
+            long bytes = 0;
+            for (RoomStateHolder holder : holders) {
+                long size = holder.estimateBytes(roomId);
+                if (size > 0) {
+                    breakdown.put(holder.getStateName(), size);
+                    byState.merge(holder.getStateName(), size, Long::sum);
+                    bytes += size;
+                }
+            }
+            total += bytes;
+            RoomActivity room = rooms.get(roomId);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("roomId", roomId);
+            entry.put("phase", room == null ? Phase.ACTIVE.name() : room.phase.name());
+            entry.put("idleMs", room == null ? 0L : now - room.lastActivity);
+            entry.put("estimatedBytes", bytes);
+            entry.put("breakdown", breakdown);
+            report.add(entry);
+        }
+        report.sort(Comparator.comparingLong((Map<String, Object> e) -> (Long) e.get("estimatedBytes")).reversed());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rooms", roomIds.size());
+        result.put("estimatedBytes", total);
+        result.put("byState", byState);
+        result.put("largest", report.subList(0, Math.min(limit, report.size())));
+        return result;
+    }
+
+    /**
+     * 休眠一个房间；期间有新的活动、有未写完的数据或仍有在线用户时放弃，下一轮再试
+     */
+    private boolean hibernate(String roomId, RoomActivity room) {
+        synchronized (room) {
+            room.phase = Phase.HIBERNATING;
+            if (System.currentTimeMillis() - room.lastActivity < hibernateAfterMs) {
+                room.phase = Phase.ACTIVE;
+                return false;
+            }
+            for (RoomStateHolder holder : holders) {
+                if (!holder.flush(roomId)) {
+                    room.phase = Phase.IDLE;
+                    deferred.increment();
+                    return false;
+                }
+            }
+            long bytes = 0;
+            for (RoomStateHolder holder : holders) {
+                bytes += holder.estimateBytes(roomId);
+                holder.evict(roomId);
+            }
+            rooms.remove(roomId, room);
+            hibernations.increment();
+            reclaimedBytes.add(bytes);
+            return true;
+        }
+    }
+
+    private static final class RoomActivity {
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile Phase phase = Phase.ACTIVE;
+    }
+}
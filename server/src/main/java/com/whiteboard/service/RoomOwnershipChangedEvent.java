@@ -0,0 +1,40 @@
+package com.whiteboard.service;
+
+import java.util.Set;
+
+import org.springframework.context.ApplicationEvent;
+
+import com.whiteboard.util.ConsistentHashRing;
+
+/**
+ * 集群成员变化导致房间归属可能发生移动时发布
+ * 持有房间级内存状态的组件据此释放不再归本节点所有的房间
+ */
+public class RoomOwnershipChangedEvent extends ApplicationEvent {
+    private final ConsistentHashRing previousRing;
+    private final ConsistentHashRing currentRing;
+    private final String selfUrl;
+
+    public RoomOwnershipChangedEvent(Object source, ConsistentHashRing previousRing,
+                                     ConsistentHashRing currentRing, String selfUrl) {
+        super(source);
+        this.previousRing = previousRing;
+        this.currentRing = currentRing;
+        this.selfUrl = selfUrl;
+    }
+
+    /**
+     * 该房间之前归本节点所有，现在被移交到其他节点
+     */
+    public boolean lostOwnership(String roomId) {
+        return selfUrl.equals(previousRing.nodeFor(roomId)) && !selfUrl.equals(currentRing.nodeFor(roomId));
+    }
+
+    public String newOwner(String roomId) {
+        return currentRing.nodeFor(roomId);
+    }
+
+    public Set<String> getCurrentNodes() {
+        return currentRing.getNodes();
+    }
+}
@@ -0,0 +1,212 @@
+package com.whiteboard.service;
+
+import com.whiteboard.dto.RoomPage;
+import com.whiteboard.dto.RoomSummary;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.User;
+import com.whiteboard.repository.RoomRepository;
+import com.whiteboard.util.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+public class RoomService {
+    private static final Logger log = LoggerFactory.getLogger(RoomService.class);
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    // 房间列表的每一页（含缩略图）短暂缓存，创建房间时全部失效
+    @Value("${app.rooms.list-cache-ttl-ms:5000}")
+    private long listCacheTtlMs;
+
+    @Value("${app.rooms.list-cache-size:256}")
+    private int listCacheSize;
+
+    // 绘制和聊天消息每条都要按 roomId 查房间，缓存后稳定状态下不再查库
+    @Value("${app.cache.rooms.max-size:10000}")
+    private int roomCacheSize;
+
+    @Value("${app.cache.rooms.ttl-ms:600000}")
+    private long roomCacheTtlMs;
+
+    private TtlCache<ListKey, RoomPage> listCache;
+    private TtlCache<String, Room> rooms;
+
+    @PostConstruct
+    public void init() {
+        listCache = new TtlCache<>(listCacheSize, listCacheTtlMs);
+        rooms = new TtlCache<>(roomCacheSize, roomCacheTtlMs);
+    }
+
+    public Room createRoom(String name, User owner) {
+        Room room = new Room();
+        room.setRoomId(UUID.randomUUID().toString());
+        room.setName(name);
+        room.setOwner(owner);
+        Room saved = roomRepository.save(room);
+        rooms.put(saved.getRoomId(), saved);
+        listCache.invalidateAll();
+        return saved;
+    }
+
+    /**
+     * 按 roomId 查房间，结果在内存中缓存；返回的是脱离会话的实体，修改后要通过 save 保存
+     */
+    public Optional<Room> findByRoomId(String roomId) {
+        return Optional.ofNullable(rooms.get(roomId, key -> roomRepository.findByRoomId(key).orElse(null)));
+    }
+
+    /**
+     * 一页房间列表，按最近更新时间倒序
+     * @param query 房间名前缀，为空时不过滤
+     * @param cursor 上一页返回的 nextCursor，第一页为 null
+     * @throws IllegalArgumentException cursor 无效
+     */
+    public RoomPage listRooms(String query, String cursor, int limit) {
+        String prefix = query == null || query.isBlank() ? null : query.trim();
+        return listCache.get(new ListKey(prefix, cursor, limit), key -> loadPage(key.prefix, key.cursor, key.limit));
+    }
+
+    public Map<String, Object> getListCacheStats() {
+        return listCache.getStats();
+    }
+
+    public Map<String, Object> getRoomCacheStats() {
+        return rooms.getStats();
+    }
+
+    /**
+     * 保存房间名等可修改的字段；last_updated 和活动计数不由实体写入，
+     * 保存后丢弃缓存，下次读取时取回数据库中的最新值
+     */
+    public Room save(Room room) {
+        Room saved = roomRepository.save(room);
+        rooms.invalidate(saved.getRoomId());
+        listCache.invalidateAll();
+        return saved;
+    }
+
+    /**
+     * 房间在别处（如直接用 SQL）被修改后调用，下次读取时重新查库
+     */
+    public void invalidate(String roomId) {
+        rooms.invalidate(roomId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void fillMissingLastUpdated() {
+        int filled = roomRepository.fillMissingLastUpdated();
+        if (filled > 0) {
+            log.info("Filled lastUpdated for {} room(s)", filled);
+        }
+    }
+
+    private RoomPage loadPage(String prefix, String cursor, int limit) {
+        String like = prefix == null ? null : escapeLike(prefix) + "%";
+        // 多取一条用于判断是否还有下一页
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<RoomSummary> rooms;
+        if (cursor == null) {
+            rooms = roomRepository.findSummaries(like, page);
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            rooms = roomRepository.findSummariesAfter(like, position.lastUpdated, position.id, page);
+        }
+        String nextCursor = null;
+        if (rooms.size() > limit) {
+            rooms = new ArrayList<>(rooms.subList(0, limit));
+            RoomSummary last = rooms.get(limit - 1);
+            nextCursor = new Cursor(last.getLastUpdated(), last.getId()).encode();
+        }
+        Map<Long, String> thumbnails = thumbnailService.getLatestThumbnails(
+            rooms.stream().map(RoomSummary::getId).collect(Collectors.toList()));
+        for (RoomSummary room : rooms) {
+            room.setThumbnail(thumbnails.get(room.getId()));
+        }
+        return new RoomPage(rooms, nextCursor);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static final class ListKey {
+        private final String prefix;
+        private final String cursor;
+        private final int limit;
+
+        private ListKey(String prefix, String cursor, int limit) {
+            this.prefix = prefix;
+            this.cursor = cursor;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ListKey)) {
+                return false;
+            }
+            ListKey other = (ListKey) o;
+            return limit == other.limit && Objects.equals(prefix, other.prefix)
+                && Objects.equals(cursor, other.cursor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(prefix, cursor, limit);
+        }
+    }
+
+    /**
+     * 键集分页的位置：上一页最后一个房间的 (lastUpdated, id)，对客户端不透明
+     */
+    private static final class Cursor {
+        private final LocalDateTime lastUpdated;
+        private final long id;
+
+        private Cursor(LocalDateTime lastUpdated, long id) {
+            this.lastUpdated = lastUpdated;
+            this.id = id;
+        }
+
+        private String encode() {
+            String raw = lastUpdated + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
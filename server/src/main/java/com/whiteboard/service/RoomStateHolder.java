@@ -0,0 +1,36 @@
+package com.whiteboard.service;
+
+import java.util.Collection;
+
+/**
+ * 在内存中按房间保存状态的组件（序列号分配器、最近操作、聊天缓冲、对象场景、在线状态等）
+ * 房间休眠时由 RoomLifecycleService 先调用 flush 再调用 evict；之后第一次使用时各组件自己从数据库重新加载
+ */
+public interface RoomStateHolder {
+    /**
+     * 内存报告中这部分状态的名称
+     */
+    String getStateName();
+
+    /**
+     * 当前在内存中有状态的房间
+     */
+    Collection<String> getRoomIds();
+
+    /**
+     * 写出尚未持久化的数据；还有未完成的写入（或房间仍在使用）时返回 false，这一轮不休眠
+     */
+    default boolean flush(String roomId) {
+        return true;
+    }
+
+    /**
+     * 丢弃房间的内存状态
+     */
+    void evict(String roomId);
+
+    /**
+     * 房间状态占用堆内存的粗略估计（字节），只用于报告
+     */
+    long estimateBytes(String roomId);
+}
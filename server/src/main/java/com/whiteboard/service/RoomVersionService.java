@@ -0,0 +1,149 @@
+package com.whiteboard.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 房间各部分内容（操作日志、最新快照、聊天记录）的版本，用于 HTTP 条件请求的 ETag
+ * 归属节点在内存中记录版本，每次写入提交之后更新，判断 If-None-Match 时不需要查库或加载实体；
+ * 版本号取自本节点的单调时钟并带上启动时间，重启或归属变化后不会和之前发出的 ETag 重复
+ * 不归本节点所有的房间（写入发生在其他节点）每次从数据库取最大的序列号和 id
+ */
+@Service
+public class RoomVersionService implements RoomStateHolder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, RoomVersion> versions = new ConcurrentHashMap<>();
+
+    /**
+     * @return 房间不存在时为空
+     */
+    public Optional<RoomVersion> get(String roomId) {
+        if (!clusterService.isLocal(roomId)) {
+            return loadFromDatabase(roomId);
+        }
+        RoomVersion version = versions.get(roomId);
+        if (version != null) {
+            return Optional.of(version);
+        }
+        List<Long> rooms = jdbcTemplate.queryForList("SELECT id FROM rooms WHERE room_id = ?", Long.class, roomId);
+        if (rooms.isEmpty()) {
+            return Optional.empty();
+        }
+        // 新的版本号比之前发出的都大；在它放进缓存之前提交的写入，之后读取的内容一定包含
+        String stamp = epoch + "." + clock.incrementAndGet();
+        RoomVersion loaded = new RoomVersion(stamp, stamp, stamp);
+        RoomVersion current = versions.putIfAbsent(roomId, loaded);
+        return Optional.of(current != null ? current : loaded);
+    }
+
+    public void operationsChanged(String roomId) {
+        long tick = clock.incrementAndGet();
+        RoomVersion version = versions.get(roomId);
+        if (version != null) {
+            version.operations = epoch + "." + tick;
+        }
+    }
+
+    public void snapshotChanged(String roomId) {
+        long tick = clock.incrementAndGet();
+        RoomVersion version = versions.get(roomId);
+        if (version != null) {
+            version.snapshot = epoch + "." + tick;
+        }
+    }
+
+    public void chatChanged(String roomId) {
+        long tick = clock.incrementAndGet();
+        RoomVersion version = versions.get(roomId);
+        if (version != null) {
+            version.chat = epoch + "." + tick;
+        }
+    }
+
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        versions.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+    }
+
+    @Override
+    public String getStateName() {
+        return "versions";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return versions.keySet();
+    }
+
+    /**
+     * 丢弃后下次读取取新的时钟值，客户端缓存的 ETag 失效一次
+     */
+    @Override
+    public void evict(String roomId) {
+        versions.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        return versions.containsKey(roomId) ? 200 : 0;
+    }
+
+    private Optional<RoomVersion> loadFromDatabase(String roomId) {
+        // 检查点内容不变时只前移最新快照的序列号，所以快照版本同时带上 id 和序列号
+        List<RoomVersion> rows = jdbcTemplate.query(
+            "SELECT " +
+            "(SELECT MAX(o.sequence_number) FROM operations o WHERE o.room_id = r.id) AS operations, " +
+            "(SELECT MAX(s.id) FROM snapshots s WHERE s.room_id = r.id) AS snapshot, " +
+            "(SELECT MAX(s.sequence_number) FROM snapshots s WHERE s.room_id = r.id) AS checkpoint, " +
+            "(SELECT MAX(m.id) FROM messages m WHERE m.room_id = r.id) AS chat " +
+            "FROM rooms r WHERE r.room_id = ?",
+            (rs, i) -> new RoomVersion("db." + rs.getLong("operations"),
+                "db." + rs.getLong("snapshot") + "." + rs.getLong("checkpoint"),
+                "db." + rs.getLong("chat")),
+            roomId);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    /**
+     * 一个房间的内容版本；字段只在写入提交之后更新
+     */
+    public static class RoomVersion {
+        private volatile String operations;
+        private volatile String snapshot;
+        private volatile String chat;
+
+        private RoomVersion(String operations, String snapshot, String chat) {
+            this.operations = operations;
+            this.snapshot = snapshot;
+            this.chat = chat;
+        }
+
+        public String getOperations() {
+            return operations;
+        }
+
+        public String getSnapshot() {
+            return snapshot;
+        }
+
+        public String getChat() {
+            return chat;
+        }
+    }
+}
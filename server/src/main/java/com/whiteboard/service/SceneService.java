@@ -0,0 +1,420 @@
+package com.whiteboard.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.whiteboard.dto.DrawMessage;
+import com.whiteboard.model.Operation;
+import com.whiteboard.model.Room;
+import com.whiteboard.repository.OperationRepository;
+
+/**
+ * 房间的对象场景：矩形、圆、直线、文本带有 objectId，可以被 update / move / delete 增量修改
+ * 每个房间在归属节点上维护一张对象表，按序列号顺序应用操作；首次加载房间时只回放最新的对象状态，
+ * 被取代的历史操作由定时任务在日志中改写为 noop
+ */
+@Service
+public class SceneService implements RoomStateHolder {
+    private static final Logger log = LoggerFactory.getLogger(SceneService.class);
+
+
+    public static final Set<String> OBJECT_TYPES = Set.of("rectangle", "circle", "line", "text");
+    public static final String UPDATE = "update";
+    public static final String MOVE = "move";
+    public static final String DELETE = "delete";
+    public static final String CLEAR = "clear";
+    public static final String NOOP = "noop";
+
+    private static final int MAX_OBJECT_ID_LENGTH = 64;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 等待前面序列号的操作超过这个数量时放弃等待（对应的写入多半已经失败）
+    @Value("${app.scene.max-reorder-buffer:256}")
+    private int maxReorderBuffer;
+
+    private final Map<String, RoomScene> scenes = new ConcurrentHashMap<>();
+
+    public static boolean isObjectOperation(String type) {
+        return OBJECT_TYPES.contains(type) || UPDATE.equals(type) || MOVE.equals(type) || DELETE.equals(type);
+    }
+
+    /**
+     * 从操作数据中取出 objectId；像素操作或数据不合法时返回 null
+     */
+    public String objectIdOf(String type, String data) {
+        if (!isObjectOperation(type)) {
+            return null;
+        }
+        JsonNode node = parse(data);
+        JsonNode id = node == null ? null : node.get("objectId");
+        if (id == null || !id.isTextual() || id.asText().isEmpty() || id.asText().length() > MAX_OBJECT_ID_LENGTH) {
+            return null;
+        }
+        return id.asText();
+    }
+
+    /**
+     * 应用一个已提交的操作；由 OperationService 在每次保存的事务提交后调用
+     */
+    public void apply(Room room, Operation op) {
+        RoomScene scene = sceneFor(room);
+        synchronized (scene) {
+            long sequence = op.getSequenceNumber();
+            if (sequence <= scene.appliedThrough) {
+                return;
+            }
+            // 同一房间的操作可能被不同线程乱序保存，按序列号排队后再应用
+            scene.pending.put(sequence, op);
+            drainPending(scene);
+            if (scene.pending.size() > maxReorderBuffer) {
+                long skipTo = scene.pending.firstKey() - 1;
+                log.warn("Scene room={} skipped missing sequences {}..{}", room.getRoomId(), scene.appliedThrough + 1, skipTo);
+                scene.appliedThrough = skipTo;
+                drainPending(scene);
+            }
+        }
+    }
+
+    /**
+     * 分配了序列号但事务回滚的操作：以 noop 占位，后面的操作不必等到 max-reorder-buffer 才被应用
+     */
+    public void skip(Room room, long sequence) {
+        Operation placeholder = new Operation();
+        placeholder.setSequenceNumber(sequence);
+        placeholder.setOperationType(NOOP);
+        apply(room, placeholder);
+    }
+
+    public Replay compactedReplay(Room room) {
+        return compactedReplay(room, 0L);
+    }
+
+    /**
+     * 压缩后的房间回放：最近一次 clear 之后的像素操作，加上每个存活对象的最新状态（位于其创建时的序列号）
+     * 返回结果恰好反映序列号 <= sequence 的全部操作
+     * @param pixelsThrough 客户端已经绘制了包含这个序列号之前像素操作的检查点，只补发之后的像素操作
+     */
+    public Replay compactedReplay(Room room, long pixelsThrough) {
+        RoomScene scene = sceneFor(room);
+        List<DrawMessage> operations = new ArrayList<>();
+        long through;
+        long clearSequence;
+        synchronized (scene) {
+            through = scene.appliedThrough;
+            clearSequence = scene.clearSequence;
+            for (SceneObject object : scene.objects.values()) {
+                operations.add(object.toDrawMessage(room.getRoomId()));
+            }
+        }
+        if (through > 0) {
+            // 包含 clear 本身，客户端先绘制的快照会被它清掉
+            for (Operation op : operationRepository.findByRoomAndSequenceNumberBetweenAndObjectIdIsNullOrderBySequenceNumberAsc(
+                    room, Math.max(Math.max(1L, clearSequence), pixelsThrough + 1), through)) {
+                if (!NOOP.equals(op.getOperationType())) {
+                    operations.add(OperationService.toDrawMessage(room.getRoomId(), op));
+                }
+            }
+        }
+        operations.sort(Comparator.comparing(DrawMessage::getSequence));
+        return new Replay(operations, through);
+    }
+
+    /**
+     * 把被 clear 或 delete 取代的操作改写为 noop，序列号保持连续
+     */
+    @Scheduled(fixedDelayString = "${app.scene.compaction-interval-ms:60000}")
+    @Transactional
+    public void compactLog() {
+        for (RoomScene scene : scenes.values()) {
+            long compactBefore;
+            List<String> deleted;
+            synchronized (scene) {
+                compactBefore = scene.compactBefore;
+                deleted = new ArrayList<>(scene.deletedObjectIds);
+                scene.compactBefore = 0;
+                scene.deletedObjectIds.clear();
+            }
+            int rewritten = 0;
+            if (compactBefore > 0) {
+                rewritten += operationRepository.compactBefore(scene.roomPk, compactBefore);
+            }
+            if (!deleted.isEmpty()) {
+                rewritten += operationRepository.compactObjects(scene.roomPk, deleted);
+            }
+            if (rewritten > 0) {
+                log.debug("Compacted {} superseded operation(s) room={}", rewritten, scene.roomId);
+            }
+        }
+    }
+
+    /**
+     * 房间最近一次已应用的 clear 的序列号，没有时为 0；在它之前的操作不再影响画面
+     */
+    public long getClearSequence(Room room) {
+        RoomScene scene = sceneFor(room);
+        synchronized (scene) {
+            return scene.clearSequence;
+        }
+    }
+
+    public int countObjects(String roomId) {
+        RoomScene scene = scenes.get(roomId);
+        if (scene == null) {
+            return 0;
+        }
+        synchronized (scene) {
+            return scene.objects.size();
+        }
+    }
+
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        scenes.keySet().removeIf(roomId -> !clusterService.isLocal(roomId));
+    }
+
+    @Override
+    public String getStateName() {
+        return "scene";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return scenes.keySet();
+    }
+
+    /**
+     * 还有等待前序操作的乱序操作，或有待改写为 noop 的日志时等下一轮（compactLog 每分钟执行）
+     */
+    @Override
+    public boolean flush(String roomId) {
+        RoomScene scene = scenes.get(roomId);
+        if (scene == null) {
+            return true;
+        }
+        synchronized (scene) {
+            return scene.pending.isEmpty() && scene.compactBefore == 0 && scene.deletedObjectIds.isEmpty();
+        }
+    }
+
+    @Override
+    public void evict(String roomId) {
+        scenes.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        RoomScene scene = scenes.get(roomId);
+        if (scene == null) {
+            return 0;
+        }
+        synchronized (scene) {
+            long bytes = 200;
+            for (Map.Entry<String, SceneObject> entry : scene.objects.entrySet()) {
+                // 条目 + objectId + 对象本身 + JSON 树（按字段数估计）
+                bytes += 160 + entry.getKey().length() + entry.getValue().data.size() * 96L;
+            }
+            return bytes + scene.pending.size() * 400L + scene.deletedObjectIds.size() * 80L;
+        }
+    }
+
+    private RoomScene sceneFor(Room room) {
+        return scenes.computeIfAbsent(room.getRoomId(), k -> loadScene(room));
+    }
+
+    /**
+     * 从数据库重建对象表：只需要最近一次 clear 之后带 objectId 的操作
+     */
+    private RoomScene loadScene(Room room) {
+        RoomScene scene = new RoomScene(room.getRoomId(), room.getId());
+        Operation last = operationRepository.findTopByRoomOrderBySequenceNumberDesc(room);
+        if (last == null) {
+            return scene;
+        }
+        Operation lastClear = operationRepository.findTopByRoomAndOperationTypeOrderBySequenceNumberDesc(room, CLEAR);
+        scene.clearSequence = lastClear == null ? 0L : lastClear.getSequenceNumber();
+        for (Operation op : operationRepository.findByRoomAndSequenceNumberBetweenAndObjectIdIsNotNullOrderBySequenceNumberAsc(
+                room, scene.clearSequence + 1, last.getSequenceNumber())) {
+            applyInOrder(scene, op);
+        }
+        scene.appliedThrough = last.getSequenceNumber();
+        return scene;
+    }
+
+    private void drainPending(RoomScene scene) {
+        Iterator<Map.Entry<Long, Operation>> it = scene.pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Operation> next = it.next();
+            if (next.getKey() <= scene.appliedThrough) {
+                it.remove();
+                continue;
+            }
+            if (next.getKey() != scene.appliedThrough + 1) {
+                break;
+            }
+            it.remove();
+            applyInOrder(scene, next.getValue());
+            scene.appliedThrough = next.getKey();
+        }
+    }
+
+    private void applyInOrder(RoomScene scene, Operation op) {
+        String type = op.getOperationType();
+        long sequence = op.getSequenceNumber();
+        if (CLEAR.equals(type)) {
+            scene.objects.clear();
+            scene.clearSequence = sequence;
+            scene.compactBefore = sequence;
+            return;
+        }
+        String objectId = op.getObjectId();
+        if (objectId == null) {
+            return;
+        }
+        if (OBJECT_TYPES.contains(type)) {
+            JsonNode data = parse(op.getOperationData());
+            if (data instanceof ObjectNode) {
+                String username = op.getUser() == null ? null
+                    : (op.getUser().getOriginalUsername() != null ? op.getUser().getOriginalUsername() : op.getUser().getUsername());
+                scene.objects.put(objectId, new SceneObject(type, (ObjectNode) data, sequence, username));
+            }
+            return;
+        }
+        if (DELETE.equals(type)) {
+            if (scene.objects.remove(objectId) != null) {
+                scene.deletedObjectIds.add(objectId);
+            }
+            return;
+        }
+        SceneObject object = scene.objects.get(objectId);
+        JsonNode delta = parse(op.getOperationData());
+        if (object == null || delta == null) {
+            return;
+        }
+        if (UPDATE.equals(type)) {
+            // 只带被修改的字段，例如 {"objectId":"...","color":"#ff0000"}
+            delta.fields().forEachRemaining(field -> {
+                if (!"objectId".equals(field.getKey())) {
+                    object.data.set(field.getKey(), field.getValue());
+                }
+            });
+        } else if (MOVE.equals(type)) {
+            object.translate(delta.path("dx").asDouble(0), delta.path("dy").asDouble(0));
+        }
+    }
+
+    private JsonNode parse(String data) {
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(data);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    public static class Replay {
+        private final List<DrawMessage> operations;
+        private final long sequence;
+
+        private Replay(List<DrawMessage> operations, long sequence) {
+            this.operations = operations;
+            this.sequence = sequence;
+        }
+
+        public List<DrawMessage> getOperations() {
+            return operations;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    private static class RoomScene {
+        private final String roomId;
+        private final Long roomPk;
+        // 保持创建顺序，即绘制顺序
+        private final Map<String, SceneObject> objects = new LinkedHashMap<>();
+        private final TreeMap<Long, Operation> pending = new TreeMap<>();
+        private final Set<String> deletedObjectIds = new HashSet<>();
+        private long appliedThrough;
+        private long clearSequence;
+        private long compactBefore;
+
+        private RoomScene(String roomId, Long roomPk) {
+            this.roomId = roomId;
+            this.roomPk = roomPk;
+        }
+    }
+
+    private static class SceneObject {
+        private final String type;
+        private final ObjectNode data;
+        private final long createdSequence;
+        private final String username;
+
+        private SceneObject(String type, ObjectNode data, long createdSequence, String username) {
+            this.type = type;
+            this.data = data;
+            this.createdSequence = createdSequence;
+            this.username = username;
+        }
+
+        private void translate(double dx, double dy) {
+            if ("line".equals(type)) {
+                shift("x1", dx);
+                shift("y1", dy);
+                shift("x2", dx);
+                shift("y2", dy);
+            } else {
+                shift("x", dx);
+                shift("y", dy);
+            }
+        }
+
+        private void shift(String field, double delta) {
+            data.put(field, data.path(field).asDouble(0) + delta);
+        }
+
+        private DrawMessage toDrawMessage(String roomId) {
+            DrawMessage message = new DrawMessage();
+            message.setRoomId(roomId);
+            message.setType(type);
+            message.setData(data.toString());
+            message.setSequence(createdSequence);
+            message.setUsername(username);
+            return message;
+        }
+    }
+}
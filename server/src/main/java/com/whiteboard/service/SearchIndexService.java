@@ -0,0 +1,252 @@
+package com.whiteboard.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.whiteboard.dto.ChatHistoryEntry;
+import com.whiteboard.dto.ChatHistoryPage;
+import com.whiteboard.model.Room;
+import com.whiteboard.repository.MessageRepository;
+import com.whiteboard.search.RoomSearchIndex;
+import com.whiteboard.search.SearchHits;
+import com.whiteboard.search.Tokenizer;
+
+/**
+ * 聊天记录全文搜索
+ * 每个房间一个倒排索引，段文件保存在 app.search.index-dir/room-{id} 下；索引在第一次搜索时打开，
+ * 之后由 ChatBatchWriter 在消息写入后增量更新。每次搜索前先从数据库补齐 id 更大的消息，
+ * 因此重启丢失的内存缓冲区、其他节点写入的消息都会被补上
+ */
+@Service
+public class SearchIndexService implements RoomStateHolder {
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Value("${app.search.index-dir:data/search-index}")
+    private String indexDir;
+
+    // 内存缓冲区达到这个文档数时立即写成段，否则由定时任务写出
+    @Value("${app.search.flush-docs:5000}")
+    private int flushDocs;
+
+    @Value("${app.search.merge-factor:8}")
+    private int mergeFactor;
+
+    // 前缀查询最多展开的词数
+    @Value("${app.search.max-prefix-expansions:1024}")
+    private int maxPrefixExpansions;
+
+    @Value("${app.search.catch-up-batch-size:1000}")
+    private int catchUpBatchSize;
+
+    private final Map<String, IndexedRoom> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 消息写入数据库后调用；索引还没打开的房间跳过，打开时会从数据库补齐
+     */
+    public void index(String roomId, long messageId, String content) {
+        IndexedRoom indexed = indexes.get(roomId);
+        // 首次补齐完成之前不接收增量，否则最大 id 前移会让补齐跳过更早的消息
+        if (indexed == null || !indexed.caughtUp) {
+            return;
+        }
+        indexed.index.add(messageId, content);
+        if (indexed.index.getBufferedDocs() >= flushDocs) {
+            flushQuietly(indexed);
+        }
+    }
+
+    /**
+     * 搜索房间聊天记录，所有词都要匹配，以 * 结尾的词按前缀匹配
+     * 结果按 id 倒序（最新的在前）；nextBefore 作为下一次请求的 before 参数
+     */
+    public ChatHistoryPage search(Room room, String query, Long before, int limit) {
+        List<String> terms = Tokenizer.tokenizeQuery(query);
+        if (terms.isEmpty()) {
+            return new ChatHistoryPage(Collections.emptyList(), false, null);
+        }
+        IndexedRoom indexed = open(room);
+        catchUp(room, indexed);
+        SearchHits hits = indexed.index.search(terms, before != null ? before : Long.MAX_VALUE, limit);
+        if (hits.getIds().isEmpty()) {
+            return new ChatHistoryPage(Collections.emptyList(), false, null);
+        }
+        List<ChatHistoryEntry> entries = new ArrayList<>(messageRepository.findEntriesByIds(room, hits.getIds()));
+        entries.sort(Comparator.comparing(ChatHistoryEntry::getId).reversed());
+        Long nextBefore = hits.isHasMore() ? hits.getIds().get(hits.getIds().size() - 1) : null;
+        return new ChatHistoryPage(entries, hits.isHasMore(), nextBefore);
+    }
+
+    /**
+     * 定时把内存缓冲区写成段，并做分级合并
+     */
+    @Scheduled(fixedDelayString = "${app.search.flush-interval-ms:30000}")
+    public void flushAndMerge() {
+        for (IndexedRoom indexed : indexes.values()) {
+            flushQuietly(indexed);
+            try {
+                while (indexed.index.maybeMerge(mergeFactor, flushDocs)) {
+                    log.debug("Merged search segments room={} segments={}", indexed.roomId, indexed.index.getSegmentCount());
+                }
+            } catch (IOException e) {
+                log.warn("Search segment merge failed room={}: {}", indexed.roomId, e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long docs = 0;
+        long segments = 0;
+        long sizeBytes = 0;
+        for (IndexedRoom indexed : indexes.values()) {
+            docs += indexed.index.getDocCount();
+            segments += indexed.index.getSegmentCount();
+            sizeBytes += indexed.index.getSizeBytes();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("openRooms", indexes.size());
+        stats.put("documents", docs);
+        stats.put("segments", segments);
+        stats.put("sizeBytes", sizeBytes);
+        return stats;
+    }
+
+    @Override
+    public String getStateName() {
+        return "searchIndex";
+    }
+
+    @Override
+    public Collection<String> getRoomIds() {
+        return indexes.keySet();
+    }
+
+    /**
+     * 缓冲区写成段；写失败的文档在下次打开时从数据库补齐，不影响休眠
+     */
+    @Override
+    public boolean flush(String roomId) {
+        IndexedRoom indexed = indexes.get(roomId);
+        if (indexed != null) {
+            flushQuietly(indexed);
+        }
+        return true;
+    }
+
+    /**
+     * 关闭后的增量直接跳过，下次搜索时重新打开段文件并从数据库补齐
+     */
+    @Override
+    public void evict(String roomId) {
+        indexes.remove(roomId);
+    }
+
+    @Override
+    public long estimateBytes(String roomId) {
+        IndexedRoom indexed = indexes.get(roomId);
+        return indexed == null ? 0 : indexed.index.estimateHeapBytes();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (IndexedRoom indexed : indexes.values()) {
+            flushQuietly(indexed);
+        }
+    }
+
+    private IndexedRoom open(Room room) {
+        return indexes.computeIfAbsent(room.getRoomId(), roomId -> {
+            Path directory = Paths.get(indexDir, "room-" + room.getId());
+            try {
+                return new IndexedRoom(roomId, new RoomSearchIndex(directory, maxPrefixExpansions));
+            } catch (IOException e) {
+                // 段文件损坏时丢弃整个索引，由 catchUp 从数据库重建
+                log.warn("Rebuilding search index room={}: {}", roomId, e.getMessage());
+                deleteQuietly(directory);
+                try {
+                    return new IndexedRoom(roomId, new RoomSearchIndex(directory, maxPrefixExpansions));
+                } catch (IOException again) {
+                    throw new RuntimeException("Search index unavailable: " + again.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 把数据库中 id 大于索引最大 id 的消息加入索引；同一房间的补齐串行执行
+     */
+    private void catchUp(Room room, IndexedRoom indexed) {
+        synchronized (indexed) {
+            long after = indexed.index.getMaxIndexedId();
+            long added = 0;
+            while (true) {
+                List<ChatHistoryEntry> batch = messageRepository.findEntriesAfter(room, after, PageRequest.of(0, catchUpBatchSize));
+                for (ChatHistoryEntry entry : batch) {
+                    indexed.index.add(entry.getId(), entry.getContent());
+                    after = entry.getId();
+                }
+                added += batch.size();
+                if (indexed.index.getBufferedDocs() >= flushDocs) {
+                    flushQuietly(indexed);
+                }
+                if (batch.size() < catchUpBatchSize) {
+                    break;
+                }
+            }
+            indexed.caughtUp = true;
+            if (added > catchUpBatchSize) {
+                log.debug("Indexed {} chat message(s) room={}", added, indexed.roomId);
+            }
+        }
+    }
+
+    private void flushQuietly(IndexedRoom indexed) {
+        try {
+            indexed.index.flush();
+        } catch (IOException e) {
+            log.warn("Search index flush failed room={}: {}", indexed.roomId, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException ignored) {
+            // 下次打开时再试
+        }
+    }
+
+    private static final class IndexedRoom {
+        private final String roomId;
+        private final RoomSearchIndex index;
+        private volatile boolean caughtUp;
+
+        private IndexedRoom(String roomId, RoomSearchIndex index) {
+            this.roomId = roomId;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,724 @@
+package com.whiteboard.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whiteboard.dto.SnapshotManifest;
+import com.whiteboard.dto.SnapshotStorageStats;
+import com.whiteboard.jfr.SnapshotLoadEvent;
+import com.whiteboard.jfr.SnapshotSaveEvent;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.Snapshot;
+import com.whiteboard.repository.SnapshotRepository;
+import com.whiteboard.util.PngStreamWriter;
+import com.whiteboard.util.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class SnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    public static final String PNG = "image/png";
+    public static final String WEBP = "image/webp";
+
+    // data:image/png;base64, 前缀的最大长度
+    private static final int MAX_DATA_URL_PREFIX = 64;
+
+    @Autowired
+    private SnapshotRepository snapshotRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private RoomVersionService roomVersionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.snapshots.max-bytes:20971520}")
+    private long maxBytes;
+
+    // PNG 快照切成 tile-size x tile-size 的图块，只保存内容变化了的图块
+    @Value("${app.snapshots.tile-size:256}")
+    private int tileSize;
+
+    // 解码前检查图片尺寸，防止很小的 PNG 解压出巨大的位图；解码后每个像素占 4 字节
+    @Value("${app.snapshots.max-pixels:8388608}")
+    private long maxPixels;
+
+    // 同时解码的上传数；解码图片占用的堆最多为 max-concurrent-decodes x max-pixels x 4 字节
+    @Value("${app.snapshots.max-concurrent-decodes:2}")
+    private int maxConcurrentDecodes;
+
+    @Value("${app.snapshots.decode-wait-ms:10000}")
+    private long decodeWaitMs;
+
+    private Semaphore decodePermits;
+
+    // 每个房间最新清单中的图块，按快照版本缓存：加载一次快照的几十个图块请求只读一次清单
+    @Value("${app.snapshots.tile-set-cache-size:1000}")
+    private int tileSetCacheSize;
+
+    private TtlCache<String, LatestTiles> latestTiles;
+
+    @PostConstruct
+    public void init() {
+        latestTiles = new TtlCache<>(tileSetCacheSize, 600000);
+        decodePermits = new Semaphore(maxConcurrentDecodes, true);
+    }
+
+    /**
+     * 从输入流保存快照；只接受 PNG / WebP，类型由文件头判断而不是请求头
+     * PNG 按图块保存，WebP 整张保存；和房间最新快照内容相同时不新增记录
+     */
+    public SavedSnapshot saveSnapshot(Room room, InputStream content) throws IOException {
+        SnapshotSaveEvent event = new SnapshotSaveEvent();
+        event.begin();
+        BufferedInputStream in = new BufferedInputStream(content);
+        String contentType = detectContentType(in);
+        if (contentType == null) {
+            throw new IllegalArgumentException("Snapshot must be a PNG or WebP image");
+        }
+        SavedSnapshot saved = PNG.equals(contentType) ? saveTiled(room, in) : saveWhole(room, in, contentType);
+        commit(event, room, saved, false);
+        return saved;
+    }
+
+    private SavedSnapshot saveWhole(Room room, InputStream in, String contentType) throws IOException {
+        BlobStore.StoredBlob blob = blobStore.put(in, maxBytes);
+        Optional<Snapshot> latest = getLatestSnapshot(room);
+        if (latest.isPresent() && blob.getHash().equals(latest.get().getContentHash())) {
+            return new SavedSnapshot(latest.get(), true, 1, 0);
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.setRoom(room);
+        snapshot.setContentHash(blob.getHash());
+        snapshot.setContentType(contentType);
+        snapshot.setSizeBytes(blob.getSize());
+        snapshot.setStoredBytes(blob.isCreated() ? blob.getSize() : 0L);
+        Snapshot saved = snapshotRepository.save(snapshot);
+        roomVersionService.snapshotChanged(room.getRoomId());
+        return new SavedSnapshot(saved, false, 1, blob.isCreated() ? 1 : 0);
+    }
+
+    /**
+     * 解码 PNG 并切成图块；图块的键是像素内容的 SHA-256，已经存在的图块不再编码和写入，
+     * 所以只改动了一小块区域的快照只会新增几个图块和一份清单
+     * 整张图片解码后才能切块，解码到切块结束期间占用一个解码许可，限制同时驻留在堆中的位图数量
+     * @throws BusyException 等待 decode-wait-ms 仍然拿不到许可
+     */
+    private SavedSnapshot saveTiled(Room room, InputStream content) throws IOException {
+        try {
+            if (!decodePermits.tryAcquire(decodeWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new BusyException("Too many snapshot uploads in progress");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException("Interrupted while waiting to decode snapshot");
+        }
+        try {
+            LimitedInputStream in = new LimitedInputStream(content, maxBytes);
+            BufferedImage image = decodePng(in);
+            in.transferTo(OutputStream.nullOutputStream());
+            return storeTiles(room, image, in.getCount(), null);
+        } finally {
+            decodePermits.release();
+        }
+    }
+
+    /**
+     * 保存服务端渲染的检查点；按整张图片计算的大小用所有图块的大小之和代替
+     * 图片与最新的检查点相同时只把它的序列号前移，不新增记录
+     */
+    public SavedSnapshot saveCheckpoint(Room room, BufferedImage image, long sequence) throws IOException {
+        SnapshotSaveEvent event = new SnapshotSaveEvent();
+        event.begin();
+        SavedSnapshot saved = storeTiles(room, image, -1, sequence);
+        commit(event, room, saved, true);
+        return saved;
+    }
+
+    private static void commit(SnapshotSaveEvent event, Room room, SavedSnapshot saved, boolean checkpoint) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.roomId = room.getRoomId();
+            event.payloadBytes = saved.getSnapshot().getSizeBytes() == null ? 0 : saved.getSnapshot().getSizeBytes();
+            event.storedBytes = saved.isUnchanged() || saved.getSnapshot().getStoredBytes() == null ? 0 : saved.getSnapshot().getStoredBytes();
+            event.checkpoint = checkpoint;
+            event.tiles = saved.getTiles();
+            event.newTiles = saved.getNewTiles();
+            event.unchanged = saved.isUnchanged();
+            event.commit();
+        }
+    }
+
+    public Optional<Snapshot> getLatestCheckpoint(Room room) {
+        return snapshotRepository.findTopByRoomAndSequenceNumberIsNotNullOrderBySequenceNumberDesc(room);
+    }
+
+    /**
+     * @param logicalBytes 上传的图片大小；小于 0 时按图块大小之和计算
+     * @param sequence 检查点对应的序列号，手动保存为 null
+     */
+    private SavedSnapshot storeTiles(Room room, BufferedImage image, long logicalBytes, Long sequence) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        List<String> tiles = new ArrayList<>();
+        int[] pixels = new int[tileSize * tileSize];
+        long storedBytes = 0;
+        long tileBytes = 0;
+        int newTiles = 0;
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                int w = Math.min(tileSize, width - x);
+                int h = Math.min(tileSize, height - y);
+                image.getRGB(x, y, w, h, pixels, 0, w);
+                String hash = tileHash(pixels, w, h);
+                // 复用已有图块时更新它的修改时间，避免被垃圾回收当作孤儿删除
+                if (blobStore.exists(hash) && blobStore.touch(hash)) {
+                    if (logicalBytes < 0) {
+                        tileBytes += blobStore.size(hash);
+                    }
+                } else {
+                    byte[] encoded = encodeTile(pixels, w, h);
+                    if (blobStore.putAs(hash, encoded)) {
+                        storedBytes += encoded.length;
+                        newTiles++;
+                    }
+                    tileBytes += encoded.length;
+                }
+                tiles.add(hash);
+            }
+        }
+
+        byte[] manifest = objectMapper.writeValueAsBytes(new SnapshotManifest(width, height, tileSize, tiles));
+        BlobStore.StoredBlob manifestBlob = blobStore.put(new ByteArrayInputStream(manifest), Long.MAX_VALUE);
+        Optional<Snapshot> latest = getLatestSnapshot(room);
+        if (latest.isPresent() && manifestBlob.getHash().equals(latest.get().getManifestHash())) {
+            Snapshot same = latest.get();
+            if (sequence != null && (same.getSequenceNumber() == null || same.getSequenceNumber() < sequence)) {
+                same.setSequenceNumber(sequence);
+                same = snapshotRepository.save(same);
+                roomVersionService.snapshotChanged(room.getRoomId());
+            }
+            return new SavedSnapshot(same, true, tiles.size(), 0);
+        }
+        if (manifestBlob.isCreated()) {
+            storedBytes += manifestBlob.getSize();
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.setRoom(room);
+        snapshot.setManifestHash(manifestBlob.getHash());
+        snapshot.setContentType(PNG);
+        snapshot.setSizeBytes(logicalBytes >= 0 ? logicalBytes : tileBytes + manifestBlob.getSize());
+        snapshot.setStoredBytes(storedBytes);
+        snapshot.setSequenceNumber(sequence);
+        Snapshot saved = snapshotRepository.save(snapshot);
+        roomVersionService.snapshotChanged(room.getRoomId());
+        return new SavedSnapshot(saved, false, tiles.size(), newTiles);
+    }
+
+    private BufferedImage decodePng(InputStream in) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("png");
+            if (stream == null || !readers.hasNext()) {
+                throw new IOException("PNG decoder unavailable");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("Snapshot exceeds " + maxPixels + " pixels");
+                }
+                return reader.read(0);
+            } catch (BlobStore.TooLargeException | IllegalArgumentException e) {
+                throw e;
+            } catch (IOException e) {
+                // 解码器会把读取时的异常包装成 IIOException
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof BlobStore.TooLargeException) {
+                        throw (BlobStore.TooLargeException) cause;
+                    }
+                }
+                throw new IllegalArgumentException("Snapshot is not a valid PNG image");
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static String tileHash(int[] pixels, int w, int h) {
+        MessageDigest digest = BlobStore.sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(8, 4 * w));
+        buffer.putInt(w).putInt(h).flip();
+        digest.update(buffer);
+        for (int row = 0; row < h; row++) {
+            buffer.clear();
+            buffer.asIntBuffer().put(pixels, row * w, w);
+            buffer.limit(4 * w);
+            digest.update(buffer);
+        }
+        return BlobStore.toHex(digest.digest());
+    }
+
+    // 图块只编码一次，之后被所有快照共用，使用最高压缩级别
+    private static byte[] encodeTile(int[] pixels, int w, int h) throws IOException {
+        BufferedImage tile = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        tile.setRGB(0, 0, w, h, pixels, 0, w);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.0f);
+            writer.write(null, new IIOImage(tile, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    public Optional<Snapshot> getLatestSnapshot(Room room) {
+        return snapshotRepository.findTopByRoomOrderByCreatedAtDesc(room);
+    }
+
+    public List<Snapshot> getRoomSnapshots(Room room) {
+        return snapshotRepository.findByRoomOrderByCreatedAtDesc(room);
+    }
+
+    public SnapshotStorageStats getStorageStats(Room room) {
+        return snapshotRepository.getStorageStats(room);
+    }
+
+    /**
+     * 整张保存的快照的图片内容；对象文件丢失或快照按图块保存时返回空
+     */
+    public Optional<Resource> openContent(Snapshot snapshot) {
+        if (snapshot.getContentHash() == null || !blobStore.exists(snapshot.getContentHash())) {
+            return Optional.empty();
+        }
+        return Optional.of(new FileSystemResource(blobStore.path(snapshot.getContentHash())));
+    }
+
+    /**
+     * 按图块保存的快照拼成的整张 PNG，与整张保存的快照一样以文件返回（Content-Length、Range）
+     * 第一次请求时拼接并按内容哈希写入 BlobStore，记在同一清单的所有快照上；清单或图块丢失时返回空
+     */
+    public Optional<Resource> openAssembled(String roomId, Snapshot snapshot) throws IOException {
+        String hash = snapshot.getAssembledHash();
+        if (hash != null && blobStore.exists(hash)) {
+            return Optional.of(new FileSystemResource(blobStore.path(hash)));
+        }
+        Optional<SnapshotManifest> manifest = readManifest(snapshot);
+        if (manifest.isEmpty()) {
+            return Optional.empty();
+        }
+        // 拼接结果的长度事先未知，先写临时文件，再按内容哈希存入 BlobStore
+        Path temp = Files.createTempFile("assembled-", ".png");
+        BlobStore.StoredBlob blob;
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                writeAssembled(roomId, manifest.get(), out);
+            }
+            try (InputStream in = Files.newInputStream(temp)) {
+                blob = blobStore.put(in, Long.MAX_VALUE);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        jdbcTemplate.update("UPDATE snapshots SET assembled_hash = ? WHERE manifest_hash = ?", blob.getHash(), snapshot.getManifestHash());
+        snapshot.setAssembledHash(blob.getHash());
+        return Optional.of(new FileSystemResource(blobStore.path(blob.getHash())));
+    }
+
+    /**
+     * 按图块保存的快照的清单；清单或其中任何一个图块丢失时返回空
+     */
+    public Optional<SnapshotManifest> readManifest(Snapshot snapshot) throws IOException {
+        if (!snapshot.isTiled() || !blobStore.exists(snapshot.getManifestHash())) {
+            return Optional.empty();
+        }
+        SnapshotManifest manifest;
+        try (InputStream in = blobStore.open(snapshot.getManifestHash())) {
+            manifest = objectMapper.readValue(in, SnapshotManifest.class);
+        }
+        for (String tile : manifest.getTiles()) {
+            if (!blobStore.exists(tile)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(manifest);
+    }
+
+    /**
+     * 按清单把图块解码成一整张图片，用作下一个检查点的底图
+     */
+    public BufferedImage readImage(String roomId, SnapshotManifest manifest) throws IOException {
+        SnapshotLoadEvent event = new SnapshotLoadEvent();
+        event.begin();
+        BufferedImage image = new BufferedImage(manifest.getWidth(), manifest.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int columns = manifest.getColumns();
+        for (int i = 0; i < manifest.getTiles().size(); i++) {
+            BufferedImage tile;
+            try (InputStream in = blobStore.open(manifest.getTiles().get(i))) {
+                tile = ImageIO.read(in);
+            }
+            if (tile == null) {
+                throw new IOException("Unreadable snapshot tile " + manifest.getTiles().get(i));
+            }
+            int x = (i % columns) * manifest.getTileSize();
+            int y = (i / columns) * manifest.getTileSize();
+            int[] pixels = tile.getRGB(0, 0, tile.getWidth(), tile.getHeight(), null, 0, tile.getWidth());
+            image.setRGB(x, y, tile.getWidth(), tile.getHeight(), pixels, 0, tile.getWidth());
+        }
+        commit(event, roomId, manifest, "decode");
+        return image;
+    }
+
+    /**
+     * 图块是否属于房间最新快照的清单
+     * @param snapshotVersion 房间当前的快照版本（RoomVersionService），版本变化时重新读取清单
+     */
+    public boolean isLatestTile(Room room, String snapshotVersion, String hash) throws IOException {
+        LatestTiles cached = latestTiles.getIfPresent(room.getRoomId());
+        if (cached == null || !cached.version.equals(snapshotVersion)) {
+            Set<String> tiles = new HashSet<>();
+            Optional<Snapshot> latest = getLatestSnapshot(room);
+            if (latest.isPresent()) {
+                readManifest(latest.get()).ifPresent(manifest -> tiles.addAll(manifest.getTiles()));
+            }
+            cached = new LatestTiles(snapshotVersion, tiles);
+            latestTiles.put(room.getRoomId(), cached);
+        }
+        return cached.tiles.contains(hash);
+    }
+
+    /**
+     * 单个图块（PNG）；哈希无效或图块不存在时返回空
+     */
+    public Optional<Resource> openTile(String hash) {
+        if (!blobStore.exists(hash)) {
+            return Optional.empty();
+        }
+        return Optional.of(new FileSystemResource(blobStore.path(hash)));
+    }
+
+    /**
+     * 按清单把图块拼成一张 PNG 写到 out；每次只解码一行图块，内存占用与图片高度无关
+     */
+    public void writeAssembled(String roomId, SnapshotManifest manifest, OutputStream out) throws IOException {
+        SnapshotLoadEvent event = new SnapshotLoadEvent();
+        event.begin();
+        int width = manifest.getWidth();
+        int columns = manifest.getColumns();
+        PngStreamWriter png = new PngStreamWriter(out, width, manifest.getHeight());
+        byte[] row = new byte[width * 4];
+        int[] line = new int[manifest.getTileSize()];
+        BufferedImage[] tiles = new BufferedImage[columns];
+        for (int tileRow = 0; tileRow < manifest.getRows(); tileRow++) {
+            for (int col = 0; col < columns; col++) {
+                try (InputStream in = blobStore.open(manifest.getTiles().get(tileRow * columns + col))) {
+                    tiles[col] = ImageIO.read(in);
+                }
+            }
+            int rows = Math.min(manifest.getTileSize(), manifest.getHeight() - tileRow * manifest.getTileSize());
+            for (int y = 0; y < rows; y++) {
+                int offset = 0;
+                for (BufferedImage tile : tiles) {
+                    int w = tile.getWidth();
+                    tile.getRGB(0, y, w, 1, line, 0, w);
+                    for (int i = 0; i < w; i++) {
+                        int argb = line[i];
+                        row[offset++] = (byte) (argb >> 16);
+                        row[offset++] = (byte) (argb >> 8);
+                        row[offset++] = (byte) argb;
+                        row[offset++] = (byte) (argb >>> 24);
+                    }
+                }
+                png.writeRow(row);
+            }
+        }
+        png.finish();
+        commit(event, roomId, manifest, "assemble");
+    }
+
+    private static void commit(SnapshotLoadEvent event, String roomId, SnapshotManifest manifest, String mode) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.roomId = roomId;
+            event.payloadBytes = (long) manifest.getWidth() * manifest.getHeight() * 4;
+            event.mode = mode;
+            event.tiles = manifest.getTiles().size();
+            event.commit();
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 把旧版本保存在 snapshots.image_data (LONGTEXT) 中的 base64 data URL 转存到 BlobStore
+     * 每次只读一行；空的快照（旧的定时任务写入的 ""）直接删除
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacySnapshots() {
+        if (!hasLegacyColumn()) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM snapshots WHERE content_hash IS NULL AND manifest_hash IS NULL ORDER BY id", Long.class);
+        if (ids.isEmpty()) {
+            return;
+        }
+        int migrated = 0;
+        int removed = 0;
+        for (Long id : ids) {
+            try {
+                Boolean converted = jdbcTemplate.query("SELECT image_data FROM snapshots WHERE id = ?",
+                    rs -> rs.next() ? migrateRow(id, rs) : null, id);
+                if (Boolean.TRUE.equals(converted)) {
+                    migrated++;
+                } else if (Boolean.FALSE.equals(converted)) {
+                    jdbcTemplate.update("DELETE FROM snapshots WHERE id = ?", id);
+                    removed++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to migrate snapshot {}: {}", id, e.getMessage());
+            }
+        }
+        log.info("Migrated {} base64 snapshot(s) to the blob store, removed {} empty one(s)", migrated, removed);
+    }
+
+    /**
+     * @return 转存成功返回 true，内容为空返回 false，内容无法识别时返回 null（保留原行）
+     */
+    private Boolean migrateRow(Long id, ResultSet rs) throws SQLException {
+        try (InputStream ascii = rs.getAsciiStream("image_data")) {
+            if (ascii == null) {
+                return false;
+            }
+            BufferedInputStream text = new BufferedInputStream(ascii);
+            text.mark(1);
+            if (text.read() == -1) {
+                return false;
+            }
+            text.reset();
+            skipDataUrlPrefix(text);
+            BufferedInputStream in = new BufferedInputStream(Base64.getMimeDecoder().wrap(text));
+            String contentType = detectContentType(in);
+            if (contentType == null) {
+                log.warn("Snapshot {} is not a PNG or WebP image, leaving it unmigrated", id);
+                return null;
+            }
+            BlobStore.StoredBlob blob = blobStore.put(in, Long.MAX_VALUE);
+            jdbcTemplate.update("UPDATE snapshots SET content_hash = ?, content_type = ?, size_bytes = ?, stored_bytes = ?, image_data = NULL WHERE id = ?",
+                blob.getHash(), contentType, blob.getSize(), blob.isCreated() ? blob.getSize() : 0L, id);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Snapshot {} is not a valid image: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean hasLegacyColumn() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            for (String[] names : new String[][] {{"snapshots", "image_data"}, {"SNAPSHOTS", "IMAGE_DATA"}}) {
+                try (ResultSet columns = con.getMetaData().getColumns(con.getCatalog(), null, names[0], names[1])) {
+                    if (columns.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+
+    /**
+     * 跳过 "data:image/png;base64," 前缀；没有前缀时回到开头
+     */
+    private static void skipDataUrlPrefix(BufferedInputStream text) throws IOException {
+        text.mark(MAX_DATA_URL_PREFIX);
+        for (int i = 0; i < MAX_DATA_URL_PREFIX; i++) {
+            int c = text.read();
+            if (c == ',') {
+                return;
+            }
+            if (c == -1) {
+                break;
+            }
+        }
+        text.reset();
+    }
+
+    /**
+     * 根据文件头识别 PNG / WebP，不消耗输入
+     */
+    private static String detectContentType(BufferedInputStream in) throws IOException {
+        byte[] header = new byte[12];
+        in.mark(header.length);
+        int n = in.readNBytes(header, 0, header.length);
+        in.reset();
+        if (n >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G'
+            && header[4] == 0x0D && header[5] == 0x0A && header[6] == 0x1A && header[7] == 0x0A) {
+            return PNG;
+        }
+        if (n == 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+            && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return WEBP;
+        }
+        return null;
+    }
+
+    /**
+     * 同时解码的上传已达上限，客户端应稍后重试
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class LatestTiles {
+        private final String version;
+        private final Set<String> tiles;
+
+        private LatestTiles(String version, Set<String> tiles) {
+            this.version = version;
+            this.tiles = tiles;
+        }
+    }
+
+    public static class SavedSnapshot {
+        private final Snapshot snapshot;
+        private final boolean unchanged;
+        private final int tiles;
+        private final int newTiles;
+
+        private SavedSnapshot(Snapshot snapshot, boolean unchanged, int tiles, int newTiles) {
+            this.snapshot = snapshot;
+            this.unchanged = unchanged;
+            this.tiles = tiles;
+            this.newTiles = newTiles;
+        }
+
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * 与房间最新快照内容相同，没有新增记录
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        public int getTiles() {
+            return tiles;
+        }
+
+        public int getNewTiles() {
+            return newTiles;
+        }
+    }
+
+    /**
+     * 统计读取的字节数，超过上限时抛出 TooLargeException
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        private void advance(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new BlobStore.TooLargeException(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.whiteboard.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.whiteboard.dto.SnapshotManifest;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.Snapshot;
+import com.whiteboard.repository.RoomRepository;
+
+/**
+ * 房间列表用的缩略图
+ * 在后台线程中从房间最新的快照（或检查点）缩小生成 JPEG，存入 BlobStore，哈希记在快照上；
+ * 房间没有新快照时缩略图不变，内容相同的快照直接复用已有的缩略图
+ */
+@Service
+public class ThumbnailService {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    public static final String CONTENT_TYPE = "image/jpeg";
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.thumbnails.enabled:true}")
+    private boolean enabled;
+
+    // 缩略图按比例缩小到不超过 width x height，不放大
+    @Value("${app.thumbnails.width:320}")
+    private int maxWidth;
+
+    @Value("${app.thumbnails.height:180}")
+    private int maxHeight;
+
+    @Value("${app.thumbnails.quality:0.8}")
+    private float quality;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // 单线程：缩略图不着急，不和检查点抢 CPU
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "thumbnail");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 请求为房间最新的快照生成缩略图；同一房间已在排队时忽略
+     */
+    public void request(String roomId) {
+        if (!enabled || !pending.add(roomId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                pending.remove(roomId);
+                try {
+                    Optional<Room> room = roomRepository.findByRoomId(roomId);
+                    if (room.isPresent()) {
+                        generate(room.get());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.warn("Thumbnail failed room={}: {}", roomId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(roomId);
+        }
+    }
+
+    /**
+     * 房间最新快照的缩略图哈希；还没有生成时为空
+     */
+    public Optional<String> getThumbnailHash(Snapshot snapshot) {
+        String hash = snapshot.getThumbnailHash();
+        if (hash == null || !blobStore.exists(hash)) {
+            return Optional.empty();
+        }
+        return Optional.of(hash);
+    }
+
+    public Optional<Resource> open(String hash) {
+        if (!blobStore.exists(hash)) {
+            return Optional.empty();
+        }
+        return Optional.of(new FileSystemResource(blobStore.path(hash)));
+    }
+
+    /**
+     * 指定房间最新快照的缩略图哈希（房间主键 -> 哈希），用于房间列表；快照 id 随创建时间递增
+     */
+    public Map<Long, String> getLatestThumbnails(Collection<Long> roomPks) {
+        Map<Long, String> thumbnails = new HashMap<>();
+        if (roomPks.isEmpty()) {
+            return thumbnails;
+        }
+        String in = roomPks.stream().map(String::valueOf).collect(Collectors.joining(","));
+        jdbcTemplate.query("SELECT room_id, thumbnail_hash FROM snapshots WHERE id IN " +
+            "(SELECT MAX(id) FROM snapshots WHERE room_id IN (" + in + ") GROUP BY room_id) AND thumbnail_hash IS NOT NULL",
+            rs -> {
+                thumbnails.put(rs.getLong("room_id"), rs.getString("thumbnail_hash"));
+            });
+        return thumbnails;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", pending.size());
+        stats.put("generated", generated.get());
+        stats.put("reused", reused.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(Room room) throws IOException {
+        Optional<Snapshot> latest = snapshotService.getLatestSnapshot(room);
+        if (latest.isEmpty() || getThumbnailHash(latest.get()).isPresent()) {
+            return;
+        }
+        Snapshot snapshot = latest.get();
+        String hash = findExisting(snapshot);
+        if (hash != null) {
+            reused.incrementAndGet();
+        } else {
+            BufferedImage image = readImage(snapshot);
+            if (image == null) {
+                return;
+            }
+            byte[] thumbnail = encode(scale(image));
+            hash = BlobStore.toHex(BlobStore.sha256().digest(thumbnail));
+            blobStore.putAs(hash, thumbnail);
+            generated.incrementAndGet();
+        }
+        jdbcTemplate.update("UPDATE snapshots SET thumbnail_hash = ? WHERE id = ?", hash, snapshot.getId());
+    }
+
+    /**
+     * 内容相同（清单或图片哈希相同）的快照已经有缩略图时直接复用
+     */
+    private String findExisting(Snapshot snapshot) throws IOException {
+        String column = snapshot.isTiled() ? "manifest_hash" : "content_hash";
+        String content = snapshot.isTiled() ? snapshot.getManifestHash() : snapshot.getContentHash();
+        if (content == null) {
+            return null;
+        }
+        List<String> hashes = jdbcTemplate.queryForList("SELECT thumbnail_hash FROM snapshots WHERE " + column
+            + " = ? AND thumbnail_hash IS NOT NULL ORDER BY id DESC LIMIT 1", String.class, content);
+        if (hashes.isEmpty() || !blobStore.exists(hashes.get(0)) || !blobStore.touch(hashes.get(0))) {
+            return null;
+        }
+        return hashes.get(0);
+    }
+
+    private BufferedImage readImage(Snapshot snapshot) throws IOException {
+        if (snapshot.isTiled()) {
+            Optional<SnapshotManifest> manifest = snapshotService.readManifest(snapshot);
+            return manifest.isPresent() ? snapshotService.readImage(snapshot.getRoom().getRoomId(), manifest.get()) : null;
+        }
+        Optional<Resource> content = snapshotService.openContent(snapshot);
+        if (content.isEmpty()) {
+            return null;
+        }
+        try (InputStream in = content.get().getInputStream()) {
+            // 没有 WebP 解码器时 ImageIO 返回 null，这类快照不生成缩略图
+            return ImageIO.read(in);
+        }
+    }
+
+    /**
+     * 先逐次减半再做最后一次双线性缩放，避免一次缩小太多倍时丢掉细线
+     */
+    private BufferedImage scale(BufferedImage source) {
+        double ratio = Math.min(1.0, Math.min((double) maxWidth / source.getWidth(), (double) maxHeight / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2, BufferedImage.TYPE_INT_ARGB);
+        }
+        // 画布背景是白色，透明的部分铺白后才能存成 JPEG
+        return resize(current, width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG encoder available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,13 +1,18 @@
 package com.whiteboard.service;
 
+import java.util.Map;
 import java.util.Optional;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.whiteboard.model.User;
 import com.whiteboard.repository.UserRepository;
 import com.whiteboard.util.HashUtil;
+import com.whiteboard.util.TtlCache;
 
 @Service
 public class UserService {
@@ -17,6 +22,22 @@ public class UserService {
     @Autowired
     private HashUtil hashUtil;
 
+    // 每次 STOMP 消息和 HTTP 请求都要按用户名查用户；按原始用户名缓存同时省掉 PBKDF2 哈希和数据库查询
+    @Value("${app.cache.users.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${app.cache.users.ttl-ms:600000}")
+    private long cacheTtlMs;
+
+    private TtlCache<String, User> usersByName;
+    private TtlCache<Long, User> usersById;
+
+    @PostConstruct
+    public void init() {
+        usersByName = new TtlCache<>(cacheMaxSize, cacheTtlMs);
+        usersById = new TtlCache<>(cacheMaxSize, cacheTtlMs);
+    }
+
     public User register(String username, String password, String email) {
         // 检查用户名是否已存在（通过哈希值查找）
         String hashedUsername = hashUtil.hashUsername(username);
@@ -42,20 +63,44 @@ public class UserService {
         user.setPassword(hashedPassword); // 存储哈希后的密码
         user.setSalt(salt); // 存储 salt（用于密码验证）
         user.setEmail(email);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        cache(username, saved);
+        return saved;
     }
 
     /**
-     * 通过原始用户名查找用户
-     * 需要遍历所有用户并验证用户名哈希
+     * 通过原始用户名查找用户（按用户名的哈希值查询），结果在内存中缓存
      */
     public Optional<User> findByUsername(String username) {
-        String hashedUsername = hashUtil.hashUsername(username);
-        return userRepository.findByUsername(hashedUsername);
+        // 只在真正查库时顺便填充按 id 的缓存，命中时不写
+        return Optional.ofNullable(usersByName.get(username, name -> {
+            User loaded = userRepository.findByUsername(hashUtil.hashUsername(name)).orElse(null);
+            if (loaded != null) {
+                usersById.put(loaded.getId(), loaded);
+            }
+            return loaded;
+        }));
     }
 
     public Optional<User> findById(Long id) {
-        return userRepository.findById(id);
+        return Optional.ofNullable(usersById.get(id, key -> userRepository.findById(key).orElse(null)));
+    }
+
+    /**
+     * 修改用户之后调用，丢弃缓存中的旧对象
+     */
+    public void invalidate(User user) {
+        usersByName.invalidate(user.getOriginalUsername());
+        usersById.invalidate(user.getId());
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return Map.of("byName", usersByName.getStats(), "byId", usersById.getStats());
+    }
+
+    private void cache(String username, User user) {
+        usersByName.put(username, user);
+        usersById.put(user.getId(), user);
     }
 
     /**
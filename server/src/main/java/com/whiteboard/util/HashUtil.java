@@ -5,12 +5,19 @@ import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
 
+import javax.annotation.PostConstruct;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.whiteboard.jfr.HashEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 /**
  * 用于处理 salt+pepper 哈希的工具类
  * Salt: 每个用户唯一的随机值
@@ -28,6 +35,19 @@ public class HashUtil {
     
     @Value("${app.username.salt:UsernameSaltKey2023ChangeInProduction}")
     private String usernameSalt; // 用于用户名的通用 salt（便于查找）
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // PBKDF2 耗时，按用途分开：用户名查找和密码
+    private Timer usernameTimer;
+    private Timer passwordTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        usernameTimer = Timer.builder("whiteboard.hash").tag("kind", "username").register(meterRegistry);
+        passwordTimer = Timer.builder("whiteboard.hash").tag("kind", "password").register(meterRegistry);
+    }
     
     /**
      * 生成随机 salt
@@ -46,6 +66,12 @@ public class HashUtil {
      * @return Base64 编码的哈希值
      */
     public String hashWithSaltAndPepper(String data, String salt) {
+        return passwordTimer.record(() -> pbkdf2(data, salt, "password"));
+    }
+
+    private String pbkdf2(String data, String salt, String kind) {
+        HashEvent event = new HashEvent();
+        event.begin();
         try {
             byte[] saltBytes = Base64.getDecoder().decode(salt);
             
@@ -66,6 +92,9 @@ public class HashUtil {
             return Base64.getEncoder().encodeToString(hash);
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             throw new RuntimeException("哈希处理失败", e);
+        } finally {
+            event.kind = kind;
+            event.commit();
         }
     }
     
@@ -89,7 +118,7 @@ public class HashUtil {
     public String hashUsername(String username) {
         // 将通用 salt 编码为 Base64 格式
         String saltBase64 = Base64.getEncoder().encodeToString(usernameSalt.getBytes());
-        return hashWithSaltAndPepper(username, saltBase64);
+        return usernameTimer.record(() -> pbkdf2(username, saltBase64, "username"));
     }
     
     /**
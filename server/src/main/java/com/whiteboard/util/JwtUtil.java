@@ -1,5 +1,6 @@
 package com.whiteboard.util;
 
+import com.whiteboard.jfr.JwtParseEvent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -40,11 +41,20 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        JwtParseEvent event = new JwtParseEvent();
+        event.begin();
+        try {
+            Claims claims = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+            event.valid = true;
+            return claims;
+        } finally {
+            event.payloadBytes = token == null ? 0 : token.length();
+            event.commit();
+        }
     }
 
     private Boolean isTokenExpired(String token) {
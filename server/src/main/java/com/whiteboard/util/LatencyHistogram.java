@@ -0,0 +1,105 @@
+package com.whiteboard.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的延迟直方图（按毫秒近似对数分布），记录时无锁、不分配对象
+ * 分位数取所在桶的上界，精度为一个桶宽，足够用来区分各阶段的量级
+ */
+public final class LatencyHistogram {
+    // 桶上界（微秒）；最后一个桶收集更大的值
+    private static final long[] BOUNDS_MICROS = {
+        250, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000,
+        100_000, 200_000, 500_000, 1_000_000, 2_000_000, 5_000_000, 10_000_000
+    };
+
+    public static final int BUCKETS = BOUNDS_MICROS.length + 1;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1_000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        counts[bucketOf(micros)].increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : counts) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * count、mean、p50/p90/p99、max（毫秒）以及各桶的计数（键为桶上界，"+Inf" 为最后一个桶）
+     */
+    public Map<String, Object> snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        long max = maxMicros.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", count);
+        result.put("meanMs", count == 0 ? 0d : millis(totalMicros.sum() / count));
+        result.put("p50Ms", millis(percentile(snapshot, count, 0.50, max)));
+        result.put("p90Ms", millis(percentile(snapshot, count, 0.90, max)));
+        result.put("p99Ms", millis(percentile(snapshot, count, 0.99, max)));
+        result.put("maxMs", millis(max));
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.put(i < BOUNDS_MICROS.length ? String.valueOf(millis(BOUNDS_MICROS[i])) : "+Inf", snapshot[i]);
+        }
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    private static long percentile(long[] snapshot, long count, double quantile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_MICROS[i], max);
+            }
+        }
+        return max;
+    }
+
+    private static int bucketOf(long micros) {
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            if (micros <= BOUNDS_MICROS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS_MICROS.length;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000d;
+    }
+}
@@ -0,0 +1,103 @@
+package com.whiteboard.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 逐行写出 RGBA PNG，不需要把整张图放进内存
+ * 压缩后的数据每攒满 CHUNK_SIZE 字节写出一个 IDAT 块；每行使用 Up 滤波，白板上大面积的纯色压缩得更好
+ */
+public final class PngStreamWriter {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int FILTER_UP = 2;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(CHUNK_SIZE + 1024);
+    private final DeflaterOutputStream deflater;
+    private final Deflater compressor = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[] previous;
+    private final byte[] filtered;
+    private int rows;
+
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.previous = new byte[width * 4];
+        this.filtered = new byte[width * 4 + 1];
+        this.deflater = new DeflaterOutputStream(pending, compressor, 8192);
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.writeByte(8);  // 每通道 8 位
+        ihdr.writeByte(6);  // RGBA
+        ihdr.writeByte(0);
+        ihdr.writeByte(0);
+        ihdr.writeByte(0);
+        writeChunk("IHDR", header.toByteArray(), header.size());
+    }
+
+    /**
+     * @param rgba 一行像素，长度 width * 4
+     */
+    public void writeRow(byte[] rgba) throws IOException {
+        if (rows >= height) {
+            throw new IllegalStateException("All " + height + " rows already written");
+        }
+        filtered[0] = FILTER_UP;
+        for (int i = 0; i < previous.length; i++) {
+            filtered[i + 1] = (byte) (rgba[i] - previous[i]);
+        }
+        System.arraycopy(rgba, 0, previous, 0, previous.length);
+        deflater.write(filtered);
+        rows++;
+        if (pending.size() >= CHUNK_SIZE) {
+            flushPending();
+        }
+    }
+
+    public void finish() throws IOException {
+        if (rows != height) {
+            throw new IllegalStateException("Expected " + height + " rows, got " + rows);
+        }
+        deflater.finish();
+        compressor.end();
+        flushPending();
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    private void flushPending() throws IOException {
+        if (pending.size() > 0) {
+            writeChunk("IDAT", pending.toByteArray(), pending.size());
+            pending.reset();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+}
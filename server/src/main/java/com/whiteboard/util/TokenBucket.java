@@ -0,0 +1,41 @@
+package com.whiteboard.util;
+
+/**
+ * 令牌桶限流器
+ * 只使用基本类型字段，tryConsume 在热路径上不分配任何对象
+ */
+public final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized boolean tryConsume(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1d) {
+            tokens -= 1d;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean hasToken(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= 1d;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
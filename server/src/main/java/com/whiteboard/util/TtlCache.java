@@ -0,0 +1,151 @@
+package com.whiteboard.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 有大小上限和过期时间的本地缓存
+ * 条目写入 ttlMillis 毫秒后过期；超过 maxSize 时按最近最少使用淘汰
+ * 加载在锁外进行，同一个键并发未命中时可能加载多次，以最后开始的加载为准
+ * 加载期间这个键被 put 或 invalidate 时，加载结果不再写入；其他键的写入不影响
+ * 加载结果为 null 时不缓存
+ */
+public final class TtlCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    // 正在加载的键 -> 本次加载的令牌；put / invalidate 移除令牌，令牌不在了说明加载期间这个键被写过
+    private final Map<K, Long> loading = new HashMap<>();
+    private long nextToken;
+
+    public TtlCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long now = System.nanoTime();
+        long token;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations.increment();
+            }
+            token = ++nextToken;
+            loading.put(key, token);
+        }
+        misses.increment();
+        V value = null;
+        try {
+            value = loader.apply(key);
+        } finally {
+            complete(key, value, now, token);
+        }
+        return value;
+    }
+
+    /**
+     * 只读缓存，不加载
+     */
+    public synchronized V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || System.nanoTime() - entry.loadedAt >= ttlNanos) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            loading.remove(key);
+            putLocked(key, value, now);
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        loading.remove(key);
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        loading.clear();
+        entries.clear();
+    }
+
+    /**
+     * 未过期条目的副本，不计入命中，也不改变淘汰顺序
+     */
+    public synchronized Map<K, V> snapshot() {
+        long now = System.nanoTime();
+        Map<K, V> result = new HashMap<>();
+        entries.forEach((key, entry) -> {
+            if (now - entry.loadedAt < ttlNanos) {
+                result.put(key, entry.value);
+            }
+        });
+        return result;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return Map.of(
+            "size", size(),
+            "maxSize", maxSize,
+            "hits", hitCount,
+            "misses", missCount,
+            "hitRatio", total == 0 ? 0.0 : (double) hitCount / total,
+            "evictions", evictions.sum(),
+            "expirations", expirations.sum());
+    }
+
+    private synchronized void complete(K key, V value, long loadedAt, long token) {
+        if (loading.remove(key, token) && value != null) {
+            putLocked(key, value, loadedAt);
+        }
+    }
+
+    private void putLocked(K key, V value, long loadedAt) {
+        entries.put(key, new Entry<>(value, loadedAt));
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        // 过期的条目在下次读取时才删除；超出上限时淘汰最久未使用的
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -3,6 +3,10 @@ let currentRoomId = null;
 let currentUser = null;
 let token = null;
 let canvas, ctx;
+let objectCanvas, objectCtx; // Layer for addressable shapes, drawn above the pixel canvas
+let sceneObjects = new Map(); // objectId -> { objectId, type, data }, in drawing order
+let selectedObjectId = null;
+let dragState = null;
 let isDrawing = false;
 let currentTool = 'pen';
 let startX, startY;
@@ -10,7 +14,39 @@ let currentPath = [];
 let operationHistory = [];
 let historyIndex = -1;
 let userCursors = {};
-let pendingOperations = []; // Queue for operations when WebSocket is not connected
+let pendingOperations = []; // Operations sent (or waiting to be sent) but not yet acked by the server
+let lastSequence = 0; // Highest room sequence applied with no gaps before it
+let sequenceBuffer = new Map(); // sequence -> operation that arrived ahead of a gap
+let roomStateLoaded = false; // Broadcasts are buffered until the initial room state is applied
+let gapFillTimer = null;
+let localOpIds = new Set(); // clientOpIds generated by this tab, to skip our own echoes
+let chatNextBefore = null; // Keyset cursor for older chat history (null when fully loaded)
+let chatLoadingOlder = false;
+let roomServerUrl = ''; // Base URL of the node that owns the current room ('' = this origin)
+let presenceUsers = new Map(); // username -> presence, maintained from server deltas
+let presenceVersion = -1; // -1 until the first full presence list arrives
+let presenceHeartbeatTimer = null;
+let redirectHops = 0; // Redirects followed within REDIRECT_RESET_AFTER of each other
+let lastRedirectAt = 0;
+let redirectTimer = null;
+let pendingAckRetries = new Map(); // clientOpId -> resend attempts while the server reports it as still being saved
+
+const PRESENCE_HEARTBEAT_INTERVAL = 20000;
+const GAP_FILL_DELAY = 300; // Give reordered broadcasts a moment to arrive before fetching
+const GAP_FILL_MAX = 500; // Matches the server's app.operations.gap-fill-max
+const LOCAL_OP_IDS_MAX = 2000;
+const CHAT_PAGE_SIZE = 50;
+const CURSOR_SEND_INTERVAL = 40; // Stay below the server's per-session cursor rate limit
+const TRACE_SAMPLE_RATE = 0.1; // Fraction of our strokes that carry a latency trace
+const TRACE_RENDER_REPORTERS = 3; // Expected number of viewers reporting render time for one traced stroke
+const REDIRECT_MAX_HOPS = 6; // Nodes can disagree about the ring while membership changes; stop bouncing after this
+const REDIRECT_BASE_DELAY = 250; // Backoff before following a redirect, doubled on every hop
+const REDIRECT_MAX_DELAY = 8000;
+const REDIRECT_RESET_AFTER = 30000; // A connection that stays put this long starts a fresh hop count
+const PENDING_ACK_BASE_DELAY = 250; // Backoff before resending an operation the server is still saving, doubled per attempt
+const PENDING_ACK_MAX_DELAY = 5000;
+let lastCursorSentAt = 0;
+let pendingCursorTimer = null;
 
 const colors = ['#FF0000', '#00FF00', '#0000FF', '#FFFF00', '#FF00FF', '#00FFFF', '#000000', '#FFFFFF'];
 
@@ -28,6 +64,11 @@ function initCanvas() {
     ctx.lineCap = 'round';
     ctx.lineJoin = 'round';
     
+    objectCanvas = document.getElementById('objectLayer');
+    objectCtx = objectCanvas.getContext('2d');
+    objectCanvas.width = canvas.width;
+    objectCanvas.height = canvas.height;
+    
     const initialImageData = ctx.getImageData(0, 0, canvas.width, canvas.height);
     operationHistory.push(initialImageData);
     historyIndex = 0;
@@ -38,7 +79,10 @@ function initCanvas() {
         if (canvas) {
             canvas.width = window.innerWidth - 320;
             canvas.height = window.innerHeight - 64;
+            objectCanvas.width = canvas.width;
+            objectCanvas.height = canvas.height;
             redrawCanvas();
+            renderObjects();
         }
     });
 }
@@ -58,12 +102,19 @@ function setupCanvasEvents() {
             if (text && text.trim()) {
                 const color = document.getElementById('colorPicker').value;
                 const fontSize = parseInt(document.getElementById('lineWidth').value) * 5 || 16;
-                drawText(startX, startY, text, color, fontSize);
-                sendDrawOperation('text', { x: startX, y: startY, text: text, color, fontSize });
+                createObject('text', { x: startX, y: startY, text: text, color, fontSize });
             }
             return;
         }
         
+        if (currentTool === 'select') {
+            const hit = hitTestObject(startX, startY);
+            selectedObjectId = hit ? hit.objectId : null;
+            dragState = hit ? { objectId: hit.objectId, lastX: startX, lastY: startY, dx: 0, dy: 0 } : null;
+            renderObjects();
+            return;
+        }
+        
         isDrawing = true;
         
         if (currentTool === 'pen' || currentTool === 'eraser') {
@@ -77,12 +128,20 @@ function setupCanvasEvents() {
         const x = e.clientX - rect.left;
         const y = e.clientY - rect.top;
         
-        if (stompClient && stompClient.connected && currentRoomId) {
-            stompClient.send('/app/cursor', {}, JSON.stringify({
-                roomId: currentRoomId,
-                x: x,
-                y: y
-            }));
+        sendCursor(x, y);
+        
+        if (dragState) {
+            // Preview locally; a single move delta is sent when the drag ends
+            const object = sceneObjects.get(dragState.objectId);
+            if (object) {
+                translateObject(object, x - dragState.lastX, y - dragState.lastY);
+                dragState.dx += x - dragState.lastX;
+                dragState.dy += y - dragState.lastY;
+                dragState.lastX = x;
+                dragState.lastY = y;
+                renderObjects();
+            }
+            return;
         }
         
         if (isDrawing) {
@@ -100,6 +159,14 @@ function setupCanvasEvents() {
 
     canvas.addEventListener('mouseup', (e) => {
         if (!currentRoomId) return;
+        if (dragState) {
+            const drag = dragState;
+            dragState = null;
+            if (Math.abs(drag.dx) >= 1 || Math.abs(drag.dy) >= 1) {
+                sendDrawOperation('move', { objectId: drag.objectId, dx: drag.dx, dy: drag.dy });
+            }
+            return;
+        }
         if (isDrawing) {
             const rect = canvas.getBoundingClientRect();
             const endX = e.clientX - rect.left;
@@ -122,22 +189,19 @@ function setupCanvasEvents() {
                     const width = endX - startX;
                     const height = endY - startY;
                     if (Math.abs(width) > 1 || Math.abs(height) > 1) {
-                        drawRectangle(startX, startY, width, height, color, lineWidth);
-                        sendDrawOperation('rectangle', { x: startX, y: startY, width, height, color, lineWidth });
+                        createObject('rectangle', { x: startX, y: startY, width, height, color, lineWidth });
                     }
                     break;
                 case 'circle':
                     const radius = Math.sqrt(Math.pow(endX - startX, 2) + Math.pow(endY - startY, 2));
                     if (radius > 1) {
-                        drawCircle(startX, startY, radius, color, lineWidth);
-                        sendDrawOperation('circle', { x: startX, y: startY, radius, color, lineWidth });
+                        createObject('circle', { x: startX, y: startY, radius, color, lineWidth });
                     }
                     break;
                 case 'line':
                     const distance = Math.sqrt(Math.pow(endX - startX, 2) + Math.pow(endY - startY, 2));
                     if (distance > 1) {
-                        drawLine(startX, startY, endX, endY, color, lineWidth);
-                        sendDrawOperation('line', { x1: startX, y1: startY, x2: endX, y2: endY, color, lineWidth });
+                        createObject('line', { x1: startX, y1: startY, x2: endX, y2: endY, color, lineWidth });
                     }
                     break;
             }
@@ -146,7 +210,29 @@ function setupCanvasEvents() {
     });
 }
 
-function connectWebSocket() {
+function sendCursor(x, y) {
+    if (!stompClient || !stompClient.connected || !currentRoomId) {
+        return;
+    }
+    if (pendingCursorTimer) {
+        clearTimeout(pendingCursorTimer);
+        pendingCursorTimer = null;
+    }
+    const elapsed = Date.now() - lastCursorSentAt;
+    if (elapsed < CURSOR_SEND_INTERVAL) {
+        // Coalesce: only the latest position is sent once the interval has passed
+        pendingCursorTimer = setTimeout(() => sendCursor(x, y), CURSOR_SEND_INTERVAL - elapsed);
+        return;
+    }
+    lastCursorSentAt = Date.now();
+    stompClient.send('/app/cursor', {}, JSON.stringify({
+        roomId: currentRoomId,
+        x: x,
+        y: y
+    }));
+}
+
+function connectWebSocket(isReconnect) {
     if (stompClient && stompClient.connected) {
         console.log('WebSocket already connected, disconnecting first...');
         stompClient.disconnect();
@@ -158,7 +244,7 @@ function connectWebSocket() {
     }
     
     // Pass token as query parameter (SockJS doesn't support custom headers well)
-    const wsUrl = '/ws' + (token ? '?token=' + encodeURIComponent(token) : '');
+    const wsUrl = roomServerUrl + '/ws' + (token ? '?token=' + encodeURIComponent(token) : '');
     const socket = new SockJS(wsUrl);
     stompClient = Stomp.over(socket);
     
@@ -172,20 +258,19 @@ function connectWebSocket() {
         console.log('✅ WebSocket Connected: ' + frame);
         
         // Subscribe to draw messages
-        stompClient.subscribe('/topic/draw', function(message) {
+        stompClient.subscribe('/topic/room/' + currentRoomId + '/draw', function(message) {
             const drawMsg = JSON.parse(message.body);
             console.log('Received draw message:', drawMsg);
+            if (drawMsg.trace) {
+                drawMsg.receivedAt = performance.now();
+            }
             if (drawMsg.roomId === currentRoomId) {
-                if (drawMsg.username !== currentUser) {
-                    applyDrawOperation(drawMsg);
-                } else {
-                    console.log('Ignoring own draw message (already applied locally)');
-                }
+                receiveOperation(drawMsg);
             }
         });
         
         // Subscribe to chat messages
-        stompClient.subscribe('/topic/chat', function(message) {
+        stompClient.subscribe('/topic/room/' + currentRoomId + '/chat', function(message) {
             const chatMsg = JSON.parse(message.body);
             console.log('Received chat message:', chatMsg, 'Current user:', currentUser);
             if (chatMsg.roomId === currentRoomId) {
@@ -204,19 +289,40 @@ function connectWebSocket() {
         });
         
         // Subscribe to cursor updates
-        stompClient.subscribe('/topic/cursor', function(message) {
+        stompClient.subscribe('/topic/room/' + currentRoomId + '/cursor', function(message) {
             const cursorMsg = JSON.parse(message.body);
             if (cursorMsg.roomId === currentRoomId && cursorMsg.username && cursorMsg.username !== currentUser && cursorMsg.username !== 'null') {
                 updateCursor(cursorMsg.username, cursorMsg.x, cursorMsg.y);
             }
         });
         
+        // The room may move to another node (cluster membership change) or we may have
+        // connected to a node that does not own it; either way reconnect to the owner
+        // Acks carry the sequence the server assigned to one of our operations
+        stompClient.subscribe('/user/queue/ack', function(message) {
+            handleOperationAck(JSON.parse(message.body));
+        });
+        stompClient.subscribe('/user/queue/resume', function(message) {
+            handleResume(JSON.parse(message.body));
+        });
+        
+        stompClient.subscribe('/user/queue/redirect', function(message) {
+            handleRoomRedirect(JSON.parse(message.body));
+        });
+        stompClient.subscribe('/topic/room/' + currentRoomId + '/redirect', function(message) {
+            handleRoomRedirect(JSON.parse(message.body));
+        });
+        
         // Subscribe to room user updates
         if (currentRoomId) {
+            resetPresence();
             stompClient.subscribe('/topic/room/' + currentRoomId + '/users', function(message) {
-                const userMsg = JSON.parse(message.body);
-                updateUsersList(userMsg.users);
+                applyPresence(JSON.parse(message.body));
             });
+            stompClient.subscribe('/user/queue/presence', function(message) {
+                applyPresence(JSON.parse(message.body));
+            });
+            startPresenceHeartbeat();
             
             // Send join message after subscription
             setTimeout(() => {
@@ -225,7 +331,13 @@ function connectWebSocket() {
                         stompClient.send('/app/join', {}, JSON.stringify({ roomId: currentRoomId }));
                         console.log('✅ Join message sent for room:', currentRoomId);
                         
-                        // Flush any pending operations after join
+                        // After a dropped connection only fetch what we missed, not the whole room
+                        if (isReconnect) {
+                            stompClient.send('/app/resume', {}, JSON.stringify({ roomId: currentRoomId, lastSequence: lastSequence }));
+                            console.log('Resume requested after sequence', lastSequence);
+                        }
+                        
+                        // Resend unacked operations after join (the server drops duplicates)
                         setTimeout(() => {
                             flushPendingOperations();
                         }, 200);
@@ -241,7 +353,7 @@ function connectWebSocket() {
         setTimeout(() => {
             if (currentRoomId) {
                 console.log('Retrying WebSocket connection...');
-                connectWebSocket();
+                connectWebSocket(true);
             }
         }, 2000);
     });
@@ -327,6 +439,7 @@ function logout() {
     token = null;
     currentUser = null;
     currentRoomId = null;
+    stopPresenceHeartbeat();
     localStorage.removeItem('whiteboard_token');
     localStorage.removeItem('whiteboard_user');
     
@@ -388,6 +501,8 @@ function doLeaveRoom(roomIdToLeave) {
     currentRoomId = null;
     userCursors = {};
     pendingOperations = [];
+    stopPresenceHeartbeat();
+    resetPresence();
     
     // Hide app and show room modal
     const app = document.getElementById('app');
@@ -458,9 +573,18 @@ function createRoom(name) {
     });
 }
 
-function joinRoom(roomId) {
+// ownerUrl is passed when following a redirect; otherwise the owner is looked up first
+function joinRoom(roomId, ownerUrl) {
     console.log('Joining room:', roomId);
     
+    if (ownerUrl === undefined) {
+        redirectHops = 0;
+        if (redirectTimer) {
+            clearTimeout(redirectTimer);
+            redirectTimer = null;
+        }
+    }
+    
     // Disconnect existing WebSocket if any
     if (stompClient && stompClient.connected) {
         stompClient.disconnect();
@@ -486,109 +610,260 @@ function joinRoom(roomId) {
     
     // Clear canvas and history
     clearCanvas();
+    clearScene();
     operationHistory = [];
     historyIndex = -1;
+    resetSequenceState();
     
-    // First, load the latest snapshot
-    fetch('/api/rooms/' + roomId + '/snapshot', {
+    // Update UI
+    const roomNameDisplay = document.getElementById('roomNameDisplay');
+    if (roomNameDisplay) {
+        roomNameDisplay.textContent = `📋 ${roomId.substring(0, 8)}...`;
+    }
+    
+    const userInToolbar = document.getElementById('currentUserInToolbar');
+    if (userInToolbar && currentUser) {
+        userInToolbar.textContent = currentUser;
+    }
+    
+    // Each room is owned by one cluster node; talk to that node directly
+    const roomServer = ownerUrl === undefined ? resolveRoomServer(roomId) : Promise.resolve(setRoomServer(roomId, ownerUrl));
+    roomServer.then(() => {
+        if (currentRoomId !== roomId) {
+            return;
+        }
+        loadRoomState(roomId);
+        
+        // Connect WebSocket (will send join message automatically)
+        connectWebSocket();
+        
+        // Load chat history
+        loadChatHistory(roomId);
+    });
+}
+
+function resolveRoomServer(roomId) {
+    return fetch('/api/cluster/rooms/' + roomId + '/owner')
+        .then(response => response.ok ? response.json() : null)
+        .then(owner => setRoomServer(roomId, owner && owner.ownerUrl ? owner.ownerUrl : ''))
+        .catch(error => {
+            console.warn('Could not resolve room owner, using this node:', error);
+            roomServerUrl = '';
+        });
+}
+
+function setRoomServer(roomId, ownerUrl) {
+    roomServerUrl = (!ownerUrl || ownerUrl === window.location.origin) ? '' : ownerUrl;
+    console.log('Room', roomId, 'is served by', roomServerUrl || 'this node');
+}
+
+// Go straight to the owner named in the redirect instead of asking the origin node again,
+// which may still hold the old ring; back off exponentially and give up after REDIRECT_MAX_HOPS
+function handleRoomRedirect(redirect) {
+    if (!redirect || redirect.roomId !== currentRoomId || redirectTimer) {
+        return;
+    }
+    const now = Date.now();
+    if (now - lastRedirectAt > REDIRECT_RESET_AFTER) {
+        redirectHops = 0;
+    }
+    lastRedirectAt = now;
+    redirectHops++;
+    if (redirectHops > REDIRECT_MAX_HOPS) {
+        console.error('Room', redirect.roomId, 'redirected', REDIRECT_MAX_HOPS, 'times, giving up');
+        alert('This room is moving between servers. Please rejoin it in a moment.');
+        return;
+    }
+    const delay = Math.min(REDIRECT_MAX_DELAY, REDIRECT_BASE_DELAY * Math.pow(2, redirectHops - 1));
+    console.log('Room', redirect.roomId, 'moved to', redirect.ownerUrl, '- reconnecting in', delay, 'ms');
+    redirectTimer = setTimeout(() => {
+        redirectTimer = null;
+        if (currentRoomId === redirect.roomId) {
+            joinRoom(redirect.roomId, redirect.ownerUrl || '');
+        }
+    }, delay);
+}
+
+function loadRoomState(roomId) {
+    let checkpointSequence = 0;
+    // First, load the latest snapshot: tiled snapshots are drawn tile by tile from the manifest,
+    // snapshots stored as a single image are fetched whole (204 when the room has none)
+    fetch(roomServerUrl + '/api/rooms/' + roomId + '/snapshot/manifest', {
         headers: { 'Authorization': 'Bearer ' + token }
     })
     .then(response => {
         if (!response.ok) {
-            throw new Error('Failed to load snapshot');
+            throw new Error('Failed to load snapshot manifest');
         }
-        return response.json();
+        return response.status === 204 ? null : response.json();
     })
-    .then(snapshotData => {
-        // If snapshot exists, load it first
-        if (snapshotData.imageData && snapshotData.imageData.trim() !== '') {
-            console.log('Loading snapshot for room');
-            const img = new Image();
-            img.onload = function() {
-                ctx.drawImage(img, 0, 0);
-                // Initialize history with snapshot
-                const snapshotImageData = ctx.getImageData(0, 0, canvas.width, canvas.height);
-                operationHistory.push(snapshotImageData);
-                historyIndex = 0;
-                console.log('Snapshot loaded successfully');
-                
-                // Load all operations (they will be applied on top of the snapshot)
-                // This allows users to continue drawing on the saved state
-                loadOperationsAfterSnapshot(roomId, 0);
-            };
-            img.onerror = function() {
-                console.error('Error loading snapshot image');
-                // If snapshot fails, load all operations
-                loadOperationsAfterSnapshot(roomId, 0);
-            };
-            img.src = snapshotData.imageData;
+    .then(manifest => {
+        if (!manifest) {
+            return false;
+        }
+        // Server checkpoints cover every pixel operation up to their sequence
+        checkpointSequence = manifest.sequence || 0;
+        return manifest.tiles ? drawSnapshotTiles(roomId, manifest) : loadWholeSnapshot(roomId);
+    })
+    .then(loaded => {
+        if (loaded) {
+            // Initialize history with snapshot
+            const snapshotImageData = ctx.getImageData(0, 0, canvas.width, canvas.height);
+            operationHistory.push(snapshotImageData);
+            historyIndex = 0;
+            console.log('Snapshot loaded successfully');
         } else {
             console.log('No snapshot found, loading all operations');
-            // No snapshot, load all operations
-            loadOperationsAfterSnapshot(roomId, 0);
         }
+        // Load all operations (they will be applied on top of the snapshot)
+        // This allows users to continue drawing on the saved state
+        loadOperationsAfterSnapshot(roomId, 0, loaded ? checkpointSequence : 0);
     })
     .catch(error => {
         console.error('Error loading snapshot:', error);
         // If snapshot loading fails, try loading all operations
         loadOperationsAfterSnapshot(roomId, 0);
     });
-    
-    // Connect WebSocket (will send join message automatically)
-    connectWebSocket();
-    
-    // Update UI
-    const roomNameDisplay = document.getElementById('roomNameDisplay');
-    if (roomNameDisplay) {
-        roomNameDisplay.textContent = `📋 ${roomId.substring(0, 8)}...`;
-    }
-    
-    const userInToolbar = document.getElementById('currentUserInToolbar');
-    if (userInToolbar && currentUser) {
-        userInToolbar.textContent = currentUser;
-    }
-    
-    // Load chat history
-    loadChatHistory(roomId);
 }
 
-function loadChatHistory(roomId) {
-    fetch('/api/rooms/' + roomId + '/messages', {
+function drawImageBlob(blob, x, y) {
+    return new Promise((resolve, reject) => {
+        const img = new Image();
+        const objectUrl = URL.createObjectURL(blob);
+        img.onload = function() {
+            URL.revokeObjectURL(objectUrl);
+            ctx.drawImage(img, x, y);
+            resolve(true);
+        };
+        img.onerror = function() {
+            URL.revokeObjectURL(objectUrl);
+            reject(new Error('Error decoding snapshot image'));
+        };
+        img.src = objectUrl;
+    });
+}
+
+// Tiles are content-addressed, so unchanged ones come straight from the browser cache
+function drawSnapshotTiles(roomId, manifest) {
+    const columns = Math.ceil(manifest.width / manifest.tileSize);
+    console.log('Loading snapshot for room (' + manifest.tiles.length + ' tiles)');
+    return Promise.all(manifest.tiles.map((hash, i) => {
+        const x = (i % columns) * manifest.tileSize;
+        const y = Math.floor(i / columns) * manifest.tileSize;
+        return fetch(roomServerUrl + '/api/rooms/' + roomId + '/snapshot/tiles/' + hash)
+            .then(response => {
+                if (!response.ok) {
+                    throw new Error('Failed to load snapshot tile');
+                }
+                return response.blob();
+            })
+            .then(blob => drawImageBlob(blob, x, y));
+    }));
+}
+
+function loadWholeSnapshot(roomId) {
+    return fetch(roomServerUrl + '/api/rooms/' + roomId + '/snapshot', {
         headers: { 'Authorization': 'Bearer ' + token }
     })
     .then(response => {
         if (!response.ok) {
-            throw new Error('Failed to load chat messages');
+            throw new Error('Failed to load snapshot');
         }
-        return response.json();
+        return response.status === 204 ? null : response.blob();
     })
-    .then(messages => {
+    .then(snapshotBlob => {
+        if (!snapshotBlob || snapshotBlob.size === 0) {
+            return false;
+        }
+        console.log('Loading snapshot for room (' + snapshotBlob.size + ' bytes)');
+        return drawImageBlob(snapshotBlob, 0, 0);
+    });
+}
+
+function loadChatHistory(roomId) {
+    chatNextBefore = null;
+    chatLoadingOlder = false;
+    fetchChatPage(roomId, null)
+    .then(page => {
         const chatMessages = document.getElementById('chatMessages');
         if (chatMessages) {
             chatMessages.innerHTML = '';
-            if (messages && messages.length > 0) {
-                console.log('Loading', messages.length, 'chat messages');
-                messages.forEach(msg => {
+            if (page.messages && page.messages.length > 0) {
+                console.log('Loading', page.messages.length, 'recent chat messages');
+                page.messages.forEach(msg => {
                     addChatMessage(msg.username, msg.content);
                 });
             } else {
                 console.log('No chat messages to load');
             }
         }
+        chatNextBefore = page.hasMore ? page.nextBefore : null;
     })
     .catch(error => {
         console.error('Error loading chat messages:', error);
     });
 }
 
-function loadOperationsAfterSnapshot(roomId, afterSequence) {
-    fetch('/api/rooms/' + roomId + '/operations?afterSequence=' + afterSequence, {
+function fetchChatPage(roomId, before) {
+    let url = roomServerUrl + '/api/rooms/' + roomId + '/messages?limit=' + CHAT_PAGE_SIZE;
+    if (before !== null) {
+        url += '&before=' + before;
+    }
+    return fetch(url, {
+        headers: { 'Authorization': 'Bearer ' + token }
+    })
+    .then(response => {
+        if (!response.ok) {
+            throw new Error('Failed to load chat messages');
+        }
+        return response.json();
+    });
+}
+
+// Called when the chat panel is scrolled to the top
+function loadOlderChatMessages() {
+    if (chatLoadingOlder || chatNextBefore === null || !currentRoomId) {
+        return;
+    }
+    const roomId = currentRoomId;
+    chatLoadingOlder = true;
+    fetchChatPage(roomId, chatNextBefore)
+    .then(page => {
+        if (roomId !== currentRoomId) {
+            return;
+        }
+        const chatMessages = document.getElementById('chatMessages');
+        // Keep the visible messages in place while older ones are inserted above them
+        const previousHeight = chatMessages.scrollHeight;
+        const fragment = document.createDocumentFragment();
+        page.messages.forEach(msg => {
+            fragment.appendChild(createChatMessageElement(msg.username, msg.content));
+        });
+        chatMessages.insertBefore(fragment, chatMessages.firstChild);
+        chatMessages.scrollTop += chatMessages.scrollHeight - previousHeight;
+        chatNextBefore = page.hasMore ? page.nextBefore : null;
+    })
+    .catch(error => {
+        console.error('Error loading older chat messages:', error);
+    })
+    .finally(() => {
+        chatLoadingOlder = false;
+    });
+}
+
+function loadOperationsAfterSnapshot(roomId, afterSequence, checkpointSequence) {
+    let replaySequence = 0;
+    // Pixel operations up to the checkpoint are already drawn; objects are always replayed
+    const checkpointParam = checkpointSequence ? '&checkpoint=' + checkpointSequence : '';
+    fetch(roomServerUrl + '/api/rooms/' + roomId + '/operations?afterSequence=' + afterSequence + checkpointParam, {
         headers: { 'Authorization': 'Bearer ' + token }
     })
     .then(response => {
         if (!response.ok) {
             throw new Error('Failed to load room operations');
         }
+        // A compacted replay skips superseded operations, so the header gives the sequence it reflects
+        replaySequence = parseInt(response.headers.get('X-Room-Sequence'), 10) || 0;
         return response.json();
     })
     .then(operations => {
@@ -604,7 +879,8 @@ function loadOperationsAfterSnapshot(roomId, afterSequence) {
             operations.forEach((op, index) => {
                 try {
                     console.log(`Loading operation ${index + 1}/${operations.length}:`, op.type);
-                    applyDrawOperation({ type: op.type, data: op.data });
+                    applyDrawOperation(op);
+                    lastSequence = Math.max(lastSequence, op.sequence || 0);
                 } catch (error) {
                     console.error('Error applying operation:', error, op);
                 }
@@ -613,9 +889,21 @@ function loadOperationsAfterSnapshot(roomId, afterSequence) {
         } else {
             console.log('No operations to load after snapshot');
         }
+        lastSequence = Math.max(lastSequence, replaySequence);
+        
+        // Our own strokes that the server has not acked yet are not in the loaded state
+        pendingOperations
+            .filter(op => op.roomId === roomId)
+            .forEach(op => applyDrawOperation(op));
+        
+        // Apply broadcasts that arrived while the room was loading
+        roomStateLoaded = true;
+        drainSequenceBuffer();
     })
     .catch(error => {
         console.error('Error loading operations:', error);
+        roomStateLoaded = true;
+        drainSequenceBuffer();
     });
 }
 
@@ -635,22 +923,26 @@ function saveSnapshot() {
         return;
     }
     
-    // Convert canvas to base64 image
-    const imageData = canvas.toDataURL('image/png');
-    const url = '/api/rooms/' + currentRoomId + '/save';
+    const url = roomServerUrl + '/api/rooms/' + currentRoomId + '/save';
     
     console.log('Saving snapshot for room:', currentRoomId);
     console.log('Request URL:', url);
     console.log('Token exists:', !!token);
-    console.log('Image data length:', imageData.length);
     
-    fetch(url, {
-        method: 'POST',
-        headers: {
-            'Content-Type': 'application/json',
-            'Authorization': 'Bearer ' + token
-        },
-        body: JSON.stringify({ imageData: imageData })
+    // Upload the canvas as a binary PNG instead of a base64 data URL
+    new Promise((resolve, reject) => {
+        canvas.toBlob(blob => blob ? resolve(blob) : reject(new Error('Failed to encode canvas')), 'image/png');
+    })
+    .then(blob => {
+        console.log('Image size:', blob.size);
+        return fetch(url, {
+            method: 'POST',
+            headers: {
+                'Content-Type': blob.type || 'image/png',
+                'Authorization': 'Bearer ' + token
+            },
+            body: blob
+        });
     })
     .then(response => {
         if (!response.ok) {
@@ -688,7 +980,8 @@ function saveSnapshot() {
         return response.json();
     })
     .then(data => {
-        console.log('Snapshot saved successfully');
+        console.log('Snapshot saved successfully', data.unchanged ? '(unchanged)' :
+            '(' + data.newTiles + '/' + data.tiles + ' new tiles, ' + data.storedBytes + ' bytes stored)');
         alert('✅ Saved successfully! All users will see this state when they enter the room.');
     })
     .catch(error => {
@@ -701,12 +994,23 @@ function saveSnapshot() {
     });
 }
 
-function loadRoomList() {
+let roomListQuery = '';
+let roomSearchTimer = null;
+
+// Loads one page of rooms; without a cursor the list starts over, with one the page is appended
+function loadRoomList(cursor) {
     if (!token) {
         return;
     }
     
-    fetch('/api/rooms/list', {
+    const params = new URLSearchParams();
+    if (roomListQuery) {
+        params.set('q', roomListQuery);
+    }
+    if (cursor) {
+        params.set('cursor', cursor);
+    }
+    fetch('/api/rooms/list?' + params.toString(), {
         headers: { 'Authorization': 'Bearer ' + token }
     })
     .then(response => {
@@ -715,26 +1019,70 @@ function loadRoomList() {
         }
         return response.json();
     })
-    .then(rooms => {
+    .then(page => {
         const roomList = document.getElementById('roomList');
-        roomList.innerHTML = '<h3>Available Rooms</h3>';
-        if (rooms && rooms.length > 0) {
-            rooms.forEach(room => {
-                const roomItem = document.createElement('div');
-                roomItem.className = 'room-item';
-                const title = document.createElement('div');
-                title.className = 'room-item-title';
-                title.textContent = room.name;
-                const owner = document.createElement('div');
-                owner.className = 'room-item-owner';
-                owner.textContent = 'by ' + room.owner;
-                roomItem.appendChild(title);
-                roomItem.appendChild(owner);
-                roomItem.onclick = () => joinRoom(room.roomId);
-                roomList.appendChild(roomItem);
-            });
-        } else {
-            roomList.innerHTML += '<p>No rooms available. Create one!</p>';
+        let items = document.getElementById('roomItems');
+        if (!items) {
+            roomList.innerHTML = '<h3>Available Rooms</h3>';
+            const search = document.createElement('input');
+            search.type = 'text';
+            search.id = 'roomSearch';
+            search.placeholder = 'Search rooms by name...';
+            search.value = roomListQuery;
+            search.oninput = () => {
+                clearTimeout(roomSearchTimer);
+                roomSearchTimer = setTimeout(() => {
+                    roomListQuery = search.value.trim();
+                    loadRoomList();
+                }, 250);
+            };
+            roomList.appendChild(search);
+            items = document.createElement('div');
+            items.id = 'roomItems';
+            roomList.appendChild(items);
+        }
+        if (!cursor) {
+            items.innerHTML = '';
+        }
+        const moreButton = document.getElementById('moreRoomsBtn');
+        if (moreButton) {
+            moreButton.remove();
+        }
+        page.rooms.forEach(room => {
+            const roomItem = document.createElement('div');
+            roomItem.className = 'room-item';
+            const title = document.createElement('div');
+            title.className = 'room-item-title';
+            title.textContent = room.name;
+            const owner = document.createElement('div');
+            owner.className = 'room-item-owner';
+            owner.textContent = 'by ' + room.owner;
+            if (room.thumbnail) {
+                // The URL changes whenever the thumbnail does, so the browser can cache it for good
+                const thumbnail = document.createElement('img');
+                thumbnail.className = 'room-item-thumbnail';
+                thumbnail.alt = '';
+                thumbnail.loading = 'lazy';
+                thumbnail.src = '/api/rooms/' + encodeURIComponent(room.roomId) + '/thumbnail?v=' + room.thumbnail;
+                roomItem.appendChild(thumbnail);
+            }
+            roomItem.appendChild(title);
+            roomItem.appendChild(owner);
+            roomItem.onclick = () => joinRoom(room.roomId);
+            items.appendChild(roomItem);
+        });
+        if (!cursor && page.rooms.length === 0) {
+            items.innerHTML = roomListQuery
+                ? '<p>No rooms match this name.</p>'
+                : '<p>No rooms available. Create one!</p>';
+        }
+        if (page.nextCursor) {
+            const more = document.createElement('button');
+            more.id = 'moreRoomsBtn';
+            more.className = 'secondary';
+            more.textContent = 'Load more rooms';
+            more.onclick = () => loadRoomList(page.nextCursor);
+            roomList.appendChild(more);
         }
     })
     .catch(error => {
@@ -754,31 +1102,40 @@ function sendDrawOperation(type, data) {
         roomId: currentRoomId,
         type: type,
         data: JSON.stringify(data),
-        username: currentUser
+        username: currentUser,
+        clientOpId: generateClientOpId()
     };
+    if (Math.random() < TRACE_SAMPLE_RATE) {
+        message.trace = { clientSentAt: Date.now() };
+    }
+    rememberLocalOpId(message.clientOpId);
+    
+    // Kept until the server acks it, so it can be resent after a reconnect
+    pendingOperations.push(message);
+    saveToHistory();
     
     console.log('Attempting to send draw operation:', type, 'Room:', currentRoomId, 'WebSocket connected:', !!(stompClient && stompClient.connected));
     
     if (!stompClient || !stompClient.connected) {
-        console.warn('WebSocket not connected, adding to pending queue. Type:', type);
-        // Add to pending queue
-        pendingOperations.push(message);
-        saveToHistory();
+        console.warn('WebSocket not connected, operation will be sent on reconnect. Type:', type);
         return;
     }
     
     try {
         stompClient.send('/app/draw', {}, JSON.stringify(message));
         console.log('✅ Draw operation sent successfully:', type);
-        saveToHistory();
     } catch (error) {
         console.error('❌ Error sending draw operation:', error);
-        // Add to pending queue if send fails
-        pendingOperations.push(message);
-        saveToHistory();
     }
 }
 
+function generateClientOpId() {
+    if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+        return window.crypto.randomUUID();
+    }
+    return Date.now().toString(36) + '-' + Math.random().toString(36).substring(2, 12);
+}
+
 function flushPendingOperations() {
     if (pendingOperations.length === 0) {
         return;
@@ -789,22 +1146,208 @@ function flushPendingOperations() {
         return;
     }
     
-    console.log(`Flushing ${pendingOperations.length} pending operations...`);
-    const operationsToSend = [...pendingOperations];
-    pendingOperations = [];
+    // Operations stay queued until acked; the server dedupes by clientOpId
+    const operationsToSend = pendingOperations.filter(op => op.roomId === currentRoomId);
+    console.log(`Resending ${operationsToSend.length} unacked operations...`);
     
     operationsToSend.forEach((message, index) => {
+        // A resent stroke no longer measures a single round trip
+        delete message.trace;
         try {
             stompClient.send('/app/draw', {}, JSON.stringify(message));
-            console.log(`✅ Sent pending operation ${index + 1}/${operationsToSend.length}:`, message.type);
         } catch (error) {
             console.error(`❌ Error sending pending operation ${index + 1}:`, error);
-            // Re-add to queue if send fails
-            pendingOperations.push(message);
         }
     });
-    
-    console.log(`✅ Flushed ${operationsToSend.length - pendingOperations.length} operations`);
+}
+
+function handleOperationAck(ack) {
+    if (!ack || ack.roomId !== currentRoomId) {
+        return;
+    }
+    if (ack.pending) {
+        // The first send is still being saved and its ack went to the old connection; ask again later
+        resendPendingOperation(ack.clientOpId);
+        return;
+    }
+    pendingAckRetries.delete(ack.clientOpId);
+    // lastSequence only advances through the ordered stream, so an ack cannot skip over a gap
+    pendingOperations = pendingOperations.filter(op => op.clientOpId !== ack.clientOpId);
+}
+
+function resendPendingOperation(clientOpId) {
+    const attempts = pendingAckRetries.get(clientOpId) || 0;
+    pendingAckRetries.set(clientOpId, attempts + 1);
+    const delay = Math.min(PENDING_ACK_BASE_DELAY * Math.pow(2, attempts), PENDING_ACK_MAX_DELAY);
+    setTimeout(() => {
+        const message = pendingOperations.find(op => op.clientOpId === clientOpId);
+        if (!message || message.roomId !== currentRoomId || !stompClient || !stompClient.connected) {
+            // Acked meanwhile, or the next reconnect resends it anyway
+            pendingAckRetries.delete(clientOpId);
+            return;
+        }
+        try {
+            stompClient.send('/app/draw', {}, JSON.stringify(message));
+        } catch (error) {
+            console.error('❌ Error resending pending operation:', error);
+        }
+    }, delay);
+}
+
+function handleResume(resume) {
+    if (!resume || resume.roomId !== currentRoomId) {
+        return;
+    }
+    if (resume.reload) {
+        console.log('Too many missed operations, reloading room state');
+        clearCanvas();
+        clearScene();
+        operationHistory = [];
+        historyIndex = -1;
+        resetSequenceState();
+        loadRoomState(currentRoomId);
+        return;
+    }
+    console.log('Resuming with', resume.operations.length, 'missed operation(s)');
+    resume.operations.forEach(receiveOperation);
+}
+
+function rememberLocalOpId(clientOpId) {
+    localOpIds.add(clientOpId);
+    if (localOpIds.size > LOCAL_OP_IDS_MAX) {
+        // Sets iterate in insertion order, so this drops the oldest id
+        localOpIds.delete(localOpIds.values().next().value);
+    }
+}
+
+function isOwnOperation(op) {
+    return op.clientOpId ? localOpIds.has(op.clientOpId) : op.username === currentUser;
+}
+
+// Reports latency for traced strokes: round trip for our own, time to the next painted frame for others'
+function reportStrokeTrace(op) {
+    if (!op.trace || op.receivedAt === undefined) {
+        return;
+    }
+    if (isOwnOperation(op)) {
+        if (op.trace.clientSentAt) {
+            sendTraceReport({ roomId: op.roomId, sequence: op.sequence, roundTripMs: Date.now() - op.trace.clientSentAt });
+        }
+        return;
+    }
+    // Every viewer receives the trace; only a few of them report so large rooms don't flood the server
+    const viewers = Math.max(1, presenceUsers.size - 1);
+    if (Math.random() * viewers >= TRACE_RENDER_REPORTERS) {
+        return;
+    }
+    const receivedAt = op.receivedAt;
+    requestAnimationFrame(() => {
+        sendTraceReport({ roomId: op.roomId, sequence: op.sequence, renderMs: performance.now() - receivedAt });
+    });
+}
+
+function sendTraceReport(report) {
+    if (stompClient && stompClient.connected) {
+        stompClient.send('/app/trace', {}, JSON.stringify(report));
+    }
+}
+
+function resetSequenceState() {
+    lastSequence = 0;
+    sequenceBuffer.clear();
+    roomStateLoaded = false;
+    if (gapFillTimer) {
+        clearTimeout(gapFillTimer);
+        gapFillTimer = null;
+    }
+}
+
+// Applies a sequenced operation in room order, buffering anything that arrives ahead of a gap
+function receiveOperation(op) {
+    if (op.sequence === null || op.sequence === undefined) {
+        if (!isOwnOperation(op)) {
+            applyDrawOperation(op);
+        }
+        reportStrokeTrace(op);
+        return;
+    }
+    if (op.sequence <= lastSequence || sequenceBuffer.has(op.sequence)) {
+        return;
+    }
+    sequenceBuffer.set(op.sequence, op);
+    drainSequenceBuffer();
+}
+
+function drainSequenceBuffer() {
+    if (!roomStateLoaded) {
+        return;
+    }
+    for (const sequence of sequenceBuffer.keys()) {
+        if (sequence <= lastSequence) {
+            sequenceBuffer.delete(sequence);
+        }
+    }
+    while (sequenceBuffer.has(lastSequence + 1)) {
+        const op = sequenceBuffer.get(lastSequence + 1);
+        sequenceBuffer.delete(lastSequence + 1);
+        // Our own operations were drawn locally when they were made
+        if (!isOwnOperation(op)) {
+            applyDrawOperation(op);
+        }
+        reportStrokeTrace(op);
+        lastSequence = op.sequence;
+    }
+    if (sequenceBuffer.size > 0) {
+        scheduleGapFill();
+    } else if (gapFillTimer) {
+        clearTimeout(gapFillTimer);
+        gapFillTimer = null;
+    }
+}
+
+function scheduleGapFill() {
+    if (gapFillTimer) {
+        return;
+    }
+    gapFillTimer = setTimeout(() => {
+        gapFillTimer = null;
+        requestGapFill();
+    }, GAP_FILL_DELAY);
+}
+
+// Fetches only the missing range between lastSequence and the first buffered operation
+function requestGapFill() {
+    if (sequenceBuffer.size === 0 || !currentRoomId) {
+        return;
+    }
+    const roomId = currentRoomId;
+    const from = lastSequence + 1;
+    const to = Math.min(Math.min(...sequenceBuffer.keys()) - 1, from + GAP_FILL_MAX - 1);
+    console.log('Gap detected, fetching operations', from, 'to', to);
+    fetch(roomServerUrl + '/api/rooms/' + roomId + '/operations?from=' + from + '&to=' + to, {
+        headers: { 'Authorization': 'Bearer ' + token }
+    })
+    .then(response => {
+        if (!response.ok) {
+            throw new Error('Failed to fetch missing operations');
+        }
+        return response.json();
+    })
+    .then(operations => {
+        if (roomId !== currentRoomId) {
+            return;
+        }
+        operations.forEach(receiveOperation);
+        if (sequenceBuffer.size > 0) {
+            scheduleGapFill();
+        }
+    })
+    .catch(error => {
+        console.error('Error filling operation gap:', error);
+        if (roomId === currentRoomId) {
+            scheduleGapFill();
+        }
+    });
 }
 
 function applyDrawOperation(drawMsg) {
@@ -814,6 +1357,12 @@ function applyDrawOperation(drawMsg) {
         
         console.log('Applying draw operation:', type, data);
         
+        // Shapes with an objectId live on the object layer and can be edited later
+        if (data && data.objectId && applyObjectOperation(type, data)) {
+            renderObjects();
+            return;
+        }
+        
         switch(type) {
             case 'pen':
             case 'eraser':
@@ -837,7 +1386,11 @@ function applyDrawOperation(drawMsg) {
                 break;
             case 'clear':
                 clearCanvas();
+                clearScene();
                 break;
+            case 'noop':
+                // Superseded operation rewritten by server-side log compaction, or a sequence whose save failed
+                return;
             default:
                 console.warn('Unknown operation type:', type);
         }
@@ -847,6 +1400,176 @@ function applyDrawOperation(drawMsg) {
     }
 }
 
+// Returns false for operation types that are not object operations
+function applyObjectOperation(type, data) {
+    const object = sceneObjects.get(data.objectId);
+    switch(type) {
+        case 'rectangle':
+        case 'circle':
+        case 'line':
+        case 'text':
+            sceneObjects.set(data.objectId, { objectId: data.objectId, type: type, data: data });
+            return true;
+        case 'update':
+            // Only the changed fields are sent, e.g. { objectId, color }
+            if (object) {
+                Object.keys(data).forEach(key => {
+                    if (key !== 'objectId') {
+                        object.data[key] = data[key];
+                    }
+                });
+            }
+            return true;
+        case 'move':
+            if (object) {
+                translateObject(object, data.dx || 0, data.dy || 0);
+            }
+            return true;
+        case 'delete':
+            sceneObjects.delete(data.objectId);
+            if (selectedObjectId === data.objectId) {
+                selectedObjectId = null;
+            }
+            return true;
+        default:
+            return false;
+    }
+}
+
+function createObject(type, data) {
+    data.objectId = generateClientOpId();
+    applyObjectOperation(type, data);
+    renderObjects();
+    sendDrawOperation(type, data);
+}
+
+function updateSelectedObject(fields) {
+    if (!selectedObjectId || !sceneObjects.has(selectedObjectId)) {
+        return;
+    }
+    const delta = Object.assign({ objectId: selectedObjectId }, fields);
+    applyObjectOperation('update', delta);
+    renderObjects();
+    sendDrawOperation('update', delta);
+}
+
+function deleteSelectedObject() {
+    if (!selectedObjectId || !sceneObjects.has(selectedObjectId)) {
+        return;
+    }
+    const delta = { objectId: selectedObjectId };
+    applyObjectOperation('delete', delta);
+    renderObjects();
+    sendDrawOperation('delete', delta);
+}
+
+function translateObject(object, dx, dy) {
+    const data = object.data;
+    if (object.type === 'line') {
+        data.x1 += dx;
+        data.y1 += dy;
+        data.x2 += dx;
+        data.y2 += dy;
+    } else {
+        data.x += dx;
+        data.y += dy;
+    }
+}
+
+function clearScene() {
+    sceneObjects.clear();
+    selectedObjectId = null;
+    dragState = null;
+    renderObjects();
+}
+
+function renderObjects() {
+    if (!objectCtx) {
+        return;
+    }
+    objectCtx.clearRect(0, 0, objectCanvas.width, objectCanvas.height);
+    sceneObjects.forEach(object => {
+        const d = object.data;
+        switch(object.type) {
+            case 'rectangle':
+                drawRectangle(d.x, d.y, d.width, d.height, d.color, d.lineWidth, objectCtx);
+                break;
+            case 'circle':
+                drawCircle(d.x, d.y, d.radius, d.color, d.lineWidth, objectCtx);
+                break;
+            case 'line':
+                drawLine(d.x1, d.y1, d.x2, d.y2, d.color, d.lineWidth, objectCtx);
+                break;
+            case 'text':
+                drawText(d.x, d.y, d.text, d.color, d.fontSize || 16, objectCtx);
+                break;
+        }
+    });
+    const selected = selectedObjectId ? sceneObjects.get(selectedObjectId) : null;
+    if (selected) {
+        const box = objectBounds(selected);
+        objectCtx.save();
+        objectCtx.strokeStyle = '#2196F3';
+        objectCtx.lineWidth = 1;
+        objectCtx.setLineDash([4, 4]);
+        objectCtx.strokeRect(box.x - 4, box.y - 4, box.width + 8, box.height + 8);
+        objectCtx.restore();
+    }
+}
+
+function objectBounds(object) {
+    const d = object.data;
+    switch(object.type) {
+        case 'rectangle':
+            return { x: Math.min(d.x, d.x + d.width), y: Math.min(d.y, d.y + d.height), width: Math.abs(d.width), height: Math.abs(d.height) };
+        case 'circle':
+            return { x: d.x - d.radius, y: d.y - d.radius, width: 2 * d.radius, height: 2 * d.radius };
+        case 'line':
+            return { x: Math.min(d.x1, d.x2), y: Math.min(d.y1, d.y2), width: Math.abs(d.x2 - d.x1), height: Math.abs(d.y2 - d.y1) };
+        case 'text': {
+            const fontSize = d.fontSize || 16;
+            objectCtx.save();
+            objectCtx.font = fontSize + 'px Arial';
+            const width = objectCtx.measureText(d.text || '').width;
+            objectCtx.restore();
+            return { x: d.x, y: d.y - fontSize, width: width, height: fontSize };
+        }
+        default:
+            return { x: 0, y: 0, width: 0, height: 0 };
+    }
+}
+
+// Topmost object under the point, or null
+function hitTestObject(x, y) {
+    const objects = Array.from(sceneObjects.values());
+    for (let i = objects.length - 1; i >= 0; i--) {
+        const object = objects[i];
+        const d = object.data;
+        const tolerance = Math.max(6, (d.lineWidth || 2) / 2 + 4);
+        if (object.type === 'line') {
+            if (distanceToSegment(x, y, d.x1, d.y1, d.x2, d.y2) <= tolerance) {
+                return object;
+            }
+            continue;
+        }
+        const box = objectBounds(object);
+        if (x >= box.x - tolerance && x <= box.x + box.width + tolerance &&
+            y >= box.y - tolerance && y <= box.y + box.height + tolerance) {
+            return object;
+        }
+    }
+    return null;
+}
+
+function distanceToSegment(px, py, x1, y1, x2, y2) {
+    const lengthSquared = Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2);
+    if (lengthSquared === 0) {
+        return Math.hypot(px - x1, py - y1);
+    }
+    const t = Math.max(0, Math.min(1, ((px - x1) * (x2 - x1) + (py - y1) * (y2 - y1)) / lengthSquared));
+    return Math.hypot(px - (x1 + t * (x2 - x1)), py - (y1 + t * (y2 - y1)));
+}
+
 function drawPath(points, color, lineWidth, isEraser) {
     if (!points || points.length < 2) {
         console.warn('Invalid points for drawPath:', points);
@@ -869,41 +1592,41 @@ function drawPath(points, color, lineWidth, isEraser) {
     ctx.restore();
 }
 
-function drawRectangle(x, y, width, height, color, lineWidth) {
-    ctx.save();
-    ctx.strokeStyle = color;
-    ctx.lineWidth = lineWidth;
-    ctx.strokeRect(x, y, width, height);
-    ctx.restore();
+function drawRectangle(x, y, width, height, color, lineWidth, target = ctx) {
+    target.save();
+    target.strokeStyle = color;
+    target.lineWidth = lineWidth;
+    target.strokeRect(x, y, width, height);
+    target.restore();
 }
 
-function drawCircle(x, y, radius, color, lineWidth) {
-    ctx.save();
-    ctx.strokeStyle = color;
-    ctx.lineWidth = lineWidth;
-    ctx.beginPath();
-    ctx.arc(x, y, radius, 0, 2 * Math.PI);
-    ctx.stroke();
-    ctx.restore();
+function drawCircle(x, y, radius, color, lineWidth, target = ctx) {
+    target.save();
+    target.strokeStyle = color;
+    target.lineWidth = lineWidth;
+    target.beginPath();
+    target.arc(x, y, radius, 0, 2 * Math.PI);
+    target.stroke();
+    target.restore();
 }
 
-function drawLine(x1, y1, x2, y2, color, lineWidth) {
-    ctx.save();
-    ctx.strokeStyle = color;
-    ctx.lineWidth = lineWidth;
-    ctx.beginPath();
-    ctx.moveTo(x1, y1);
-    ctx.lineTo(x2, y2);
-    ctx.stroke();
-    ctx.restore();
+function drawLine(x1, y1, x2, y2, color, lineWidth, target = ctx) {
+    target.save();
+    target.strokeStyle = color;
+    target.lineWidth = lineWidth;
+    target.beginPath();
+    target.moveTo(x1, y1);
+    target.lineTo(x2, y2);
+    target.stroke();
+    target.restore();
 }
 
-function drawText(x, y, text, color, fontSize) {
-    ctx.save();
-    ctx.fillStyle = color;
-    ctx.font = fontSize + 'px Arial';
-    ctx.fillText(text, x, y);
-    ctx.restore();
+function drawText(x, y, text, color, fontSize, target = ctx) {
+    target.save();
+    target.fillStyle = color;
+    target.font = fontSize + 'px Arial';
+    target.fillText(text, x, y);
+    target.restore();
 }
 
 function clearCanvas() {
@@ -974,6 +1697,70 @@ function updateCursor(username, x, y) {
     }
 }
 
+function resetPresence() {
+    presenceUsers = new Map();
+    presenceVersion = -1;
+}
+
+function applyPresence(msg) {
+    if (!msg || msg.roomId !== currentRoomId) {
+        return;
+    }
+    if (msg.type === 'full') {
+        presenceUsers = new Map();
+        (msg.users || []).forEach(user => presenceUsers.set(user.username, user));
+        presenceVersion = msg.version;
+    } else {
+        // Deltas before the first full list, or already covered by it, are ignored
+        if (presenceVersion < 0 || msg.version <= presenceVersion) {
+            return;
+        }
+        if (msg.version !== presenceVersion + 1) {
+            console.warn('Presence gap detected (have', presenceVersion, 'got', msg.version, '), resyncing');
+            requestPresenceResync();
+            return;
+        }
+        if (msg.type === 'add') {
+            presenceUsers.set(msg.user.username, msg.user);
+        } else if (msg.type === 'remove') {
+            presenceUsers.delete(msg.user.username);
+            removeCursor(msg.user.username);
+        }
+        presenceVersion = msg.version;
+    }
+    updateUsersList(Array.from(presenceUsers.values()));
+}
+
+function requestPresenceResync() {
+    if (stompClient && stompClient.connected && currentRoomId) {
+        stompClient.send('/app/presence/resync', {}, JSON.stringify({ roomId: currentRoomId }));
+    }
+}
+
+function startPresenceHeartbeat() {
+    stopPresenceHeartbeat();
+    presenceHeartbeatTimer = setInterval(() => {
+        if (stompClient && stompClient.connected && currentRoomId) {
+            stompClient.send('/app/presence/heartbeat', {}, JSON.stringify({ roomId: currentRoomId }));
+        }
+    }, PRESENCE_HEARTBEAT_INTERVAL);
+}
+
+function stopPresenceHeartbeat() {
+    if (presenceHeartbeatTimer) {
+        clearInterval(presenceHeartbeatTimer);
+        presenceHeartbeatTimer = null;
+    }
+}
+
+function removeCursor(username) {
+    const cursor = userCursors[username];
+    if (cursor && cursor.parentNode) {
+        cursor.parentNode.removeChild(cursor);
+    }
+    delete userCursors[username];
+}
+
 function updateUsersList(users) {
     const usersList = document.getElementById('usersList');
     usersList.innerHTML = '';
@@ -1005,11 +1792,15 @@ function addChatMessage(username, content) {
         return;
     }
     
+    chatMessages.appendChild(createChatMessageElement(username, content));
+    chatMessages.scrollTop = chatMessages.scrollHeight;
+}
+
+function createChatMessageElement(username, content) {
     const messageDiv = document.createElement('div');
     messageDiv.className = 'chat-message';
     messageDiv.innerHTML = '<span class="username">' + escapeHtml(username) + ':</span> ' + escapeHtml(content);
-    chatMessages.appendChild(messageDiv);
-    chatMessages.scrollTop = chatMessages.scrollHeight;
+    return messageDiv;
 }
 
 function escapeHtml(text) {
@@ -1174,7 +1965,36 @@ function setupEventListeners() {
             document.querySelectorAll('.tool-btn').forEach(b => b.classList.remove('active'));
             btn.classList.add('active');
             currentTool = btn.dataset.tool;
+            if (currentTool !== 'select' && selectedObjectId) {
+                selectedObjectId = null;
+                renderObjects();
+            }
+        });
+    });
+    
+    // With the Move tool, color and size changes edit the selected shape
+    const colorPicker = document.getElementById('colorPicker');
+    if (colorPicker) {
+        colorPicker.addEventListener('change', () => {
+            if (currentTool === 'select') {
+                updateSelectedObject({ color: colorPicker.value });
+            }
         });
+    }
+    const lineWidthInput = document.getElementById('lineWidth');
+    if (lineWidthInput) {
+        lineWidthInput.addEventListener('change', () => {
+            if (currentTool === 'select') {
+                updateSelectedObject({ lineWidth: parseInt(lineWidthInput.value) || 2 });
+            }
+        });
+    }
+    document.addEventListener('keydown', (e) => {
+        const tag = e.target && e.target.tagName;
+        if ((e.key === 'Delete' || e.key === 'Backspace') && tag !== 'INPUT' && tag !== 'TEXTAREA' && selectedObjectId) {
+            e.preventDefault();
+            deleteSelectedObject();
+        }
     });
     
     if (undoBtn) {
@@ -1208,6 +2028,7 @@ function setupEventListeners() {
             console.log('Clear clicked');
             if (confirm('Clear the entire canvas?')) {
                 clearCanvas();
+                clearScene();
                 sendDrawOperation('clear', {});
             }
         });
@@ -1221,6 +2042,15 @@ function setupEventListeners() {
         });
     }
     
+    const chatMessages = document.getElementById('chatMessages');
+    if (chatMessages) {
+        chatMessages.addEventListener('scroll', () => {
+            if (chatMessages.scrollTop < 40) {
+                loadOlderChatMessages();
+            }
+        });
+    }
+    
     if (chatInput) {
         chatInput.addEventListener('keypress', (e) => {
             if (e.key === 'Enter') {
@@ -1291,7 +2121,7 @@ function initializeApp() {
         token = savedToken;
         currentUser = savedUser;
         // Try to validate token by checking rooms list
-        fetch('/api/rooms/list', {
+        fetch('/api/rooms/list?limit=1', {
             headers: { 'Authorization': 'Bearer ' + token }
         })
         .then(response => {
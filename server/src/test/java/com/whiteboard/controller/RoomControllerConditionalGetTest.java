@@ -0,0 +1,177 @@
+package com.whiteboard.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.whiteboard.config.CustomPasswordEncoder;
+import com.whiteboard.config.CustomUserDetailsService;
+import com.whiteboard.dto.ChatHistoryPage;
+import com.whiteboard.model.Room;
+import com.whiteboard.model.Snapshot;
+import com.whiteboard.model.User;
+import com.whiteboard.repository.MessageRepository;
+import com.whiteboard.repository.OperationRepository;
+import com.whiteboard.repository.RoomRepository;
+import com.whiteboard.repository.SnapshotRepository;
+import com.whiteboard.repository.UserRepository;
+import com.whiteboard.service.ClusterService;
+import com.whiteboard.service.MessageService;
+import com.whiteboard.service.OperationService;
+import com.whiteboard.service.RoomService;
+import com.whiteboard.service.RoomVersionService;
+import com.whiteboard.service.SceneService;
+import com.whiteboard.service.SearchIndexService;
+import com.whiteboard.service.SnapshotService;
+import com.whiteboard.service.ThumbnailService;
+import com.whiteboard.service.UserService;
+import com.whiteboard.util.HashUtil;
+import com.whiteboard.util.JwtUtil;
+
+/**
+ * 条件 GET：先用一次正常请求拿到 ETag，再带 If-None-Match 请求，应当返回 304 且不加载任何实体
+ * RoomService 和 RoomVersionService 用真实实现，房间查询会落到（模拟的）RoomRepository 上
+ */
+@WebMvcTest(RoomController.class)
+@Import({RoomService.class, RoomVersionService.class})
+class RoomControllerConditionalGetTest {
+    private static final String ROOM_ID = "7f3c2a9e-5b1d-4c8e-9a6f-2d4b8e1c0f37";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private SnapshotRepository snapshotRepository;
+
+    @MockBean
+    private OperationRepository operationRepository;
+
+    @MockBean
+    private MessageRepository messageRepository;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ClusterService clusterService;
+
+    @MockBean
+    private OperationService operationService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private SnapshotService snapshotService;
+
+    @MockBean
+    private MessageService messageService;
+
+    @MockBean
+    private SceneService sceneService;
+
+    @MockBean
+    private SearchIndexService searchIndexService;
+
+    @MockBean
+    private ThumbnailService thumbnailService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @MockBean
+    private CustomUserDetailsService customUserDetailsService;
+
+    @MockBean
+    private CustomPasswordEncoder customPasswordEncoder;
+
+    @MockBean
+    private HashUtil hashUtil;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User();
+        owner.setId(1L);
+        owner.setUsername("hashed");
+        owner.setOriginalUsername("alice");
+        Room room = new Room();
+        room.setId(10L);
+        room.setRoomId(ROOM_ID);
+        room.setName("Design review");
+        room.setOwner(owner);
+        Snapshot snapshot = new Snapshot();
+        snapshot.setId(100L);
+        snapshot.setRoom(room);
+        snapshot.setContentHash("content");
+        snapshot.setContentType(SnapshotService.PNG);
+        snapshot.setCreatedAt(LocalDateTime.now());
+
+        when(clusterService.isLocal(ROOM_ID)).thenReturn(true);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(ROOM_ID))).thenReturn(List.of(10L));
+        when(roomRepository.findByRoomId(ROOM_ID)).thenReturn(Optional.of(room));
+        when(operationService.getOperationsAfter(any(Room.class), anyLong())).thenReturn(List.of());
+        when(snapshotService.getLatestSnapshot(any(Room.class))).thenReturn(Optional.of(snapshot));
+        when(messageService.getHistoryPage(any(Room.class), isNull(), anyInt())).thenReturn(new ChatHistoryPage(List.of(), false, null));
+        when(thumbnailService.getThumbnailHash(any(Snapshot.class))).thenReturn(Optional.of("thumb"));
+        when(thumbnailService.open("thumb")).thenReturn(Optional.of(new ByteArrayResource(new byte[] {1, 2, 3})));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "/operations?afterSequence=5", "/snapshot/manifest", "/messages", "/thumbnail"})
+    void matchingEtagReturnsNotModifiedWithoutRepositoryCalls(String path) throws Exception {
+        String url = "/api/rooms/" + ROOM_ID + path;
+        String etag = mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+
+        clearInvocations(roomRepository, snapshotRepository, operationRepository, messageRepository, userRepository,
+            jdbcTemplate, operationService, snapshotService, messageService, sceneService, thumbnailService);
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        verifyNoInteractions(roomRepository, snapshotRepository, operationRepository, messageRepository, userRepository,
+            jdbcTemplate, operationService, snapshotService, messageService, sceneService, thumbnailService);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/operations?afterSequence=5", "/snapshot/manifest", "/messages", "/thumbnail"})
+    void staleEtagLoadsTheRoomAgain(String path) throws Exception {
+        mockMvc.perform(get("/api/rooms/" + ROOM_ID + path).header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+            .andExpect(status().isOk());
+    }
+}
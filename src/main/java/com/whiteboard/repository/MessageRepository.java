@@ -1,14 +0,0 @@
-package com.whiteboard.repository;
-
-import com.whiteboard.model.Message;
-import com.whiteboard.model.Room;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-import java.util.List;
-
-@Repository
-public interface MessageRepository extends JpaRepository<Message, Long> {
-    List<Message> findByRoomOrderByTimestampAsc(Room room);
-}
-
@@ -1,14 +0,0 @@
-package com.whiteboard.repository;
-
-import com.whiteboard.model.Room;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-import java.util.Optional;
-
-@Repository
-public interface RoomRepository extends JpaRepository<Room, Long> {
-    Optional<Room> findByRoomId(String roomId);
-    boolean existsByRoomId(String roomId);
-}
-